@@ -0,0 +1,58 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a batch operation. Every key of the batch is reported either as succeeded or as failed together with the reason of the failure.
+ */
+public class BatchResult implements Serializable {
+
+    private static final long serialVersionUID = 5307829134568413425L;
+
+    private final List<String> succeeded = new ArrayList<String>();
+    private final Map<String, String> failed = new LinkedHashMap<String, String>();
+
+    public void success(String key) {
+        succeeded.add(key);
+    }
+
+    public void failure(String key, Exception cause) {
+        failed.put(key, cause.getClass().getName() + ": " + cause.getMessage());
+    }
+
+    /**
+     * @return the keys for which the operation succeeded
+     */
+    public List<String> getSucceeded() {
+        return succeeded;
+    }
+
+    /**
+     * @return the keys for which the operation failed, mapped to the reason of the failure
+     */
+    public Map<String, String> getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return true if the operation succeeded for every key of the batch
+     */
+    public boolean isSuccessful() {
+        return failed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult[succeeded=" + succeeded.size() + ", failed=" + failed + "]";
+    }
+}
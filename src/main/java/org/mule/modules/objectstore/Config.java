@@ -11,8 +11,11 @@ import org.mule.api.annotations.components.Configuration;
 import org.mule.api.annotations.param.Default;
 import org.mule.api.annotations.param.Optional;
 import org.mule.api.store.ObjectStore;
+import org.mule.modules.objectstore.codec.ValueCodec;
+import org.mule.modules.objectstore.eviction.Weigher;
 
 import java.io.Serializable;
+import java.util.List;
 
 @Configuration(configElementName = "config", friendlyName = "Configuration")
 public class Config {
@@ -40,26 +43,225 @@ public class Config {
     private ObjectStore<Serializable> objectStore;
 
     /**
-     * TimeToLive for stored values in milliseconds. MaxEntries and ExpirationInterval are mandatory for using this param.
+     * TimeToLive for stored values in milliseconds. When MaxEntries and ExpirationInterval are also set, and no object store is referenced, the partition
+     * expires the values itself. Otherwise the connector expires them, and the store operation can override it for a single value.
      */
     @Configurable
     @Optional
     private Integer entryTtl;
 
     /**
-     * Specifies the max number of entries. EntryTTL and ExpirationInterval are mandatory for using this param.
+     * Specifies the max number of entries, or their max total weight when a weigher is set. When EntryTTL and ExpirationInterval are also set, no object
+     * store is referenced and the eviction policy is FIFO without weigher, the partition evicts the entries itself. Otherwise the connector evicts them.
      */
     @Configurable
     @Optional
     private Integer maxEntries;
 
     /**
-     * Specifies the expiration check interval in milliseconds. EntryTTL and MaxEntries are mandatory for using this param.
+     * Specifies the expiration check interval in milliseconds. When the connector expires the values this is how late a value may be removed after it
+     * expires, expired values are never returned; it defaults to one second.
      */
     @Configurable
     @Optional
     private Integer expirationInterval;
 
+    /**
+     * Granularity of the lock taken by the mutating operations: GLOBAL uses a single lock for the whole config, KEY uses one lock per key and STRIPED uses a
+     * fixed number of locks selected by the hash of the key.
+     */
+    @Configurable
+    @Default("GLOBAL")
+    private LockGranularity lockGranularity;
+
+    /**
+     * Number of lock stripes. Only used when lockGranularity is STRIPED.
+     */
+    @Configurable
+    @Default("64")
+    private int lockStripes;
+
+    /**
+     * Interval in milliseconds at which the counters changed in memory are written back to the object store. Zero or less disables the periodic flush, counters
+     * are then only written by the flush-counters operation and when the connector is disposed. Counters are only kept in memory when the object store is a
+     * non-persistent partition of this node.
+     */
+    @Configurable
+    @Default("1000")
+    private int counterFlushInterval;
+
+    /**
+     * Max number of entries of the in-memory cache kept in front of the object store. Useful with persistent or remote stores, leave it empty to disable
+     * the cache.
+     */
+    @Configurable
+    @Optional
+    private Integer nearCacheMaxEntries;
+
+    /**
+     * TimeToLive in milliseconds of the entries of the in-memory cache. Only used when nearCacheMaxEntries is set. Changes done to the object store from
+     * outside this connector config may be missed for up to this time. Leave it empty to keep the entries until they are evicted.
+     */
+    @Configurable
+    @Optional
+    private Integer nearCacheTtl;
+
+    /**
+     * Specifies whether call counts, errors and latencies of every operation and the lock wait and hold times are recorded and exposed through JMX.
+     */
+    @Configurable
+    @Default("true")
+    private boolean metricsEnabled;
+
+    /**
+     * Specifies whether the keys are kept in a sorted in-memory index so prefix lookups do not scan all the keys. The index is built from the object store,
+     * which has to be listable, when the connector starts and then maintained by this connector's operations: keys written by other applications or nodes,
+     * or expired by the store, are not seen until the next start.
+     */
+    @Configurable
+    @Default("false")
+    private boolean keyIndexEnabled;
+
+    /**
+     * Number of threads running the asynchronous operations.
+     */
+    @Configurable
+    @Default("4")
+    private int asyncThreads;
+
+    /**
+     * Number of asynchronous operations that can wait for a thread. When the queue is full the operation runs on the calling thread.
+     */
+    @Configurable
+    @Default("1000")
+    private int asyncQueueSize;
+
+    /**
+     * Milliseconds the writes are buffered in memory before being written to the object store in a batch. Setting it enables write-behind: only the last
+     * write of every key in the interval reaches the object store and reads through this connector see the buffered writes. Writes buffered when the JVM
+     * stops without stopping the connector are lost, so this is the durability window. Other applications or nodes do not see a write until it is flushed.
+     */
+    @Configurable
+    @Optional
+    private Integer writeBehindInterval;
+
+    /**
+     * Number of buffered keys that makes the write-behind buffer flush right away. The buffer holds at most twice this number of keys: a write of a new
+     * key waits up to writeBehindInterval for room and fails if there is none. Only used when writeBehindInterval is set.
+     */
+    @Configurable
+    @Default("1000")
+    private int writeBehindMaxEntries;
+
+    /**
+     * How the values are encoded before being handed to the object store. With JAVA or COMPACT the store receives byte arrays, which persistent stores
+     * write much faster than the original objects. Values stored before changing this remain readable.
+     */
+    @Configurable
+    @Default("NONE")
+    private ValueSerializer serializer;
+
+    /**
+     * Reference to a custom codec encoding the values before they are handed to the object store. Takes precedence over serializer.
+     */
+    @Configurable
+    @Optional
+    private ValueCodec valueCodec;
+
+    /**
+     * Minimum size in bytes of the encoded values to store them compressed with Deflate. Setting it enables compression, and the values are then encoded
+     * with Java serialization unless another serializer is set; COMPACT is usually faster for strings, maps and lists. Values are only decompressed when
+     * retrieved, and compressed values remain readable after compression is disabled as long as a serializer is set.
+     */
+    @Configurable
+    @Optional
+    private Integer compressionThreshold;
+
+    /**
+     * The Deflate compression level, from 1 (fastest) to 9 (smallest). Only used when compressionThreshold is set.
+     */
+    @Configurable
+    @Default("1")
+    private int compressionLevel;
+
+    /**
+     * The object store implementation used when no object store is referenced. LOG keeps the entries in append-only files under the application working
+     * directory, one directory per partition; entryTtl and maxEntries are not applied by it. OFF_HEAP keeps the entries in direct memory, outside of the
+     * heap, and requires persistent to be false; entryTtl and maxEntries can be used on their own with it.
+     */
+    @Configurable
+    @Default("MULE")
+    private StoreEngine engine;
+
+    /**
+     * Size in bytes of the files of the LOG engine. Only used when the engine is LOG.
+     */
+    @Configurable
+    @Default("67108864")
+    private int logSegmentSize;
+
+    /**
+     * Milliseconds between two compactions of the files of the LOG engine, 0 to never compact. Only used when the engine is LOG.
+     */
+    @Configurable
+    @Default("60000")
+    private long logCompactionInterval;
+
+    /**
+     * Which entries are evicted once maxEntries is reached. Only used when maxEntries is set.
+     */
+    @Configurable
+    @Default("FIFO")
+    private EvictionPolicy evictionPolicy;
+
+    /**
+     * Reference to a weigher telling how much each entry counts toward maxEntries, for instance the size of its value. Only used when maxEntries is set.
+     */
+    @Configurable
+    @Optional
+    private Weigher weigher;
+
+    /**
+     * References to the object stores the keys are spread over, instead of a single object store. Keys are assigned to the stores by consistent hashing,
+     * so appending a store only moves the keys the new store takes over; the keys found in the wrong store are moved by the rebalance-shards operation.
+     * Keep the order of the stores when changing the list. Overrides objectStore, partition and engine.
+     */
+    @Configurable
+    @Optional
+    private List<ObjectStore<Serializable>> shards;
+
+    /**
+     * Number of points each shard takes in the hash ring, more points spread the keys more evenly. Only used when shards are set.
+     */
+    @Configurable
+    @Default("160")
+    private int shardVirtualNodes;
+
+    /**
+     * Number of keys the in-memory filter answering contains and retrieve for missing keys is sized for, leave it empty to disable the filter. The filter
+     * is built from the keys of the object store when the connector starts and kept up to date by the connector, so only use it when the keys are
+     * changed through this connector config alone. More keys than this make the filter answer less often, never wrongly.
+     */
+    @Configurable
+    @Optional
+    private Integer keyFilterExpectedEntries;
+
+    /**
+     * Share of the missing keys the filter lets through to the object store once it holds keyFilterExpectedEntries keys. Lower rates take more memory.
+     * Only used when keyFilterExpectedEntries is set.
+     */
+    @Configurable
+    @Default("0.01")
+    private double keyFilterFalsePositiveRate;
+
+    /**
+     * Interval in milliseconds at which the rate limits of try-acquire are written to a partition next to the object store, named after the partition
+     * with the suffix -rate-limits, and loaded from it after a restart. Zero or less keeps the rate limits in memory only.
+     */
+    @Configurable
+    @Default("0")
+    private int rateLimitCheckpointInterval;
+
     public String getPartition() {
         return partition;
     }
@@ -107,4 +309,204 @@ public class Config {
     public void setExpirationInterval(Integer expirationInterval) {
         this.expirationInterval = expirationInterval;
     }
+
+    public LockGranularity getLockGranularity() {
+        return lockGranularity;
+    }
+
+    public void setLockGranularity(LockGranularity lockGranularity) {
+        this.lockGranularity = lockGranularity;
+    }
+
+    public int getLockStripes() {
+        return lockStripes;
+    }
+
+    public void setLockStripes(int lockStripes) {
+        this.lockStripes = lockStripes;
+    }
+
+    public int getCounterFlushInterval() {
+        return counterFlushInterval;
+    }
+
+    public void setCounterFlushInterval(int counterFlushInterval) {
+        this.counterFlushInterval = counterFlushInterval;
+    }
+
+    public Integer getNearCacheMaxEntries() {
+        return nearCacheMaxEntries;
+    }
+
+    public void setNearCacheMaxEntries(Integer nearCacheMaxEntries) {
+        this.nearCacheMaxEntries = nearCacheMaxEntries;
+    }
+
+    public Integer getNearCacheTtl() {
+        return nearCacheTtl;
+    }
+
+    public void setNearCacheTtl(Integer nearCacheTtl) {
+        this.nearCacheTtl = nearCacheTtl;
+    }
+
+    public boolean getMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+    }
+
+    public boolean getKeyIndexEnabled() {
+        return keyIndexEnabled;
+    }
+
+    public void setKeyIndexEnabled(boolean keyIndexEnabled) {
+        this.keyIndexEnabled = keyIndexEnabled;
+    }
+
+    public int getAsyncThreads() {
+        return asyncThreads;
+    }
+
+    public void setAsyncThreads(int asyncThreads) {
+        this.asyncThreads = asyncThreads;
+    }
+
+    public int getAsyncQueueSize() {
+        return asyncQueueSize;
+    }
+
+    public void setAsyncQueueSize(int asyncQueueSize) {
+        this.asyncQueueSize = asyncQueueSize;
+    }
+
+    public Integer getWriteBehindInterval() {
+        return writeBehindInterval;
+    }
+
+    public void setWriteBehindInterval(Integer writeBehindInterval) {
+        this.writeBehindInterval = writeBehindInterval;
+    }
+
+    public int getWriteBehindMaxEntries() {
+        return writeBehindMaxEntries;
+    }
+
+    public void setWriteBehindMaxEntries(int writeBehindMaxEntries) {
+        this.writeBehindMaxEntries = writeBehindMaxEntries;
+    }
+
+    public ValueSerializer getSerializer() {
+        return serializer;
+    }
+
+    public void setSerializer(ValueSerializer serializer) {
+        this.serializer = serializer;
+    }
+
+    public ValueCodec getValueCodec() {
+        return valueCodec;
+    }
+
+    public void setValueCodec(ValueCodec valueCodec) {
+        this.valueCodec = valueCodec;
+    }
+
+    public Integer getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public void setCompressionThreshold(Integer compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public StoreEngine getEngine() {
+        return engine;
+    }
+
+    public void setEngine(StoreEngine engine) {
+        this.engine = engine;
+    }
+
+    public int getLogSegmentSize() {
+        return logSegmentSize;
+    }
+
+    public void setLogSegmentSize(int logSegmentSize) {
+        this.logSegmentSize = logSegmentSize;
+    }
+
+    public long getLogCompactionInterval() {
+        return logCompactionInterval;
+    }
+
+    public void setLogCompactionInterval(long logCompactionInterval) {
+        this.logCompactionInterval = logCompactionInterval;
+    }
+
+    public EvictionPolicy getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    public void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+        this.evictionPolicy = evictionPolicy;
+    }
+
+    public Weigher getWeigher() {
+        return weigher;
+    }
+
+    public void setWeigher(Weigher weigher) {
+        this.weigher = weigher;
+    }
+
+    public List<ObjectStore<Serializable>> getShards() {
+        return shards;
+    }
+
+    public void setShards(List<ObjectStore<Serializable>> shards) {
+        this.shards = shards;
+    }
+
+    public int getShardVirtualNodes() {
+        return shardVirtualNodes;
+    }
+
+    public void setShardVirtualNodes(int shardVirtualNodes) {
+        this.shardVirtualNodes = shardVirtualNodes;
+    }
+
+    public Integer getKeyFilterExpectedEntries() {
+        return keyFilterExpectedEntries;
+    }
+
+    public void setKeyFilterExpectedEntries(Integer keyFilterExpectedEntries) {
+        this.keyFilterExpectedEntries = keyFilterExpectedEntries;
+    }
+
+    public double getKeyFilterFalsePositiveRate() {
+        return keyFilterFalsePositiveRate;
+    }
+
+    public void setKeyFilterFalsePositiveRate(double keyFilterFalsePositiveRate) {
+        this.keyFilterFalsePositiveRate = keyFilterFalsePositiveRate;
+    }
+
+    public int getRateLimitCheckpointInterval() {
+        return rateLimitCheckpointInterval;
+    }
+
+    public void setRateLimitCheckpointInterval(int rateLimitCheckpointInterval) {
+        this.rateLimitCheckpointInterval = rateLimitCheckpointInterval;
+    }
 }
@@ -0,0 +1,30 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore;
+
+/**
+ * Which entries are evicted when the object store holds more than maxEntries.
+ */
+public enum EvictionPolicy {
+    /**
+     * The entry stored first.
+     */
+    FIFO,
+    /**
+     * The entry read or written least recently.
+     */
+    LRU,
+    /**
+     * The entry read or written the fewest times, the oldest one among them.
+     */
+    LFU,
+    /**
+     * Window TinyLFU: new entries go to a small LRU window, and leaving it they only replace an entry of the main LRU segments if their estimated access
+     * frequency is higher. Keeps hot entries when many keys are read only once.
+     */
+    W_TINY_LFU
+}
@@ -0,0 +1,25 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore;
+
+/**
+ * Granularity of the locks taken by the mutating operations of the connector.
+ */
+public enum LockGranularity {
+    /**
+     * A single lock shared by every operation of the config.
+     */
+    GLOBAL,
+    /**
+     * One lock per key, operations on different keys never contend.
+     */
+    KEY,
+    /**
+     * A fixed number of locks, the key hash selects the stripe.
+     */
+    STRIPED
+}
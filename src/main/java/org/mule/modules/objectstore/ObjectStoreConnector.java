@@ -6,8 +6,11 @@
 
 package org.mule.modules.objectstore;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.mule.api.MuleContext;
 import org.mule.api.MuleMessage;
+import org.mule.api.NestedProcessor;
 import org.mule.api.annotations.Category;
 import org.mule.api.annotations.Connector;
 import org.mule.api.annotations.Processor;
@@ -17,14 +20,66 @@ import org.mule.api.config.MuleProperties;
 import org.mule.api.registry.Registry;
 import org.mule.api.store.*;
 import org.mule.api.transport.PropertyScope;
+import org.mule.config.i18n.MessageFactory;
+import org.mule.modules.objectstore.async.AsyncOperations;
+import org.mule.modules.objectstore.async.AsyncOperations.AsyncStorage;
+import org.mule.modules.objectstore.cache.NearCache;
+import org.mule.modules.objectstore.cache.NearCacheObjectStore;
+import org.mule.modules.objectstore.codec.CodecObjectStore;
+import org.mule.modules.objectstore.codec.Compressor;
+import org.mule.modules.objectstore.codec.JavaCodec;
+import org.mule.modules.objectstore.compute.SingleFlight;
+import org.mule.modules.objectstore.counter.CounterRegistry;
+import org.mule.modules.objectstore.counter.CounterRegistry.CounterStorage;
+import org.mule.modules.objectstore.dual.DualMappings;
+import org.mule.modules.objectstore.dual.DualMappings.Overwriter;
+import org.mule.modules.objectstore.dual.DualMappings.PairLocks;
+import org.mule.modules.objectstore.engine.LogObjectStore;
+import org.mule.modules.objectstore.engine.OffHeapObjectStore;
+import org.mule.modules.objectstore.eviction.EvictingObjectStore;
+import org.mule.modules.objectstore.eviction.Policies;
+import org.mule.modules.objectstore.expiry.ExpiringObjectStore;
+import org.mule.modules.objectstore.expiry.ExpiringValue;
+import org.mule.modules.objectstore.expiry.TimingWheel;
+import org.mule.modules.objectstore.expiry.TimingWheel.Expirer;
+import org.mule.modules.objectstore.filter.KeyFilter;
+import org.mule.modules.objectstore.filter.KeyFilterObjectStore;
+import org.mule.modules.objectstore.index.KeyIndexObjectStore;
+import org.mule.modules.objectstore.limit.RateLimiters;
+import org.mule.modules.objectstore.limit.RateLimiters.RateLimitStorage;
+import org.mule.modules.objectstore.lock.LeaseManager;
+import org.mule.modules.objectstore.lock.ObjectStoreLocks;
+import org.mule.modules.objectstore.metrics.ConnectorMetrics;
+import org.mule.modules.objectstore.metrics.Operation;
+import org.mule.modules.objectstore.shard.ShardedObjectStore;
+import org.mule.modules.objectstore.store.AtomicObjectStore;
+import org.mule.modules.objectstore.store.BatchObjectStore;
+import org.mule.modules.objectstore.store.ConsistentReadObjectStore;
+import org.mule.modules.objectstore.store.KeyPage;
+import org.mule.modules.objectstore.store.KeyPages;
+import org.mule.modules.objectstore.store.ObjectStores;
+import org.mule.modules.objectstore.writebehind.WriteBehindObjectStore;
 import org.mule.util.StringUtils;
+import org.mule.util.store.ObjectStorePartition;
+import org.mule.util.store.SimpleMemoryObjectStore;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
+import java.io.File;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Lock;
 
 /**
@@ -38,6 +93,13 @@ import java.util.concurrent.locks.Lock;
 @Category(name = "org.mule.tooling.category.transformers", description = "Transformers")
 public class ObjectStoreConnector {
 
+    /**
+     * Invocation property holding the key when the nested processors of an asynchronous retrieve run.
+     */
+    public static final String ASYNC_KEY_PROPERTY = "objectStoreKey";
+
+    private static final Log logger = LogFactory.getLog(ObjectStoreConnector.class);
+
     @org.mule.api.annotations.Config
     private Config config;
 
@@ -51,17 +113,80 @@ public class ObjectStoreConnector {
     private MuleContext muleContext = null;
 
     private String sharedObjectStoreLockId = null;
+    private ObjectStoreLocks locks;
     // A reference for cleaner access assigned in init
     private ObjectStore<Serializable> objectStore;
+    private CounterRegistry counters;
+    // Whether counters are kept in memory, only when no other node or process writes to the store
+    private boolean cachedCounters;
+    // Whether the store was obtained by the connector rather than given by reference or made of shards
+    private boolean ownStore;
+    private ConnectorMetrics metrics;
+
+    private KeyIndexObjectStore keyIndex;
+
+    private AsyncOperations async;
+
+    private WriteBehindObjectStore writeBehind;
+
+    private ListableObjectStore<Serializable> engineStore;
+
+    private ShardedObjectStore sharded;
+
+    private ExpiringObjectStore expiry;
+
+    private EvictingObjectStore eviction;
+
+    private LeaseManager leases;
+
+    private SingleFlight flights;
+
+    private RateLimiters rateLimiters;
+    // Created by the first dual change, or at start to settle the changes left by a crash, so only connectors using dualStore get an intent store
+    private volatile DualMappings dualMappings;
+
+    private ConsistentReadObjectStore consistentReads;
+    // Whether the store has atomic conditional updates, operations that can use them skip the key lock
+    private boolean atomic;
+    // Whether the store processes batches in a single call
+    private boolean batch;
 
     @PostConstruct
     public void init() {
-        if (config.getObjectStore() == null) {
+        // Whether the object store applies entryTtl and maxEntries itself, the stores obtained here only evict in insertion order
+        boolean storeExpires = false;
+        boolean storeEvicts = false;
+        boolean connectorEvicts = config.getMaxEntries() != null && config.getMaxEntries() > 0
+                && ((config.getEvictionPolicy() != null && config.getEvictionPolicy() != EvictionPolicy.FIFO) || config.getWeigher() != null);
+        // A store given by reference or made of shards may be shared with other nodes
+        ownStore = config.getObjectStore() == null && (config.getShards() == null || config.getShards().isEmpty());
+        if (sharedObjectStoreLockId == null) {
+            sharedObjectStoreLockId = new Random().nextInt(1000) + "-" + System.currentTimeMillis() + "-lock";
+        }
+        if (config.getShards() != null && !config.getShards().isEmpty()) {
+            sharded = ShardedObjectStore.newInstance(config.getShards(), config.getShardVirtualNodes(),
+                    StringUtils.isNotEmpty(config.getPartition()) ? config.getPartition() : sharedObjectStoreLockId);
+        }
+        if (ownStore && config.getEngine() != null && config.getEngine() != StoreEngine.MULE) {
+            engineStore = newEngineStore(connectorEvicts ? null : config.getMaxEntries());
+            try {
+                engineStore.open();
+            } catch (ObjectStoreException e) {
+                throw new IllegalStateException("Unable to open the " + config.getEngine() + " object store", e);
+            }
+            config.setObjectStore(engineStore);
+            storeExpires = engineStore instanceof OffHeapObjectStore;
+            storeEvicts = storeExpires && !connectorEvicts;
+        }
+
+        if (sharded == null && config.getObjectStore() == null) {
             if (StringUtils.isNotEmpty(config.getPartition())) {
-                if (config.getEntryTtl() != null && config.getMaxEntries() != null && config.getExpirationInterval() != null) {
+                if (config.getEntryTtl() != null && config.getMaxEntries() != null && config.getExpirationInterval() != null && !connectorEvicts) {
                     ObjectStore<Serializable> objectStore = objectStoreManager.getObjectStore(config.getPartition(), config.getPersistent(), config.getMaxEntries(),
                             config.getEntryTtl(), config.getExpirationInterval());
                     config.setObjectStore(objectStore);
+                    storeExpires = true;
+                    storeEvicts = true;
                 } else {
                     ObjectStore<Serializable> objectStore = objectStoreManager.getObjectStore(config.getPartition(), config.getPersistent());
                     config.setObjectStore(objectStore);
@@ -78,15 +203,278 @@ public class ObjectStoreConnector {
             }
         }
 
-        if (sharedObjectStoreLockId == null) {
-            sharedObjectStoreLockId = new Random().nextInt(1000) + "-" + System.currentTimeMillis() + "-lock";
+        objectStore = sharded != null ? sharded : config.getObjectStore();
+        cachedCounters = ownStore && !objectStore.isPersistent() && StringUtils.isEmpty(muleContext.getClusterId());
+        metrics = new ConnectorMetrics(config.getMetricsEnabled());
+        List<String> beanNames = new ArrayList<String>();
+        List<Object> beans = new ArrayList<Object>();
+        boolean compress = config.getCompressionThreshold() != null && config.getCompressionThreshold() > 0;
+        Compressor compressor = compress ? new Compressor(config.getCompressionThreshold(), config.getCompressionLevel()) : Compressor.decompressOnly();
+        JavaCodec javaCodec = new JavaCodec(muleContext.getExecutionClassLoader(), muleContext);
+        if (config.getValueCodec() != null) {
+            objectStore = new CodecObjectStore(objectStore, config.getValueCodec(), javaCodec, compressor);
+        } else if (config.getSerializer() == ValueSerializer.COMPACT) {
+            objectStore = CodecObjectStore.compact(objectStore, javaCodec, compressor);
+        } else if (config.getSerializer() == ValueSerializer.JAVA || compress) {
+            objectStore = CodecObjectStore.java(objectStore, javaCodec, compressor);
+        }
+        if (engineStore instanceof OffHeapObjectStore) {
+            beanNames.add("offHeap");
+            beans.add(engineStore);
+        }
+        if (compress) {
+            beanNames.add("compression");
+            beans.add(compressor);
+        }
+        if (config.getWriteBehindInterval() != null && config.getWriteBehindInterval() > 0) {
+            writeBehind = new WriteBehindObjectStore(objectStore, sharedObjectStoreLockId, config.getWriteBehindInterval(), config.getWriteBehindMaxEntries());
+            writeBehind.start();
+            objectStore = writeBehind;
+            beanNames.add("writeBehind");
+            beans.add(writeBehind);
+        }
+        if (config.getKeyIndexEnabled()) {
+            keyIndex = new KeyIndexObjectStore(objectStore);
+            try {
+                keyIndex.rebuild();
+            } catch (ObjectStoreException e) {
+                throw new IllegalStateException("Unable to build the key index", e);
+            }
+            objectStore = keyIndex;
+        }
+        if (config.getKeyFilterExpectedEntries() != null && config.getKeyFilterExpectedEntries() > 0) {
+            if (!ObjectStores.isListable(objectStore)) {
+                throw new IllegalArgumentException("The key filter is built from the keys of the object store, which has to be listable.");
+            }
+            KeyFilter filter = new KeyFilter(config.getKeyFilterExpectedEntries(), config.getKeyFilterFalsePositiveRate());
+            KeyFilterObjectStore filtered = new KeyFilterObjectStore(objectStore, filter);
+            try {
+                filtered.rebuild();
+            } catch (ObjectStoreException e) {
+                throw new IllegalStateException("Unable to build the key filter", e);
+            }
+            objectStore = filtered;
+            beanNames.add("keyFilter");
+            beans.add(filter);
+        }
+        if (config.getNearCacheMaxEntries() != null && config.getNearCacheMaxEntries() > 0) {
+            long ttl = config.getNearCacheTtl() != null ? config.getNearCacheTtl() : 0;
+            NearCache nearCache = new NearCache(config.getNearCacheMaxEntries(), ttl);
+            objectStore = new NearCacheObjectStore(objectStore, nearCache);
+            beanNames.add("nearCache");
+            beans.add(nearCache);
+        }
+        if (config.getMaxEntries() != null && config.getMaxEntries() > 0 && !storeEvicts) {
+            eviction = new EvictingObjectStore(objectStore, Policies.newPolicy(config.getEvictionPolicy(), config.getMaxEntries()), config.getWeigher(),
+                    new EvictingObjectStore.Listener() {
+
+                        @Override
+                        public void evicted(Serializable key) {
+                            // Keys evicted by prime are evicted before the counters exist
+                            if (counters != null && key instanceof String) {
+                                counters.forget((String) key);
+                            }
+                        }
+                    });
+            try {
+                eviction.prime();
+            } catch (ObjectStoreException e) {
+                throw new IllegalStateException("Unable to read the keys to evict", e);
+            }
+            objectStore = eviction;
+            beanNames.add("eviction");
+            beans.add(eviction);
+        }
+        long defaultTtl = config.getEntryTtl() != null && !storeExpires ? config.getEntryTtl() : 0;
+        long tick = config.getExpirationInterval() != null ? config.getExpirationInterval() : 0;
+        TimingWheel wheel = new TimingWheel(sharedObjectStoreLockId, tick, new Expirer() {
+
+            @Override
+            public void expire(Serializable key, long expiresAt) {
+                Lock lock = locks.lockFor(key);
+                lock.lock();
+                try {
+                    if (expiry.removeIfExpired(key, expiresAt) && key instanceof String) {
+                        counters.forget((String) key);
+                    }
+                } catch (ObjectStoreException e) {
+                    logger.warn("Could not remove the expired key " + key, e);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        });
+        expiry = new ExpiringObjectStore(objectStore, defaultTtl, wheel);
+        objectStore = expiry;
+        beanNames.add("expiry");
+        beans.add(wheel);
+        atomic = ObjectStores.isAtomic(objectStore);
+        batch = ObjectStores.supportsBatch(objectStore);
+        if (!atomic) {
+            // Overwrites remove and store, readers must not see the key missing in between
+            consistentReads = new ConsistentReadObjectStore(objectStore);
+            objectStore = consistentReads;
+        }
+        locks = new ObjectStoreLocks(muleContext.getLockFactory(), sharedObjectStoreLockId, config.getLockGranularity(), config.getLockStripes());
+        locks.setMetrics(metrics);
+        // Named after the partition so that every node sharing it takes the same locks
+        leases = new LeaseManager(muleContext.getLockFactory(), "objectstore-" + partitionName(), new LeaseManager.StoreFactory() {
+
+            @Override
+            public ObjectStore<Serializable> create() {
+                return objectStoreManager.getObjectStore(partitionName() + "-leases", objectStore.isPersistent());
+            }
+        }, tick);
+        beanNames.add("leases");
+        beans.add(leases);
+        flights = new SingleFlight();
+        beanNames.add("compute");
+        beans.add(flights);
+        RateLimitStorage rateLimitStorage = null;
+        if (config.getRateLimitCheckpointInterval() > 0) {
+            final ObjectStore<Serializable> checkpoints = objectStoreManager.getObjectStore(partitionName() + "-rate-limits", objectStore.isPersistent());
+            rateLimitStorage = new RateLimitStorage() {
+
+                @Override
+                public Serializable load(String key) throws ObjectStoreException {
+                    return ObjectStores.lookup(checkpoints, key);
+                }
+
+                @Override
+                public void save(String key, Serializable state) throws ObjectStoreException {
+                    ObjectStores.removeIfPresent(checkpoints, key);
+                    checkpoints.store(key, state);
+                }
+
+                @Override
+                public void delete(String key) throws ObjectStoreException {
+                    ObjectStores.removeIfPresent(checkpoints, key);
+                }
+            };
+        }
+        rateLimiters = new RateLimiters(sharedObjectStoreLockId, rateLimitStorage, config.getRateLimitCheckpointInterval());
+        beanNames.add("rateLimits");
+        beans.add(rateLimiters);
+        metrics.register(muleContext.getConfiguration().getId(), StringUtils.isNotEmpty(config.getPartition()) ? config.getPartition() : sharedObjectStoreLockId,
+                beanNames.toArray(new String[beanNames.size()]), beans.toArray());
+        counters = new CounterRegistry(sharedObjectStoreLockId, new CounterStorage() {
+
+            @Override
+            public Lock lockFor(String key) {
+                return locks.lockFor(key);
+            }
+
+            @Override
+            public Long load(String key) throws ObjectStoreException {
+                Serializable value = ObjectStores.lookup(objectStore, key);
+                return value != null ? toCounterValue(key, value) : null;
+            }
+
+            @Override
+            public boolean save(String key, Long previous, long value) throws ObjectStoreException {
+                Serializable current = ObjectStores.lookup(objectStore, key);
+                if (previous == null ? current != null : current == null || !previous.equals(toCounterValue(key, current))) {
+                    return false;
+                }
+                if (!atomic) {
+                    doPut(key, value);
+                    return true;
+                }
+                // Writers of an atomic store skip the key lock
+                AtomicObjectStore<Serializable> store = (AtomicObjectStore<Serializable>) objectStore;
+                return current == null ? store.putIfAbsent(key, value) == null : store.replace(key, current, value);
+            }
+        }, config.getCounterFlushInterval());
+        async = new AsyncOperations(sharedObjectStoreLockId, new AsyncStorage() {
+
+            @Override
+            public Lock lockFor(String key) {
+                return locks.lockFor(key);
+            }
+
+            @Override
+            public void store(String key, Serializable value, boolean overwrite) throws ObjectStoreException {
+                long start = metrics.start();
+                try {
+                    doStore(key, value, overwrite);
+                } catch (ObjectStoreException e) {
+                    throw metrics.failed(Operation.STORE, e);
+                } catch (RuntimeException e) {
+                    throw metrics.failed(Operation.STORE, e);
+                } finally {
+                    metrics.record(Operation.STORE, start);
+                }
+            }
+        }, config.getAsyncThreads(), config.getAsyncQueueSize());
+        if (objectStore.isPersistent()) {
+            try {
+                expiry.reschedule();
+            } catch (ObjectStoreException e) {
+                throw new IllegalStateException("Unable to schedule the expiration of the stored values", e);
+            }
+        }
+        try {
+            if (hasIntentStore()) {
+                dualMappings().recover(new PairLocks() {
+
+                    @Override
+                    public Lock lockFor(Serializable key, Serializable value) {
+                        return locks.lockFor(key, value);
+                    }
+                });
+            }
+        } catch (ObjectStoreException e) {
+            throw new IllegalStateException("Unable to settle the dual-store changes interrupted by a crash", e);
+        }
+    }
+
+    @PreDestroy
+    public void dispose() throws ObjectStoreException {
+        if (metrics != null) {
+            metrics.unregister();
+        }
+        if (expiry != null) {
+            expiry.getWheel().dispose();
+        }
+        if (leases != null) {
+            leases.dispose();
+        }
+        if (rateLimiters != null) {
+            try {
+                rateLimiters.dispose();
+            } catch (ObjectStoreException e) {
+                logger.warn("Could not checkpoint the rate limits", e);
+            }
+        }
+        if (async != null) {
+            async.dispose();
+        }
+        try {
+            if (counters != null) {
+                counters.dispose();
+            }
+        } finally {
+            try {
+                if (writeBehind != null) {
+                    writeBehind.dispose();
+                }
+            } finally {
+                if (sharded != null) {
+                    sharded.dispose();
+                }
+                if (engineStore != null) {
+                    engineStore.close();
+                }
+            }
         }
-        objectStore = config.getObjectStore();
     }
 
     /**
      * Store object
      * <p/>
+     * Stores without atomic updates are overwritten removing the old value and storing the new one. Meanwhile the readers of this Mule instance keep
+     * getting the old value, readers on other nodes sharing the store may find the key missing.
+     * <p/>
      * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:store}
      *
      * @param key
@@ -95,6 +483,8 @@ public class ObjectStoreConnector {
      *            The object to store. If you want this to be the payload then use value-ref="#[payload]".
      * @param overwrite
      *            True if you want to overwrite the existing object.
+     * @param ttl
+     *            Milliseconds the object is kept, overriding entryTtl. Without either the object is kept until removed.
      * @throws org.mule.api.store.ObjectStoreException
      *             if the given key cannot be stored or is <code>null</code>.
      * @throws org.mule.api.store.ObjectStoreNotAvaliableException
@@ -103,25 +493,56 @@ public class ObjectStoreConnector {
      *             if an attempt is made to store an object for a key that already has an object associated. Only thrown if overwrite is false.
      */
     @Processor
-    public void store(String key, Serializable value, @Default("false") boolean overwrite) throws ObjectStoreException {
-        Lock lock = muleContext.getLockFactory().createLock(sharedObjectStoreLockId);
-        lock.lock();
+    public void store(String key, Serializable value, @Default("false") boolean overwrite, @Optional Integer ttl) throws ObjectStoreException {
+        long start = metrics.start();
         try {
-            objectStore.store(key, value);
-        } catch (ObjectAlreadyExistsException e) {
-            if (overwrite) {
-                objectStore.remove(key);
-                objectStore.store(key, value);
-            } else {
-                throw e;
+            Lock lock = locks.lockFor(key);
+            lock.lock();
+            try {
+                doStore(key, expiry.withTtl(value, ttl), overwrite);
+            } finally {
+                lock.unlock();
             }
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.STORE, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.STORE, e);
         } finally {
-            lock.unlock();
+            metrics.record(Operation.STORE, start);
+        }
+    }
+
+    /**
+     * Store object in the background, without waiting for the object store. Stores of the same key still waiting to be written are coalesced, only the last
+     * value is written. A failed store is logged and counted in the store metrics.
+     * <p/>
+     * Until the store completes the previous value of the key may still be retrieved. Stores waiting when the connector is stopped are written before it
+     * stops.
+     * <p/>
+     * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:store-async}
+     *
+     * @param key
+     *            The identifier of the object to store
+     * @param value
+     *            The object to store. If you want this to be the payload then use value-ref="#[payload]".
+     * @param overwrite
+     *            True if you want to overwrite the existing object.
+     */
+    @Processor
+    public void storeAsync(String key, Serializable value, @Default("false") boolean overwrite) {
+        long start = metrics.start();
+        try {
+            async.store(key, value, overwrite);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.STORE_ASYNC, e);
+        } finally {
+            metrics.record(Operation.STORE_ASYNC, start);
         }
     }
 
     /**
-     * Store value using key, and also store key using value. If an exception is thrown rolls back both operations.
+     * Store value using key, and also store key using value. Either both mappings are stored or none: the change is logged before it is written, a change
+     * failing half way is undone, or completed when overwriting, and a change interrupted by a crash is settled when the connector starts.
      * <p/>
      * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:dual-store}
      *
@@ -136,50 +557,88 @@ public class ObjectStoreConnector {
      * @throws org.mule.api.store.ObjectStoreNotAvaliableException
      *             if the store is not available or any other implementation-specific error occured.
      * @throws org.mule.api.store.ObjectAlreadyExistsException
-     *             if an attempt is made to store an object for a key that already has an object associated. Only thrown if overwrite is false.
+     *             if an attempt is made to store an object for a key or a value that already has an object associated. Only thrown if overwrite is false.
      */
     @Processor
     public void dualStore(String key, Serializable value, @Default("false") boolean overwrite) throws ObjectStoreException {
-
-        // For rollback purposes
-        Serializable previousValue = null;
-        Lock lock = muleContext.getLockFactory().createLock(sharedObjectStoreLockId);
-        lock.lock();
+        long start = metrics.start();
         try {
+            Lock lock = locks.lockFor(key, value);
+            lock.lock();
             try {
-                objectStore.store(key, value);
-            } catch (ObjectAlreadyExistsException e) {
-                if (overwrite) {
-                    previousValue = objectStore.retrieve(key);
-                    objectStore.remove(key);
-                    objectStore.store(key, value);
-                } else {
-                    throw e;
+                dualMappings().store(key, value, overwrite);
+                counters.forget(key);
+                if (value instanceof String) {
+                    counters.forget((String) value);
                 }
+            } finally {
+                lock.unlock();
             }
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.DUAL_STORE, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.DUAL_STORE, e);
+        } finally {
+            metrics.record(Operation.DUAL_STORE, start);
+        }
+    }
 
-            try {
-                objectStore.store(value, key);
-            } catch (ObjectAlreadyExistsException e) {
-                if (overwrite) {
-                    config.getObjectStore().remove(value);
-                    config.getObjectStore().store(value, key);
-                } else {
-                    rollbackDualStore(key, previousValue);
-                    throw e;
+    /**
+     * Remove a key stored with dual-store together with its reverse mapping. The reverse mapping is only removed if it still holds the key. Like dual-store
+     * either both mappings are removed or none.
+     * <p/>
+     * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:remove-dual}
+     *
+     * @param key
+     *            The identifier of the object to remove.
+     * @param ignoreNotExists
+     *            Indicates if the operation will ignore NotExistsException from ObjectStore.
+     * @return The object that was previously stored for the given key
+     * @throws org.mule.api.store.ObjectDoesNotExistException
+     *             if no value for the given key was previously stored and ignoreNotExists is false.
+     */
+    @Processor
+    public Object removeDual(String key, @Default("false") boolean ignoreNotExists) throws ObjectStoreException {
+        long start = metrics.start();
+        try {
+            while (true) {
+                Serializable value = ObjectStores.lookup(objectStore, key);
+                if (value == null) {
+                    if (ignoreNotExists) {
+                        return null;
+                    }
+                    throw ObjectStores.doesNotExist(key);
+                }
+                Lock lock = locks.lockFor(key, value);
+                lock.lock();
+                try {
+                    // The key may have changed before its lock was taken
+                    if (ObjectStores.sameValue(value, ObjectStores.lookup(objectStore, key))) {
+                        dualMappings().remove(key, value);
+                        counters.forget(key);
+                        if (value instanceof String) {
+                            counters.forget((String) value);
+                        }
+                        return value;
+                    }
+                } finally {
+                    lock.unlock();
                 }
-            } catch (Exception e) {
-                rollbackDualStore(key, previousValue);
-                throw new ObjectStoreException(e);
             }
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.REMOVE_DUAL, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.REMOVE_DUAL, e);
         } finally {
-            lock.unlock();
+            metrics.record(Operation.REMOVE_DUAL, start);
         }
     }
 
     /**
      * Retrieve the given Object.
      * <p/>
+     * Takes no lock: a key being overwritten is seen with either its old or its new value, never as missing.
+     * <p/>
      * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:retrieve}
      *
      * @param key
@@ -203,28 +662,72 @@ public class ObjectStoreConnector {
     @Processor
     public Object retrieve(String key, @Optional Object defaultValue, @Optional String targetProperty, @Default("INVOCATION") MulePropertyScope targetScope, MuleMessage muleMessage)
             throws ObjectStoreException {
-        Object ret;
+        long start = metrics.start();
         try {
-            ret = objectStore.retrieve(key);
-        } catch (ObjectDoesNotExistException ose) {
-            if (defaultValue != null) {
-                ret = defaultValue;
-            } else {
-                throw ose;
-            }
+            return toTarget(doRetrieve(key, defaultValue), targetProperty, targetScope, muleMessage);
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.RETRIEVE, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.RETRIEVE, e);
+        } finally {
+            metrics.record(Operation.RETRIEVE, start);
         }
+    }
 
-        if (targetProperty != null) {
-            muleMessage.setProperty(targetProperty, ret, PropertyScope.get(targetScope.value()));
-            ret = muleMessage.getPayload();
-        }
+    /**
+     * Retrieve the given Object in the background and process it with the nested processors, without waiting for the object store. The flow continues with
+     * the current message right away.
+     * <p/>
+     * The nested processors run on a connector thread with the retrieved object as payload and the key in the invocation property objectStoreKey. If the
+     * key does not exist and there is no default value the nested processors are not run and the failure is logged and counted in the retrieve metrics.
+     * <p/>
+     * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:retrieve-async}
+     *
+     * @param key
+     *            The identifier of the object to retrieve.
+     * @param defaultValue
+     *            The default value if the key does not exists.
+     * @param callback
+     *            The processors to run with the retrieved object.
+     */
+    @Processor
+    public void retrieveAsync(final String key, @Optional final Object defaultValue, final NestedProcessor callback) {
+        long start = metrics.start();
+        try {
+            async.execute(new Runnable() {
 
-        return ret;
+                @Override
+                public void run() {
+                    Object value;
+                    long start = metrics.start();
+                    try {
+                        value = doRetrieve(key, defaultValue);
+                    } catch (Exception e) {
+                        metrics.error(Operation.RETRIEVE, e);
+                        logger.warn("Could not retrieve the key " + key + " asynchronously", e);
+                        return;
+                    } finally {
+                        metrics.record(Operation.RETRIEVE, start);
+                    }
+                    try {
+                        callback.process(value, Collections.<String, Object> singletonMap(ASYNC_KEY_PROPERTY, key));
+                    } catch (Exception e) {
+                        logger.warn("Could not process the key " + key + " retrieved asynchronously", e);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.RETRIEVE_ASYNC, e);
+        } finally {
+            metrics.record(Operation.RETRIEVE_ASYNC, start);
+        }
     }
 
     /**
      * Retrieve the given Object with lock.
      * <p/>
+     * Reads of this Mule instance are consistent without the lock, it is only needed to wait for the operations holding the key lock to finish.
+     * <p/>
      * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:retrieve-with-lock}
      *
      * @param key
@@ -248,16 +751,23 @@ public class ObjectStoreConnector {
     @Processor
     public Object retrieveWithLock(String key, @Optional Object defaultValue, @Optional String targetProperty, @Default("INVOCATION") MulePropertyScope targetScope,
             MuleMessage muleMessage) throws ObjectStoreException {
-
-        Lock lock = muleContext.getLockFactory().createLock(sharedObjectStoreLockId);
-        lock.lock();
-
+        long start = metrics.start();
         try {
-            return retrieve(key, defaultValue, targetProperty, targetScope, muleMessage);
+            Lock lock = locks.lockFor(key);
+            lock.lock();
+
+            try {
+                return toTarget(doRetrieve(key, defaultValue), targetProperty, targetScope, muleMessage);
+            } finally {
+                lock.unlock();
+            }
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.RETRIEVE_WITH_LOCK, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.RETRIEVE_WITH_LOCK, e);
         } finally {
-            lock.unlock();
+            metrics.record(Operation.RETRIEVE_WITH_LOCK, start);
         }
-
     }
 
     /**
@@ -288,25 +798,233 @@ public class ObjectStoreConnector {
     @Processor
     public Object retrieveStore(String key, Object defaultValue, Serializable storeValue, @Optional String targetProperty, @Default("INVOCATION") MulePropertyScope targetScope,
             MuleMessage muleMessage) throws ObjectStoreException {
+        long start = metrics.start();
+        try {
+            Serializable previous;
+            if (atomic && defaultValue != null) {
+                previous = doPut(key, storeValue);
+                counters.forget(key);
+            } else {
+                Lock lock = locks.lockFor(key);
+                lock.lock();
+                try {
+                    if (defaultValue == null && !objectStore.contains(key)) {
+                        throw ObjectStores.doesNotExist(key);
+                    }
+                    previous = doPut(key, storeValue);
+                    counters.forget(key);
+                } finally {
+                    lock.unlock();
+                }
+            }
 
-        Lock lock = muleContext.getLockFactory().createLock(sharedObjectStoreLockId);
-        lock.lock();
-        Object ret;
+            return toTarget(previous != null ? previous : defaultValue, targetProperty, targetScope, muleMessage);
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.RETRIEVE_STORE, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.RETRIEVE_STORE, e);
+        } finally {
+            metrics.record(Operation.RETRIEVE_STORE, start);
+        }
+    }
+
+    /**
+     * Retrieve the given Object, computing and storing it when the key has no value.
+     * <p/>
+     * The nested processors compute the value, their result is stored and returned. Concurrent calls missing the same key wait for a single computation
+     * instead of computing the value each, within this Mule instance.
+     * <p/>
+     * With staleWhileRevalidate the value is stored for ttl plus staleWhileRevalidate milliseconds. Once ttl elapses the value is stale: the first caller
+     * getting it computes it again with its own message, the callers arriving meanwhile get the stale value without waiting. The stale value is also
+     * returned when computing it again fails. Stale values need a ttl, either the given one or the entryTtl applied by the connector.
+     * <p/>
+     * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:retrieve-or-compute}
+     *
+     * @param key
+     *            The identifier of the object to retrieve.
+     * @param ttl
+     *            Milliseconds the computed object is kept, overriding entryTtl.
+     * @param staleWhileRevalidate
+     *            Milliseconds a value is still returned after its ttl elapsed, while it is computed again.
+     * @param timeout
+     *            Milliseconds to wait for the value computed by another caller.
+     * @param compute
+     *            The processors computing the value. Their result must be serializable.
+     * @return The object associated with the given key, computed if the key had none.
+     * @throws ObjectStoreException
+     *             if the value cannot be computed or stored.
+     */
+    @Processor
+    public Object retrieveOrCompute(final String key, @Optional final Integer ttl, @Optional Integer staleWhileRevalidate, @Default("60000") long timeout,
+            final NestedProcessor compute) throws ObjectStoreException {
+        long start = metrics.start();
+        try {
+            long freshTtl = ttl != null && ttl > 0 ? ttl : expiry.getDefaultTtl();
+            final long staleTtl = staleWhileRevalidate != null && staleWhileRevalidate > 0 && freshTtl > 0 ? staleWhileRevalidate : 0;
+            if (staleTtl > 0) {
+                ExpiringValue entry = expiry.lookupEntry(key);
+                if (entry != null) {
+                    if (entry.getExpiresAt() - staleTtl > System.currentTimeMillis()) {
+                        return entry.getValue();
+                    }
+                    FutureTask<Object> revalidation = flights.executeIfIdle(key, computation(key, ttl, staleTtl, compute));
+                    if (revalidation != null) {
+                        try {
+                            return revalidation.get();
+                        } catch (ExecutionException e) {
+                            logger.warn("Could not compute the value of key " + key + " again, returning the stale value", e.getCause());
+                        }
+                    }
+                    flights.staleServed();
+                    return entry.getValue();
+                }
+            } else {
+                Object value = ObjectStores.lookup(objectStore, key);
+                if (value != null) {
+                    return value;
+                }
+            }
+            return flights.execute(key, computation(key, ttl, staleTtl, compute), timeout);
+        } catch (TimeoutException e) {
+            throw metrics.failed(Operation.RETRIEVE_OR_COMPUTE, new ObjectStoreException(MessageFactory.createStaticMessage("Timed out after " + timeout
+                    + " ms waiting for the value of key: " + key), e));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ObjectStoreException) {
+                throw metrics.failed(Operation.RETRIEVE_OR_COMPUTE, (ObjectStoreException) e.getCause());
+            }
+            throw metrics.failed(Operation.RETRIEVE_OR_COMPUTE, new ObjectStoreException(MessageFactory.createStaticMessage("Could not compute the value of key: "
+                    + key), e.getCause()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw metrics.failed(Operation.RETRIEVE_OR_COMPUTE, new ObjectStoreException(MessageFactory.createStaticMessage(
+                    "Interrupted waiting for the value of key: " + key), e));
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.RETRIEVE_OR_COMPUTE, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.RETRIEVE_OR_COMPUTE, e);
+        } finally {
+            metrics.record(Operation.RETRIEVE_OR_COMPUTE, start);
+        }
+    }
 
-        ret = retrieve(key, defaultValue, targetProperty, targetScope, muleMessage);
+    /**
+     * Store the object only if the key has no object associated.
+     * <p/>
+     * Uses the atomic primitive of the object store when it has one, otherwise the check and the store are done under the key lock.
+     * <p/>
+     * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:put-if-absent}
+     *
+     * @param key
+     *            The identifier of the object to store
+     * @param value
+     *            The object to store. If you want this to be the payload then use value-ref="#[payload]".
+     * @return The object already associated with the key, or null if the given value was stored.
+     * @throws ObjectStoreException
+     *             if the given key cannot be stored or is <code>null</code>.
+     */
+    @Processor
+    public Object putIfAbsent(String key, Serializable value) throws ObjectStoreException {
+        long start = metrics.start();
         try {
-            if (objectStore.contains(key)) {
-                objectStore.remove(key);
+            if (atomic) {
+                return doPutIfAbsent(key, value);
+            }
+            Lock lock = locks.lockFor(key);
+            lock.lock();
+            try {
+                return doPutIfAbsent(key, value);
+            } finally {
+                lock.unlock();
             }
-            objectStore.store(key, storeValue);
-            store(key, storeValue, true);
-        } catch (ObjectStoreException ose) {
-            throw ose;
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.PUT_IF_ABSENT, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.PUT_IF_ABSENT, e);
         } finally {
-            lock.unlock();
+            metrics.record(Operation.PUT_IF_ABSENT, start);
+        }
+    }
+
+    /**
+     * Replace the object associated with the key only if it is equal to the expected one (compare and set).
+     * <p/>
+     * Uses the atomic primitive of the object store when it has one, otherwise the comparison and the replacement are done under the key lock.
+     * <p/>
+     * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:replace}
+     *
+     * @param key
+     *            The identifier of the object to replace
+     * @param expectedValue
+     *            The object that has to be currently associated with the key
+     * @param newValue
+     *            The object to store. If you want this to be the payload then use newValue-ref="#[payload]".
+     * @return true if the object was replaced, false if the key does not exist or its object is not the expected one.
+     * @throws ObjectStoreException
+     *             if the given key cannot be stored or is <code>null</code>.
+     */
+    @Processor
+    public boolean replace(String key, Serializable expectedValue, Serializable newValue) throws ObjectStoreException {
+        long start = metrics.start();
+        try {
+            if (atomic) {
+                return doReplace(key, expectedValue, newValue);
+            }
+            Lock lock = locks.lockFor(key);
+            lock.lock();
+            try {
+                return doReplace(key, expectedValue, newValue);
+            } finally {
+                lock.unlock();
+            }
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.REPLACE, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.REPLACE, e);
+        } finally {
+            metrics.record(Operation.REPLACE, start);
         }
+    }
 
-        return ret;
+    /**
+     * Store the object, replacing the one associated with the key, and return the replaced object.
+     * <p/>
+     * Uses the atomic primitive of the object store when it has one, otherwise the exchange is done under the key lock.
+     * <p/>
+     * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:get-and-set}
+     *
+     * @param key
+     *            The identifier of the object to store
+     * @param value
+     *            The object to store. If you want this to be the payload then use value-ref="#[payload]".
+     * @return The object previously associated with the key, or null if there was none.
+     * @throws ObjectStoreException
+     *             if the given key cannot be stored or is <code>null</code>.
+     */
+    @Processor
+    public Object getAndSet(String key, Serializable value) throws ObjectStoreException {
+        long start = metrics.start();
+        try {
+            if (atomic) {
+                Serializable previous = doPut(key, value);
+                counters.forget(key);
+                return previous;
+            }
+            Lock lock = locks.lockFor(key);
+            lock.lock();
+            try {
+                Serializable previous = doPut(key, value);
+                counters.forget(key);
+                return previous;
+            } finally {
+                lock.unlock();
+            }
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.GET_AND_SET, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.GET_AND_SET, e);
+        } finally {
+            metrics.record(Operation.GET_AND_SET, start);
+        }
     }
 
     /**
@@ -326,18 +1044,23 @@ public class ObjectStoreConnector {
      */
     @Processor
     public Object remove(String key, @Default("false") boolean ignoreNotExists) throws ObjectStoreException {
-        Lock lock = muleContext.getLockFactory().createLock(sharedObjectStoreLockId);
-        lock.lock();
+        long start = metrics.start();
         try {
-            return objectStore.remove(key);
-        } catch (ObjectDoesNotExistException e) {
-            if (ignoreNotExists) {
-                return null;
-            } else {
-                throw e;
+            Lock lock = locks.lockFor(key);
+            lock.lock();
+            try {
+                Serializable removed = ignoreNotExists ? ObjectStores.removeIfPresent(objectStore, key) : objectStore.remove(key);
+                counters.forget(key);
+                return removed;
+            } finally {
+                lock.unlock();
             }
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.REMOVE, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.REMOVE, e);
         } finally {
-            lock.unlock();
+            metrics.record(Operation.REMOVE, start);
         }
     }
 
@@ -354,25 +1077,157 @@ public class ObjectStoreConnector {
      */
     @Processor
     public List<String> allKeys() throws ObjectStoreException {
-        if (objectStore instanceof ListableObjectStore) {
-            List<Serializable> allkeys = ((ListableObjectStore<?>) objectStore).allKeys();
-            List<String> list = new ArrayList<String>();
-            for (Serializable key : allkeys) {
-                if (key instanceof String) {
-                    list.add((String) key);
-                } else {
-                    throw new UnsupportedOperationException("The objectStore [" + objectStore.getClass().getName() + "] supports only keys of type: " + String.class.getName());
+        long start = metrics.start();
+        try {
+            if (ObjectStores.isListable(objectStore)) {
+                List<Serializable> allkeys = ((ListableObjectStore<?>) objectStore).allKeys();
+                List<String> list = new ArrayList<String>(allkeys.size());
+                for (Serializable key : allkeys) {
+                    if (key instanceof String) {
+                        list.add((String) key);
+                    } else {
+                        throw new UnsupportedOperationException("The objectStore [" + objectStore.getClass().getName() + "] supports only keys of type: " + String.class.getName());
+                    }
                 }
+                return list;
+            } else {
+                throw new UnsupportedOperationException("The objectStore [" + objectStore.getClass().getName() + "] does not support the operation allKeys");
             }
-            return list;
-        } else {
-            throw new UnsupportedOperationException("The objectStore [" + objectStore.getClass().getName() + "] does not support the operation allKeys");
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.ALL_KEYS, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.ALL_KEYS, e);
+        } finally {
+            metrics.record(Operation.ALL_KEYS, start);
+        }
+    }
+
+    /**
+     * Returns a page of the keys in the store. Pass the next cursor of the returned page to get the following one, until the returned page is the last.
+     * <p/>
+     * Stores able to walk their keys incrementally only load the requested page. For the rest of the listable stores the page is cut from the list of all
+     * the keys, using the position as cursor, so keys stored or removed between two calls may shift the pages.
+     * <p/>
+     * <i><b>IMPORTANT:</b> Not all stores support this method. If the method is not supported a java.lang.UnsupportedOperationException is thrown</i>
+     * <p/>
+     * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:keys-page}
+     *
+     * @param cursor
+     *            The next cursor of the previous page, leave it empty to get the first page.
+     * @param pageSize
+     *            The maximum number of keys of the page.
+     * @return a page with the keys and the cursor of the next page.
+     * @throws ObjectStoreException
+     *             if an exception occurred while collecting the keys.
+     */
+    @Processor
+    public KeyPage keysPage(@Optional String cursor, @Default("1000") int pageSize) throws ObjectStoreException {
+        long start = metrics.start();
+        try {
+            return KeyPages.page(objectStore, StringUtils.isEmpty(cursor) ? null : cursor, pageSize);
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.KEYS_PAGE, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.KEYS_PAGE, e);
+        } finally {
+            metrics.record(Operation.KEYS_PAGE, start);
+        }
+    }
+
+    /**
+     * Returns an iterator over the keys in the store, so they can be walked with a foreach scope without collecting them first. Stores able to walk their
+     * keys incrementally are read a page at a time as the iterator advances.
+     * <p/>
+     * <i><b>IMPORTANT:</b> Not all stores support this method. If the method is not supported a java.lang.UnsupportedOperationException is thrown</i>
+     * <p/>
+     * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:iterate-keys}
+     *
+     * @param pageSize
+     *            The number of keys read from the store at a time.
+     * @return a java.util.Iterator over the keys in the store.
+     * @throws ObjectStoreException
+     *             if an exception occurred while collecting the keys.
+     */
+    @Processor
+    public Iterator<String> iterateKeys(@Default("1000") int pageSize) throws ObjectStoreException {
+        long start = metrics.start();
+        try {
+            return KeyPages.iterator(objectStore, pageSize);
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.ITERATE_KEYS, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.ITERATE_KEYS, e);
+        } finally {
+            metrics.record(Operation.ITERATE_KEYS, start);
+        }
+    }
+
+    /**
+     * Returns the keys in the store starting with the given prefix, in ascending order.
+     * <p/>
+     * When the key index is enabled the keys are looked up in the index, which may still hold keys that were removed or expired outside this connector.
+     * Otherwise all the keys are scanned.
+     * <p/>
+     * <i><b>IMPORTANT:</b> Without the key index not all stores support this method. If the method is not supported a java.lang.UnsupportedOperationException
+     * is thrown</i>
+     * <p/>
+     * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:keys-with-prefix}
+     *
+     * @param prefix
+     *            The prefix of the keys.
+     * @param limit
+     *            The maximum number of keys to return, zero for no limit.
+     * @return a java.util.List with the keys starting with the prefix.
+     * @throws ObjectStoreException
+     *             if an exception occurred while collecting the keys.
+     */
+    @Processor
+    public List<String> keysWithPrefix(String prefix, @Default("1000") int limit) throws ObjectStoreException {
+        long start = metrics.start();
+        try {
+            return doKeysWithPrefix(prefix, limit);
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.KEYS_WITH_PREFIX, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.KEYS_WITH_PREFIX, e);
+        } finally {
+            metrics.record(Operation.KEYS_WITH_PREFIX, start);
+        }
+    }
+
+    /**
+     * Removes all the keys in the store starting with the given prefix. Keys that no longer exist when they are removed are reported as succeeded.
+     * <p/>
+     * <i><b>IMPORTANT:</b> Without the key index not all stores support this method. If the method is not supported a java.lang.UnsupportedOperationException
+     * is thrown</i>
+     * <p/>
+     * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:remove-by-prefix}
+     *
+     * @param prefix
+     *            The prefix of the keys to remove.
+     * @return a {@link BatchResult} reporting the keys that were removed and the ones that failed, with the reason.
+     * @throws ObjectStoreException
+     *             if the store is not available or any other implementation-specific error occurred.
+     */
+    @Processor
+    public BatchResult removeByPrefix(String prefix) throws ObjectStoreException {
+        long start = metrics.start();
+        try {
+            return doRemoveAll(doKeysWithPrefix(prefix, 0), true);
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.REMOVE_BY_PREFIX, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.REMOVE_BY_PREFIX, e);
+        } finally {
+            metrics.record(Operation.REMOVE_BY_PREFIX, start);
         }
     }
 
     /**
      * Returns whether the object store contains the given key or not
      * <p/>
+     * Takes no lock: a key being overwritten is always reported as contained.
+     * <p/>
      * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:contains}
      *
      * @param key
@@ -383,24 +1238,830 @@ public class ObjectStoreConnector {
      */
     @Processor
     public boolean contains(String key) throws ObjectStoreException {
-        return objectStore.contains(key);
+        long start = metrics.start();
+        try {
+            return objectStore.contains(key);
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.CONTAINS, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.CONTAINS, e);
+        } finally {
+            metrics.record(Operation.CONTAINS, start);
+        }
+    }
+
+    /**
+     * Store all the entries of a map in a single operation.
+     * <p/>
+     * Every lock is taken once for all the keys it guards and, if the object store supports batches, the entries are handed to it in a single call. A key
+     * that cannot be stored does not abort the batch.
+     * <p/>
+     * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:store-all}
+     *
+     * @param entries
+     *            The entries to store, values must be serializable. By default the payload.
+     * @param overwrite
+     *            True if you want to overwrite the existing objects.
+     * @return a {@link BatchResult} reporting the keys that were stored and the ones that failed, with the reason.
+     * @throws ObjectStoreException
+     *             if the store is not available or any other implementation-specific error occurred.
+     */
+    @Processor
+    public BatchResult storeAll(@Default("#[payload]") Map<String, Object> entries, @Default("false") boolean overwrite) throws ObjectStoreException {
+        long start = metrics.start();
+        try {
+            BatchResult result = new BatchResult();
+            for (Map.Entry<String, List<String>> group : locks.groupByLock(entries.keySet()).entrySet()) {
+                Lock lock = locks.lockForId(group.getKey());
+                lock.lock();
+                try {
+                    if (batch) {
+                        Map<Serializable, Serializable> serializable = new LinkedHashMap<Serializable, Serializable>();
+                        for (String key : group.getValue()) {
+                            Object value = entries.get(key);
+                            if (value instanceof Serializable) {
+                                serializable.put(key, (Serializable) value);
+                            } else {
+                                result.failure(key, notSerializable(key, value));
+                            }
+                        }
+                        Map<Serializable, ObjectStoreException> failures = ((BatchObjectStore<Serializable>) objectStore).storeAll(serializable, overwrite);
+                        for (Serializable key : serializable.keySet()) {
+                            if (!failures.containsKey(key)) {
+                                counters.forget((String) key);
+                            }
+                        }
+                        report(result, serializable.keySet(), failures);
+                    } else {
+                        for (String key : group.getValue()) {
+                            Object value = entries.get(key);
+                            try {
+                                if (!(value instanceof Serializable)) {
+                                    throw notSerializable(key, value);
+                                }
+                                doStore(key, (Serializable) value, overwrite);
+                                result.success(key);
+                            } catch (ObjectStoreException e) {
+                                result.failure(key, e);
+                            }
+                        }
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return result;
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.STORE_ALL, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.STORE_ALL, e);
+        } finally {
+            metrics.record(Operation.STORE_ALL, start);
+        }
+    }
+
+    /**
+     * Retrieve the objects associated with several keys in a single operation.
+     * <p/>
+     * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:retrieve-all}
+     *
+     * @param keys
+     *            The identifiers of the objects to retrieve. By default the payload.
+     * @param defaultValue
+     *            The value returned for the keys that do not exist. If not set these keys are left out of the result.
+     * @return a java.util.Map with the retrieved objects by key, in the order of the given keys.
+     * @throws ObjectStoreException
+     *             if the store is not available or any other implementation-specific error occurred.
+     */
+    @Processor
+    public Map<String, Object> retrieveAll(@Default("#[payload]") List<String> keys, @Optional Object defaultValue) throws ObjectStoreException {
+        long start = metrics.start();
+        try {
+            Map<String, Object> values = new LinkedHashMap<String, Object>();
+            if (batch) {
+                Map<Serializable, Serializable> found = ((BatchObjectStore<Serializable>) objectStore).retrieveAll(keys);
+                for (String key : keys) {
+                    Object value = found.get(key);
+                    if (value != null) {
+                        values.put(key, value);
+                    } else if (defaultValue != null) {
+                        values.put(key, defaultValue);
+                    }
+                }
+            } else {
+                for (String key : keys) {
+                    Object value = ObjectStores.lookup(objectStore, key);
+                    if (value != null) {
+                        values.put(key, value);
+                    } else if (defaultValue != null) {
+                        values.put(key, defaultValue);
+                    }
+                }
+            }
+            return values;
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.RETRIEVE_ALL, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.RETRIEVE_ALL, e);
+        } finally {
+            metrics.record(Operation.RETRIEVE_ALL, start);
+        }
+    }
+
+    /**
+     * Remove several keys in a single operation.
+     * <p/>
+     * Every lock is taken once for all the keys it guards and, if the object store supports batches, the keys are handed to it in a single call. A key that
+     * cannot be removed does not abort the batch.
+     * <p/>
+     * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:remove-all}
+     *
+     * @param keys
+     *            The identifiers of the objects to remove. By default the payload.
+     * @param ignoreNotExists
+     *            Indicates if keys that do not exist are reported as succeeded instead of failed.
+     * @return a {@link BatchResult} reporting the keys that were removed and the ones that failed, with the reason.
+     * @throws ObjectStoreException
+     *             if the store is not available or any other implementation-specific error occurred.
+     */
+    @Processor
+    public BatchResult removeAll(@Default("#[payload]") List<String> keys, @Default("false") boolean ignoreNotExists) throws ObjectStoreException {
+        long start = metrics.start();
+        try {
+            return doRemoveAll(keys, ignoreNotExists);
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.REMOVE_ALL, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.REMOVE_ALL, e);
+        } finally {
+            metrics.record(Operation.REMOVE_ALL, start);
+        }
+    }
+
+    /**
+     * Returns whether the object store contains each of the given keys.
+     * <p/>
+     * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:contains-all}
+     *
+     * @param keys
+     *            The identifiers of the objects to validate. By default the payload.
+     * @return a java.util.Map from each key to true if the object store contains it, or false if it doesn't.
+     * @throws ObjectStoreException
+     *             if the store is not available or any other implementation-specific error occurred.
+     */
+    @Processor
+    public Map<String, Boolean> containsAll(@Default("#[payload]") List<String> keys) throws ObjectStoreException {
+        long start = metrics.start();
+        try {
+            Map<String, Boolean> contained = new LinkedHashMap<String, Boolean>();
+            if (batch) {
+                Map<Serializable, Serializable> found = ((BatchObjectStore<Serializable>) objectStore).retrieveAll(keys);
+                for (String key : keys) {
+                    contained.put(key, found.containsKey(key));
+                }
+            } else {
+                for (String key : keys) {
+                    contained.put(key, objectStore.contains(key));
+                }
+            }
+            return contained;
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.CONTAINS_ALL, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.CONTAINS_ALL, e);
+        } finally {
+            metrics.record(Operation.CONTAINS_ALL, start);
+        }
+    }
+
+    /**
+     * Atomically add to a counter and return its new value.
+     * <p/>
+     * When the object store is a non-persistent partition of this node, counters live in memory and are updated without locks. They are loaded from the
+     * object store the first time they are used and written back to it every counterFlushInterval milliseconds, when flush-counters is called and when
+     * the connector is disposed. Counters of any other store are read and written back on every update, under the key lock unless the store has atomic
+     * conditional updates.
+     * <p/>
+     * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:increment}
+     *
+     * @param key
+     *            The identifier of the counter
+     * @param delta
+     *            The amount to add to the counter
+     * @param initialValue
+     *            The value of the counter if it does not exist yet
+     * @return The value of the counter after adding the delta.
+     * @throws ObjectStoreException
+     *             if the counter cannot be loaded or the key holds an object that is not a number.
+     */
+    @Processor
+    public long increment(String key, @Default("1") long delta, @Default("0") long initialValue) throws ObjectStoreException {
+        long start = metrics.start();
+        try {
+            return cachedCounters ? counters.addAndGet(key, delta, initialValue) : addToStored(key, delta, initialValue);
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.INCREMENT, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.INCREMENT, e);
+        } finally {
+            metrics.record(Operation.INCREMENT, start);
+        }
+    }
+
+    /**
+     * Atomically subtract from a counter and return its new value.
+     * <p/>
+     * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:decrement}
+     *
+     * @param key
+     *            The identifier of the counter
+     * @param delta
+     *            The amount to subtract from the counter
+     * @param initialValue
+     *            The value of the counter if it does not exist yet
+     * @return The value of the counter after subtracting the delta.
+     * @throws ObjectStoreException
+     *             if the counter cannot be loaded or the key holds an object that is not a number.
+     */
+    @Processor
+    public long decrement(String key, @Default("1") long delta, @Default("0") long initialValue) throws ObjectStoreException {
+        long start = metrics.start();
+        try {
+            return cachedCounters ? counters.addAndGet(key, -delta, initialValue) : addToStored(key, -delta, initialValue);
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.DECREMENT, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.DECREMENT, e);
+        } finally {
+            metrics.record(Operation.DECREMENT, start);
+        }
+    }
+
+    /**
+     * Add to a counter without returning its new value.
+     * <p/>
+     * When counters live in memory the update is spread over per-thread cells, so counters updated from many flows at the same time do not contend with
+     * each other. Use it for hot counters that are only read from time to time with get-counter.
+     * <p/>
+     * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:add}
+     *
+     * @param key
+     *            The identifier of the counter
+     * @param delta
+     *            The amount to add to the counter
+     * @param initialValue
+     *            The value of the counter if it does not exist yet
+     * @throws ObjectStoreException
+     *             if the counter cannot be loaded or the key holds an object that is not a number.
+     */
+    @Processor
+    public void add(String key, long delta, @Default("0") long initialValue) throws ObjectStoreException {
+        long start = metrics.start();
+        try {
+            if (cachedCounters) {
+                counters.add(key, delta, initialValue);
+            } else {
+                addToStored(key, delta, initialValue);
+            }
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.ADD, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.ADD, e);
+        } finally {
+            metrics.record(Operation.ADD, start);
+        }
+    }
+
+    /**
+     * Returns the current value of a counter.
+     * <p/>
+     * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:get-counter}
+     *
+     * @param key
+     *            The identifier of the counter
+     * @return The value of the counter, or zero if it does not exist.
+     * @throws ObjectStoreException
+     *             if the counter cannot be loaded or the key holds an object that is not a number.
+     */
+    @Processor
+    public long getCounter(String key) throws ObjectStoreException {
+        long start = metrics.start();
+        try {
+            if (cachedCounters) {
+                return counters.get(key, 0);
+            }
+            Serializable value = ObjectStores.lookup(objectStore, key);
+            return value != null ? toCounterValue(key, value) : 0;
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.GET_COUNTER, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.GET_COUNTER, e);
+        } finally {
+            metrics.record(Operation.GET_COUNTER, start);
+        }
+    }
+
+    /**
+     * Writes the counters changed since the last flush to the object store.
+     * <p/>
+     * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:flush-counters}
+     *
+     * @throws ObjectStoreException
+     *             if the counters cannot be stored.
+     */
+    @Processor
+    public void flushCounters() throws ObjectStoreException {
+        long start = metrics.start();
+        try {
+            counters.flush();
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.FLUSH_COUNTERS, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.FLUSH_COUNTERS, e);
+        } finally {
+            metrics.record(Operation.FLUSH_COUNTERS, start);
+        }
+    }
+
+    /**
+     * Move the keys stored in a shard other than the one they belong to, after shards were appended to the list. Every key of every shard is scanned, and
+     * the lock of a key is held while it is moved. Until its key is moved a value cannot be found, so run it right after the connector starts with the
+     * new shards. Does nothing when no shards are configured.
+     * <p/>
+     * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:rebalance-shards}
+     *
+     * @return The number of keys moved.
+     * @throws ObjectStoreException
+     *             if the keys of a shard cannot be listed or moved.
+     */
+    @Processor
+    public int rebalanceShards() throws ObjectStoreException {
+        if (sharded == null) {
+            return 0;
+        }
+        long start = metrics.start();
+        try {
+            return sharded.rebalance(new ShardedObjectStore.KeyLocks() {
+
+                @Override
+                public Lock lockFor(Serializable key) {
+                    return locks.lockFor(key);
+                }
+            });
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.REBALANCE_SHARDS, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.REBALANCE_SHARDS, e);
+        } finally {
+            metrics.record(Operation.REBALANCE_SHARDS, start);
+        }
+    }
+
+    /**
+     * Acquire the lease of a key, so the key can be held across several steps of a flow.
+     * <p/>
+     * Unlike the locks taken by the rest of the processors the lease does not belong to the thread acquiring it, and it is released automatically once
+     * the lease time elapses. Waiting for a key never delays the operations on other keys. Leases are kept in a partition next to the object store, so
+     * in a cluster a key is leased to a single node at a time and tokens grow across the nodes.
+     * <p/>
+     * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:acquire-lock}
+     *
+     * @param key
+     *            The identifier of the key to lease
+     * @param timeout
+     *            Milliseconds to wait for the lease if it is held. Zero to fail at once.
+     * @param leaseTime
+     *            Milliseconds after which the lease is released if releaseLock was not called before.
+     * @return The fencing token of the lease, to pass to releaseLock. Tokens grow with every lease so they can be used to reject stale writes.
+     * @throws ObjectStoreException
+     *             if the lease could not be acquired within the timeout.
+     */
+    @Processor
+    public long acquireLock(String key, @Default("0") long timeout, @Default("60000") long leaseTime) throws ObjectStoreException {
+        long start = metrics.start();
+        try {
+            Long token = leases.acquire(key, timeout, leaseTime);
+            if (token == null) {
+                throw new ObjectStoreException(MessageFactory.createStaticMessage("Timed out after " + timeout + " ms waiting for the lock of key: " + key));
+            }
+            return token;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw metrics.failed(Operation.ACQUIRE_LOCK, new ObjectStoreException(MessageFactory.createStaticMessage("Interrupted waiting for the lock of key: "
+                    + key), e));
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.ACQUIRE_LOCK, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.ACQUIRE_LOCK, e);
+        } finally {
+            metrics.record(Operation.ACQUIRE_LOCK, start);
+        }
+    }
+
+    /**
+     * Release the lease of a key acquired with acquireLock.
+     * <p/>
+     * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:release-lock}
+     *
+     * @param key
+     *            The identifier of the leased key
+     * @param token
+     *            The fencing token returned by acquireLock
+     * @return True if the lease was released, false if it had already expired and the key may have been leased by someone else meanwhile.
+     * @throws ObjectStoreException
+     *             if the lease cannot be read or removed.
+     */
+    @Processor
+    public boolean releaseLock(String key, long token) throws ObjectStoreException {
+        long start = metrics.start();
+        try {
+            long held = leases.release(key, token);
+            if (held < 0) {
+                return false;
+            }
+            metrics.recordNanos(Operation.LEASE_HOLD, held * 1000000L);
+            return true;
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.RELEASE_LOCK, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.RELEASE_LOCK, e);
+        } finally {
+            metrics.record(Operation.RELEASE_LOCK, start);
+        }
+    }
+
+    /**
+     * Take permits from the rate limit of a key, for instance a client, if they are available.
+     * <p/>
+     * Rate limits live in memory, one per key, and are updated without locks so deciding for a key never waits for another one. They are forgotten once
+     * idle for a whole window, and written to the object store every rateLimitCheckpointInterval milliseconds if set. Changing the rate, the window or the
+     * algorithm of a key starts its rate limit afresh.
+     * <p/>
+     * {@sample.xml ../../../doc/mule-module-objectstore.xml.sample objectstore:try-acquire}
+     *
+     * @param key
+     *            The identifier of the rate limit
+     * @param permits
+     *            The number of permits to take
+     * @param rate
+     *            The number of permits granted per window
+     * @param window
+     *            The length of the window in milliseconds
+     * @param algorithm
+     *            TOKEN_BUCKET to allow bursts of up to rate permits refilled evenly over the window, SLIDING_WINDOW to grant at most rate permits in any
+     *            window.
+     * @return True if the permits were granted, false if the rate limit was reached.
+     * @throws ObjectStoreException
+     *             if the checkpointed rate limit cannot be loaded.
+     */
+    @Processor
+    public boolean tryAcquire(String key, @Default("1") int permits, long rate, @Default("1000") long window,
+            @Default("TOKEN_BUCKET") RateLimitAlgorithm algorithm) throws ObjectStoreException {
+        long start = metrics.start();
+        try {
+            return rateLimiters.tryAcquire(key, permits, rate, window, algorithm);
+        } catch (ObjectStoreException e) {
+            throw metrics.failed(Operation.TRY_ACQUIRE, e);
+        } catch (RuntimeException e) {
+            throw metrics.failed(Operation.TRY_ACQUIRE, e);
+        } finally {
+            metrics.record(Operation.TRY_ACQUIRE, start);
+        }
+    }
+
+    private ListableObjectStore<Serializable> newEngineStore(Integer maxEntries) {
+        switch (config.getEngine()) {
+        case LOG:
+            String partition = StringUtils.isNotEmpty(config.getPartition()) ? config.getPartition() : "default";
+            File directory = new File(muleContext.getConfiguration().getWorkingDirectory(), "objectstore-log" + File.separator + partition);
+            return new LogObjectStore(directory, config.getLogSegmentSize(), config.getLogCompactionInterval(), muleContext.getExecutionClassLoader());
+        case OFF_HEAP:
+            if (config.getPersistent()) {
+                throw new IllegalArgumentException("The OFF_HEAP engine does not persist entries, persistent has to be false.");
+            }
+            return new OffHeapObjectStore(config.getEntryTtl(), maxEntries, config.getExpirationInterval(), muleContext.getExecutionClassLoader());
+        default:
+            throw new IllegalArgumentException("Unsupported engine " + config.getEngine());
+        }
+    }
+
+    /**
+     * Creates the dual mappings when the connector starts with changes left in their intent store, or else on the first dual change.
+     */
+    private DualMappings dualMappings() {
+        DualMappings mappings = dualMappings;
+        if (mappings != null) {
+            return mappings;
+        }
+        synchronized (this) {
+            if (dualMappings == null) {
+                mappings = new DualMappings(objectStore, intentStore(), batch, new Overwriter() {
+
+                    @Override
+                    public Serializable overwrite(Serializable key, Serializable value) throws ObjectStoreException {
+                        return doPut(key, value);
+                    }
+                });
+                dualMappings = mappings;
+            }
+            return dualMappings;
+        }
+    }
+
+    /**
+     * dualStore logs its changes next to the partition, in the store the partition comes from: the object store manager for a partition of the connector,
+     * a partition of the store given by reference or of the shard the name belongs to. A store without partitions gets the intents in memory, so a change
+     * interrupted by a crash cannot be settled at the next start.
+     */
+    @SuppressWarnings("unchecked")
+    private ObjectStore<Serializable> intentStore() {
+        String name = partitionName() + "-dual-intents";
+        if (ownStore) {
+            return objectStoreManager.getObjectStore(name, objectStore.isPersistent());
+        }
+        ObjectStore<Serializable> configured = sharded != null ? sharded.shardFor(name) : config.getObjectStore();
+        if (configured instanceof PartitionableObjectStore) {
+            return new ObjectStorePartition<Serializable>(name, (PartitionableObjectStore<Serializable>) configured);
+        }
+        logger.warn("The object store " + configured + " has no partitions, the dual-store changes of " + partitionName()
+                + " are logged in memory and a change interrupted by a crash is not settled at the next start");
+        return new SimpleMemoryObjectStore<Serializable>();
+    }
+
+    /**
+     * @return true if the intent store of the dual changes may hold changes from before the connector started, without creating it when it cannot
+     */
+    @SuppressWarnings("unchecked")
+    private boolean hasIntentStore() throws ObjectStoreException {
+        String name = partitionName() + "-dual-intents";
+        ObjectStore<Serializable> base;
+        if (ownStore) {
+            // Transient partitions do not outlive the application
+            if (!objectStore.isPersistent()) {
+                return false;
+            }
+            base = registry.lookupObject(MuleProperties.OBJECT_STORE_DEFAULT_PERSISTENT_NAME);
+            if (!(base instanceof PartitionableObjectStore)) {
+                return true;
+            }
+        } else {
+            base = sharded != null ? sharded.shardFor(name) : config.getObjectStore();
+            if (!(base instanceof PartitionableObjectStore)) {
+                return false;
+            }
+        }
+        return ((PartitionableObjectStore<Serializable>) base).allPartitions().contains(name);
+    }
+
+    /**
+     * @return the name of the partition, or of the default user object store when there is none, to name the partitions kept next to it
+     */
+    private String partitionName() {
+        return StringUtils.isNotEmpty(config.getPartition()) ? config.getPartition() : MuleProperties.DEFAULT_USER_OBJECT_STORE_NAME;
+    }
+
+    private Object doRetrieve(String key, Object defaultValue) throws ObjectStoreException {
+        Object value = ObjectStores.lookup(objectStore, key);
+        if (value != null) {
+            return value;
+        } else if (defaultValue != null) {
+            return defaultValue;
+        }
+        throw ObjectStores.doesNotExist(key);
+    }
+
+    /**
+     * @return the computation of the value of the key for retrieveOrCompute, storing the computed value unless a fresh one was stored since the caller
+     *         read the key
+     */
+    private Callable<Object> computation(final String key, final Integer ttl, final long staleTtl, final NestedProcessor compute) {
+        return new Callable<Object>() {
+
+            @Override
+            public Object call() throws Exception {
+                ExpiringValue entry = expiry.lookupEntry(key);
+                if (entry != null && entry.getExpiresAt() - staleTtl > System.currentTimeMillis()) {
+                    return entry.getValue();
+                }
+                Object computed = compute.process();
+                if (computed == null) {
+                    return null;
+                }
+                if (!(computed instanceof Serializable)) {
+                    throw notSerializable(key, computed);
+                }
+                Serializable value = (Serializable) computed;
+                Serializable stored;
+                if (staleTtl > 0) {
+                    long freshTtl = ttl != null && ttl > 0 ? ttl : expiry.getDefaultTtl();
+                    stored = new ExpiringValue(value, System.currentTimeMillis() + freshTtl + staleTtl);
+                } else {
+                    stored = expiry.withTtl(value, ttl);
+                }
+                Lock lock = locks.lockFor(key);
+                lock.lock();
+                try {
+                    doStore(key, stored, true);
+                } finally {
+                    lock.unlock();
+                }
+                return value;
+            }
+        };
+    }
+
+    private List<String> doKeysWithPrefix(String prefix, int limit) throws ObjectStoreException {
+        if (keyIndex != null) {
+            return keyIndex.keysWithPrefix(prefix, limit);
+        }
+        if (!ObjectStores.isListable(objectStore)) {
+            throw new UnsupportedOperationException("The objectStore [" + objectStore.getClass().getName() + "] does not support the operation allKeys");
+        }
+        List<String> keys = new ArrayList<String>();
+        for (Serializable key : ((ListableObjectStore<Serializable>) objectStore).allKeys()) {
+            if (key instanceof String && ((String) key).startsWith(prefix)) {
+                keys.add((String) key);
+            }
+        }
+        Collections.sort(keys);
+        return limit > 0 && keys.size() > limit ? new ArrayList<String>(keys.subList(0, limit)) : keys;
+    }
+
+    private BatchResult doRemoveAll(List<String> keys, boolean ignoreNotExists) throws ObjectStoreException {
+        BatchResult result = new BatchResult();
+        for (Map.Entry<String, List<String>> group : locks.groupByLock(keys).entrySet()) {
+            Lock lock = locks.lockForId(group.getKey());
+            lock.lock();
+            try {
+                if (batch) {
+                    Map<Serializable, ObjectStoreException> failures = ((BatchObjectStore<Serializable>) objectStore).removeAll(group.getValue());
+                    for (String key : group.getValue()) {
+                        ObjectStoreException failure = failures.get(key);
+                        if (failure == null || failure instanceof ObjectDoesNotExistException) {
+                            counters.forget(key);
+                        }
+                    }
+                    if (ignoreNotExists) {
+                        Iterator<ObjectStoreException> it = failures.values().iterator();
+                        while (it.hasNext()) {
+                            if (it.next() instanceof ObjectDoesNotExistException) {
+                                it.remove();
+                            }
+                        }
+                    }
+                    report(result, group.getValue(), failures);
+                } else {
+                    for (String key : group.getValue()) {
+                        try {
+                            if (ignoreNotExists) {
+                                ObjectStores.removeIfPresent(objectStore, key);
+                            } else {
+                                objectStore.remove(key);
+                            }
+                            counters.forget(key);
+                            result.success(key);
+                        } catch (ObjectDoesNotExistException e) {
+                            counters.forget(key);
+                            if (ignoreNotExists) {
+                                result.success(key);
+                            } else {
+                                result.failure(key, e);
+                            }
+                        } catch (ObjectStoreException e) {
+                            result.failure(key, e);
+                        }
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return result;
     }
 
     /*
      * This method is executed inside a lock
      */
-    private void rollbackDualStore(String key, Serializable previousValue) throws ObjectStoreException {
-        silentlyDelete(key);
-        if (previousValue != null) {
-            objectStore.store(key, previousValue);
+    private void doStore(Serializable key, Serializable value, boolean overwrite) throws ObjectStoreException {
+        if (overwrite) {
+            doPut(key, value);
+        } else {
+            objectStore.store(key, value);
         }
+        counters.forget((String) key);
     }
 
     /*
-     * This method is executed inside a lock
+     * This method is executed inside a lock unless the store is atomic
+     */
+    private Serializable doPut(Serializable key, Serializable value) throws ObjectStoreException {
+        if (atomic) {
+            return ((AtomicObjectStore<Serializable>) objectStore).put(key, value);
+        }
+        return consistentReads.overwrite(key, value);
+    }
+
+    /*
+     * This method is executed inside a lock unless the store is atomic
+     */
+    private Serializable doPutIfAbsent(Serializable key, Serializable value) throws ObjectStoreException {
+        if (atomic) {
+            Serializable existing = ((AtomicObjectStore<Serializable>) objectStore).putIfAbsent(key, value);
+            if (existing == null) {
+                counters.forget((String) key);
+            }
+            return existing;
+        }
+        while (true) {
+            try {
+                objectStore.store(key, value);
+                counters.forget((String) key);
+                return null;
+            } catch (ObjectAlreadyExistsException e) {
+                Serializable existing = ObjectStores.lookup(objectStore, key);
+                // Otherwise removed by someone not taking the lock since, store again
+                if (existing != null) {
+                    return existing;
+                }
+            }
+        }
+    }
+
+    /*
+     * This method is executed inside a lock unless the store is atomic
      */
-    private void silentlyDelete(String key) throws ObjectStoreException {
-        objectStore.remove(key);
+    private boolean doReplace(Serializable key, Serializable expected, Serializable value) throws ObjectStoreException {
+        if (atomic) {
+            boolean replaced = ((AtomicObjectStore<Serializable>) objectStore).replace(key, expected, value);
+            if (replaced) {
+                counters.forget((String) key);
+            }
+            return replaced;
+        }
+        Serializable current = ObjectStores.lookup(objectStore, key);
+        if (current == null || !ObjectStores.sameValue(expected, current)) {
+            return false;
+        }
+        consistentReads.overwrite(key, value);
+        counters.forget((String) key);
+        return true;
+    }
+
+    /*
+     * Updates a counter that is not kept in memory
+     */
+    private long addToStored(String key, long delta, long initialValue) throws ObjectStoreException {
+        if (atomic) {
+            AtomicObjectStore<Serializable> store = (AtomicObjectStore<Serializable>) objectStore;
+            while (true) {
+                Serializable current = ObjectStores.lookup(objectStore, key);
+                long value = (current != null ? toCounterValue(key, current) : initialValue) + delta;
+                if (current == null ? store.putIfAbsent(key, value) == null : store.replace(key, current, value)) {
+                    return value;
+                }
+            }
+        }
+        Lock lock = locks.lockFor(key);
+        lock.lock();
+        try {
+            Serializable current = ObjectStores.lookup(objectStore, key);
+            long value = (current != null ? toCounterValue(key, current) : initialValue) + delta;
+            doPut(key, value);
+            return value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Long toCounterValue(String key, Serializable value) throws ObjectStoreException {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        throw new ObjectStoreException(MessageFactory.createStaticMessage("The object of key [" + key + "] is not a counter: " + value.getClass().getName()));
+    }
+
+    private static Object toTarget(Object value, String targetProperty, MulePropertyScope targetScope, MuleMessage muleMessage) {
+        if (targetProperty != null) {
+            muleMessage.setProperty(targetProperty, value, PropertyScope.get(targetScope.value()));
+            return muleMessage.getPayload();
+        }
+        return value;
+    }
+
+    private static void report(BatchResult result, Collection<? extends Serializable> keys, Map<Serializable, ObjectStoreException> failures) {
+        for (Serializable key : keys) {
+            ObjectStoreException failure = failures.get(key);
+            if (failure == null) {
+                result.success((String) key);
+            } else {
+                result.failure((String) key, failure);
+            }
+        }
+    }
+
+    private static ObjectStoreException notSerializable(String key, Object value) {
+        return new ObjectStoreException(MessageFactory.createStaticMessage("The value of key [" + key + "] is not serializable: "
+                + (value == null ? "null" : value.getClass().getName())));
     }
 
     public Config getConfig() {
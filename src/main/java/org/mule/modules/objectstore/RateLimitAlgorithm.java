@@ -0,0 +1,22 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore;
+
+/**
+ * How try-acquire decides whether a key gets the permits it asks for.
+ */
+public enum RateLimitAlgorithm {
+    /**
+     * A bucket of rate permits refilled evenly over the window: bursts of up to rate permits are granted, after which permits come back one every
+     * window / rate milliseconds. Takes a single number per key.
+     */
+    TOKEN_BUCKET,
+    /**
+     * At most rate permits in any window milliseconds, counted from the time of every permit granted. Exact, but keeps rate numbers per key.
+     */
+    SLIDING_WINDOW
+}
@@ -0,0 +1,25 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore;
+
+/**
+ * The object store implementation used when no object store is referenced.
+ */
+public enum StoreEngine {
+    /**
+     * The partition is obtained from the Mule ObjectStoreManager.
+     */
+    MULE,
+    /**
+     * An append-only log of memory-mapped segment files in the application working directory, with an in-memory index of the keys. Always persistent.
+     */
+    LOG,
+    /**
+     * Entries kept in direct memory, outside of the Java heap. Never persistent.
+     */
+    OFF_HEAP
+}
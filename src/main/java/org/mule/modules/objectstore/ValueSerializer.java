@@ -0,0 +1,26 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore;
+
+/**
+ * How the values are encoded before being handed to the object store.
+ */
+public enum ValueSerializer {
+    /**
+     * Values are handed to the object store as they are, a persistent store serializes them itself.
+     */
+    NONE,
+    /**
+     * Values are encoded to a byte array with Java serialization.
+     */
+    JAVA,
+    /**
+     * Values are encoded to a byte array with a compact binary format for strings, byte arrays, numbers, booleans, hash maps and array lists. Any other
+     * type falls back to Java serialization.
+     */
+    COMPACT
+}
@@ -0,0 +1,177 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.async;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.util.concurrent.DaemonThreadFactory;
+
+import java.io.Serializable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Runs object store operations on a bounded pool of threads so the caller does not wait for the round-trip.
+ * <p/>
+ * Stores submitted for a key that already has a store waiting are coalesced: only the last value is written. When the queue is full the operation runs
+ * on the calling thread, which slows callers down instead of dropping work. Pending operations are completed when the pool is disposed.
+ */
+public class AsyncOperations {
+
+    /**
+     * Where the submitted stores are written to.
+     */
+    public interface AsyncStorage {
+
+        Lock lockFor(String key);
+
+        /**
+         * Writes the value, called holding the lock of the key.
+         */
+        void store(String key, Serializable value, boolean overwrite) throws ObjectStoreException;
+    }
+
+    /**
+     * Milliseconds {@link #dispose()} waits for the pending operations to complete.
+     */
+    public static final long DRAIN_TIMEOUT = 30000;
+
+    private static final Log logger = LogFactory.getLog(AsyncOperations.class);
+
+    private final ConcurrentMap<String, PendingStore> pending = new ConcurrentHashMap<String, PendingStore>();
+    private final AsyncStorage storage;
+    private final String name;
+    private final int threads;
+    private final int queueSize;
+    private volatile ThreadPoolExecutor executor;
+    private boolean disposed;
+
+    public AsyncOperations(String name, AsyncStorage storage, int threads, int queueSize) {
+        this.name = name;
+        this.storage = storage;
+        this.threads = Math.max(1, threads);
+        this.queueSize = Math.max(1, queueSize);
+    }
+
+    /**
+     * Stores the value in the background. If a store of the same key is still waiting its value is replaced instead.
+     */
+    public void store(final String key, Serializable value, boolean overwrite) {
+        PendingStore store = new PendingStore(value, overwrite);
+        if (pending.put(key, store) == null) {
+            try {
+                execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        write(key);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                pending.remove(key, store);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Runs the task in the background.
+     */
+    public void execute(Runnable task) {
+        executor().execute(task);
+    }
+
+    /**
+     * @return the number of stores waiting to be written
+     */
+    public int getPendingStores() {
+        return pending.size();
+    }
+
+    /**
+     * Stops accepting operations and waits up to {@link #DRAIN_TIMEOUT} for the pending ones to complete.
+     */
+    public void dispose() {
+        ThreadPoolExecutor toDrain;
+        synchronized (this) {
+            disposed = true;
+            toDrain = executor;
+            executor = null;
+        }
+        if (toDrain == null) {
+            return;
+        }
+        toDrain.shutdown();
+        try {
+            if (!toDrain.awaitTermination(DRAIN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                logger.warn("Timed out waiting for the asynchronous operations of " + name + ", " + pending.size() + " stores were not written");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(String key) {
+        Lock lock = storage.lockFor(key);
+        lock.lock();
+        try {
+            // Taken holding the lock so a store submitted meanwhile is never overwritten by an older one
+            PendingStore store = pending.remove(key);
+            if (store != null) {
+                storage.store(key, store.value, store.overwrite);
+            }
+        } catch (Exception e) {
+            logger.warn("Could not store the key " + key + " asynchronously", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ThreadPoolExecutor executor() {
+        ThreadPoolExecutor current = executor;
+        return current != null ? current : createExecutor();
+    }
+
+    private synchronized ThreadPoolExecutor createExecutor() {
+        if (disposed) {
+            throw new RejectedExecutionException("The asynchronous operations of " + name + " have been disposed");
+        }
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueSize), new DaemonThreadFactory(name
+                    + ".async"), new RejectedExecutionHandler() {
+
+                @Override
+                public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("The asynchronous operations of " + name + " have been disposed");
+                    }
+                    task.run();
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    private static final class PendingStore {
+
+        private final Serializable value;
+        private final boolean overwrite;
+
+        PendingStore(Serializable value, boolean overwrite) {
+            this.value = value;
+            this.overwrite = overwrite;
+        }
+    }
+}
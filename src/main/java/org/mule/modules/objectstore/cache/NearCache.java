@@ -0,0 +1,194 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.cache;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded LRU cache with an optional time to live.
+ * <p/>
+ * The cache is split in segments, each one an access ordered map guarded by its own monitor, so readers of different keys rarely contend. Each segment
+ * evicts its least recently used entry when it goes over its share of the capacity.
+ * <p/>
+ * To avoid caching a value that was overwritten while it was being read from the store, readers take the {@link #generation(Serializable)} of the key
+ * before going to the store and hand it back to {@link #put(Serializable, Serializable, long)}. Any invalidation of the segment in between makes the put a
+ * no-op.
+ */
+public class NearCache implements NearCacheMXBean {
+
+    private final Segment[] segments;
+    private final long ttlNanos;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    /**
+     * @param maxEntries
+     *            maximum number of entries kept in the cache
+     * @param ttlMillis
+     *            time to live of the entries in milliseconds, zero or less for no expiration
+     */
+    public NearCache(int maxEntries, long ttlMillis) {
+        int count = 1;
+        while (count < 2 * Runtime.getRuntime().availableProcessors() && count < maxEntries) {
+            count <<= 1;
+        }
+        int capacity = (maxEntries + count - 1) / count;
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(capacity);
+        }
+        ttlNanos = ttlMillis > 0 ? ttlMillis * 1000000L : 0;
+    }
+
+    /**
+     * @return the cached value, or null if the key is not cached or its entry expired
+     */
+    public Serializable get(Serializable key) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            CachedValue entry = segment.get(key);
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            if (ttlNanos > 0 && System.nanoTime() - entry.expiresAt > 0) {
+                segment.remove(key);
+                expirations.incrementAndGet();
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.value;
+        }
+    }
+
+    /**
+     * @return true if the key is cached, without counting a hit or a miss
+     */
+    public boolean contains(Serializable key) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            CachedValue entry = segment.get(key);
+            return entry != null && (ttlNanos == 0 || System.nanoTime() - entry.expiresAt <= 0);
+        }
+    }
+
+    /**
+     * @return the current generation of the segment holding the key, to be passed to {@link #put(Serializable, Serializable, long)}
+     */
+    public long generation(Serializable key) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.generation;
+        }
+    }
+
+    /**
+     * Caches a value read from the store, unless the segment was invalidated since the given generation was taken.
+     */
+    public void put(Serializable key, Serializable value, long generation) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            if (segment.generation == generation) {
+                segment.put(key, new CachedValue(value, System.nanoTime() + ttlNanos));
+            }
+        }
+    }
+
+    public void invalidate(Serializable key) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.generation++;
+            segment.remove(key);
+        }
+    }
+
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.generation++;
+                segment.clear();
+            }
+        }
+    }
+
+    @Override
+    public int getSize() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    private Segment segmentFor(Serializable key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (segments.length - 1)];
+    }
+
+    private static final class CachedValue {
+
+        final Serializable value;
+        final long expiresAt;
+
+        CachedValue(Serializable value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final class Segment extends LinkedHashMap<Serializable, CachedValue> {
+
+        private static final long serialVersionUID = -3164325734729574245L;
+
+        private final int capacity;
+        long generation;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Serializable, CachedValue> eldest) {
+            if (size() > capacity) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+}
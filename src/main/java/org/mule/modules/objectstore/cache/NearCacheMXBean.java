@@ -0,0 +1,23 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.cache;
+
+/**
+ * JMX view of the statistics of a {@link NearCache}.
+ */
+public interface NearCacheMXBean {
+
+    int getSize();
+
+    long getHits();
+
+    long getMisses();
+
+    long getEvictions();
+
+    long getExpirations();
+}
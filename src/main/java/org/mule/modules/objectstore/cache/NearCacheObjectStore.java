@@ -0,0 +1,179 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.cache;
+
+import org.mule.api.store.ObjectStore;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.modules.objectstore.store.ObjectStoreDecorator;
+import org.mule.modules.objectstore.store.ObjectStores;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-through {@link NearCache} in front of a slow (persistent or remote) object store.
+ * <p/>
+ * Every write going through this store invalidates the cached key once the decorated store has been updated. Writes done to the decorated store by anyone
+ * else are not seen until the cached entry expires, so a time to live should be configured when the store is shared.
+ */
+public class NearCacheObjectStore extends ObjectStoreDecorator {
+
+    private final NearCache cache;
+
+    public NearCacheObjectStore(ObjectStore<Serializable> delegate, NearCache cache) {
+        super(delegate);
+        this.cache = cache;
+    }
+
+    public NearCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public boolean contains(Serializable key) throws ObjectStoreException {
+        return cache.contains(key) || delegate.contains(key);
+    }
+
+    @Override
+    public Serializable retrieve(Serializable key) throws ObjectStoreException {
+        Serializable value = cache.get(key);
+        if (value == null) {
+            long generation = cache.generation(key);
+            value = delegate.retrieve(key);
+            cache.put(key, value, generation);
+        }
+        return value;
+    }
+
+    @Override
+    public Serializable lookup(Serializable key) throws ObjectStoreException {
+        Serializable value = cache.get(key);
+        if (value == null) {
+            long generation = cache.generation(key);
+            value = ObjectStores.lookup(delegate, key);
+            if (value != null) {
+                cache.put(key, value, generation);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public void store(Serializable key, Serializable value) throws ObjectStoreException {
+        try {
+            delegate.store(key, value);
+        } finally {
+            cache.invalidate(key);
+        }
+    }
+
+    @Override
+    public Serializable remove(Serializable key) throws ObjectStoreException {
+        try {
+            return delegate.remove(key);
+        } finally {
+            cache.invalidate(key);
+        }
+    }
+
+    @Override
+    public Serializable removeIfPresent(Serializable key) throws ObjectStoreException {
+        try {
+            return ObjectStores.removeIfPresent(delegate, key);
+        } finally {
+            cache.invalidate(key);
+        }
+    }
+
+    @Override
+    public void clear() throws ObjectStoreException {
+        try {
+            delegate.clear();
+        } finally {
+            cache.invalidateAll();
+        }
+    }
+
+    @Override
+    public Serializable putIfAbsent(Serializable key, Serializable value) throws ObjectStoreException {
+        try {
+            return atomicDelegate().putIfAbsent(key, value);
+        } finally {
+            cache.invalidate(key);
+        }
+    }
+
+    @Override
+    public boolean replace(Serializable key, Serializable expected, Serializable value) throws ObjectStoreException {
+        try {
+            return atomicDelegate().replace(key, expected, value);
+        } finally {
+            cache.invalidate(key);
+        }
+    }
+
+    @Override
+    public Serializable put(Serializable key, Serializable value) throws ObjectStoreException {
+        try {
+            return atomicDelegate().put(key, value);
+        } finally {
+            cache.invalidate(key);
+        }
+    }
+
+    @Override
+    public Map<Serializable, ObjectStoreException> storeAll(Map<Serializable, Serializable> entries, boolean overwrite) throws ObjectStoreException {
+        try {
+            return batchDelegate().storeAll(entries, overwrite);
+        } finally {
+            invalidate(entries.keySet());
+        }
+    }
+
+    @Override
+    public Map<Serializable, Serializable> retrieveAll(Collection<? extends Serializable> keys) throws ObjectStoreException {
+        Map<Serializable, Serializable> values = new HashMap<Serializable, Serializable>();
+        List<Serializable> missing = new ArrayList<Serializable>();
+        Map<Serializable, Long> generations = new HashMap<Serializable, Long>();
+        for (Serializable key : keys) {
+            Serializable value = cache.get(key);
+            if (value != null) {
+                values.put(key, value);
+            } else {
+                missing.add(key);
+                generations.put(key, cache.generation(key));
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<Serializable, Serializable> found = batchDelegate().retrieveAll(missing);
+            for (Map.Entry<Serializable, Serializable> entry : found.entrySet()) {
+                cache.put(entry.getKey(), entry.getValue(), generations.get(entry.getKey()));
+            }
+            values.putAll(found);
+        }
+        return values;
+    }
+
+    @Override
+    public Map<Serializable, ObjectStoreException> removeAll(Collection<? extends Serializable> keys) throws ObjectStoreException {
+        try {
+            return batchDelegate().removeAll(keys);
+        } finally {
+            invalidate(keys);
+        }
+    }
+
+    private void invalidate(Collection<? extends Serializable> keys) {
+        for (Serializable key : keys) {
+            cache.invalidate(key);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.codec;
+
+import org.mule.api.store.ObjectStore;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.config.i18n.MessageFactory;
+import org.mule.modules.objectstore.store.ObjectStoreDecorator;
+import org.mule.modules.objectstore.store.ObjectStores;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hands the values to the decorated store already encoded as byte arrays, so a persistent store only has to write bytes.
+ * <p/>
+ * Encoded values start with a header naming the format, values without it are returned as they were stored. That keeps values written before the codec
+ * was enabled readable, and values written with the Java or compact codec can be read whichever of the two is configured.
+ * <p/>
+ * Encoded values over the threshold of the {@link Compressor} are stored compressed, followed by their uncompressed size, and only decompressed when they
+ * are retrieved. Compressed values remain readable after compression is disabled.
+ */
+public class CodecObjectStore extends ObjectStoreDecorator {
+
+    private static final byte MAGIC_0 = (byte) 0xC0;
+    private static final byte MAGIC_1 = (byte) 0xDE;
+    private static final int HEADER_LENGTH = 3;
+
+    private static final byte CUSTOM = 0;
+    private static final byte JAVA = 1;
+    private static final byte COMPACT = 2;
+    private static final byte COMPRESSED = 0x40;
+    private static final int COMPRESSED_HEADER_LENGTH = HEADER_LENGTH + 4;
+
+    private final ValueCodec codec;
+    private final JavaCodec javaCodec;
+    private final CompactCodec compactCodec;
+    private final byte format;
+    private final Compressor compressor;
+
+    /**
+     * @param codec
+     *            the codec encoding the values, the built-in codecs are used to decode values encoded by them
+     * @param javaCodec
+     *            decodes the values encoded with Java serialization, and the values the compact codec falls back to it for
+     * @param compressor
+     *            compresses the encoded values over its threshold
+     */
+    public CodecObjectStore(ObjectStore<Serializable> delegate, ValueCodec codec, JavaCodec javaCodec, Compressor compressor) {
+        super(delegate);
+        this.codec = codec;
+        this.compressor = compressor;
+        this.javaCodec = javaCodec;
+        this.compactCodec = new CompactCodec(javaCodec);
+        this.format = codec instanceof CompactCodec ? COMPACT : codec instanceof JavaCodec ? JAVA : CUSTOM;
+    }
+
+    /**
+     * @return a store encoding the values with the given built-in codec
+     */
+    public static CodecObjectStore compact(ObjectStore<Serializable> delegate, JavaCodec javaCodec, Compressor compressor) {
+        return new CodecObjectStore(delegate, new CompactCodec(javaCodec), javaCodec, compressor);
+    }
+
+    public static CodecObjectStore java(ObjectStore<Serializable> delegate, JavaCodec javaCodec, Compressor compressor) {
+        return new CodecObjectStore(delegate, javaCodec, javaCodec, compressor);
+    }
+
+    public Compressor getCompressor() {
+        return compressor;
+    }
+
+    @Override
+    public void store(Serializable key, Serializable value) throws ObjectStoreException {
+        delegate.store(key, encode(value));
+    }
+
+    @Override
+    public Serializable retrieve(Serializable key) throws ObjectStoreException {
+        return decode(delegate.retrieve(key));
+    }
+
+    @Override
+    public Serializable remove(Serializable key) throws ObjectStoreException {
+        return decode(delegate.remove(key));
+    }
+
+    @Override
+    public Serializable lookup(Serializable key) throws ObjectStoreException {
+        return decode(ObjectStores.lookup(delegate, key));
+    }
+
+    @Override
+    public Serializable removeIfPresent(Serializable key) throws ObjectStoreException {
+        return decode(ObjectStores.removeIfPresent(delegate, key));
+    }
+
+    @Override
+    public Serializable putIfAbsent(Serializable key, Serializable value) throws ObjectStoreException {
+        return decode(atomicDelegate().putIfAbsent(key, encode(value)));
+    }
+
+    /**
+     * Compares the decoded values, then replaces the value only if the stored bytes did not change meanwhile.
+     */
+    @Override
+    public boolean replace(Serializable key, Serializable expected, Serializable value) throws ObjectStoreException {
+        if (!delegate.contains(key)) {
+            return false;
+        }
+        Serializable stored = delegate.retrieve(key);
+        if (!ObjectStores.sameValue(expected, decode(stored))) {
+            return false;
+        }
+        return atomicDelegate().replace(key, stored, encode(value));
+    }
+
+    @Override
+    public Serializable put(Serializable key, Serializable value) throws ObjectStoreException {
+        return decode(atomicDelegate().put(key, encode(value)));
+    }
+
+    @Override
+    public Map<Serializable, ObjectStoreException> storeAll(Map<Serializable, Serializable> entries, boolean overwrite) throws ObjectStoreException {
+        Map<Serializable, Serializable> encoded = new HashMap<Serializable, Serializable>(entries.size() * 2);
+        for (Map.Entry<Serializable, Serializable> entry : entries.entrySet()) {
+            encoded.put(entry.getKey(), encode(entry.getValue()));
+        }
+        return batchDelegate().storeAll(encoded, overwrite);
+    }
+
+    @Override
+    public Map<Serializable, Serializable> retrieveAll(Collection<? extends Serializable> keys) throws ObjectStoreException {
+        Map<Serializable, Serializable> stored = batchDelegate().retrieveAll(keys);
+        Map<Serializable, Serializable> values = new HashMap<Serializable, Serializable>(stored.size() * 2);
+        for (Map.Entry<Serializable, Serializable> entry : stored.entrySet()) {
+            values.put(entry.getKey(), decode(entry.getValue()));
+        }
+        return values;
+    }
+
+    protected Serializable encode(Serializable value) throws ObjectStoreException {
+        if (value == null) {
+            return null;
+        }
+        try {
+            byte[] data;
+            if (codec instanceof CompactCodec) {
+                data = ((CompactCodec) codec).encode(value, HEADER_LENGTH);
+            } else {
+                byte[] encoded = codec.encode(value);
+                data = new byte[HEADER_LENGTH + encoded.length];
+                System.arraycopy(encoded, 0, data, HEADER_LENGTH, encoded.length);
+            }
+            byte dataFormat = format;
+            if (compressor.shouldCompress(data.length - HEADER_LENGTH)) {
+                byte[] compressed = compressor.compress(data, HEADER_LENGTH, data.length - HEADER_LENGTH, COMPRESSED_HEADER_LENGTH);
+                if (compressed != null) {
+                    writeInt(compressed, HEADER_LENGTH, data.length - HEADER_LENGTH);
+                    data = compressed;
+                    dataFormat |= COMPRESSED;
+                }
+            }
+            data[0] = MAGIC_0;
+            data[1] = MAGIC_1;
+            data[2] = dataFormat;
+            return data;
+        } catch (IOException e) {
+            throw new ObjectStoreException(MessageFactory.createStaticMessage("Could not encode a value of type " + value.getClass().getName()), e);
+        }
+    }
+
+    protected Serializable decode(Serializable stored) throws ObjectStoreException {
+        if (!isEncoded(stored)) {
+            return stored;
+        }
+        byte[] data = (byte[]) stored;
+        try {
+            ValueCodec decoder = codecFor((byte) (data[2] & ~COMPRESSED));
+            if ((data[2] & COMPRESSED) == 0) {
+                return decoder.decode(data, HEADER_LENGTH, data.length - HEADER_LENGTH);
+            }
+            if (data.length < COMPRESSED_HEADER_LENGTH) {
+                throw new IOException("Compressed value is truncated");
+            }
+            int length = readInt(data, HEADER_LENGTH);
+            byte[] decompressed = compressor.decompress(data, COMPRESSED_HEADER_LENGTH, data.length - COMPRESSED_HEADER_LENGTH, length);
+            return decoder.decode(decompressed, 0, length);
+        } catch (IOException e) {
+            throw new ObjectStoreException(MessageFactory.createStaticMessage("Could not decode a stored value"), e);
+        }
+    }
+
+    private static boolean isEncoded(Serializable stored) {
+        if (!(stored instanceof byte[])) {
+            return false;
+        }
+        byte[] data = (byte[]) stored;
+        return data.length >= HEADER_LENGTH && data[0] == MAGIC_0 && data[1] == MAGIC_1;
+    }
+
+    private static void writeInt(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >>> 24);
+        data[offset + 1] = (byte) (value >>> 16);
+        data[offset + 2] = (byte) (value >>> 8);
+        data[offset + 3] = (byte) value;
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16) | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+    }
+
+    private ValueCodec codecFor(byte format) {
+        switch (format) {
+        case JAVA:
+            return javaCodec;
+        case COMPACT:
+            return compactCodec;
+        default:
+            return codec;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.codec;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary format for the types most values are made of: strings, byte arrays, boxed primitives and {@link HashMap}, {@link LinkedHashMap} and
+ * {@link ArrayList} of them. Every value is a one byte tag followed by its content, lengths and integers are variable length. Any other type, including
+ * other map and list implementations so their class is preserved, is encoded with the fallback codec.
+ */
+public class CompactCodec implements ValueCodec {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte BYTES = 2;
+    private static final byte INTEGER = 3;
+    private static final byte LONG = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte FLOAT = 6;
+    private static final byte SHORT = 7;
+    private static final byte BYTE = 8;
+    private static final byte CHARACTER = 9;
+    private static final byte TRUE = 10;
+    private static final byte FALSE = 11;
+    private static final byte HASH_MAP = 12;
+    private static final byte LINKED_HASH_MAP = 13;
+    private static final byte ARRAY_LIST = 14;
+    private static final byte FALLBACK = 15;
+
+    private final ValueCodec fallback;
+
+    public CompactCodec(ValueCodec fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public byte[] encode(Serializable value) throws IOException {
+        return encode(value, 0);
+    }
+
+    /**
+     * @return the encoded value preceded by the given number of zeroed bytes, for the caller to fill in
+     */
+    byte[] encode(Serializable value, int reserved) throws IOException {
+        Output out = new Output(reserved);
+        write(out, value);
+        return out.toByteArray();
+    }
+
+    @Override
+    public Serializable decode(byte[] data, int offset, int length) throws IOException {
+        Input in = new Input(data, offset, offset + length);
+        return (Serializable) read(in);
+    }
+
+    private void write(Output out, Object value) throws IOException {
+        if (value == null) {
+            out.write(NULL);
+        } else if (value instanceof String) {
+            out.write(STRING);
+            out.writeBytes(((String) value).getBytes(UTF8));
+        } else if (value instanceof byte[]) {
+            out.write(BYTES);
+            out.writeBytes((byte[]) value);
+        } else if (value instanceof Integer) {
+            out.write(INTEGER);
+            out.writeVarLong(zigZag((Integer) value));
+        } else if (value instanceof Long) {
+            out.write(LONG);
+            out.writeVarLong(zigZag((Long) value));
+        } else if (value instanceof Double) {
+            out.write(DOUBLE);
+            out.writeFixedLong(Double.doubleToLongBits((Double) value));
+        } else if (value instanceof Float) {
+            out.write(FLOAT);
+            out.writeVarLong(Float.floatToIntBits((Float) value) & 0xFFFFFFFFL);
+        } else if (value instanceof Short) {
+            out.write(SHORT);
+            out.writeVarLong(zigZag((Short) value));
+        } else if (value instanceof Byte) {
+            out.write(BYTE);
+            out.write((Byte) value);
+        } else if (value instanceof Character) {
+            out.write(CHARACTER);
+            out.writeVarLong((Character) value);
+        } else if (value instanceof Boolean) {
+            out.write((Boolean) value ? TRUE : FALSE);
+        } else if (value.getClass() == HashMap.class || value.getClass() == LinkedHashMap.class) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.write(value.getClass() == HashMap.class ? HASH_MAP : LINKED_HASH_MAP);
+            out.writeVarLong(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                write(out, entry.getKey());
+                write(out, entry.getValue());
+            }
+        } else if (value.getClass() == ArrayList.class) {
+            List<?> list = (List<?>) value;
+            out.write(ARRAY_LIST);
+            out.writeVarLong(list.size());
+            for (Object element : list) {
+                write(out, element);
+            }
+        } else if (value instanceof Serializable) {
+            out.write(FALLBACK);
+            out.writeBytes(fallback.encode((Serializable) value));
+        } else {
+            throw new IOException("Value is not serializable: " + value.getClass().getName());
+        }
+    }
+
+    private Object read(Input in) throws IOException {
+        byte tag = in.read();
+        switch (tag) {
+        case NULL:
+            return null;
+        case STRING:
+            int length = in.readLength();
+            String string = new String(in.data, in.position, length, UTF8);
+            in.position += length;
+            return string;
+        case BYTES:
+            length = in.readLength();
+            byte[] bytes = Arrays.copyOfRange(in.data, in.position, in.position + length);
+            in.position += length;
+            return bytes;
+        case INTEGER:
+            return (int) unZigZag(in.readVarLong());
+        case LONG:
+            return unZigZag(in.readVarLong());
+        case DOUBLE:
+            return Double.longBitsToDouble(in.readFixedLong());
+        case FLOAT:
+            return Float.intBitsToFloat((int) in.readVarLong());
+        case SHORT:
+            return (short) unZigZag(in.readVarLong());
+        case BYTE:
+            return in.read();
+        case CHARACTER:
+            return (char) in.readVarLong();
+        case TRUE:
+            return Boolean.TRUE;
+        case FALSE:
+            return Boolean.FALSE;
+        case HASH_MAP:
+        case LINKED_HASH_MAP:
+            int size = in.readLength();
+            Map<Object, Object> map = tag == HASH_MAP ? new HashMap<Object, Object>(capacity(size)) : new LinkedHashMap<Object, Object>(capacity(size));
+            for (int i = 0; i < size; i++) {
+                Object key = read(in);
+                map.put(key, read(in));
+            }
+            return map;
+        case ARRAY_LIST:
+            size = in.readLength();
+            List<Object> list = new ArrayList<Object>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(read(in));
+            }
+            return list;
+        case FALLBACK:
+            length = in.readLength();
+            Serializable value = fallback.decode(in.data, in.position, length);
+            in.position += length;
+            return value;
+        default:
+            throw new IOException("Unknown tag " + tag);
+        }
+    }
+
+    private static int capacity(int size) {
+        return Math.max(16, (int) (size / 0.75f) + 1);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class Output {
+
+        private byte[] buffer;
+        private int size;
+
+        Output(int reserved) {
+            buffer = new byte[reserved + 64];
+            size = reserved;
+        }
+
+        void write(byte b) {
+            ensureCapacity(1);
+            buffer[size++] = b;
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarLong(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeFixedLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+    }
+
+    private static final class Input {
+
+        private final byte[] data;
+        private final int limit;
+        private int position;
+
+        Input(byte[] data, int position, int limit) {
+            this.data = data;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        byte read() throws IOException {
+            if (position >= limit) {
+                throw new EOFException();
+            }
+            return data[position++];
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = read();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed variable length integer");
+        }
+
+        int readLength() throws IOException {
+            long length = readVarLong();
+            if (length < 0 || length > limit - position) {
+                throw new EOFException();
+            }
+            return (int) length;
+        }
+
+        long readFixedLong() throws IOException {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (read() & 0xFF);
+            }
+            return value;
+        }
+    }
+}
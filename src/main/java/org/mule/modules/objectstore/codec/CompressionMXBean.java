@@ -0,0 +1,47 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.codec;
+
+/**
+ * JMX view of the statistics of a {@link Compressor}.
+ */
+public interface CompressionMXBean {
+
+    /**
+     * @return the number of values stored compressed
+     */
+    long getCompressed();
+
+    /**
+     * @return the number of values over the threshold stored uncompressed because compressing did not make them smaller
+     */
+    long getIncompressible();
+
+    long getDecompressed();
+
+    /**
+     * @return the encoded size of the values stored compressed
+     */
+    long getBytesIn();
+
+    /**
+     * @return the compressed size of the values stored compressed
+     */
+    long getBytesOut();
+
+    /**
+     * @return bytes out divided by bytes in, the lower the better
+     */
+    double getRatio();
+
+    /**
+     * @return the milliseconds spent compressing, including the values that turned out incompressible
+     */
+    long getCompressionTime();
+
+    long getDecompressionTime();
+}
@@ -0,0 +1,172 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.codec;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate compression of encoded values, keeping statistics of how much it saves and what it costs. Deflaters and inflaters are reused per thread.
+ */
+public class Compressor implements CompressionMXBean {
+
+    private final int threshold;
+    private final ThreadLocal<Deflater> deflaters;
+    private final ThreadLocal<Inflater> inflaters = new ThreadLocal<Inflater>() {
+
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater();
+        }
+    };
+    private final AtomicLong compressed = new AtomicLong();
+    private final AtomicLong incompressible = new AtomicLong();
+    private final AtomicLong decompressed = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final AtomicLong compressionNanos = new AtomicLong();
+    private final AtomicLong decompressionNanos = new AtomicLong();
+
+    /**
+     * @param threshold
+     *            minimum encoded size in bytes of the values to compress, zero or less to never compress
+     * @param level
+     *            the Deflate level, from 1 (fastest) to 9 (smallest). Any other value means 1.
+     */
+    public Compressor(int threshold, int level) {
+        this.threshold = threshold;
+        final int deflateLevel = level >= Deflater.BEST_SPEED && level <= Deflater.BEST_COMPRESSION ? level : Deflater.BEST_SPEED;
+        this.deflaters = new ThreadLocal<Deflater>() {
+
+            @Override
+            protected Deflater initialValue() {
+                return new Deflater(deflateLevel);
+            }
+        };
+    }
+
+    /**
+     * @return a compressor that only decompresses
+     */
+    public static Compressor decompressOnly() {
+        return new Compressor(0, Deflater.BEST_SPEED);
+    }
+
+    /**
+     * @return true if a value of the given encoded size has to be compressed
+     */
+    public boolean shouldCompress(int length) {
+        return threshold > 0 && length >= threshold;
+    }
+
+    /**
+     * Compresses the range of the array into a new array, preceded by the given number of bytes for the caller to fill in.
+     *
+     * @return the new array, or null if the compressed range would not be smaller than the original one
+     */
+    public byte[] compress(byte[] data, int offset, int length, int reserved) {
+        long start = System.nanoTime();
+        try {
+            Deflater deflater = deflaters.get();
+            deflater.reset();
+            deflater.setInput(data, offset, length);
+            deflater.finish();
+            byte[] out = new byte[reserved + length];
+            int size = reserved;
+            while (!deflater.finished()) {
+                if (size == out.length) {
+                    incompressible.incrementAndGet();
+                    return null;
+                }
+                size += deflater.deflate(out, size, out.length - size);
+            }
+            if (size == out.length) {
+                incompressible.incrementAndGet();
+                return null;
+            }
+            compressed.incrementAndGet();
+            bytesIn.addAndGet(length);
+            bytesOut.addAndGet(size - reserved);
+            return Arrays.copyOf(out, size);
+        } finally {
+            compressionNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return the decompressed content of the range of the array
+     */
+    public byte[] decompress(byte[] data, int offset, int length, int originalLength) throws IOException {
+        long start = System.nanoTime();
+        try {
+            Inflater inflater = inflaters.get();
+            inflater.reset();
+            inflater.setInput(data, offset, length);
+            byte[] out = new byte[originalLength];
+            int size = 0;
+            while (size < originalLength) {
+                int inflated = inflater.inflate(out, size, originalLength - size);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Compressed value is truncated");
+                }
+                size += inflated;
+            }
+            decompressed.incrementAndGet();
+            return out;
+        } catch (DataFormatException e) {
+            throw new IOException("Compressed value is corrupt", e);
+        } finally {
+            decompressionNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public long getCompressed() {
+        return compressed.get();
+    }
+
+    @Override
+    public long getIncompressible() {
+        return incompressible.get();
+    }
+
+    @Override
+    public long getDecompressed() {
+        return decompressed.get();
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    @Override
+    public double getRatio() {
+        long in = bytesIn.get();
+        return in == 0 ? 1 : (double) bytesOut.get() / in;
+    }
+
+    @Override
+    public long getCompressionTime() {
+        return TimeUnit.NANOSECONDS.toMillis(compressionNanos.get());
+    }
+
+    @Override
+    public long getDecompressionTime() {
+        return TimeUnit.NANOSECONDS.toMillis(decompressionNanos.get());
+    }
+}
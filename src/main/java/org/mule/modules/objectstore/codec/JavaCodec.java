@@ -0,0 +1,52 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.codec;
+
+import org.apache.commons.lang.SerializationException;
+import org.mule.api.MuleContext;
+import org.mule.util.SerializationUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Standard Java serialization. Classes are resolved with the given class loader, so application classes can be decoded, and decoded Mule events and
+ * messages are initialised with the Mule context if one is given.
+ */
+public class JavaCodec implements ValueCodec {
+
+    private final ClassLoader classLoader;
+    private final MuleContext muleContext;
+
+    public JavaCodec(ClassLoader classLoader) {
+        this(classLoader, null);
+    }
+
+    public JavaCodec(ClassLoader classLoader, MuleContext muleContext) {
+        this.classLoader = classLoader;
+        this.muleContext = muleContext;
+    }
+
+    @Override
+    public byte[] encode(Serializable value) throws IOException {
+        try {
+            return SerializationUtils.serialize(value);
+        } catch (SerializationException e) {
+            throw new IOException("Could not serialize " + value.getClass().getName(), e);
+        }
+    }
+
+    @Override
+    public Serializable decode(byte[] data, int offset, int length) throws IOException {
+        try {
+            return (Serializable) SerializationUtils.deserialize(new ByteArrayInputStream(data, offset, length), classLoader, muleContext);
+        } catch (SerializationException e) {
+            throw new IOException("Could not deserialize the value", e);
+        }
+    }
+}
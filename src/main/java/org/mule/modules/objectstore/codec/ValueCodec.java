@@ -0,0 +1,23 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.codec;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Encodes the values to byte arrays before they are handed to the object store, and decodes them back.
+ */
+public interface ValueCodec {
+
+    byte[] encode(Serializable value) throws IOException;
+
+    /**
+     * @return the value encoded in the given range of the array
+     */
+    Serializable decode(byte[] data, int offset, int length) throws IOException;
+}
@@ -0,0 +1,99 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.compute;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs at most one computation per key at a time. Callers asking for a key that is already being computed wait for that computation and get its
+ * outcome, value or failure, instead of running their own. Computations are coalesced within this JVM only.
+ */
+public class SingleFlight implements SingleFlightMXBean {
+
+    private final ConcurrentMap<String, FutureTask<Object>> flights = new ConcurrentHashMap<String, FutureTask<Object>>();
+    private final AtomicLong computed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong staleServed = new AtomicLong();
+
+    /**
+     * Runs the computation in the calling thread, unless the key is already being computed, in which case its outcome is awaited.
+     *
+     * @param timeout
+     *            milliseconds to wait for the computation of another caller
+     * @throws ExecutionException
+     *             wrapping the failure of the computation
+     * @throws TimeoutException
+     *             if the computation of another caller did not complete within the timeout
+     */
+    public Object execute(String key, Callable<Object> computation, long timeout) throws ExecutionException, InterruptedException, TimeoutException {
+        FutureTask<Object> flight = new FutureTask<Object>(computation);
+        FutureTask<Object> running = flights.putIfAbsent(key, flight);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            return running.get(timeout, TimeUnit.MILLISECONDS);
+        }
+        run(key, flight);
+        return flight.get();
+    }
+
+    /**
+     * Runs the computation in the calling thread, unless the key is already being computed, in which case nothing is done.
+     *
+     * @return the completed computation, or null if the key was already being computed
+     */
+    public FutureTask<Object> executeIfIdle(String key, Callable<Object> computation) {
+        FutureTask<Object> flight = new FutureTask<Object>(computation);
+        if (flights.putIfAbsent(key, flight) != null) {
+            return null;
+        }
+        run(key, flight);
+        return flight;
+    }
+
+    /**
+     * Counts a stale value returned to a caller.
+     */
+    public void staleServed() {
+        staleServed.incrementAndGet();
+    }
+
+    @Override
+    public int getInFlight() {
+        return flights.size();
+    }
+
+    @Override
+    public long getComputed() {
+        return computed.get();
+    }
+
+    @Override
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    @Override
+    public long getStaleServed() {
+        return staleServed.get();
+    }
+
+    private void run(String key, FutureTask<Object> flight) {
+        try {
+            flight.run();
+            computed.incrementAndGet();
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+}
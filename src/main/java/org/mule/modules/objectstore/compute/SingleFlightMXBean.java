@@ -0,0 +1,33 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.compute;
+
+/**
+ * JMX view of the statistics of a {@link SingleFlight}.
+ */
+public interface SingleFlightMXBean {
+
+    /**
+     * @return the number of computations running
+     */
+    int getInFlight();
+
+    /**
+     * @return the number of computations run
+     */
+    long getComputed();
+
+    /**
+     * @return the number of callers that waited for the computation of another caller instead of running their own
+     */
+    long getCoalesced();
+
+    /**
+     * @return the number of stale values returned while they were being computed again or because computing them again failed
+     */
+    long getStaleServed();
+}
@@ -0,0 +1,119 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.counter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A lock-free 64 bit counter.
+ * <p/>
+ * {@link #addAndGet(long)} updates a single cell so it can return the exact new value. {@link #add(long)} spreads the updates over a set of striped cells
+ * indexed by thread, the same way a LongAdder does, so hot counters updated by many threads do not contend on a single CAS. The stripes are only
+ * allocated the first time {@link #add(long)} is used.
+ */
+class Counter {
+
+    // Cells are 8 longs apart so two stripes never share a cache line
+    private static final int PADDING = 8;
+    private static final int STRIPES = stripes();
+
+    private final AtomicLong base;
+    private final AtomicReference<AtomicLongArray> cells = new AtomicReference<AtomicLongArray>();
+    private volatile long flushed;
+    private volatile boolean stored;
+    private volatile boolean retired;
+
+    /**
+     * @param stored
+     *            whether the initial value is already in the object store
+     */
+    Counter(long initial, boolean stored) {
+        base = new AtomicLong(initial);
+        flushed = initial;
+        this.stored = stored;
+    }
+
+    /**
+     * Adds the delta and returns the new value. Deltas concurrently added through {@link #add(long)} may or may not be reflected in the result.
+     */
+    long addAndGet(long delta) {
+        long value = base.addAndGet(delta);
+        AtomicLongArray striped = cells.get();
+        return striped == null ? value : value + sum(striped);
+    }
+
+    /**
+     * Adds the delta without returning the new value.
+     */
+    void add(long delta) {
+        AtomicLongArray striped = cells.get();
+        if (striped == null) {
+            cells.compareAndSet(null, new AtomicLongArray(STRIPES * PADDING));
+            striped = cells.get();
+        }
+        striped.addAndGet(stripe() * PADDING, delta);
+    }
+
+    long get() {
+        AtomicLongArray striped = cells.get();
+        return striped == null ? base.get() : base.get() + sum(striped);
+    }
+
+    /**
+     * @return true if the counter changed since the last time it was marked as flushed
+     */
+    boolean isDirty() {
+        return !stored || get() != flushed;
+    }
+
+    void flushed(long value) {
+        flushed = value;
+        stored = true;
+    }
+
+    /**
+     * @return the value last loaded from or written to the object store, or null if the counter was never stored
+     */
+    Long lastFlushed() {
+        return stored ? flushed : null;
+    }
+
+    /**
+     * Marks the counter as dropped from its registry, it is no longer written back.
+     */
+    void retire() {
+        retired = true;
+    }
+
+    boolean isRetired() {
+        return retired;
+    }
+
+    private static long sum(AtomicLongArray striped) {
+        long sum = 0;
+        for (int i = 0; i < striped.length(); i += PADDING) {
+            sum += striped.get(i);
+        }
+        return sum;
+    }
+
+    private static int stripe() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    private static int stripes() {
+        int stripes = 1;
+        while (stripes < Runtime.getRuntime().availableProcessors()) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.counter;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.util.concurrent.DaemonThreadFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Keeps the counters of a connector config in memory and writes them back to the object store.
+ * <p/>
+ * Counters are loaded from the object store the first time they are used and from then on they are only updated in memory, without locks. Changed
+ * counters are written back every flush interval, when {@link #flush()} is called and when the registry is disposed, so a persistent store loses at most
+ * one flush interval of updates on a crash.
+ * <p/>
+ * A counter is written back holding the lock of its key and only if the key still holds the value last loaded or written, so a value stored over the
+ * counter is never replaced by the counter. Writers of the key call {@link #forget(String)} once their write succeeded.
+ */
+public class CounterRegistry {
+
+    /**
+     * Where the counters are loaded from and written back to.
+     */
+    public interface CounterStorage {
+
+        Lock lockFor(String key);
+
+        /**
+         * @return the stored value of the counter, or null if it was never stored
+         */
+        Long load(String key) throws ObjectStoreException;
+
+        /**
+         * Writes the value of the counter, called holding the lock of the key.
+         *
+         * @param previous
+         *            the value last loaded or written, null if the counter was never stored
+         * @return false if the key no longer holds the previous value, nothing is written then
+         */
+        boolean save(String key, Long previous, long value) throws ObjectStoreException;
+    }
+
+    private static final Log logger = LogFactory.getLog(CounterRegistry.class);
+
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+    private final CounterStorage storage;
+    private final long flushInterval;
+    private final String name;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param flushInterval
+     *            milliseconds between two automatic flushes, 0 or less to flush only on demand
+     */
+    public CounterRegistry(String name, CounterStorage storage, long flushInterval) {
+        this.name = name;
+        this.storage = storage;
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * Adds the delta to the counter and returns the new value.
+     */
+    public long addAndGet(String key, long delta, long initialValue) throws ObjectStoreException {
+        return counter(key, initialValue).addAndGet(delta);
+    }
+
+    /**
+     * Adds the delta to the counter spreading the update over striped cells, for counters updated by many threads at once.
+     */
+    public void add(String key, long delta, long initialValue) throws ObjectStoreException {
+        counter(key, initialValue).add(delta);
+    }
+
+    /**
+     * @return the current value of the counter, or the initial value if it does not exist
+     */
+    public long get(String key, long initialValue) throws ObjectStoreException {
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            return counter.get();
+        }
+        Long stored = storage.load(key);
+        return stored != null ? stored : initialValue;
+    }
+
+    /**
+     * Drops the in-memory state of a counter, the next update loads it again from the object store. Pending updates are lost.
+     */
+    public void forget(String key) {
+        Counter counter = counters.remove(key);
+        if (counter != null) {
+            counter.retire();
+        }
+    }
+
+    /**
+     * Writes every counter changed since the last flush to the object store. Counters whose key was changed by someone else are dropped instead.
+     */
+    public void flush() throws ObjectStoreException {
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            String key = entry.getKey();
+            Counter counter = entry.getValue();
+            Lock lock = storage.lockFor(key);
+            lock.lock();
+            try {
+                if (counter.isRetired() || !counter.isDirty()) {
+                    continue;
+                }
+                long value = counter.get();
+                if (storage.save(key, counter.lastFlushed(), value)) {
+                    counter.flushed(value);
+                } else if (counters.remove(key, counter)) {
+                    counter.retire();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    public synchronized void dispose() throws ObjectStoreException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+        flush();
+    }
+
+    private Counter counter(String key, long initialValue) throws ObjectStoreException {
+        Counter counter = counters.get(key);
+        if (counter == null) {
+            Long stored = storage.load(key);
+            Counter created = stored != null ? new Counter(stored, true) : new Counter(initialValue, false);
+            counter = counters.putIfAbsent(key, created);
+            if (counter == null) {
+                counter = created;
+                startFlushing();
+            }
+        }
+        return counter;
+    }
+
+    private synchronized void startFlushing() {
+        if (scheduler != null || flushInterval <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(name + ".counters.flush"));
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    flush();
+                } catch (Exception e) {
+                    logger.warn("Could not flush the counters of " + name, e);
+                }
+            }
+        }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+}
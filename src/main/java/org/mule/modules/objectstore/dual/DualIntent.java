@@ -0,0 +1,62 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.dual;
+
+import java.io.Serializable;
+
+/**
+ * A change of a key and its reverse mapping, logged before the change is written so that a change interrupted half way can be settled.
+ */
+public class DualIntent implements Serializable {
+
+    private static final long serialVersionUID = 6023489735820451879L;
+
+    /**
+     * How an interrupted change is settled.
+     */
+    public enum Kind {
+        /**
+         * Storing a pair whose keys had no value, settled by removing whatever was written.
+         */
+        STORE,
+        /**
+         * Overwriting a pair, settled by writing both mappings again.
+         */
+        OVERWRITE,
+        /**
+         * Removing a pair, settled by removing both mappings again.
+         */
+        REMOVE
+    }
+
+    private final Kind kind;
+    private final Serializable key;
+    private final Serializable value;
+
+    public DualIntent(Kind kind, Serializable key, Serializable value) {
+        this.kind = kind;
+        this.key = key;
+        this.value = value;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Serializable getKey() {
+        return key;
+    }
+
+    public Serializable getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + key + " <-> " + value;
+    }
+}
@@ -0,0 +1,230 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.dual;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mule.api.store.ListableObjectStore;
+import org.mule.api.store.ObjectDoesNotExistException;
+import org.mule.api.store.ObjectStore;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.modules.objectstore.dual.DualIntent.Kind;
+import org.mule.modules.objectstore.store.BatchObjectStore;
+import org.mule.modules.objectstore.store.ObjectStores;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Keys stored together with their reverse mapping, the value stored as a key whose value is the key.
+ * <p/>
+ * Both mappings are written after logging the change in a separate intent store, and the intent is removed once both are written. A change that fails
+ * half way is settled at once from its intent: a pair stored over missing keys is removed again, an overwrite or a removal is completed. Intents left
+ * by a crash are settled the same way by {@link #recover(PairLocks)}, so a pair is never left with only one of its mappings. Stores processing batches
+ * receive both mappings in a single call.
+ * <p/>
+ * Every method but {@link #recover(PairLocks)}, which takes the locks itself, is executed inside the lock of both the key and the value.
+ */
+public class DualMappings {
+
+    /**
+     * Overwrites a key of the store the way the connector does.
+     */
+    public interface Overwriter {
+
+        /**
+         * @return the previous value of the key, or null if it had none
+         */
+        Serializable overwrite(Serializable key, Serializable value) throws ObjectStoreException;
+    }
+
+    /**
+     * Gives the lock of both the key and the value of a pair.
+     */
+    public interface PairLocks {
+
+        Lock lockFor(Serializable key, Serializable value);
+    }
+
+    private static final Log logger = LogFactory.getLog(DualMappings.class);
+
+    private final ObjectStore<Serializable> store;
+    private final ObjectStore<Serializable> intents;
+    private final boolean batch;
+    private final Overwriter overwriter;
+
+    public DualMappings(ObjectStore<Serializable> store, ObjectStore<Serializable> intents, boolean batch, Overwriter overwriter) {
+        this.store = store;
+        this.intents = intents;
+        this.batch = batch;
+        this.overwriter = overwriter;
+    }
+
+    /**
+     * Stores the value under the key and the key under the value.
+     *
+     * @param overwrite
+     *            true to replace existing values, otherwise nothing is written if either the key or the value has one
+     * @throws org.mule.api.store.ObjectAlreadyExistsException
+     *             if the key or the value already has a value and overwrite is false
+     */
+    public void store(Serializable key, Serializable value, boolean overwrite) throws ObjectStoreException {
+        if (!overwrite) {
+            if (store.contains(key)) {
+                throw ObjectStores.alreadyExists(key);
+            }
+            if (store.contains(value)) {
+                throw ObjectStores.alreadyExists(value);
+            }
+        }
+        DualIntent intent = new DualIntent(overwrite ? Kind.OVERWRITE : Kind.STORE, key, value);
+        log(intent);
+        try {
+            write(key, value, overwrite);
+        } catch (ObjectStoreException e) {
+            settleQuietly(intent);
+            throw e;
+        } catch (RuntimeException e) {
+            settleQuietly(intent);
+            throw e;
+        }
+        intents.remove(key);
+    }
+
+    /**
+     * Removes the key, and its reverse mapping if the value is still mapped to the key.
+     *
+     * @param value
+     *            the current value of the key
+     */
+    public void remove(Serializable key, Serializable value) throws ObjectStoreException {
+        DualIntent intent = new DualIntent(Kind.REMOVE, key, value);
+        log(intent);
+        try {
+            settle(intent);
+        } catch (ObjectStoreException e) {
+            settleQuietly(intent);
+            throw e;
+        } catch (RuntimeException e) {
+            settleQuietly(intent);
+            throw e;
+        }
+        intents.remove(key);
+    }
+
+    /**
+     * Settles the changes interrupted by a crash, each one inside the lock of its key and value.
+     *
+     * @return the number of changes settled
+     */
+    @SuppressWarnings("unchecked")
+    public int recover(PairLocks locks) throws ObjectStoreException {
+        if (!(intents instanceof ListableObjectStore)) {
+            return 0;
+        }
+        int settled = 0;
+        for (Serializable id : ((ListableObjectStore<Serializable>) intents).allKeys()) {
+            Serializable intent = ObjectStores.lookup(intents, id);
+            if (!(intent instanceof DualIntent)) {
+                ObjectStores.removeIfPresent(intents, id);
+                continue;
+            }
+            DualIntent interrupted = (DualIntent) intent;
+            Lock lock = locks.lockFor(interrupted.getKey(), interrupted.getValue());
+            lock.lock();
+            try {
+                // Unless superseded meanwhile by a change of the key, which settles its own intent
+                if (isSame(interrupted, ObjectStores.lookup(intents, id))) {
+                    logger.info("Settling the interrupted change " + interrupted);
+                    settle(interrupted);
+                    ObjectStores.removeIfPresent(intents, id);
+                    settled++;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return settled;
+    }
+
+    private void log(DualIntent intent) throws ObjectStoreException {
+        // An intent left by a change that could not be settled is superseded
+        ObjectStores.removeIfPresent(intents, intent.getKey());
+        intents.store(intent.getKey(), intent);
+    }
+
+    private void write(Serializable key, Serializable value, boolean overwrite) throws ObjectStoreException {
+        if (batch) {
+            Map<Serializable, Serializable> entries = new LinkedHashMap<Serializable, Serializable>();
+            entries.put(key, value);
+            entries.put(value, key);
+            Map<Serializable, ObjectStoreException> failures = ((BatchObjectStore<Serializable>) store).storeAll(entries, overwrite);
+            if (!failures.isEmpty()) {
+                throw failures.values().iterator().next();
+            }
+        } else if (overwrite) {
+            overwriter.overwrite(key, value);
+            overwriter.overwrite(value, key);
+        } else {
+            store.store(key, value);
+            store.store(value, key);
+        }
+    }
+
+    private void settle(DualIntent intent) throws ObjectStoreException {
+        Serializable key = intent.getKey();
+        Serializable value = intent.getValue();
+        switch (intent.getKind()) {
+        case OVERWRITE:
+            write(key, value, true);
+            break;
+        case STORE:
+        case REMOVE:
+            // Only the mappings still pointing at each other belong to the pair
+            boolean forward = ObjectStores.sameValue(value, ObjectStores.lookup(store, key));
+            boolean reverse = ObjectStores.sameValue(key, ObjectStores.lookup(store, value));
+            if (batch && forward && reverse) {
+                for (ObjectStoreException failure : ((BatchObjectStore<Serializable>) store).removeAll(Arrays.asList(key, value)).values()) {
+                    if (!(failure instanceof ObjectDoesNotExistException)) {
+                        throw failure;
+                    }
+                }
+            } else {
+                if (forward) {
+                    ObjectStores.removeIfPresent(store, key);
+                }
+                if (reverse) {
+                    ObjectStores.removeIfPresent(store, value);
+                }
+            }
+            break;
+        default:
+            throw new IllegalArgumentException("Unsupported intent " + intent.getKind());
+        }
+    }
+
+    private static boolean isSame(DualIntent intent, Serializable current) {
+        if (!(current instanceof DualIntent)) {
+            return false;
+        }
+        DualIntent other = (DualIntent) current;
+        return intent.getKind() == other.getKind() && ObjectStores.sameValue(intent.getKey(), other.getKey())
+                && ObjectStores.sameValue(intent.getValue(), other.getValue());
+    }
+
+    private void settleQuietly(DualIntent intent) {
+        try {
+            settle(intent);
+            intents.remove(intent.getKey());
+        } catch (Exception e) {
+            logger.warn("Could not settle the interrupted change " + intent + ", it will be settled when the connector starts", e);
+        }
+    }
+}
@@ -0,0 +1,765 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.engine;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mule.api.store.ListableObjectStore;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.api.store.ObjectStoreNotAvaliableException;
+import org.mule.config.i18n.MessageFactory;
+import org.mule.modules.objectstore.codec.CompactCodec;
+import org.mule.modules.objectstore.codec.JavaCodec;
+import org.mule.modules.objectstore.store.AtomicObjectStore;
+import org.mule.modules.objectstore.store.BatchObjectStore;
+import org.mule.modules.objectstore.store.KeyPage;
+import org.mule.modules.objectstore.store.KeyPages;
+import org.mule.modules.objectstore.store.LookupObjectStore;
+import org.mule.modules.objectstore.store.ObjectStores;
+import org.mule.modules.objectstore.store.PagedObjectStore;
+import org.mule.util.concurrent.DaemonThreadFactory;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent object store keeping every write as a record appended to memory-mapped segment files, with an in-memory index from key to record.
+ * <p/>
+ * A record is the length of its body, the CRC32 of the body and the body: the record type, the length of the key, the key and the value. The length is
+ * written last, so an interrupted write is never read back. Opening the store replays the segments in order to rebuild the index, stopping at the first
+ * incomplete or corrupt record.
+ * <p/>
+ * Writes are serialized, reads do not lock. Segments where less than half the bytes belong to live records are compacted in the background: their live
+ * records are appended again and the segment file is unmapped and deleted once no reader uses it. Mapped segments are flushed to disk when they fill
+ * up, on every compaction run and when the store is closed; writes survive a crash of the JVM, but an operating system crash may lose the writes
+ * since the last flush.
+ */
+public class LogObjectStore implements ListableObjectStore<Serializable>, AtomicObjectStore<Serializable>, BatchObjectStore<Serializable>,
+        LookupObjectStore<Serializable>, PagedObjectStore<Serializable> {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final Log logger = LogFactory.getLog(LogObjectStore.class);
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final int RECORD_HEADER = 8;
+    private static final int BODY_HEADER = 5;
+    private static final double COMPACTION_THRESHOLD = 0.5;
+
+    private final File directory;
+    private final int segmentSize;
+    private final long compactionInterval;
+    private final CompactCodec codec;
+    private final ConcurrentMap<Serializable, Location> index = new ConcurrentHashMap<Serializable, Location>();
+    private final Object writeLock = new Object();
+    private final Object compactionLock = new Object();
+    private final List<Segment> segments = new ArrayList<Segment>();
+    private volatile Segment active;
+    private ScheduledExecutorService compactor;
+
+    /**
+     * @param segmentSize
+     *            size in bytes of the segment files, zero or less for the default
+     * @param compactionInterval
+     *            milliseconds between two compaction runs, zero or less to never compact
+     */
+    public LogObjectStore(File directory, int segmentSize, long compactionInterval, ClassLoader classLoader) {
+        this.directory = directory;
+        this.segmentSize = segmentSize > 0 ? segmentSize : DEFAULT_SEGMENT_SIZE;
+        this.compactionInterval = compactionInterval;
+        this.codec = new CompactCodec(new JavaCodec(classLoader));
+    }
+
+    /**
+     * Rebuilds the index from the segment files and starts the background compaction.
+     */
+    @Override
+    public void open() throws ObjectStoreException {
+        synchronized (writeLock) {
+            if (active != null) {
+                return;
+            }
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new ObjectStoreNotAvaliableException(MessageFactory.createStaticMessage("Could not create the directory " + directory));
+            }
+            try {
+                recover();
+            } catch (IOException e) {
+                throw new ObjectStoreNotAvaliableException(MessageFactory.createStaticMessage("Could not open the log in " + directory), e);
+            }
+        }
+        synchronized (this) {
+            if (compactor == null && compactionInterval > 0) {
+                compactor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("objectstore.log.compaction"));
+                compactor.scheduleWithFixedDelay(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            compact();
+                        } catch (Exception e) {
+                            logger.warn("Could not compact the log in " + directory, e);
+                        }
+                    }
+                }, compactionInterval, compactionInterval, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Stops the compaction and flushes the segments to disk. The store can be opened again.
+     */
+    @Override
+    public void close() throws ObjectStoreException {
+        synchronized (this) {
+            if (compactor != null) {
+                compactor.shutdownNow();
+                compactor = null;
+            }
+        }
+        synchronized (writeLock) {
+            // Readers find no location before the segments are released
+            index.clear();
+            active = null;
+            for (Segment segment : segments) {
+                segment.force();
+                segment.close();
+            }
+            segments.clear();
+        }
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return true;
+    }
+
+    @Override
+    public boolean contains(Serializable key) throws ObjectStoreException {
+        checkOpen();
+        return index.containsKey(key);
+    }
+
+    @Override
+    public Serializable retrieve(Serializable key) throws ObjectStoreException {
+        Serializable value = lookup(key);
+        if (value == null) {
+            throw ObjectStores.doesNotExist(key);
+        }
+        return value;
+    }
+
+    @Override
+    public Serializable lookup(Serializable key) throws ObjectStoreException {
+        checkOpen();
+        return read(key);
+    }
+
+    @Override
+    public void store(Serializable key, Serializable value) throws ObjectStoreException {
+        byte[] record = record(PUT, key, value);
+        synchronized (writeLock) {
+            checkOpen();
+            if (index.containsKey(key)) {
+                throw ObjectStores.alreadyExists(key);
+            }
+            put(key, record);
+        }
+    }
+
+    @Override
+    public Serializable remove(Serializable key) throws ObjectStoreException {
+        Serializable value = removeIfPresent(key);
+        if (value == null) {
+            throw ObjectStores.doesNotExist(key);
+        }
+        return value;
+    }
+
+    @Override
+    public Serializable removeIfPresent(Serializable key) throws ObjectStoreException {
+        byte[] record = record(DELETE, key, null);
+        synchronized (writeLock) {
+            checkOpen();
+            Location location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            Serializable value = readValue(location);
+            delete(key, record);
+            return value;
+        }
+    }
+
+    @Override
+    public Serializable putIfAbsent(Serializable key, Serializable value) throws ObjectStoreException {
+        byte[] record = record(PUT, key, value);
+        synchronized (writeLock) {
+            checkOpen();
+            Location location = index.get(key);
+            if (location != null) {
+                return readValue(location);
+            }
+            put(key, record);
+            return null;
+        }
+    }
+
+    @Override
+    public boolean replace(Serializable key, Serializable expected, Serializable value) throws ObjectStoreException {
+        byte[] record = record(PUT, key, value);
+        synchronized (writeLock) {
+            checkOpen();
+            Location location = index.get(key);
+            if (location == null || !ObjectStores.sameValue(expected, readValue(location))) {
+                return false;
+            }
+            put(key, record);
+            return true;
+        }
+    }
+
+    @Override
+    public Serializable put(Serializable key, Serializable value) throws ObjectStoreException {
+        byte[] record = record(PUT, key, value);
+        synchronized (writeLock) {
+            checkOpen();
+            Location location = index.get(key);
+            Serializable previous = location != null ? readValue(location) : null;
+            put(key, record);
+            return previous;
+        }
+    }
+
+    @Override
+    public Map<Serializable, ObjectStoreException> storeAll(Map<Serializable, Serializable> entries, boolean overwrite) throws ObjectStoreException {
+        Map<Serializable, ObjectStoreException> failures = new HashMap<Serializable, ObjectStoreException>();
+        Map<Serializable, byte[]> records = new HashMap<Serializable, byte[]>(entries.size() * 2);
+        for (Map.Entry<Serializable, Serializable> entry : entries.entrySet()) {
+            try {
+                records.put(entry.getKey(), record(PUT, entry.getKey(), entry.getValue()));
+            } catch (ObjectStoreException e) {
+                failures.put(entry.getKey(), e);
+            }
+        }
+        synchronized (writeLock) {
+            checkOpen();
+            for (Map.Entry<Serializable, byte[]> record : records.entrySet()) {
+                if (!overwrite && index.containsKey(record.getKey())) {
+                    failures.put(record.getKey(), ObjectStores.alreadyExists(record.getKey()));
+                } else {
+                    put(record.getKey(), record.getValue());
+                }
+            }
+        }
+        return failures;
+    }
+
+    @Override
+    public Map<Serializable, Serializable> retrieveAll(Collection<? extends Serializable> keys) throws ObjectStoreException {
+        checkOpen();
+        Map<Serializable, Serializable> values = new HashMap<Serializable, Serializable>();
+        for (Serializable key : keys) {
+            Serializable value = read(key);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public Map<Serializable, ObjectStoreException> removeAll(Collection<? extends Serializable> keys) throws ObjectStoreException {
+        Map<Serializable, ObjectStoreException> failures = new HashMap<Serializable, ObjectStoreException>();
+        synchronized (writeLock) {
+            checkOpen();
+            for (Serializable key : keys) {
+                if (!index.containsKey(key)) {
+                    failures.put(key, ObjectStores.doesNotExist(key));
+                } else {
+                    try {
+                        delete(key, record(DELETE, key, null));
+                    } catch (ObjectStoreException e) {
+                        failures.put(key, e);
+                    }
+                }
+            }
+        }
+        return failures;
+    }
+
+    @Override
+    public List<Serializable> allKeys() throws ObjectStoreException {
+        checkOpen();
+        return new ArrayList<Serializable>(index.keySet());
+    }
+
+    /**
+     * Walks the records of the segments in log order, the cursor being the segment and the position of the next record, and returns the keys of the
+     * records still holding the value of their key. A key overwritten or moved by a compaction during the walk may be returned again.
+     */
+    @Override
+    public KeyPage keys(String cursor, int pageSize) throws ObjectStoreException {
+        int segmentId = 0;
+        int position = 0;
+        if (cursor != null) {
+            int separator = cursor.indexOf(':');
+            segmentId = Integer.parseInt(cursor.substring(0, separator));
+            position = Integer.parseInt(cursor.substring(separator + 1));
+        }
+        List<String> keys = new ArrayList<String>(pageSize);
+        // Records appended while walking, also the ones moved by a compaction, are walked before reporting the last page
+        while (true) {
+            List<Segment> walked = new ArrayList<Segment>();
+            List<Integer> ends = new ArrayList<Integer>();
+            synchronized (writeLock) {
+                checkOpen();
+                for (Segment segment : segments) {
+                    if (segment.id > segmentId || (segment.id == segmentId && segment.writePosition > position)) {
+                        walked.add(segment);
+                        ends.add(segment.writePosition);
+                    }
+                }
+            }
+            if (walked.isEmpty()) {
+                break;
+            }
+            for (int i = 0; i < walked.size(); i++) {
+                Segment segment = walked.get(i);
+                int offset = segment.id == segmentId ? position : 0;
+                int end = ends.get(i);
+                // A segment compacted meanwhile has its live records appended again
+                if (segment.acquire()) {
+                    try {
+                        // The records before the end taken under the lock are complete, so they are read without it
+                        for (; offset < end; offset += RECORD_HEADER + segment.getInt(offset)) {
+                            if (keys.size() == pageSize) {
+                                return new KeyPage(keys, segment.id + ":" + offset);
+                            }
+                            if (segment.get(offset + RECORD_HEADER) == PUT) {
+                                Serializable key = readKey(segment, offset);
+                                Location location = index.get(key);
+                                if (location != null && location.segment == segment && location.offset == offset) {
+                                    keys.add(KeyPages.toKey(this, key));
+                                }
+                            }
+                        }
+                    } finally {
+                        segment.release();
+                    }
+                }
+                segmentId = segment.id;
+                position = end;
+            }
+        }
+        return new KeyPage(keys, null);
+    }
+
+    /**
+     * Deletes every segment file and starts an empty log. A segment whose file cannot be deleted is kept, and its keys are deleted in the new log so
+     * they do not come back when it is replayed.
+     */
+    @Override
+    public void clear() throws ObjectStoreException {
+        synchronized (writeLock) {
+            checkOpen();
+            int nextId = active.id + 1;
+            index.clear();
+            List<Segment> kept = new ArrayList<Segment>();
+            for (Segment segment : segments) {
+                if (!segment.delete()) {
+                    kept.add(segment);
+                }
+            }
+            segments.retainAll(kept);
+            try {
+                active = newSegment(nextId, 0);
+            } catch (IOException e) {
+                active = null;
+                throw new ObjectStoreNotAvaliableException(MessageFactory.createStaticMessage("Could not create a segment in " + directory), e);
+            }
+            for (Segment segment : kept) {
+                logger.warn("Could not delete the segment " + segment + " in " + directory + ", its keys are deleted instead");
+                segment.liveBytes = 0;
+                deleteKeys(segment);
+            }
+        }
+    }
+
+    /**
+     * @return the number of segment files
+     */
+    public int getSegmentCount() {
+        synchronized (writeLock) {
+            return segments.size();
+        }
+    }
+
+    /**
+     * Compacts the sealed segments where less than half the bytes belong to live records, and flushes the active segment to disk.
+     * <p/>
+     * Deletion records count as live while an older segment exists, as they may hide a value stored there.
+     */
+    public void compact() throws ObjectStoreException {
+        synchronized (compactionLock) {
+            List<Segment> candidates = new ArrayList<Segment>();
+            synchronized (writeLock) {
+                if (active == null) {
+                    return;
+                }
+                active.force();
+                for (Segment segment : segments) {
+                    long live = segment.liveBytes + (hasOlderSegment(segment) ? segment.tombstoneBytes : 0);
+                    if (segment != active && live < segment.writePosition * COMPACTION_THRESHOLD) {
+                        candidates.add(segment);
+                    }
+                }
+            }
+            for (Segment segment : candidates) {
+                compact(segment);
+            }
+        }
+    }
+
+    private void compact(Segment segment) throws ObjectStoreException {
+        if (!segment.acquire()) {
+            // Deleted by clear
+            return;
+        }
+        try {
+            // Moved already if its deletion failed in an earlier run
+            if (!segment.compacted) {
+                moveLiveRecords(segment);
+                segment.compacted = true;
+            }
+        } finally {
+            segment.release();
+        }
+        synchronized (writeLock) {
+            // Kept while its file exists, so older deletion records are still kept and the segment is compacted again
+            if (segments.contains(segment)) {
+                if (segment.delete()) {
+                    segments.remove(segment);
+                } else {
+                    logger.warn("Could not delete the compacted segment " + segment + " in " + directory
+                            + ", deleting it again on the next compaction");
+                }
+            }
+        }
+    }
+
+    private void moveLiveRecords(Segment segment) throws ObjectStoreException {
+        int position = 0;
+        // The segment is sealed, so its records can be read without the lock
+        while (position < segment.writePosition) {
+            int length = RECORD_HEADER + segment.getInt(position);
+            byte type = segment.get(position + RECORD_HEADER);
+            Serializable key = readKey(segment, position);
+            synchronized (writeLock) {
+                if (active == null) {
+                    return;
+                }
+                if (type == PUT) {
+                    Location location = index.get(key);
+                    if (location != null && location.segment == segment && location.offset == position) {
+                        put(key, copy(segment, position, length));
+                    }
+                } else if (!index.containsKey(key) && hasOlderSegment(segment)) {
+                    // The deletion still hides a value in an older segment
+                    Location location = append(copy(segment, position, length));
+                    location.segment.tombstoneBytes += location.length;
+                }
+            }
+            position += length;
+        }
+    }
+
+    private void recover() throws IOException, ObjectStoreException {
+        File[] deleted = directory.listFiles(new FileFilter() {
+
+            @Override
+            public boolean accept(File file) {
+                return Segment.isDeleted(file);
+            }
+        });
+        for (File file : deleted) {
+            if (!file.delete()) {
+                logger.warn("Could not delete the segment " + file);
+            }
+        }
+        File[] files = directory.listFiles(new FileFilter() {
+
+            @Override
+            public boolean accept(File file) {
+                return Segment.isSegment(file);
+            }
+        });
+        Arrays.sort(files, new Comparator<File>() {
+
+            @Override
+            public int compare(File a, File b) {
+                int idA = Segment.idOf(a);
+                int idB = Segment.idOf(b);
+                return idA < idB ? -1 : idA == idB ? 0 : 1;
+            }
+        });
+        index.clear();
+        segments.clear();
+        for (int i = 0; i < files.length; i++) {
+            Segment segment = Segment.open(files[i]);
+            segments.add(segment);
+            int position = replay(segment);
+            segment.writePosition = position;
+            if (position + RECORD_HEADER <= segment.capacity() && segment.getInt(position) != 0) {
+                logger.warn("Discarding an incomplete record at " + position + " of " + segment + " in " + directory);
+                segment.clear(position);
+            }
+        }
+        if (segments.isEmpty()) {
+            active = newSegment(0, 0);
+        } else {
+            active = segments.get(segments.size() - 1);
+        }
+    }
+
+    /**
+     * Applies the records of the segment to the index.
+     *
+     * @return the position following the last valid record
+     */
+    private int replay(Segment segment) throws ObjectStoreException {
+        int position = 0;
+        CRC32 crc = new CRC32();
+        while (position + RECORD_HEADER + BODY_HEADER <= segment.capacity()) {
+            int bodyLength = segment.getInt(position);
+            if (bodyLength < BODY_HEADER || bodyLength > segment.capacity() - position - RECORD_HEADER) {
+                break;
+            }
+            byte[] body = new byte[bodyLength];
+            segment.read(position + RECORD_HEADER, body);
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != segment.getInt(position + 4)) {
+                break;
+            }
+            Serializable key = readKey(segment, position);
+            Location previous;
+            if (body[0] == PUT) {
+                Location location = new Location(segment, position, RECORD_HEADER + bodyLength);
+                segment.liveBytes += location.length;
+                previous = index.put(key, location);
+            } else {
+                segment.tombstoneBytes += RECORD_HEADER + bodyLength;
+                previous = index.remove(key);
+            }
+            if (previous != null) {
+                previous.segment.liveBytes -= previous.length;
+            }
+            position += RECORD_HEADER + bodyLength;
+        }
+        return position;
+    }
+
+    /**
+     * Called holding the write lock.
+     */
+    private void put(Serializable key, byte[] record) throws ObjectStoreException {
+        Location location = append(record);
+        location.segment.liveBytes += location.length;
+        Location previous = index.put(key, location);
+        if (previous != null) {
+            previous.segment.liveBytes -= previous.length;
+        }
+    }
+
+    /**
+     * Called holding the write lock.
+     */
+    private void delete(Serializable key, byte[] record) throws ObjectStoreException {
+        Location location = append(record);
+        location.segment.tombstoneBytes += location.length;
+        Location previous = index.remove(key);
+        if (previous != null) {
+            previous.segment.liveBytes -= previous.length;
+        }
+    }
+
+    /**
+     * Called holding the write lock. The length of the record is written last, so a partially written record is ignored when replaying.
+     */
+    private Location append(byte[] record) throws ObjectStoreException {
+        Segment segment = active;
+        if (segment.remaining() < record.length + RECORD_HEADER) {
+            // Keep room for a zero length after the record, which marks the end of the segment
+            segment.force();
+            try {
+                segment = newSegment(segment.id + 1, record.length + RECORD_HEADER);
+            } catch (IOException e) {
+                throw new ObjectStoreNotAvaliableException(MessageFactory.createStaticMessage("Could not create a segment in " + directory), e);
+            }
+            active = segment;
+        }
+        int position = segment.writePosition;
+        segment.write(position + 4, record, 4, record.length - 4);
+        segment.putInt(position, record.length - RECORD_HEADER);
+        segment.writePosition += record.length;
+        return new Location(segment, position, record.length);
+    }
+
+    /**
+     * Called holding the write lock.
+     */
+    private Segment newSegment(int id, int minimumSize) throws IOException {
+        Segment segment = Segment.create(directory, id, Math.max(segmentSize, minimumSize));
+        segments.add(segment);
+        return segment;
+    }
+
+    /**
+     * Appends a deletion record for every key stored in the segment. Called holding the write lock.
+     */
+    private void deleteKeys(Segment segment) throws ObjectStoreException {
+        Set<Serializable> keys = new HashSet<Serializable>();
+        for (int position = 0; position < segment.writePosition; position += RECORD_HEADER + segment.getInt(position)) {
+            if (segment.get(position + RECORD_HEADER) == PUT) {
+                keys.add(readKey(segment, position));
+            }
+        }
+        for (Serializable key : keys) {
+            delete(key, record(DELETE, key, null));
+        }
+    }
+
+    private boolean hasOlderSegment(Segment segment) {
+        return !segments.isEmpty() && segments.get(0).id < segment.id;
+    }
+
+    private byte[] record(byte type, Serializable key, Serializable value) throws ObjectStoreException {
+        byte[] keyBytes = encode(key);
+        byte[] valueBytes = type == PUT ? encode(value) : new byte[0];
+        byte[] record = new byte[RECORD_HEADER + BODY_HEADER + keyBytes.length + valueBytes.length];
+        record[RECORD_HEADER] = type;
+        writeInt(record, RECORD_HEADER + 1, keyBytes.length);
+        System.arraycopy(keyBytes, 0, record, RECORD_HEADER + BODY_HEADER, keyBytes.length);
+        System.arraycopy(valueBytes, 0, record, RECORD_HEADER + BODY_HEADER + keyBytes.length, valueBytes.length);
+        CRC32 crc = new CRC32();
+        crc.update(record, RECORD_HEADER, record.length - RECORD_HEADER);
+        writeInt(record, 0, record.length - RECORD_HEADER);
+        writeInt(record, 4, (int) crc.getValue());
+        return record;
+    }
+
+    private static byte[] copy(Segment segment, int position, int length) {
+        byte[] record = new byte[length];
+        segment.read(position, record);
+        return record;
+    }
+
+    /**
+     * Reads the value of the key without the write lock.
+     *
+     * @return the value of the key, or null if it has none
+     */
+    private Serializable read(Serializable key) throws ObjectStoreException {
+        while (true) {
+            Location location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            if (location.segment.acquire()) {
+                try {
+                    return readValue(location);
+                } finally {
+                    location.segment.release();
+                }
+            }
+            // The segment was compacted meanwhile, the key has a new location or none
+            if (index.get(key) == location) {
+                throw new ObjectStoreNotAvaliableException(MessageFactory.createStaticMessage("The segment " + location.segment + " in " + directory
+                        + " was released while still in use"));
+            }
+        }
+    }
+
+    private Serializable readKey(Segment segment, int position) throws ObjectStoreException {
+        byte[] key = new byte[segment.getInt(position + RECORD_HEADER + 1)];
+        segment.read(position + RECORD_HEADER + BODY_HEADER, key);
+        return decode(key);
+    }
+
+    private Serializable readValue(Location location) throws ObjectStoreException {
+        int keyLength = location.segment.getInt(location.offset + RECORD_HEADER + 1);
+        int valueOffset = RECORD_HEADER + BODY_HEADER + keyLength;
+        byte[] value = new byte[location.length - valueOffset];
+        location.segment.read(location.offset + valueOffset, value);
+        return decode(value);
+    }
+
+    private byte[] encode(Serializable value) throws ObjectStoreException {
+        try {
+            return codec.encode(value);
+        } catch (IOException e) {
+            throw new ObjectStoreException(MessageFactory.createStaticMessage("Could not encode a value of type " + value.getClass().getName()), e);
+        }
+    }
+
+    private Serializable decode(byte[] data) throws ObjectStoreException {
+        try {
+            return codec.decode(data, 0, data.length);
+        } catch (IOException e) {
+            throw new ObjectStoreException(MessageFactory.createStaticMessage("Could not decode a record of the log in " + directory), e);
+        }
+    }
+
+    private void checkOpen() throws ObjectStoreException {
+        if (active == null) {
+            throw new ObjectStoreNotAvaliableException(MessageFactory.createStaticMessage("The log in " + directory + " is not open"));
+        }
+    }
+
+    private static void writeInt(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >>> 24);
+        data[offset + 1] = (byte) (value >>> 16);
+        data[offset + 2] = (byte) (value >>> 8);
+        data[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Where the current record of a key is.
+     */
+    private static final class Location {
+
+        private final Segment segment;
+        private final int offset;
+        private final int length;
+
+        Location(Segment segment, int offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.engine;
+
+/**
+ * JMX view of the statistics of an {@link OffHeapObjectStore}.
+ */
+public interface OffHeapMXBean {
+
+    int getSize();
+
+    /**
+     * @return the bytes of direct memory held by the store, including the index and the free space of the slabs
+     */
+    long getAllocatedBytes();
+
+    /**
+     * @return the bytes of direct memory taken by the entries
+     */
+    long getUsedBytes();
+
+    /**
+     * @return the number of entries removed because of maxEntries
+     */
+    long getEvictions();
+
+    /**
+     * @return the number of entries removed because of entryTtl
+     */
+    long getExpirations();
+}
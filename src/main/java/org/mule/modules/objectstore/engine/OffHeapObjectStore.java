@@ -0,0 +1,751 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.engine;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mule.api.store.ListableObjectStore;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.config.i18n.MessageFactory;
+import org.mule.modules.objectstore.codec.CompactCodec;
+import org.mule.modules.objectstore.codec.JavaCodec;
+import org.mule.modules.objectstore.store.AtomicObjectStore;
+import org.mule.modules.objectstore.store.KeyPage;
+import org.mule.modules.objectstore.store.KeyPages;
+import org.mule.modules.objectstore.store.LookupObjectStore;
+import org.mule.modules.objectstore.store.ObjectStores;
+import org.mule.modules.objectstore.store.PagedObjectStore;
+import org.mule.util.concurrent.DaemonThreadFactory;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory object store keeping its entries outside of the Java heap, so that partitions with millions of entries neither grow the heap nor lengthen
+ * the garbage collection pauses.
+ * <p/>
+ * Keys and values are encoded and copied into chunks carved from direct memory slabs. Chunk sizes are rounded up to a power of two and freed chunks
+ * are reused for entries of the same size class. The index is an open-addressing hash table, also in direct memory, holding the hash of every key and
+ * the address of its chunk. Keys are compared by their encoded form.
+ * <p/>
+ * Entries are linked in insertion order, replacing a value counts as a new insertion. When the store holds more than maxEntries entries the oldest
+ * ones are evicted, and entries older than entryTtl are no longer returned and are removed every expiration interval. Reads share a lock, writes are
+ * serialized. Keys are paged through in insertion order.
+ */
+public class OffHeapObjectStore implements ListableObjectStore<Serializable>, AtomicObjectStore<Serializable>, LookupObjectStore<Serializable>,
+        PagedObjectStore<Serializable>, OffHeapMXBean {
+
+    public static final int SLAB_SIZE = 1024 * 1024;
+
+    private static final Log logger = LogFactory.getLog(OffHeapObjectStore.class);
+
+    private static final long NIL = -1;
+
+    // Chunk layout
+    private static final int PREV = 0;
+    private static final int NEXT = 8;
+    private static final int CREATED = 16;
+    private static final int HASH = 24;
+    private static final int KEY_LENGTH = 28;
+    private static final int VALUE_LENGTH = 32;
+    private static final int SEQUENCE = 36;
+    private static final int CHUNK_HEADER = 44;
+    private static final int MIN_CHUNK_SHIFT = 6;
+
+    // Index layout, a slot holds the hash of the key and the address of its chunk plus one, zero meaning an empty slot
+    private static final int SLOT_SIZE = 12;
+    private static final int INITIAL_SLOTS = 1024;
+    private static final int MAX_SLOTS = 1 << 27;
+    // Entries the largest index holds within its load factor, so a probe always reaches an empty slot
+    private static final int MAX_INDEXED = MAX_SLOTS / 4 * 3;
+
+    private final long entryTtl;
+    private final int maxEntries;
+    private final long expirationInterval;
+    private final CompactCodec codec;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    private final List<ByteBuffer> slabs = new ArrayList<ByteBuffer>();
+    private final long[] freeChunks = new long[32];
+    // Slab small chunks are carved from, never one holding a chunk larger than a slab
+    private int currentSlab;
+    private int slabPosition;
+    private ByteBuffer table;
+    private int mask;
+    private int size;
+    private long usedBytes;
+    private long head = NIL;
+    private long tail = NIL;
+    // Sequence number of the next entry inserted, increasing along the list of entries
+    private long nextSequence;
+    private ScheduledExecutorService expirer;
+
+    /**
+     * @param entryTtl
+     *            milliseconds an entry is kept, null or zero to keep entries until removed
+     * @param maxEntries
+     *            maximum number of entries, null or zero for no limit
+     * @param expirationInterval
+     *            milliseconds between two removals of the expired entries, null to use entryTtl
+     */
+    public OffHeapObjectStore(Integer entryTtl, Integer maxEntries, Integer expirationInterval, ClassLoader classLoader) {
+        this.entryTtl = entryTtl != null && entryTtl > 0 ? entryTtl : 0;
+        this.maxEntries = maxEntries != null && maxEntries > 0 ? maxEntries : 0;
+        this.expirationInterval = expirationInterval != null && expirationInterval > 0 ? expirationInterval : this.entryTtl;
+        this.codec = new CompactCodec(new JavaCodec(classLoader));
+        reset();
+    }
+
+    /**
+     * Starts the removal of the expired entries.
+     */
+    @Override
+    public synchronized void open() throws ObjectStoreException {
+        if (expirer == null && entryTtl > 0) {
+            expirer = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("objectstore.offheap.expiration"));
+            expirer.scheduleWithFixedDelay(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        expire();
+                    } catch (RuntimeException e) {
+                        logger.warn("Could not remove the expired entries", e);
+                    }
+                }
+            }, expirationInterval, expirationInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the removal of the expired entries and releases the memory of every entry.
+     */
+    @Override
+    public synchronized void close() throws ObjectStoreException {
+        if (expirer != null) {
+            expirer.shutdownNow();
+            expirer = null;
+        }
+        clear();
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return false;
+    }
+
+    @Override
+    public boolean contains(Serializable key) throws ObjectStoreException {
+        byte[] keyBytes = encode(key);
+        lock.readLock().lock();
+        try {
+            return find(keyBytes, hash(keyBytes), System.currentTimeMillis()) != NIL;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Serializable retrieve(Serializable key) throws ObjectStoreException {
+        Serializable value = lookup(key);
+        if (value == null) {
+            throw ObjectStores.doesNotExist(key);
+        }
+        return value;
+    }
+
+    @Override
+    public Serializable lookup(Serializable key) throws ObjectStoreException {
+        byte[] keyBytes = encode(key);
+        byte[] value;
+        lock.readLock().lock();
+        try {
+            long chunk = find(keyBytes, hash(keyBytes), System.currentTimeMillis());
+            if (chunk == NIL) {
+                return null;
+            }
+            value = readValue(chunk);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return decode(value);
+    }
+
+    @Override
+    public void store(Serializable key, Serializable value) throws ObjectStoreException {
+        byte[] keyBytes = encode(key);
+        byte[] valueBytes = encode(value);
+        int hash = hash(keyBytes);
+        lock.writeLock().lock();
+        try {
+            long now = System.currentTimeMillis();
+            if (find(keyBytes, hash, now) != NIL) {
+                throw ObjectStores.alreadyExists(key);
+            }
+            insert(keyBytes, valueBytes, hash, now);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Serializable remove(Serializable key) throws ObjectStoreException {
+        Serializable value = removeIfPresent(key);
+        if (value == null) {
+            throw ObjectStores.doesNotExist(key);
+        }
+        return value;
+    }
+
+    @Override
+    public Serializable removeIfPresent(Serializable key) throws ObjectStoreException {
+        byte[] keyBytes = encode(key);
+        byte[] value;
+        lock.writeLock().lock();
+        try {
+            long chunk = find(keyBytes, hash(keyBytes), System.currentTimeMillis());
+            if (chunk == NIL) {
+                return null;
+            }
+            value = readValue(chunk);
+            delete(chunk);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return decode(value);
+    }
+
+    @Override
+    public Serializable putIfAbsent(Serializable key, Serializable value) throws ObjectStoreException {
+        byte[] keyBytes = encode(key);
+        byte[] valueBytes = encode(value);
+        int hash = hash(keyBytes);
+        byte[] current;
+        lock.writeLock().lock();
+        try {
+            long now = System.currentTimeMillis();
+            long chunk = find(keyBytes, hash, now);
+            if (chunk == NIL) {
+                insert(keyBytes, valueBytes, hash, now);
+                return null;
+            }
+            current = readValue(chunk);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return decode(current);
+    }
+
+    @Override
+    public boolean replace(Serializable key, Serializable expected, Serializable value) throws ObjectStoreException {
+        byte[] keyBytes = encode(key);
+        byte[] valueBytes = encode(value);
+        int hash = hash(keyBytes);
+        lock.writeLock().lock();
+        try {
+            long now = System.currentTimeMillis();
+            long chunk = find(keyBytes, hash, now);
+            if (chunk == NIL || !ObjectStores.sameValue(expected, decode(readValue(chunk)))) {
+                return false;
+            }
+            delete(chunk);
+            insert(keyBytes, valueBytes, hash, now);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Serializable put(Serializable key, Serializable value) throws ObjectStoreException {
+        byte[] keyBytes = encode(key);
+        byte[] valueBytes = encode(value);
+        int hash = hash(keyBytes);
+        byte[] previous = null;
+        lock.writeLock().lock();
+        try {
+            long now = System.currentTimeMillis();
+            long chunk = find(keyBytes, hash, now);
+            if (chunk != NIL) {
+                previous = readValue(chunk);
+                delete(chunk);
+            }
+            insert(keyBytes, valueBytes, hash, now);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return previous != null ? decode(previous) : null;
+    }
+
+    @Override
+    public List<Serializable> allKeys() throws ObjectStoreException {
+        List<byte[]> keys = new ArrayList<byte[]>();
+        lock.readLock().lock();
+        try {
+            long now = System.currentTimeMillis();
+            for (long chunk = head; chunk != NIL; chunk = getLong(chunk, NEXT)) {
+                if (!isExpired(chunk, now)) {
+                    keys.add(readKey(chunk));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Serializable> result = new ArrayList<Serializable>(keys.size());
+        for (byte[] key : keys) {
+            result.add(decode(key));
+        }
+        return result;
+    }
+
+    /**
+     * Walks the entries in insertion order, the cursor being the sequence number and the key of the last entry returned. A key overwritten during the
+     * walk moves to the end of the list and may be returned again.
+     */
+    @Override
+    public KeyPage keys(String cursor, int pageSize) throws ObjectStoreException {
+        long after = -1;
+        byte[] lastKey = null;
+        if (cursor != null) {
+            int separator = cursor.indexOf(':');
+            after = Long.parseLong(cursor.substring(0, separator));
+            lastKey = encode(cursor.substring(separator + 1));
+        }
+        List<byte[]> keys = new ArrayList<byte[]>(pageSize);
+        long lastSequence = NIL;
+        boolean more = false;
+        lock.readLock().lock();
+        try {
+            long now = System.currentTimeMillis();
+            long chunk = head;
+            if (lastKey != null) {
+                long last = find(lastKey, hash(lastKey), now);
+                if (last != NIL && getLong(last, SEQUENCE) == after) {
+                    chunk = getLong(last, NEXT);
+                } else {
+                    // The last key was removed or overwritten since
+                    while (chunk != NIL && getLong(chunk, SEQUENCE) <= after) {
+                        chunk = getLong(chunk, NEXT);
+                    }
+                }
+            }
+            for (; chunk != NIL; chunk = getLong(chunk, NEXT)) {
+                if (isExpired(chunk, now)) {
+                    continue;
+                }
+                if (keys.size() == pageSize) {
+                    more = true;
+                    break;
+                }
+                keys.add(readKey(chunk));
+                lastSequence = getLong(chunk, SEQUENCE);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<String> page = new ArrayList<String>(keys.size());
+        for (byte[] key : keys) {
+            page.add(KeyPages.toKey(this, decode(key)));
+        }
+        return new KeyPage(page, more ? lastSequence + ":" + page.get(page.size() - 1) : null);
+    }
+
+    /**
+     * Releases the memory of every entry.
+     */
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            reset();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the entries older than entryTtl.
+     */
+    public void expire() {
+        if (entryTtl == 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            long now = System.currentTimeMillis();
+            while (head != NIL && isExpired(head, now)) {
+                delete(head);
+                expirations.incrementAndGet();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int getSize() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        lock.readLock().lock();
+        try {
+            long allocated = table.capacity();
+            for (ByteBuffer slab : slabs) {
+                if (slab != null) {
+                    allocated += slab.capacity();
+                }
+            }
+            return allocated;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long getUsedBytes() {
+        lock.readLock().lock();
+        try {
+            return usedBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    /**
+     * Called holding the write lock.
+     */
+    private void reset() {
+        slabs.clear();
+        Arrays.fill(freeChunks, NIL);
+        currentSlab = -1;
+        slabPosition = SLAB_SIZE;
+        table = ByteBuffer.allocateDirect(INITIAL_SLOTS * SLOT_SIZE);
+        mask = INITIAL_SLOTS - 1;
+        size = 0;
+        usedBytes = 0;
+        head = NIL;
+        tail = NIL;
+    }
+
+    /**
+     * @return the chunk of the key, or {@link #NIL} if the key has no value or it has expired
+     */
+    private long find(byte[] key, int hash, long now) {
+        for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+            long address = table.getLong(slot * SLOT_SIZE + 4) - 1;
+            if (address == NIL) {
+                return NIL;
+            }
+            if (table.getInt(slot * SLOT_SIZE) == hash && keyEquals(address, key)) {
+                return isExpired(address, now) ? NIL : address;
+            }
+        }
+    }
+
+    /**
+     * Called holding the write lock, with no value for the key. An expired entry for the key is removed first. Once the index cannot grow any more the
+     * oldest entry is evicted if the store has a maximum number of entries, otherwise the insertion fails.
+     */
+    private void insert(byte[] key, byte[] value, int hash, long now) throws ObjectStoreException {
+        int slot = hash & mask;
+        for (;; slot = (slot + 1) & mask) {
+            long address = table.getLong(slot * SLOT_SIZE + 4) - 1;
+            if (address == NIL) {
+                break;
+            }
+            if (table.getInt(slot * SLOT_SIZE) == hash && keyEquals(address, key)) {
+                delete(address);
+                expirations.incrementAndGet();
+                insert(key, value, hash, now);
+                return;
+            }
+        }
+        if (size >= MAX_INDEXED) {
+            if (maxEntries == 0) {
+                throw new ObjectStoreException(MessageFactory.createStaticMessage("The store is full, it cannot hold more than " + MAX_INDEXED
+                        + " entries"));
+            }
+            delete(head);
+            evictions.incrementAndGet();
+            // The slot found may have been shifted back into
+            insert(key, value, hash, now);
+            return;
+        }
+        long chunk = allocate(CHUNK_HEADER + key.length + value.length);
+        ByteBuffer slab = slabOf(chunk);
+        int offset = offsetOf(chunk);
+        slab.putLong(offset + PREV, tail);
+        slab.putLong(offset + NEXT, NIL);
+        slab.putLong(offset + CREATED, now);
+        slab.putInt(offset + HASH, hash);
+        slab.putInt(offset + KEY_LENGTH, key.length);
+        slab.putInt(offset + VALUE_LENGTH, value.length);
+        slab.putLong(offset + SEQUENCE, nextSequence++);
+        put(slab, offset + CHUNK_HEADER, key);
+        put(slab, offset + CHUNK_HEADER + key.length, value);
+        if (tail != NIL) {
+            putLong(tail, NEXT, chunk);
+        } else {
+            head = chunk;
+        }
+        tail = chunk;
+        table.putInt(slot * SLOT_SIZE, hash);
+        table.putLong(slot * SLOT_SIZE + 4, chunk + 1);
+        size++;
+        if (maxEntries > 0) {
+            while (size > maxEntries) {
+                delete(head);
+                evictions.incrementAndGet();
+            }
+        }
+        if (size * 4L > (mask + 1) * 3L && mask + 1 < MAX_SLOTS) {
+            resize();
+        }
+    }
+
+    /**
+     * Called holding the write lock. Unlinks the chunk, removes it from the index and frees it.
+     */
+    private void delete(long chunk) {
+        long prev = getLong(chunk, PREV);
+        long next = getLong(chunk, NEXT);
+        if (prev != NIL) {
+            putLong(prev, NEXT, next);
+        } else {
+            head = next;
+        }
+        if (next != NIL) {
+            putLong(next, PREV, prev);
+        } else {
+            tail = prev;
+        }
+        int slot = slabOf(chunk).getInt(offsetOf(chunk) + HASH) & mask;
+        while (table.getLong(slot * SLOT_SIZE + 4) - 1 != chunk) {
+            slot = (slot + 1) & mask;
+        }
+        removeSlot(slot);
+        free(chunk);
+        size--;
+    }
+
+    /**
+     * Empties the slot shifting back the entries that follow it, so that lookups never need tombstones.
+     */
+    private void removeSlot(int slot) {
+        int hole = slot;
+        for (int next = (hole + 1) & mask;; next = (next + 1) & mask) {
+            long address = table.getLong(next * SLOT_SIZE + 4);
+            if (address == 0) {
+                break;
+            }
+            int hash = table.getInt(next * SLOT_SIZE);
+            int ideal = hash & mask;
+            boolean movable = hole <= next ? ideal <= hole || ideal > next : ideal <= hole && ideal > next;
+            if (movable) {
+                table.putInt(hole * SLOT_SIZE, hash);
+                table.putLong(hole * SLOT_SIZE + 4, address);
+                hole = next;
+            }
+        }
+        table.putInt(hole * SLOT_SIZE, 0);
+        table.putLong(hole * SLOT_SIZE + 4, 0);
+    }
+
+    private void resize() {
+        ByteBuffer old = table;
+        int oldSlots = mask + 1;
+        table = ByteBuffer.allocateDirect(oldSlots * 2 * SLOT_SIZE);
+        mask = oldSlots * 2 - 1;
+        for (int i = 0; i < oldSlots; i++) {
+            long address = old.getLong(i * SLOT_SIZE + 4);
+            if (address != 0) {
+                int hash = old.getInt(i * SLOT_SIZE);
+                int slot = hash & mask;
+                while (table.getLong(slot * SLOT_SIZE + 4) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table.putInt(slot * SLOT_SIZE, hash);
+                table.putLong(slot * SLOT_SIZE + 4, address);
+            }
+        }
+    }
+
+    /**
+     * Chunks larger than a slab get a slab of their own, which is released when the chunk is freed.
+     */
+    private long allocate(int length) {
+        int sizeClass = sizeClass(length);
+        int chunkSize = 1 << sizeClass;
+        usedBytes += chunkSize;
+        long chunk = freeChunks[sizeClass];
+        if (chunk != NIL) {
+            freeChunks[sizeClass] = getLong(chunk, 0);
+            return chunk;
+        }
+        if (chunkSize > SLAB_SIZE) {
+            return address(addSlab(chunkSize), 0);
+        }
+        if (slabPosition + chunkSize > SLAB_SIZE) {
+            currentSlab = addSlab(SLAB_SIZE);
+            slabPosition = 0;
+        }
+        chunk = address(currentSlab, slabPosition);
+        slabPosition += chunkSize;
+        return chunk;
+    }
+
+    private void free(long chunk) {
+        ByteBuffer slab = slabOf(chunk);
+        int offset = offsetOf(chunk);
+        int sizeClass = sizeClass(CHUNK_HEADER + slab.getInt(offset + KEY_LENGTH) + slab.getInt(offset + VALUE_LENGTH));
+        usedBytes -= 1 << sizeClass;
+        if ((1 << sizeClass) > SLAB_SIZE) {
+            slabs.set((int) (chunk >>> 32), null);
+        } else {
+            slab.putLong(offset, freeChunks[sizeClass]);
+            freeChunks[sizeClass] = chunk;
+        }
+    }
+
+    /**
+     * @return the index of the new slab, reusing the index of a released one when possible
+     */
+    private int addSlab(int capacity) {
+        ByteBuffer slab = ByteBuffer.allocateDirect(capacity);
+        int index = slabs.indexOf(null);
+        if (index >= 0) {
+            slabs.set(index, slab);
+            return index;
+        }
+        slabs.add(slab);
+        return slabs.size() - 1;
+    }
+
+    private boolean isExpired(long chunk, long now) {
+        return entryTtl > 0 && getLong(chunk, CREATED) + entryTtl <= now;
+    }
+
+    private boolean keyEquals(long chunk, byte[] key) {
+        ByteBuffer slab = slabOf(chunk);
+        int offset = offsetOf(chunk);
+        if (slab.getInt(offset + KEY_LENGTH) != key.length) {
+            return false;
+        }
+        offset += CHUNK_HEADER;
+        for (int i = 0; i < key.length; i++) {
+            if (slab.get(offset + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] readKey(long chunk) {
+        ByteBuffer slab = slabOf(chunk);
+        int offset = offsetOf(chunk);
+        return read(slab, offset + CHUNK_HEADER, slab.getInt(offset + KEY_LENGTH));
+    }
+
+    private byte[] readValue(long chunk) {
+        ByteBuffer slab = slabOf(chunk);
+        int offset = offsetOf(chunk);
+        return read(slab, offset + CHUNK_HEADER + slab.getInt(offset + KEY_LENGTH), slab.getInt(offset + VALUE_LENGTH));
+    }
+
+    private long getLong(long chunk, int field) {
+        return slabOf(chunk).getLong(offsetOf(chunk) + field);
+    }
+
+    private void putLong(long chunk, int field, long value) {
+        slabOf(chunk).putLong(offsetOf(chunk) + field, value);
+    }
+
+    private ByteBuffer slabOf(long chunk) {
+        return slabs.get((int) (chunk >>> 32));
+    }
+
+    /**
+     * Slabs are shared by readers, so they are only accessed through absolute gets and puts or through a duplicate.
+     */
+    private static byte[] read(ByteBuffer slab, int offset, int length) {
+        byte[] data = new byte[length];
+        ByteBuffer view = slab.duplicate();
+        view.position(offset);
+        view.get(data);
+        return data;
+    }
+
+    private static void put(ByteBuffer slab, int offset, byte[] data) {
+        ByteBuffer view = slab.duplicate();
+        view.position(offset);
+        view.put(data);
+    }
+
+    private static int offsetOf(long chunk) {
+        return (int) chunk;
+    }
+
+    private static long address(int slab, int offset) {
+        return ((long) slab << 32) | offset;
+    }
+
+    private static int sizeClass(int length) {
+        int sizeClass = 32 - Integer.numberOfLeadingZeros(length - 1);
+        return sizeClass < MIN_CHUNK_SHIFT ? MIN_CHUNK_SHIFT : sizeClass;
+    }
+
+    private static int hash(byte[] key) {
+        int h = Arrays.hashCode(key);
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private byte[] encode(Serializable value) throws ObjectStoreException {
+        try {
+            return codec.encode(value);
+        } catch (IOException e) {
+            throw new ObjectStoreException(MessageFactory.createStaticMessage("Could not encode a value of type " + value.getClass().getName()), e);
+        }
+    }
+
+    private Serializable decode(byte[] data) throws ObjectStoreException {
+        try {
+            return codec.decode(data, 0, data.length);
+        } catch (IOException e) {
+            throw new ObjectStoreException(MessageFactory.createStaticMessage("Could not decode an entry"), e);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.engine;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A memory-mapped segment file of a {@link LogObjectStore}. Records are only appended, by a single writer at a time, and read by any thread.
+ * <p/>
+ * The store holds a reference to the segment until it closes or deletes it, and readers not holding the write lock of the store take one for as long as
+ * they read. The file is unmapped once the last reference is released, and only then deleted, so a reader never touches an unmapped buffer and the
+ * disk space of a compacted segment does not wait for the garbage collector. A deleted segment is first renamed out of the segment files, so it is
+ * never replayed even if the file cannot be deleted.
+ */
+final class Segment {
+
+    private static final Log logger = LogFactory.getLog(Segment.class);
+
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".log";
+    private static final String DELETED_SUFFIX = ".deleted";
+
+    final int id;
+    final File file;
+    private final MappedByteBuffer buffer;
+    // Zero once the buffer is unmapped
+    private final AtomicInteger references = new AtomicInteger(1);
+    // Where the file was renamed once the segment is deleted
+    private volatile File deletedFile;
+
+    /**
+     * Guarded by the write lock of the store
+     */
+    int writePosition;
+    long liveBytes;
+    long tombstoneBytes;
+
+    /**
+     * Guarded by the compaction lock of the store, true once the records of the segment were moved
+     */
+    boolean compacted;
+
+    private Segment(int id, File file, MappedByteBuffer buffer) {
+        this.id = id;
+        this.file = file;
+        this.buffer = buffer;
+    }
+
+    static Segment create(File directory, int id, int size) throws IOException {
+        return map(id, new File(directory, PREFIX + id + SUFFIX), size);
+    }
+
+    static Segment open(File file) throws IOException {
+        if (file.length() > Integer.MAX_VALUE) {
+            throw new IOException("Segment " + file + " is too large");
+        }
+        return map(idOf(file), file, (int) file.length());
+    }
+
+    static boolean isSegment(File file) {
+        return file.getName().startsWith(PREFIX) && file.getName().endsWith(SUFFIX) && idOf(file) >= 0;
+    }
+
+    /**
+     * @return true if the file is a deleted segment left behind, as it could not be deleted
+     */
+    static boolean isDeleted(File file) {
+        return file.getName().startsWith(PREFIX) && file.getName().endsWith(SUFFIX + DELETED_SUFFIX);
+    }
+
+    static int idOf(File file) {
+        String name = file.getName();
+        try {
+            return Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static Segment map(int id, File file, int size) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(size);
+            return new Segment(id, file, raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size));
+        } finally {
+            // The mapping stays valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    int remaining() {
+        return buffer.capacity() - writePosition;
+    }
+
+    int getInt(int position) {
+        return buffer.duplicate().getInt(position);
+    }
+
+    byte get(int position) {
+        return buffer.duplicate().get(position);
+    }
+
+    void read(int position, byte[] destination) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        view.get(destination);
+    }
+
+    /**
+     * Called holding the write lock of the store.
+     */
+    void write(int position, byte[] source, int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        view.put(source, offset, length);
+    }
+
+    /**
+     * Called holding the write lock of the store.
+     */
+    void putInt(int position, int value) {
+        buffer.duplicate().putInt(position, value);
+    }
+
+    /**
+     * Zeroes the segment from the given position, so garbage left by an interrupted write is not read as a record.
+     */
+    void clear(int from) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(from);
+        byte[] zeros = new byte[Math.min(8192, Math.max(0, capacity() - from))];
+        while (view.hasRemaining()) {
+            view.put(zeros, 0, Math.min(zeros.length, view.remaining()));
+        }
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * @return false if the segment was closed or deleted, in which case it must not be read
+     */
+    boolean acquire() {
+        while (true) {
+            int count = references.get();
+            if (count == 0) {
+                return false;
+            }
+            if (references.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void release() {
+        if (references.decrementAndGet() == 0) {
+            unmap();
+            File deleted = deletedFile;
+            if (deleted != null && !deleted.delete()) {
+                logger.warn("Could not delete the segment " + deleted + ", it is deleted when the log is opened again");
+            }
+        }
+    }
+
+    /**
+     * Releases the reference of the store. Called holding the write lock of the store, once.
+     */
+    void close() {
+        release();
+    }
+
+    /**
+     * Renames the file out of the segment files, then releases the reference of the store and deletes the file once no reader uses it any more.
+     * Called holding the write lock of the store.
+     *
+     * @return false if the file could not be renamed, in which case the store keeps its reference and the segment is replayed when the log is opened
+     *         again
+     */
+    boolean delete() {
+        File deleted = new File(file.getPath() + DELETED_SUFFIX);
+        if (!file.renameTo(deleted)) {
+            return false;
+        }
+        deletedFile = deleted;
+        release();
+        return true;
+    }
+
+    /**
+     * Unmaps the buffer right away rather than when it is garbage collected. Left to the garbage collector if the JVM does not allow it.
+     */
+    private void unmap() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                // Before Java 9 the cleaner is reached through the buffer
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+                return;
+            }
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (Exception e) {
+            logger.debug("Could not unmap the segment " + file + ", it is unmapped when garbage collected", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return file.getName();
+    }
+}
@@ -0,0 +1,339 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.eviction;
+
+import org.mule.api.store.ListableObjectStore;
+import org.mule.api.store.ObjectDoesNotExistException;
+import org.mule.api.store.ObjectStore;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.modules.objectstore.expiry.ExpiringValue;
+import org.mule.modules.objectstore.store.ObjectStoreDecorator;
+import org.mule.modules.objectstore.store.ObjectStores;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounds the total weight of the entries of the decorated store, evicting the keys chosen by a {@link Policy}. Every entry weighs one unless a
+ * {@link Weigher} is set.
+ * <p/>
+ * The policy only knows the keys written through this store and the ones found by {@link #prime()}. Victims are removed from the decorated store without
+ * taking their key lock, so a value stored concurrently for a victim key may be evicted right away.
+ * <p/>
+ * Reads never wait for the policy: they are recorded in a lossy {@link ReadBuffer} that is replayed to the policy by the next write, or by a reader that
+ * finds the policy free once its part of the buffer fills up.
+ */
+public class EvictingObjectStore extends ObjectStoreDecorator implements EvictionMXBean {
+
+    /**
+     * Told about the keys evicted, once they are removed from the decorated store.
+     */
+    public interface Listener {
+
+        void evicted(Serializable key);
+    }
+
+    private final Policy policy;
+    private final Weigher weigher;
+    private final Listener listener;
+    // Guards the policy
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReadBuffer accesses = new ReadBuffer();
+    private final ReadBuffer misses = new ReadBuffer();
+    private final ReadBuffer.Consumer recordAccess = new ReadBuffer.Consumer() {
+
+        @Override
+        public void accept(Serializable key) {
+            policy.recordAccess(key);
+        }
+    };
+    private final ReadBuffer.Consumer recordMiss = new ReadBuffer.Consumer() {
+
+        @Override
+        public void accept(Serializable key) {
+            policy.recordMiss(key);
+        }
+    };
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param weigher
+     *            null to weigh every entry as one
+     * @param listener
+     *            null if nobody needs to know about the evictions
+     */
+    public EvictingObjectStore(ObjectStore<Serializable> delegate, Policy policy, Weigher weigher, Listener listener) {
+        super(delegate);
+        this.policy = policy;
+        this.weigher = weigher;
+        this.listener = listener;
+    }
+
+    /**
+     * Records the keys already in the decorated store, evicting the ones over the maximum weight. Values are only read when a weigher is set.
+     */
+    public void prime() throws ObjectStoreException {
+        if (!(delegate instanceof ListableObjectStore)) {
+            return;
+        }
+        for (Serializable key : ((ListableObjectStore<Serializable>) delegate).allKeys()) {
+            Serializable value = weigher != null ? ObjectStores.lookup(delegate, key) : null;
+            // Unless removed meanwhile
+            if (weigher == null || value != null) {
+                written(key, value);
+            }
+        }
+    }
+
+    @Override
+    public void store(Serializable key, Serializable value) throws ObjectStoreException {
+        delegate.store(key, value);
+        written(key, value);
+    }
+
+    @Override
+    public Serializable retrieve(Serializable key) throws ObjectStoreException {
+        try {
+            Serializable value = delegate.retrieve(key);
+            accessed(key);
+            return value;
+        } catch (ObjectDoesNotExistException e) {
+            missed(key);
+            throw e;
+        }
+    }
+
+    @Override
+    public Serializable lookup(Serializable key) throws ObjectStoreException {
+        Serializable value = ObjectStores.lookup(delegate, key);
+        if (value != null) {
+            accessed(key);
+        } else {
+            missed(key);
+        }
+        return value;
+    }
+
+    @Override
+    public Serializable remove(Serializable key) throws ObjectStoreException {
+        try {
+            return delegate.remove(key);
+        } finally {
+            removed(Collections.singletonList(key));
+        }
+    }
+
+    @Override
+    public Serializable removeIfPresent(Serializable key) throws ObjectStoreException {
+        try {
+            return ObjectStores.removeIfPresent(delegate, key);
+        } finally {
+            removed(Collections.singletonList(key));
+        }
+    }
+
+    @Override
+    public void clear() throws ObjectStoreException {
+        delegate.clear();
+        lock.lock();
+        try {
+            drainReads();
+            policy.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Serializable putIfAbsent(Serializable key, Serializable value) throws ObjectStoreException {
+        Serializable existing = atomicDelegate().putIfAbsent(key, value);
+        if (existing == null) {
+            written(key, value);
+        } else {
+            accessed(key);
+        }
+        return existing;
+    }
+
+    @Override
+    public boolean replace(Serializable key, Serializable expected, Serializable value) throws ObjectStoreException {
+        boolean replaced = atomicDelegate().replace(key, expected, value);
+        if (replaced) {
+            written(key, value);
+        }
+        return replaced;
+    }
+
+    @Override
+    public Serializable put(Serializable key, Serializable value) throws ObjectStoreException {
+        Serializable previous = atomicDelegate().put(key, value);
+        written(key, value);
+        return previous;
+    }
+
+    @Override
+    public Map<Serializable, ObjectStoreException> storeAll(Map<Serializable, Serializable> entries, boolean overwrite) throws ObjectStoreException {
+        Map<Serializable, ObjectStoreException> failures = batchDelegate().storeAll(entries, overwrite);
+        for (Map.Entry<Serializable, Serializable> entry : entries.entrySet()) {
+            if (!failures.containsKey(entry.getKey())) {
+                written(entry.getKey(), entry.getValue());
+            }
+        }
+        return failures;
+    }
+
+    @Override
+    public Map<Serializable, Serializable> retrieveAll(Collection<? extends Serializable> keys) throws ObjectStoreException {
+        Map<Serializable, Serializable> values = batchDelegate().retrieveAll(keys);
+        for (Serializable key : keys) {
+            if (values.containsKey(key)) {
+                accessed(key);
+            } else {
+                missed(key);
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public Map<Serializable, ObjectStoreException> removeAll(Collection<? extends Serializable> keys) throws ObjectStoreException {
+        Map<Serializable, ObjectStoreException> failures = batchDelegate().removeAll(keys);
+        List<Serializable> removed = new ArrayList<Serializable>(keys.size());
+        for (Serializable key : keys) {
+            ObjectStoreException failure = failures.get(key);
+            if (failure == null || failure instanceof ObjectDoesNotExistException) {
+                removed.add(key);
+            }
+        }
+        removed(removed);
+        return failures;
+    }
+
+    @Override
+    public int getSize() {
+        lock.lock();
+        try {
+            return policy.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getWeightedSize() {
+        lock.lock();
+        try {
+            return policy.weightedSize();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return missCount.get();
+    }
+
+    @Override
+    public double getHitRatio() {
+        long hits = this.hits.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private void accessed(Serializable key) {
+        hits.incrementAndGet();
+        if (accesses.offer(key)) {
+            tryDrainReads();
+        }
+    }
+
+    private void missed(Serializable key) {
+        missCount.incrementAndGet();
+        if (misses.offer(key)) {
+            tryDrainReads();
+        }
+    }
+
+    private void removed(List<Serializable> keys) {
+        lock.lock();
+        try {
+            drainReads();
+            for (Serializable key : keys) {
+                policy.recordRemove(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void written(Serializable key, Serializable value) throws ObjectStoreException {
+        int weight = weigh(key, value);
+        List<Serializable> victims = new ArrayList<Serializable>(1);
+        lock.lock();
+        try {
+            drainReads();
+            policy.recordWrite(key, weight, victims);
+        } finally {
+            lock.unlock();
+        }
+        for (Serializable victim : victims) {
+            if (ObjectStores.removeIfPresent(delegate, victim) == null) {
+                // Removed meanwhile
+                continue;
+            }
+            evictions.incrementAndGet();
+            if (listener != null) {
+                listener.evicted(victim);
+            }
+        }
+    }
+
+    private void tryDrainReads() {
+        if (lock.tryLock()) {
+            try {
+                drainReads();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Called holding the policy lock.
+     */
+    private void drainReads() {
+        accesses.drainTo(recordAccess);
+        misses.drainTo(recordMiss);
+    }
+
+    private int weigh(Serializable key, Serializable value) {
+        if (weigher == null) {
+            return 1;
+        }
+        Serializable weighed = value instanceof ExpiringValue ? ((ExpiringValue) value).getValue() : value;
+        return Math.max(0, weigher.weigh(key, weighed));
+    }
+}
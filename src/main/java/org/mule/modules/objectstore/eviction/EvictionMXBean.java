@@ -0,0 +1,31 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.eviction;
+
+/**
+ * JMX view of the statistics of an {@link EvictingObjectStore}.
+ */
+public interface EvictionMXBean {
+
+    int getSize();
+
+    /**
+     * @return the total weight of the entries, their number unless a weigher is set
+     */
+    long getWeightedSize();
+
+    long getHits();
+
+    long getMisses();
+
+    /**
+     * @return the ratio of reads that found the key, between 0 and 1
+     */
+    double getHitRatio();
+
+    long getEvictions();
+}
@@ -0,0 +1,86 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.eviction;
+
+import java.util.Arrays;
+
+/**
+ * Count-min sketch estimating how often keys were seen, with four rows of counters saturating at 15. Once the number of increments reaches ten times the
+ * width every counter is halved, so the estimates follow the recent popularity of the keys.
+ */
+class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int MAX_WIDTH = 1 << 22;
+    private static final int[] SEEDS = { 0x97cb3127, 0x2b5ad5c5, 0x4e72b0d1, 0xc1a3f58b };
+
+    private final byte[] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param expectedKeys
+     *            the number of keys tracked, the rows are twice as wide
+     */
+    FrequencySketch(long expectedKeys) {
+        int width = 64;
+        while (width < 2 * expectedKeys && width < MAX_WIDTH) {
+            width <<= 1;
+        }
+        counters = new byte[DEPTH * width];
+        mask = width - 1;
+        sampleSize = 10 * width;
+    }
+
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = row * (mask + 1) + indexOf(hash, row);
+            if (counters[index] < MAX_COUNT) {
+                counters[index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            frequency = Math.min(frequency, counters[row * (mask + 1) + indexOf(hash, row)]);
+        }
+        return frequency;
+    }
+
+    void clear() {
+        Arrays.fill(counters, (byte) 0);
+        additions = 0;
+    }
+
+    private void reset() {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = (byte) (counters[i] >>> 1);
+        }
+        additions /= 2;
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * SEEDS[row];
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 15);
+    }
+}
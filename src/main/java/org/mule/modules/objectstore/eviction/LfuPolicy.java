@@ -0,0 +1,131 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.eviction;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Evicts the key with the fewest reads and writes since it was stored, the least recently counted one among them. Keys are grouped by count, so counting
+ * an access costs O(log c) with c the number of distinct counts.
+ */
+class LfuPolicy implements Policy {
+
+    private final long maximumWeight;
+    private final Map<Serializable, Entry> entries = new HashMap<Serializable, Entry>();
+    private final TreeMap<Integer, LinkedHashSet<Serializable>> byCount = new TreeMap<Integer, LinkedHashSet<Serializable>>();
+    private long weightedSize;
+
+    LfuPolicy(long maximumWeight) {
+        this.maximumWeight = maximumWeight;
+    }
+
+    @Override
+    public void recordAccess(Serializable key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            increment(key, entry);
+        }
+    }
+
+    @Override
+    public void recordMiss(Serializable key) {
+    }
+
+    @Override
+    public void recordWrite(Serializable key, int weight, List<Serializable> victims) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            weightedSize += weight - entry.weight;
+            entry.weight = weight;
+            increment(key, entry);
+        } else {
+            entry = new Entry(weight);
+            entries.put(key, entry);
+            group(1).add(key);
+            weightedSize += weight;
+        }
+        while (weightedSize > maximumWeight && !byCount.isEmpty()) {
+            Map.Entry<Integer, LinkedHashSet<Serializable>> lowest = byCount.firstEntry();
+            Iterator<Serializable> it = lowest.getValue().iterator();
+            Serializable victim = it.next();
+            it.remove();
+            if (lowest.getValue().isEmpty()) {
+                byCount.remove(lowest.getKey());
+            }
+            weightedSize -= entries.remove(victim).weight;
+            victims.add(victim);
+        }
+    }
+
+    @Override
+    public void recordRemove(Serializable key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            ungroup(key, entry.count);
+            weightedSize -= entry.weight;
+        }
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+        byCount.clear();
+        weightedSize = 0;
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public long weightedSize() {
+        return weightedSize;
+    }
+
+    private void increment(Serializable key, Entry entry) {
+        if (entry.count == Integer.MAX_VALUE) {
+            return;
+        }
+        ungroup(key, entry.count);
+        entry.count++;
+        group(entry.count).add(key);
+    }
+
+    private LinkedHashSet<Serializable> group(int count) {
+        LinkedHashSet<Serializable> group = byCount.get(count);
+        if (group == null) {
+            group = new LinkedHashSet<Serializable>();
+            byCount.put(count, group);
+        }
+        return group;
+    }
+
+    private void ungroup(Serializable key, int count) {
+        LinkedHashSet<Serializable> group = byCount.get(count);
+        group.remove(key);
+        if (group.isEmpty()) {
+            byCount.remove(count);
+        }
+    }
+
+    private static final class Entry {
+
+        private int weight;
+        private int count = 1;
+
+        Entry(int weight) {
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.eviction;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * FIFO or LRU, evicting the first key of a linked hash map kept in insertion or in access order.
+ */
+class LinkedPolicy implements Policy {
+
+    private final long maximumWeight;
+    private final boolean accessOrder;
+    private final LinkedHashMap<Serializable, Integer> weights;
+    private long weightedSize;
+
+    LinkedPolicy(long maximumWeight, boolean accessOrder) {
+        this.maximumWeight = maximumWeight;
+        this.accessOrder = accessOrder;
+        this.weights = new LinkedHashMap<Serializable, Integer>(16, 0.75f, accessOrder);
+    }
+
+    @Override
+    public void recordAccess(Serializable key) {
+        if (accessOrder) {
+            weights.get(key);
+        }
+    }
+
+    @Override
+    public void recordMiss(Serializable key) {
+    }
+
+    @Override
+    public void recordWrite(Serializable key, int weight, List<Serializable> victims) {
+        // Overwriting counts as a new insertion, as the store removes and stores the key again
+        Integer previous = weights.remove(key);
+        if (previous != null) {
+            weightedSize -= previous;
+        }
+        weights.put(key, weight);
+        weightedSize += weight;
+        Iterator<Map.Entry<Serializable, Integer>> it = weights.entrySet().iterator();
+        while (weightedSize > maximumWeight && it.hasNext()) {
+            Map.Entry<Serializable, Integer> eldest = it.next();
+            weightedSize -= eldest.getValue();
+            victims.add(eldest.getKey());
+            it.remove();
+        }
+    }
+
+    @Override
+    public void recordRemove(Serializable key) {
+        Integer weight = weights.remove(key);
+        if (weight != null) {
+            weightedSize -= weight;
+        }
+    }
+
+    @Override
+    public void clear() {
+        weights.clear();
+        weightedSize = 0;
+    }
+
+    @Override
+    public int size() {
+        return weights.size();
+    }
+
+    @Override
+    public long weightedSize() {
+        return weightedSize;
+    }
+}
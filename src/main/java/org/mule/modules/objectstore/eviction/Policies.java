@@ -0,0 +1,35 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.eviction;
+
+import org.mule.modules.objectstore.EvictionPolicy;
+
+/**
+ * Creates the {@link Policy} of an {@link EvictionPolicy}.
+ */
+public final class Policies {
+
+    private Policies() {
+    }
+
+    /**
+     * @param maximumWeight
+     *            the maximum total weight of the entries
+     */
+    public static Policy newPolicy(EvictionPolicy policy, long maximumWeight) {
+        switch (policy != null ? policy : EvictionPolicy.FIFO) {
+        case LRU:
+            return new LinkedPolicy(maximumWeight, true);
+        case LFU:
+            return new LfuPolicy(maximumWeight);
+        case W_TINY_LFU:
+            return new TinyLfuPolicy(maximumWeight);
+        default:
+            return new LinkedPolicy(maximumWeight, false);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.eviction;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Keeps track of the keys of a bounded store and chooses the ones to evict. Implementations are not thread safe.
+ */
+public interface Policy {
+
+    /**
+     * A read found the key.
+     */
+    void recordAccess(Serializable key);
+
+    /**
+     * A read did not find the key.
+     */
+    void recordMiss(Serializable key);
+
+    /**
+     * The key was written with an entry of the given weight.
+     *
+     * @param victims
+     *            receives the keys to evict to stay under the maximum weight, which may include the key written
+     */
+    void recordWrite(Serializable key, int weight, List<Serializable> victims);
+
+    void recordRemove(Serializable key);
+
+    void clear();
+
+    int size();
+
+    long weightedSize();
+}
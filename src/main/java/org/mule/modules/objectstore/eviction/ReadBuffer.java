@@ -0,0 +1,90 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.eviction;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keys read since the policy last saw them, so that readers never wait for the policy lock.
+ * <p/>
+ * Readers add their key without locking to a small ring picked by their thread, and the key is dropped when the ring is full or another reader of the
+ * same ring is adding at the same time: losing a few reads only makes the policy slightly less precise. The rings are drained by whoever holds the
+ * policy lock.
+ */
+class ReadBuffer {
+
+    interface Consumer {
+
+        void accept(Serializable key);
+    }
+
+    // Keys a ring holds, a power of two
+    private static final int RING_SIZE = 16;
+    // Keys in a ring that make the reader try to drain
+    private static final int DRAIN_THRESHOLD = RING_SIZE / 2;
+
+    private final Ring[] rings;
+    private final int mask;
+
+    ReadBuffer() {
+        int size = 1;
+        while (size < Math.min(Runtime.getRuntime().availableProcessors(), 64)) {
+            size <<= 1;
+        }
+        rings = new Ring[size];
+        for (int i = 0; i < size; i++) {
+            rings[i] = new Ring();
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * @return true if the ring of the thread holds enough keys to be drained
+     */
+    boolean offer(Serializable key) {
+        Ring ring = rings[(int) (Thread.currentThread().getId() * 0x9E3779B9L >>> 16) & mask];
+        long head = ring.head.get();
+        long pending = ring.tail.get() - head;
+        if (pending < RING_SIZE && ring.tail.compareAndSet(head + pending, head + pending + 1)) {
+            ring.keys.lazySet((int) (head + pending) & (RING_SIZE - 1), key);
+            return pending + 1 >= DRAIN_THRESHOLD;
+        }
+        return true;
+    }
+
+    /**
+     * Called holding the policy lock.
+     */
+    void drainTo(Consumer consumer) {
+        for (Ring ring : rings) {
+            long head = ring.head.get();
+            long tail = ring.tail.get();
+            for (; head < tail; head++) {
+                int index = (int) head & (RING_SIZE - 1);
+                Serializable key = ring.keys.get(index);
+                if (key == null) {
+                    // Claimed but not written yet, left for the next drain
+                    break;
+                }
+                ring.keys.lazySet(index, null);
+                consumer.accept(key);
+            }
+            ring.head.lazySet(head);
+        }
+    }
+
+    private static class Ring {
+
+        private final AtomicReferenceArray<Serializable> keys = new AtomicReferenceArray<Serializable>(RING_SIZE);
+        // Next key to drain, only moved by the drain
+        private final AtomicLong head = new AtomicLong();
+        // Next slot to claim
+        private final AtomicLong tail = new AtomicLong();
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.eviction;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Window TinyLFU. New keys enter an LRU window holding 1% of the maximum weight. The key leaving the window competes with the least recently used key
+ * of the probation segment of the main area and only the one seen more often, according to a {@link FrequencySketch} of every read and write, stays.
+ * Keys read again while on probation move to the protected segment, holding 80% of the main area, and go back to probation when pushed out of it.
+ */
+class TinyLfuPolicy implements Policy {
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final long mainMaximum;
+    private final long protectedMaximum;
+    private final FrequencySketch sketch;
+    private final Map<Serializable, Entry> entries = new HashMap<Serializable, Entry>();
+    private final LinkedHashMap<Serializable, Entry> window = new LinkedHashMap<Serializable, Entry>(16, 0.75f, true);
+    private final LinkedHashMap<Serializable, Entry> probation = new LinkedHashMap<Serializable, Entry>(16, 0.75f, true);
+    private final LinkedHashMap<Serializable, Entry> protectedSegment = new LinkedHashMap<Serializable, Entry>(16, 0.75f, true);
+    private long windowWeight;
+    private long probationWeight;
+    private long protectedWeight;
+
+    TinyLfuPolicy(long maximumWeight) {
+        this.maximumWeight = maximumWeight;
+        this.windowMaximum = Math.max(1, maximumWeight / 100);
+        this.mainMaximum = Math.max(0, maximumWeight - windowMaximum);
+        this.protectedMaximum = mainMaximum * 8 / 10;
+        this.sketch = new FrequencySketch(maximumWeight);
+    }
+
+    @Override
+    public void recordAccess(Serializable key) {
+        sketch.increment(key);
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            touch(key, entry);
+        }
+    }
+
+    @Override
+    public void recordMiss(Serializable key) {
+        sketch.increment(key);
+    }
+
+    @Override
+    public void recordWrite(Serializable key, int weight, List<Serializable> victims) {
+        sketch.increment(key);
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            adjust(entry, weight - entry.weight);
+            entry.weight = weight;
+            touch(key, entry);
+        } else {
+            entry = new Entry(weight);
+            entries.put(key, entry);
+            window.put(key, entry);
+            windowWeight += weight;
+        }
+        evict(victims);
+    }
+
+    @Override
+    public void recordRemove(Serializable key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            segment(entry).remove(key);
+            adjust(entry, -entry.weight);
+        }
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+        window.clear();
+        probation.clear();
+        protectedSegment.clear();
+        windowWeight = 0;
+        probationWeight = 0;
+        protectedWeight = 0;
+        sketch.clear();
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public long weightedSize() {
+        return windowWeight + probationWeight + protectedWeight;
+    }
+
+    private void touch(Serializable key, Entry entry) {
+        if (entry.segment == PROBATION) {
+            probation.remove(key);
+            probationWeight -= entry.weight;
+            entry.segment = PROTECTED;
+            protectedSegment.put(key, entry);
+            protectedWeight += entry.weight;
+            demote();
+        } else {
+            // Moves the key to the most recently used end
+            segment(entry).get(key);
+            if (entry.segment == PROTECTED) {
+                demote();
+            }
+        }
+    }
+
+    private void evict(List<Serializable> victims) {
+        while (windowWeight > windowMaximum) {
+            Map.Entry<Serializable, Entry> eldest = window.entrySet().iterator().next();
+            Serializable candidate = eldest.getKey();
+            Entry entry = eldest.getValue();
+            window.remove(candidate);
+            windowWeight -= entry.weight;
+            if (probationWeight + protectedWeight + entry.weight > mainMaximum) {
+                Serializable victim = mainVictim();
+                if (victim == null || sketch.frequency(candidate) <= sketch.frequency(victim)) {
+                    entries.remove(candidate);
+                    victims.add(candidate);
+                    continue;
+                }
+                while (victim != null && probationWeight + protectedWeight + entry.weight > mainMaximum) {
+                    recordRemove(victim);
+                    victims.add(victim);
+                    victim = mainVictim();
+                }
+            }
+            entry.segment = PROBATION;
+            probation.put(candidate, entry);
+            probationWeight += entry.weight;
+        }
+        while (probationWeight + protectedWeight > mainMaximum) {
+            Serializable victim = mainVictim();
+            recordRemove(victim);
+            victims.add(victim);
+        }
+        // Only reached when a single key in the window weighs more than the maximum
+        while (weightedSize() > maximumWeight && !window.isEmpty()) {
+            Serializable victim = window.keySet().iterator().next();
+            recordRemove(victim);
+            victims.add(victim);
+        }
+    }
+
+    /**
+     * Moves the least recently used keys of the protected segment back to probation while it is over its maximum.
+     */
+    private void demote() {
+        while (protectedWeight > protectedMaximum) {
+            Map.Entry<Serializable, Entry> eldest = protectedSegment.entrySet().iterator().next();
+            Entry entry = eldest.getValue();
+            protectedSegment.remove(eldest.getKey());
+            protectedWeight -= entry.weight;
+            entry.segment = PROBATION;
+            probation.put(eldest.getKey(), entry);
+            probationWeight += entry.weight;
+        }
+    }
+
+    private Serializable mainVictim() {
+        if (!probation.isEmpty()) {
+            return probation.keySet().iterator().next();
+        }
+        if (!protectedSegment.isEmpty()) {
+            return protectedSegment.keySet().iterator().next();
+        }
+        return null;
+    }
+
+    private LinkedHashMap<Serializable, Entry> segment(Entry entry) {
+        return entry.segment == WINDOW ? window : entry.segment == PROBATION ? probation : protectedSegment;
+    }
+
+    private void adjust(Entry entry, long delta) {
+        if (entry.segment == WINDOW) {
+            windowWeight += delta;
+        } else if (entry.segment == PROBATION) {
+            probationWeight += delta;
+        } else {
+            protectedWeight += delta;
+        }
+    }
+
+    private static final class Entry {
+
+        private int weight;
+        private int segment = WINDOW;
+
+        Entry(int weight) {
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.eviction;
+
+import java.io.Serializable;
+
+/**
+ * Tells how much an entry counts toward maxEntries, for instance the size of its value.
+ */
+public interface Weigher {
+
+    /**
+     * @return the weight of the entry, zero or more
+     */
+    int weigh(Serializable key, Serializable value);
+}
@@ -0,0 +1,346 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.expiry;
+
+import org.mule.api.store.ObjectAlreadyExistsException;
+import org.mule.api.store.ListableObjectStore;
+import org.mule.api.store.ObjectDoesNotExistException;
+import org.mule.api.store.ObjectStore;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.modules.objectstore.store.ObjectStoreDecorator;
+import org.mule.modules.objectstore.store.ObjectStores;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Gives the entries of the decorated store a time to live. Values with a time to live are stored as {@link ExpiringValue}s, either because they were
+ * wrapped with {@link #withTtl(Serializable, long)} or because a default time to live is set.
+ * <p/>
+ * Expired values are never returned: reads check the expiration of the value they find, so expiring needs no sweep of the store. Expired values are
+ * removed by a {@link TimingWheel}, calling {@link #removeIfExpired(Serializable, long)} once they expire. Writes replace the expiration of the key
+ * and removals cancel it, so the wheel holds one expiration per key at most. Keys listed or paged may include values that expired less than one
+ * tick ago.
+ * <p/>
+ * Values stored before a restart are scheduled again by {@link #reschedule()}, values that expired while the application was stopped are removed on
+ * the first tick.
+ */
+public class ExpiringObjectStore extends ObjectStoreDecorator {
+
+    private final long defaultTtl;
+    private final TimingWheel wheel;
+
+    /**
+     * @param defaultTtl
+     *            time to live in milliseconds of the values stored without one, zero or less for none
+     */
+    public ExpiringObjectStore(ObjectStore<Serializable> delegate, long defaultTtl, TimingWheel wheel) {
+        super(delegate);
+        this.defaultTtl = defaultTtl > 0 ? defaultTtl : 0;
+        this.wheel = wheel;
+    }
+
+    /**
+     * Schedules the removal of the values with a time to live already in the decorated store, for instance stored before a restart. Does nothing if the
+     * decorated store is not listable.
+     *
+     * @return the number of values scheduled
+     */
+    @SuppressWarnings("unchecked")
+    public int reschedule() throws ObjectStoreException {
+        int scheduled = 0;
+        if (!(delegate instanceof ListableObjectStore)) {
+            return scheduled;
+        }
+        for (Serializable key : ((ListableObjectStore<Serializable>) delegate).allKeys()) {
+            Serializable stored = ObjectStores.lookup(delegate, key);
+            if (stored instanceof ExpiringValue) {
+                schedule(key, stored);
+                scheduled++;
+            }
+        }
+        return scheduled;
+    }
+
+    /**
+     * @param ttl
+     *            time to live in milliseconds, null to use the default time to live
+     * @return the value to store so it expires after the given time to live
+     */
+    public Serializable withTtl(Serializable value, Integer ttl) {
+        if (ttl == null || ttl <= 0 || value instanceof ExpiringValue) {
+            return value;
+        }
+        return new ExpiringValue(value, System.currentTimeMillis() + ttl);
+    }
+
+    /**
+     * Removes the value of the key if it is still the one expiring at the given time. Called holding the key lock.
+     *
+     * @return true if the value was removed
+     */
+    public boolean removeIfExpired(Serializable key, long expiresAt) throws ObjectStoreException {
+        Serializable stored = ObjectStores.lookup(delegate, key);
+        if (!(stored instanceof ExpiringValue) || ((ExpiringValue) stored).getExpiresAt() != expiresAt || !isExpired(stored)) {
+            return false;
+        }
+        if (ObjectStores.removeIfPresent(delegate, key) == null) {
+            return false;
+        }
+        wheel.expired();
+        return true;
+    }
+
+    /**
+     * @return the value of the key together with its expiration, values stored without a time to live are returned as never expiring, or null if the
+     *         key has no value or it expired
+     */
+    public ExpiringValue lookupEntry(Serializable key) throws ObjectStoreException {
+        Serializable stored = lookupStored(key);
+        if (stored == null) {
+            return null;
+        }
+        return stored instanceof ExpiringValue ? (ExpiringValue) stored : new ExpiringValue(stored, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return the value of the key as stored, an {@link ExpiringValue} if it has a time to live, or null if the key has no value or it expired
+     */
+    public Serializable lookupStored(Serializable key) throws ObjectStoreException {
+        Serializable stored = ObjectStores.lookup(delegate, key);
+        return stored == null || isExpired(key, stored) ? null : stored;
+    }
+
+    /**
+     * @return the time to live in milliseconds of the values stored without one, zero for none
+     */
+    public long getDefaultTtl() {
+        return defaultTtl;
+    }
+
+    public TimingWheel getWheel() {
+        return wheel;
+    }
+
+    @Override
+    public boolean contains(Serializable key) throws ObjectStoreException {
+        // Any value may carry a time to live, whoever stored it
+        Serializable stored = ObjectStores.lookup(delegate, key);
+        return stored != null && !isExpired(key, stored);
+    }
+
+    @Override
+    public void store(Serializable key, Serializable value) throws ObjectStoreException {
+        Serializable stored = expiring(value);
+        try {
+            delegate.store(key, stored);
+        } catch (ObjectAlreadyExistsException e) {
+            if (!removeExpired(key)) {
+                throw e;
+            }
+            delegate.store(key, stored);
+        }
+        schedule(key, stored);
+    }
+
+    @Override
+    public Serializable retrieve(Serializable key) throws ObjectStoreException {
+        Serializable stored = delegate.retrieve(key);
+        if (isExpired(key, stored)) {
+            throw doesNotExist(key);
+        }
+        return unwrap(stored);
+    }
+
+    @Override
+    public Serializable remove(Serializable key) throws ObjectStoreException {
+        Serializable removed = delegate.remove(key);
+        cancel(key, removed);
+        if (isExpired(removed)) {
+            throw doesNotExist(key);
+        }
+        return unwrap(removed);
+    }
+
+    @Override
+    public Serializable lookup(Serializable key) throws ObjectStoreException {
+        Serializable stored = ObjectStores.lookup(delegate, key);
+        return stored == null || isExpired(key, stored) ? null : unwrap(stored);
+    }
+
+    @Override
+    public Serializable removeIfPresent(Serializable key) throws ObjectStoreException {
+        Serializable removed = ObjectStores.removeIfPresent(delegate, key);
+        cancel(key, removed);
+        return isExpired(removed) ? null : unwrap(removed);
+    }
+
+    @Override
+    public void clear() throws ObjectStoreException {
+        delegate.clear();
+        wheel.cancelAll();
+    }
+
+    @Override
+    public Serializable putIfAbsent(Serializable key, Serializable value) throws ObjectStoreException {
+        Serializable stored = expiring(value);
+        while (true) {
+            Serializable existing = atomicDelegate().putIfAbsent(key, stored);
+            if (existing == null) {
+                schedule(key, stored);
+                return null;
+            }
+            if (!isExpired(existing)) {
+                return unwrap(existing);
+            }
+            if (atomicDelegate().replace(key, existing, stored)) {
+                schedule(key, stored);
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public boolean replace(Serializable key, Serializable expected, Serializable value) throws ObjectStoreException {
+        Serializable stored = expiring(value);
+        boolean replaced = atomicDelegate().replace(key, expected, stored);
+        if (!replaced) {
+            // The current value may have a time to live, compare its content instead
+            Serializable current = ObjectStores.lookup(delegate, key);
+            if (current instanceof ExpiringValue && !isExpired(current) && ObjectStores.sameValue(expected, unwrap(current))) {
+                replaced = atomicDelegate().replace(key, current, stored);
+            }
+        }
+        if (replaced) {
+            schedule(key, stored);
+        }
+        return replaced;
+    }
+
+    @Override
+    public Serializable put(Serializable key, Serializable value) throws ObjectStoreException {
+        Serializable stored = expiring(value);
+        Serializable previous = atomicDelegate().put(key, stored);
+        schedule(key, stored);
+        return isExpired(previous) ? null : unwrap(previous);
+    }
+
+    @Override
+    public Map<Serializable, ObjectStoreException> storeAll(Map<Serializable, Serializable> entries, boolean overwrite) throws ObjectStoreException {
+        Map<Serializable, Serializable> stored = new HashMap<Serializable, Serializable>(entries.size() * 2);
+        for (Map.Entry<Serializable, Serializable> entry : entries.entrySet()) {
+            stored.put(entry.getKey(), expiring(entry.getValue()));
+        }
+        Map<Serializable, ObjectStoreException> failures = batchDelegate().storeAll(stored, overwrite);
+        Iterator<Map.Entry<Serializable, ObjectStoreException>> it = failures.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Serializable, ObjectStoreException> failure = it.next();
+            if (failure.getValue() instanceof ObjectAlreadyExistsException && removeExpired(failure.getKey())) {
+                delegate.store(failure.getKey(), stored.get(failure.getKey()));
+                it.remove();
+            }
+        }
+        for (Map.Entry<Serializable, Serializable> entry : stored.entrySet()) {
+            if (!failures.containsKey(entry.getKey())) {
+                schedule(entry.getKey(), entry.getValue());
+            }
+        }
+        return failures;
+    }
+
+    @Override
+    public Map<Serializable, Serializable> retrieveAll(Collection<? extends Serializable> keys) throws ObjectStoreException {
+        Map<Serializable, Serializable> values = batchDelegate().retrieveAll(keys);
+        Iterator<Map.Entry<Serializable, Serializable>> it = values.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Serializable, Serializable> entry = it.next();
+            if (isExpired(entry.getKey(), entry.getValue())) {
+                it.remove();
+            } else {
+                entry.setValue(unwrap(entry.getValue()));
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public Map<Serializable, ObjectStoreException> removeAll(Collection<? extends Serializable> keys) throws ObjectStoreException {
+        Map<Serializable, ObjectStoreException> failures = batchDelegate().removeAll(keys);
+        for (Serializable key : keys) {
+            if (!failures.containsKey(key)) {
+                wheel.cancel(key);
+            }
+        }
+        return failures;
+    }
+
+    private Serializable expiring(Serializable value) {
+        if (value instanceof ExpiringValue) {
+            return value;
+        }
+        return defaultTtl > 0 ? new ExpiringValue(value, System.currentTimeMillis() + defaultTtl) : value;
+    }
+
+    private void schedule(Serializable key, Serializable stored) {
+        if (stored instanceof ExpiringValue) {
+            wheel.schedule(key, ((ExpiringValue) stored).getExpiresAt());
+        } else {
+            // Overwriting a value with a time to live
+            wheel.cancel(key);
+        }
+    }
+
+    private void cancel(Serializable key, Serializable removed) {
+        if (removed instanceof ExpiringValue) {
+            wheel.cancel(key);
+        }
+    }
+
+    /**
+     * @return true if the key had an expired value, which is now removed
+     */
+    private boolean removeExpired(Serializable key) throws ObjectStoreException {
+        Serializable stored = ObjectStores.lookup(delegate, key);
+        if (stored != null && !isExpired(stored)) {
+            return false;
+        }
+        // Unless removed meanwhile
+        if (stored != null && ObjectStores.removeIfPresent(delegate, key) != null) {
+            wheel.expired();
+        }
+        return true;
+    }
+
+    /**
+     * Same as {@link #isExpired(Serializable)}, also scheduling the removal of the key when the value expired, in case it was not scheduled yet.
+     */
+    private boolean isExpired(Serializable key, Serializable stored) {
+        if (!isExpired(stored)) {
+            return false;
+        }
+        wheel.scheduleIfAbsent(key, ((ExpiringValue) stored).getExpiresAt());
+        return true;
+    }
+
+    private boolean isExpired(Serializable stored) {
+        if (!(stored instanceof ExpiringValue)) {
+            return false;
+        }
+        return ((ExpiringValue) stored).isExpired(System.currentTimeMillis());
+    }
+
+    private static Serializable unwrap(Serializable stored) {
+        return stored instanceof ExpiringValue ? ((ExpiringValue) stored).getValue() : stored;
+    }
+
+    private static ObjectDoesNotExistException doesNotExist(Serializable key) {
+        return ObjectStores.doesNotExist(key);
+    }
+}
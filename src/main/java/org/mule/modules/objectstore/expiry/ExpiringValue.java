@@ -0,0 +1,62 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.expiry;
+
+import org.mule.modules.objectstore.store.ObjectStores;
+
+import java.io.Serializable;
+
+/**
+ * A value stored together with the time it expires at. Values stored with a time to live are kept in the object store wrapped in this class, so the
+ * expiration survives restarts and is seen by every node sharing the store.
+ */
+public final class ExpiringValue implements Serializable {
+
+    private static final long serialVersionUID = -3807052385729402153L;
+
+    private final Serializable value;
+    private final long expiresAt;
+
+    public ExpiringValue(Serializable value, long expiresAt) {
+        this.value = value;
+        this.expiresAt = expiresAt;
+    }
+
+    public Serializable getValue() {
+        return value;
+    }
+
+    /**
+     * @return the time the value expires at, in milliseconds since the epoch
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public boolean isExpired(long now) {
+        return expiresAt <= now;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof ExpiringValue)) {
+            return false;
+        }
+        ExpiringValue that = (ExpiringValue) other;
+        return expiresAt == that.expiresAt && ObjectStores.sameValue(value, that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (expiresAt ^ (expiresAt >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return "ExpiringValue[" + value + ", expiresAt=" + expiresAt + "]";
+    }
+}
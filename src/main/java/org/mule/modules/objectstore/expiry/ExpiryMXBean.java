@@ -0,0 +1,28 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.expiry;
+
+/**
+ * JMX view of the statistics of a {@link TimingWheel}.
+ */
+public interface ExpiryMXBean {
+
+    /**
+     * @return the number of expirations waiting in the wheel, one per key at most, including the cancelled ones not dropped yet
+     */
+    int getPending();
+
+    /**
+     * @return the number of expirations that fired
+     */
+    long getFired();
+
+    /**
+     * @return the number of entries removed because they expired
+     */
+    long getExpired();
+}
@@ -0,0 +1,279 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.expiry;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mule.util.concurrent.DaemonThreadFactory;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hashed timing wheel firing the expiration of keys. Scheduling an expiration adds it to the bucket of its tick in O(1), and every tick only the
+ * expirations of one bucket are visited, so the cost of a tick does not depend on how many keys the store holds. Expirations further away than one
+ * revolution of the wheel stay in their bucket until the revolution they are due.
+ * <p/>
+ * A key has at most one expiration in the wheel. Scheduling it again moves the expiration to the new time, later ones when their bucket is visited
+ * and earlier ones at once, and cancelling it drops it on its next visit, so overwriting a key never adds to the wheel. The {@link Expirer} still
+ * has to check that the stored value is the one that expired, as a write and its scheduling are not atomic. Expirations fire up to one tick late.
+ * The wheel starts its thread with the first expiration scheduled.
+ */
+public class TimingWheel implements ExpiryMXBean {
+
+    public static final long DEFAULT_TICK = 1000;
+
+    private static final Log logger = LogFactory.getLog(TimingWheel.class);
+
+    private static final int WHEEL_SIZE = 512;
+
+    // Expiration time of a cancelled expiration, dropped when its bucket is visited
+    private static final long CANCELLED = Long.MIN_VALUE;
+
+    /**
+     * Removes the value of a key once it expires.
+     */
+    public interface Expirer {
+
+        /**
+         * @param expiresAt
+         *            the expiration time the key was scheduled with
+         */
+        void expire(Serializable key, long expiresAt);
+    }
+
+    private final String name;
+    private final long tick;
+    private final Expirer expirer;
+    private final List<Queue<Expiration>> buckets;
+    private final ConcurrentMap<Serializable, Expiration> scheduled = new ConcurrentHashMap<Serializable, Expiration>();
+    private final long origin = System.currentTimeMillis();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong fired = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private volatile long currentTick;
+    private volatile ScheduledExecutorService executor;
+    private boolean disposed;
+
+    /**
+     * @param tick
+     *            milliseconds between two ticks of the wheel, zero or less for the default
+     */
+    public TimingWheel(String name, long tick, Expirer expirer) {
+        this.name = name;
+        this.tick = tick > 0 ? tick : DEFAULT_TICK;
+        this.expirer = expirer;
+        this.buckets = new ArrayList<Queue<Expiration>>(WHEEL_SIZE);
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            buckets.add(new ConcurrentLinkedQueue<Expiration>());
+        }
+    }
+
+    /**
+     * Schedules the expiration of the key at the given time, replacing the one already scheduled for it.
+     */
+    public void schedule(Serializable key, long expiresAt) {
+        schedule(key, expiresAt, true);
+    }
+
+    /**
+     * Schedules the expiration of the key at the given time unless one is already scheduled for it.
+     */
+    public void scheduleIfAbsent(Serializable key, long expiresAt) {
+        schedule(key, expiresAt, false);
+    }
+
+    /**
+     * Cancels the expiration scheduled for the key, if any.
+     */
+    public void cancel(Serializable key) {
+        Expiration current = scheduled.get(key);
+        if (current != null) {
+            synchronized (current) {
+                if (scheduled.get(key) == current) {
+                    current.expiresAt = CANCELLED;
+                }
+            }
+        }
+    }
+
+    /**
+     * Cancels every expiration scheduled.
+     */
+    public void cancelAll() {
+        for (Serializable key : scheduled.keySet()) {
+            cancel(key);
+        }
+    }
+
+    public synchronized void dispose() {
+        disposed = true;
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        for (Queue<Expiration> bucket : buckets) {
+            bucket.clear();
+        }
+        scheduled.clear();
+        pending.set(0);
+    }
+
+    /**
+     * Called by the {@link Expirer} when it removed an expired value.
+     */
+    public void expired() {
+        expired.incrementAndGet();
+    }
+
+    @Override
+    public int getPending() {
+        return pending.get();
+    }
+
+    @Override
+    public long getFired() {
+        return fired.get();
+    }
+
+    @Override
+    public long getExpired() {
+        return expired.get();
+    }
+
+    private void schedule(Serializable key, long expiresAt, boolean replace) {
+        start();
+        while (true) {
+            Expiration current = scheduled.get(key);
+            if (current == null) {
+                Expiration created = new Expiration(key);
+                synchronized (created) {
+                    if (scheduled.putIfAbsent(key, created) == null) {
+                        created.expiresAt = expiresAt;
+                        created.deadline = deadline(expiresAt);
+                        buckets.get(bucket(created.deadline)).add(created);
+                        pending.incrementAndGet();
+                        return;
+                    }
+                }
+                continue;
+            }
+            synchronized (current) {
+                // Dropped by the timer thread meanwhile
+                if (scheduled.get(key) != current) {
+                    continue;
+                }
+                if (!replace && current.expiresAt != CANCELLED) {
+                    return;
+                }
+                current.expiresAt = expiresAt;
+                long deadline = deadline(expiresAt);
+                // A later expiration is moved when its current bucket is visited. Not in its bucket if the timer thread is visiting it, which then
+                // moves or fires it
+                if (deadline < current.deadline && buckets.get(bucket(current.deadline)).remove(current)) {
+                    current.deadline = deadline;
+                    buckets.get(bucket(deadline)).add(current);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the tick of the bucket an expiration at the given time is added to, two ticks ahead of the current one so the bucket the timer thread
+     *         is visiting is never used
+     */
+    private long deadline(long expiresAt) {
+        return Math.max(tickOf(expiresAt), currentTick + 2);
+    }
+
+    private long tickOf(long expiresAt) {
+        return (expiresAt - origin + tick - 1) / tick;
+    }
+
+    private static int bucket(long deadline) {
+        return (int) (deadline % WHEEL_SIZE);
+    }
+
+    private void start() {
+        if (executor == null) {
+            synchronized (this) {
+                if (executor == null && !disposed) {
+                    ScheduledExecutorService started = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(name + ".expiration"));
+                    started.scheduleAtFixedRate(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            advance();
+                        }
+                    }, tick, tick, TimeUnit.MILLISECONDS);
+                    executor = started;
+                }
+            }
+        }
+    }
+
+    private void advance() {
+        long target = (System.currentTimeMillis() - origin) / tick;
+        while (currentTick < target) {
+            long next = currentTick + 1;
+            currentTick = next;
+            Queue<Expiration> bucket = buckets.get(bucket(next));
+            // Only the expirations present when the visit starts, the ones due in a later revolution or moved are added back
+            for (int i = bucket.size(); i > 0; i--) {
+                Expiration expiration = bucket.poll();
+                if (expiration == null) {
+                    break;
+                }
+                long expiresAt;
+                synchronized (expiration) {
+                    expiresAt = expiration.expiresAt;
+                    if (expiresAt != CANCELLED && tickOf(expiresAt) > next) {
+                        expiration.deadline = tickOf(expiresAt);
+                        buckets.get(bucket(expiration.deadline)).add(expiration);
+                        continue;
+                    }
+                    scheduled.remove(expiration.key, expiration);
+                    pending.decrementAndGet();
+                }
+                if (expiresAt != CANCELLED) {
+                    fired.incrementAndGet();
+                    try {
+                        expirer.expire(expiration.key, expiresAt);
+                    } catch (RuntimeException e) {
+                        logger.warn("Could not expire the key " + expiration.key, e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The expiration of a key, changed holding its monitor.
+     */
+    private static final class Expiration {
+
+        private final Serializable key;
+        private long expiresAt;
+        // Tick of the bucket holding the expiration
+        private long deadline;
+
+        Expiration(Serializable key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.filter;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counting Bloom filter of keys: a key it never saw is reported as missing, except for the configured share of false positives, and a key it saw is
+ * never reported as missing. Every slot is a 4-bit counter, so keys can be removed as well; a counter reaching 15 stays there, making its slots answer
+ * "maybe" for good rather than risking a false negative.
+ * <p/>
+ * Counters are packed sixteen to a long and updated with compare-and-set, adding and removing keys takes no lock.
+ */
+public class KeyFilter implements KeyFilterMXBean {
+
+    static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+    private static final int COUNTERS_PER_WORD = 16;
+    private static final long MAX_COUNT = 15;
+
+    private final AtomicLongArray words;
+    private final int slots;
+    private final int hashes;
+    private final int expectedEntries;
+    private final double falsePositiveRate;
+
+    private final AtomicLong entries = new AtomicLong();
+    private final AtomicLong negatives = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+
+    /**
+     * @param expectedEntries
+     *            number of keys the filter is sized for
+     * @param falsePositiveRate
+     *            share of missing keys reported as maybe present once the filter holds expectedEntries keys, between 0 and 1 exclusive
+     */
+    public KeyFilter(int expectedEntries, double falsePositiveRate) {
+        this.expectedEntries = Math.max(expectedEntries, 1);
+        this.falsePositiveRate = falsePositiveRate > 0 && falsePositiveRate < 1 ? falsePositiveRate : DEFAULT_FALSE_POSITIVE_RATE;
+        // Optimal number of slots and hashes for n entries at rate p: m = -n ln p / (ln 2)^2 and k = m / n ln 2
+        double optimal = -this.expectedEntries * Math.log(this.falsePositiveRate) / (Math.log(2) * Math.log(2));
+        long words = Math.min(((long) Math.ceil(optimal) + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD, Integer.MAX_VALUE / COUNTERS_PER_WORD);
+        this.words = new AtomicLongArray((int) Math.max(words, 1));
+        this.slots = this.words.length() * COUNTERS_PER_WORD;
+        this.hashes = Math.max(1, (int) Math.round((double) slots / this.expectedEntries * Math.log(2)));
+    }
+
+    /**
+     * @return false if the key is certainly not in the filter
+     */
+    public boolean mightContain(Serializable key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            if (count(slot(h1 + i * h2)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void add(Serializable key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            update(slot(h1 + i * h2), 1);
+        }
+        entries.incrementAndGet();
+    }
+
+    /**
+     * Removes a key that was added. Removing a key that was not added may make the filter report present keys as missing.
+     */
+    public void remove(Serializable key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            update(slot(h1 + i * h2), -1);
+        }
+        entries.decrementAndGet();
+    }
+
+    public void clear() {
+        for (int i = 0; i < words.length(); i++) {
+            words.set(i, 0);
+        }
+        entries.set(0);
+    }
+
+    /**
+     * Counts a lookup the filter answered on its own.
+     */
+    public void negative() {
+        negatives.incrementAndGet();
+    }
+
+    /**
+     * Counts a key the filter reported as maybe present that the store did not have.
+     */
+    public void falsePositive() {
+        falsePositives.incrementAndGet();
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        return (long) words.length() * 8;
+    }
+
+    @Override
+    public int getExpectedEntries() {
+        return expectedEntries;
+    }
+
+    @Override
+    public long getEntries() {
+        return entries.get();
+    }
+
+    @Override
+    public double getFalsePositiveRate() {
+        // (1 - e^(-kn/m))^k for the current number of entries
+        return Math.pow(1 - Math.exp(-(double) hashes * Math.max(entries.get(), 0) / slots), hashes);
+    }
+
+    @Override
+    public long getAvoidedLookups() {
+        return negatives.get();
+    }
+
+    @Override
+    public long getFalsePositives() {
+        return falsePositives.get();
+    }
+
+    private int slot(int hash) {
+        return (hash & Integer.MAX_VALUE) % slots;
+    }
+
+    private long count(int slot) {
+        return (words.get(slot / COUNTERS_PER_WORD) >>> shift(slot)) & MAX_COUNT;
+    }
+
+    private void update(int slot, int delta) {
+        int word = slot / COUNTERS_PER_WORD;
+        int shift = shift(slot);
+        while (true) {
+            long current = words.get(word);
+            long count = (current >>> shift) & MAX_COUNT;
+            // A saturated counter no longer knows how many keys share it
+            if (count == MAX_COUNT || (delta < 0 && count == 0)) {
+                return;
+            }
+            long updated = (current & ~(MAX_COUNT << shift)) | ((count + delta) << shift);
+            if (words.compareAndSet(word, current, updated)) {
+                return;
+            }
+        }
+    }
+
+    private static int shift(int slot) {
+        return (slot % COUNTERS_PER_WORD) * 4;
+    }
+
+    /**
+     * 64-bit hash of the key, whose two halves index the slots. Strings are hashed over their characters, other keys from their hash code; both go
+     * through the MurmurHash3 finalizer.
+     */
+    static long hash(Serializable key) {
+        long h;
+        if (key instanceof String) {
+            String value = (String) key;
+            h = 0xcbf29ce484222325L;
+            for (int i = 0; i < value.length(); i++) {
+                h ^= value.charAt(i);
+                h *= 0x100000001b3L;
+            }
+        } else {
+            h = key.hashCode();
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
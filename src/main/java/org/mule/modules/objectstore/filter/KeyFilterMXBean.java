@@ -0,0 +1,28 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.filter;
+
+/**
+ * JMX view of the size and effectiveness of a {@link KeyFilter}.
+ */
+public interface KeyFilterMXBean {
+
+    long getMemoryBytes();
+
+    int getExpectedEntries();
+
+    long getEntries();
+
+    /**
+     * @return the expected share of missing keys reported as maybe present, given the current number of entries
+     */
+    double getFalsePositiveRate();
+
+    long getAvoidedLookups();
+
+    long getFalsePositives();
+}
@@ -0,0 +1,204 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.filter;
+
+import org.mule.api.store.ListableObjectStore;
+import org.mule.api.store.ObjectStore;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.modules.objectstore.store.ObjectStoreDecorator;
+import org.mule.modules.objectstore.store.ObjectStores;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Answers contains and retrieve for missing keys from a {@link KeyFilter}, without going to the decorated store.
+ * <p/>
+ * Keys are added to the filter before they are written and removed from it once the decorated store removed them, so a concurrent reader never misses a
+ * stored key. The filter is built from the keys of the decorated store by {@link #rebuild()}, keys stored by anyone else afterwards are reported as
+ * missing.
+ */
+public class KeyFilterObjectStore extends ObjectStoreDecorator {
+
+    private final KeyFilter filter;
+
+    public KeyFilterObjectStore(ObjectStore<Serializable> delegate, KeyFilter filter) {
+        super(delegate);
+        this.filter = filter;
+    }
+
+    public KeyFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Rebuilds the filter from the keys of the decorated store, which has to be listable.
+     */
+    @SuppressWarnings("unchecked")
+    public void rebuild() throws ObjectStoreException {
+        filter.clear();
+        for (Serializable key : ((ListableObjectStore<Serializable>) delegate).allKeys()) {
+            filter.add(key);
+        }
+    }
+
+    @Override
+    public boolean contains(Serializable key) throws ObjectStoreException {
+        if (!mightContain(key)) {
+            return false;
+        }
+        boolean contains = delegate.contains(key);
+        if (!contains) {
+            filter.falsePositive();
+        }
+        return contains;
+    }
+
+    @Override
+    public Serializable retrieve(Serializable key) throws ObjectStoreException {
+        if (!mightContain(key)) {
+            throw ObjectStores.doesNotExist(key);
+        }
+        return delegate.retrieve(key);
+    }
+
+    @Override
+    public Serializable lookup(Serializable key) throws ObjectStoreException {
+        if (!mightContain(key)) {
+            return null;
+        }
+        Serializable value = ObjectStores.lookup(delegate, key);
+        if (value == null) {
+            filter.falsePositive();
+        }
+        return value;
+    }
+
+    @Override
+    public void store(Serializable key, Serializable value) throws ObjectStoreException {
+        filter.add(key);
+        boolean stored = false;
+        try {
+            delegate.store(key, value);
+            stored = true;
+        } finally {
+            if (!stored) {
+                filter.remove(key);
+            }
+        }
+    }
+
+    @Override
+    public Serializable remove(Serializable key) throws ObjectStoreException {
+        Serializable value = delegate.remove(key);
+        filter.remove(key);
+        return value;
+    }
+
+    @Override
+    public Serializable removeIfPresent(Serializable key) throws ObjectStoreException {
+        Serializable value = ObjectStores.removeIfPresent(delegate, key);
+        if (value != null) {
+            filter.remove(key);
+        }
+        return value;
+    }
+
+    @Override
+    public void clear() throws ObjectStoreException {
+        delegate.clear();
+        filter.clear();
+    }
+
+    @Override
+    public Serializable putIfAbsent(Serializable key, Serializable value) throws ObjectStoreException {
+        filter.add(key);
+        Serializable existing = null;
+        try {
+            existing = atomicDelegate().putIfAbsent(key, value);
+        } finally {
+            if (existing != null) {
+                filter.remove(key);
+            }
+        }
+        return existing;
+    }
+
+    @Override
+    public Serializable put(Serializable key, Serializable value) throws ObjectStoreException {
+        filter.add(key);
+        Serializable previous = null;
+        try {
+            previous = atomicDelegate().put(key, value);
+        } finally {
+            if (previous != null) {
+                filter.remove(key);
+            }
+        }
+        return previous;
+    }
+
+    /**
+     * Keys overwritten by the batch stay in the filter once more, which only makes them answer "maybe" after they are removed.
+     */
+    @Override
+    public Map<Serializable, ObjectStoreException> storeAll(Map<Serializable, Serializable> entries, boolean overwrite) throws ObjectStoreException {
+        for (Serializable key : entries.keySet()) {
+            filter.add(key);
+        }
+        Map<Serializable, ObjectStoreException> failures = null;
+        try {
+            failures = batchDelegate().storeAll(entries, overwrite);
+        } finally {
+            for (Serializable key : failures != null ? failures.keySet() : entries.keySet()) {
+                filter.remove(key);
+            }
+        }
+        return failures;
+    }
+
+    @Override
+    public Map<Serializable, Serializable> retrieveAll(Collection<? extends Serializable> keys) throws ObjectStoreException {
+        List<Serializable> candidates = new ArrayList<Serializable>(keys.size());
+        for (Serializable key : keys) {
+            if (mightContain(key)) {
+                candidates.add(key);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return new HashMap<Serializable, Serializable>();
+        }
+        return batchDelegate().retrieveAll(candidates);
+    }
+
+    @Override
+    public Map<Serializable, ObjectStoreException> removeAll(Collection<? extends Serializable> keys) throws ObjectStoreException {
+        // A key listed twice would be reported as missing by its second removal and stay in the filter
+        Set<Serializable> distinct = new LinkedHashSet<Serializable>(keys);
+        Map<Serializable, ObjectStoreException> failures = batchDelegate().removeAll(distinct);
+        for (Serializable key : distinct) {
+            if (!failures.containsKey(key)) {
+                filter.remove(key);
+            }
+        }
+        return failures;
+    }
+
+    private boolean mightContain(Serializable key) {
+        if (filter.mightContain(key)) {
+            return true;
+        }
+        filter.negative();
+        return false;
+    }
+}
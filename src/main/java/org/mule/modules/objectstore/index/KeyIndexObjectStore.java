@@ -0,0 +1,180 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.index;
+
+import org.mule.api.store.ListableObjectStore;
+import org.mule.api.store.ObjectAlreadyExistsException;
+import org.mule.api.store.ObjectDoesNotExistException;
+import org.mule.api.store.ObjectStore;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.modules.objectstore.store.KeyPage;
+import org.mule.modules.objectstore.store.ObjectStoreDecorator;
+import org.mule.modules.objectstore.store.ObjectStores;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Keeps a sorted index of the keys of the decorated store, so keys sharing a prefix are found in O(log n + k) instead of scanning all the keys.
+ * <p/>
+ * The index is built from the keys of the decorated store by {@link #rebuild()} and then maintained by the writes going through this store. Keys written
+ * to the decorated store by anyone else, or expired by it, are not seen until the index is rebuilt, so the keys returned are candidates that may no longer
+ * exist. Only String keys are indexed.
+ */
+public class KeyIndexObjectStore extends ObjectStoreDecorator {
+
+    private final NavigableSet<String> index = new ConcurrentSkipListSet<String>();
+
+    public KeyIndexObjectStore(ObjectStore<Serializable> delegate) {
+        super(delegate);
+    }
+
+    /**
+     * Replaces the content of the index with the keys currently in the decorated store.
+     */
+    public void rebuild() throws ObjectStoreException {
+        if (!(delegate instanceof ListableObjectStore)) {
+            throw new UnsupportedOperationException("The objectStore [" + delegate.getClass().getName() + "] does not support the operation allKeys");
+        }
+        List<Serializable> keys = ((ListableObjectStore<Serializable>) delegate).allKeys();
+        index.clear();
+        for (Serializable key : keys) {
+            add(key);
+        }
+    }
+
+    /**
+     * @param prefix
+     *            the prefix of the keys
+     * @param limit
+     *            the maximum number of keys to return, zero or less for no limit
+     * @return the indexed keys starting with the prefix, in ascending order
+     */
+    public List<String> keysWithPrefix(String prefix, int limit) {
+        List<String> keys = new ArrayList<String>();
+        for (String key : index.tailSet(prefix, true)) {
+            if (!key.startsWith(prefix) || (limit > 0 && keys.size() == limit)) {
+                break;
+            }
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public void store(Serializable key, Serializable value) throws ObjectStoreException {
+        delegate.store(key, value);
+        add(key);
+    }
+
+    @Override
+    public Serializable remove(Serializable key) throws ObjectStoreException {
+        try {
+            Serializable value = delegate.remove(key);
+            index.remove(key);
+            return value;
+        } catch (ObjectDoesNotExistException e) {
+            index.remove(key);
+            throw e;
+        }
+    }
+
+    @Override
+    public Serializable removeIfPresent(Serializable key) throws ObjectStoreException {
+        Serializable value = ObjectStores.removeIfPresent(delegate, key);
+        index.remove(key);
+        return value;
+    }
+
+    @Override
+    public void clear() throws ObjectStoreException {
+        delegate.clear();
+        index.clear();
+    }
+
+    @Override
+    public Serializable putIfAbsent(Serializable key, Serializable value) throws ObjectStoreException {
+        Serializable existing = atomicDelegate().putIfAbsent(key, value);
+        add(key);
+        return existing;
+    }
+
+    @Override
+    public boolean replace(Serializable key, Serializable expected, Serializable value) throws ObjectStoreException {
+        boolean replaced = atomicDelegate().replace(key, expected, value);
+        if (replaced) {
+            add(key);
+        }
+        return replaced;
+    }
+
+    @Override
+    public Serializable put(Serializable key, Serializable value) throws ObjectStoreException {
+        Serializable previous = atomicDelegate().put(key, value);
+        add(key);
+        return previous;
+    }
+
+    @Override
+    public Map<Serializable, ObjectStoreException> storeAll(Map<Serializable, Serializable> entries, boolean overwrite) throws ObjectStoreException {
+        Map<Serializable, ObjectStoreException> failures = batchDelegate().storeAll(entries, overwrite);
+        for (Serializable key : entries.keySet()) {
+            ObjectStoreException failure = failures.get(key);
+            if (failure == null || failure instanceof ObjectAlreadyExistsException) {
+                add(key);
+            }
+        }
+        return failures;
+    }
+
+    @Override
+    public Map<Serializable, ObjectStoreException> removeAll(Collection<? extends Serializable> keys) throws ObjectStoreException {
+        Map<Serializable, ObjectStoreException> failures = batchDelegate().removeAll(keys);
+        for (Serializable key : keys) {
+            ObjectStoreException failure = failures.get(key);
+            if (failure == null || failure instanceof ObjectDoesNotExistException) {
+                index.remove(key);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Pages through the indexed keys in ascending order, the cursor being the last key of the previous page.
+     */
+    @Override
+    public KeyPage keys(String cursor, int pageSize) {
+        List<String> keys = new ArrayList<String>(Math.min(pageSize, index.size()));
+        for (String key : cursor == null ? index : index.tailSet(cursor, false)) {
+            if (keys.size() == pageSize) {
+                return new KeyPage(keys, keys.get(keys.size() - 1));
+            }
+            keys.add(key);
+        }
+        return new KeyPage(keys, null);
+    }
+
+    @Override
+    protected boolean supportsPaging() {
+        return true;
+    }
+
+    private void add(Serializable key) {
+        if (key instanceof String) {
+            index.add((String) key);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.limit;
+
+import org.mule.modules.objectstore.RateLimitAlgorithm;
+
+import java.io.Serializable;
+
+/**
+ * The lock-free state of the rate limit of one key. Times are nanoseconds since the epoch, so a checkpointed state stays meaningful after a restart.
+ * <p/>
+ * A limiter that has been idle for a whole window is no different from a new one, so it can be retired to free its memory. A retired limiter refuses any
+ * further update and the caller has to get a new one.
+ */
+abstract class Limiter {
+
+    enum Decision {
+        GRANTED, REJECTED, RETIRED
+    }
+
+    private final RateLimitAlgorithm algorithm;
+    protected final long rate;
+    protected final long window;
+
+    /**
+     * @param rate
+     *            permits granted per window
+     * @param window
+     *            length of the window in nanoseconds
+     */
+    Limiter(RateLimitAlgorithm algorithm, long rate, long window) {
+        this.algorithm = algorithm;
+        this.rate = rate;
+        this.window = window;
+    }
+
+    /**
+     * @return true if the limiter enforces the given limit
+     */
+    boolean enforces(RateLimitAlgorithm algorithm, long rate, long window) {
+        return this.algorithm == algorithm && this.rate == rate && this.window == window;
+    }
+
+    abstract Decision tryAcquire(int permits, long now);
+
+    /**
+     * Retires the limiter if no permit it granted is still accounted for.
+     *
+     * @return true if the limiter was retired
+     */
+    abstract boolean retireIfIdle(long now);
+
+    /**
+     * @return the state to write to the object store, or null if it did not change since the last checkpoint
+     */
+    abstract Serializable checkpoint();
+}
@@ -0,0 +1,220 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.limit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.modules.objectstore.RateLimitAlgorithm;
+import org.mule.modules.objectstore.limit.Limiter.Decision;
+import org.mule.util.concurrent.DaemonThreadFactory;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the rate limits of a connector config in memory, one lock-free limiter per key, so deciding for a key never waits for another key.
+ * <p/>
+ * Limiters idle for a whole window are dropped periodically, a new limiter is created the next time the key is used. With a storage, the limiters are
+ * loaded from it the first time they are used and written back every checkpoint interval and when the registry is disposed, so a restart forgets at
+ * most one interval of permits.
+ */
+public class RateLimiters implements RateLimitersMXBean {
+
+    /**
+     * Where the state of the limiters is loaded from and written back to.
+     */
+    public interface RateLimitStorage {
+
+        /**
+         * @return the stored state of the limiter, or null if it was never stored
+         */
+        Serializable load(String key) throws ObjectStoreException;
+
+        void save(String key, Serializable state) throws ObjectStoreException;
+
+        void delete(String key) throws ObjectStoreException;
+    }
+
+    // Interval at which idle limiters are dropped when there is no checkpoint interval
+    private static final long SWEEP_INTERVAL = 10000;
+
+    private static final Log logger = LogFactory.getLog(RateLimiters.class);
+
+    // Wall clock at start plus the monotonic time elapsed since, in nanoseconds
+    private static final long ORIGIN_MILLIS = System.currentTimeMillis();
+    private static final long ORIGIN_NANOS = System.nanoTime();
+
+    private final ConcurrentMap<String, Limiter> limiters = new ConcurrentHashMap<String, Limiter>();
+    private final String name;
+    private final RateLimitStorage storage;
+    private final long interval;
+    private final AtomicLong granted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong retired = new AtomicLong();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param storage
+     *            where to checkpoint the limiters, null to keep them in memory only
+     * @param checkpointInterval
+     *            milliseconds between two checkpoints, only used with a storage
+     */
+    public RateLimiters(String name, RateLimitStorage storage, long checkpointInterval) {
+        this.name = name;
+        this.storage = storage;
+        this.interval = storage != null && checkpointInterval > 0 ? checkpointInterval : SWEEP_INTERVAL;
+    }
+
+    /**
+     * Takes the permits from the rate limit of the key if they are available.
+     *
+     * @param rate
+     *            permits granted per window
+     * @param window
+     *            length of the window in milliseconds
+     * @return true if the permits were granted
+     */
+    public boolean tryAcquire(String key, int permits, long rate, long window, RateLimitAlgorithm algorithm) throws ObjectStoreException {
+        if (permits <= 0 || rate <= 0 || window <= 0) {
+            throw new IllegalArgumentException("permits, rate and window have to be greater than zero");
+        }
+        if (algorithm == RateLimitAlgorithm.SLIDING_WINDOW && rate > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The sliding window logs at most " + Integer.MAX_VALUE + " permits");
+        }
+        long windowNanos = TimeUnit.MILLISECONDS.toNanos(window);
+        while (true) {
+            Limiter limiter = limiter(key, rate, windowNanos, algorithm);
+            Decision decision = limiter.tryAcquire(permits, now());
+            if (decision == Decision.GRANTED) {
+                granted.incrementAndGet();
+                return true;
+            } else if (decision == Decision.REJECTED) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            limiters.remove(key, limiter);
+        }
+    }
+
+    /**
+     * Writes every limiter changed since the last checkpoint to the storage.
+     */
+    public void checkpoint() throws ObjectStoreException {
+        if (storage == null) {
+            return;
+        }
+        for (Map.Entry<String, Limiter> entry : limiters.entrySet()) {
+            Serializable state = entry.getValue().checkpoint();
+            if (state != null) {
+                storage.save(entry.getKey(), state);
+            }
+        }
+    }
+
+    /**
+     * Drops the limiters idle for a whole window, and their checkpoints.
+     */
+    public void sweep() throws ObjectStoreException {
+        long now = now();
+        for (Map.Entry<String, Limiter> entry : limiters.entrySet()) {
+            Limiter limiter = entry.getValue();
+            if (limiter.retireIfIdle(now)) {
+                limiters.remove(entry.getKey(), limiter);
+                retired.incrementAndGet();
+                if (storage != null) {
+                    storage.delete(entry.getKey());
+                }
+            }
+        }
+    }
+
+    public synchronized void dispose() throws ObjectStoreException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+        checkpoint();
+    }
+
+    @Override
+    public int getKeys() {
+        return limiters.size();
+    }
+
+    @Override
+    public long getGranted() {
+        return granted.get();
+    }
+
+    @Override
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    @Override
+    public long getRetired() {
+        return retired.get();
+    }
+
+    private Limiter limiter(String key, long rate, long window, RateLimitAlgorithm algorithm) throws ObjectStoreException {
+        Limiter limiter = limiters.get(key);
+        if (limiter != null && limiter.enforces(algorithm, rate, window)) {
+            return limiter;
+        }
+        Limiter created = newLimiter(storage != null && limiter == null ? storage.load(key) : null, rate, window, algorithm);
+        if (limiter != null) {
+            // The limit of the key changed, it starts afresh
+            if (limiters.replace(key, limiter, created)) {
+                return created;
+            }
+            return limiter(key, rate, window, algorithm);
+        }
+        limiter = limiters.putIfAbsent(key, created);
+        if (limiter == null) {
+            startSweeping();
+            return created;
+        }
+        return limiter.enforces(algorithm, rate, window) ? limiter : limiter(key, rate, window, algorithm);
+    }
+
+    private static Limiter newLimiter(Serializable state, long rate, long window, RateLimitAlgorithm algorithm) {
+        if (algorithm == RateLimitAlgorithm.SLIDING_WINDOW) {
+            return new SlidingWindowLog(rate, window, state instanceof long[] ? (long[]) state : new long[0]);
+        }
+        return new TokenBucket(rate, window, state instanceof Long ? (Long) state : 0);
+    }
+
+    private synchronized void startSweeping() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(name + ".rateLimits"));
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    checkpoint();
+                    sweep();
+                } catch (Exception e) {
+                    logger.warn("Could not checkpoint the rate limits of " + name, e);
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private static long now() {
+        return ORIGIN_MILLIS * 1000000L + (System.nanoTime() - ORIGIN_NANOS);
+    }
+}
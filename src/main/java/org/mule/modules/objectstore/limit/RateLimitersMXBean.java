@@ -0,0 +1,24 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.limit;
+
+/**
+ * JMX view of the decisions of {@link RateLimiters}.
+ */
+public interface RateLimitersMXBean {
+
+    /**
+     * @return the number of keys whose rate limit is kept in memory
+     */
+    int getKeys();
+
+    long getGranted();
+
+    long getRejected();
+
+    long getRetired();
+}
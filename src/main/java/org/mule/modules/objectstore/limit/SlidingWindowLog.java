@@ -0,0 +1,116 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.limit;
+
+import org.mule.modules.objectstore.RateLimitAlgorithm;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sliding window log kept in a ring of rate slots: the permit numbered n is logged in slot n modulo rate, so the slot a new permit takes holds the permit
+ * granted rate permits before it, which has to be out of the window for the new one to be granted.
+ * <p/>
+ * Permits are numbered by a compare-and-set on the next number, after which their times are written to their slots. A permit whose time is not written
+ * yet counts as granted now, so a racing thread may be refused a permit but never granted one too many.
+ */
+final class SlidingWindowLog extends Limiter {
+
+    private static final long RETIRED = -1;
+
+    private final int size;
+    private final AtomicLongArray times;
+    // Number of the permit logged in each slot, -1 while the slot is empty
+    private final AtomicLongArray numbers;
+    private final AtomicLong next = new AtomicLong();
+    private volatile long checkpointed;
+
+    /**
+     * @param logged
+     *            times of the permits granted in the window, oldest first, from a checkpoint
+     */
+    SlidingWindowLog(long rate, long window, long[] logged) {
+        super(RateLimitAlgorithm.SLIDING_WINDOW, rate, window);
+        this.size = (int) rate;
+        this.times = new AtomicLongArray(size);
+        this.numbers = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            numbers.set(i, -1);
+        }
+        int count = Math.min(logged.length, size);
+        for (int n = 0; n < count; n++) {
+            times.set(n, logged[logged.length - count + n]);
+            numbers.set(n, n);
+        }
+        next.set(count);
+        checkpointed = count;
+    }
+
+    @Override
+    Decision tryAcquire(int permits, long now) {
+        if (permits > size) {
+            return Decision.REJECTED;
+        }
+        while (true) {
+            long first = next.get();
+            if (first == RETIRED) {
+                return Decision.RETIRED;
+            }
+            // The permit that has to be out of the window for the last permit asked for to be granted
+            long oldest = first + permits - 1 - size;
+            if (oldest >= 0 && inWindow(oldest, now)) {
+                return Decision.REJECTED;
+            }
+            if (next.compareAndSet(first, first + permits)) {
+                for (long n = first; n < first + permits; n++) {
+                    int slot = (int) (n % size);
+                    times.set(slot, now);
+                    numbers.set(slot, n);
+                }
+                return Decision.GRANTED;
+            }
+        }
+    }
+
+    @Override
+    boolean retireIfIdle(long now) {
+        long current = next.get();
+        return current != RETIRED && (current == 0 || !inWindow(current - 1, now)) && next.compareAndSet(current, RETIRED);
+    }
+
+    @Override
+    Serializable checkpoint() {
+        long current = next.get();
+        if (current == checkpointed || current == RETIRED) {
+            return null;
+        }
+        long from = Math.max(current - size, 0);
+        long[] logged = new long[(int) (current - from)];
+        int count = 0;
+        for (long n = from; n < current; n++) {
+            int slot = (int) (n % size);
+            if (numbers.get(slot) == n) {
+                logged[count++] = times.get(slot);
+            }
+        }
+        long[] state = new long[count];
+        System.arraycopy(logged, 0, state, 0, count);
+        checkpointed = current;
+        return state;
+    }
+
+    private boolean inWindow(long number, long now) {
+        int slot = (int) (number % size);
+        // The time is written before the number, once the number is seen its time is too, or the later time of the permit reusing the slot
+        if (numbers.get(slot) != number) {
+            // Not written yet: the permit was granted just now
+            return true;
+        }
+        return times.get(slot) > now - window;
+    }
+}
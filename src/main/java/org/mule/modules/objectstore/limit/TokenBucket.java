@@ -0,0 +1,70 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.limit;
+
+import org.mule.modules.objectstore.RateLimitAlgorithm;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket kept as a single number, the time at which the bucket is full again (the generic cell rate algorithm). Every permit pushes that time
+ * window / rate further, and permits are granted as long as it stays within a window of now, which allows bursts of up to rate permits.
+ */
+final class TokenBucket extends Limiter {
+
+    private static final long RETIRED = Long.MIN_VALUE;
+
+    private final long interval;
+    private final AtomicLong full;
+    private volatile long checkpointed;
+
+    /**
+     * @param full
+     *            the time at which the bucket is full, from a checkpoint, or 0 for a full bucket
+     */
+    TokenBucket(long rate, long window, long full) {
+        super(RateLimitAlgorithm.TOKEN_BUCKET, rate, window);
+        this.interval = Math.max(window / rate, 1);
+        this.full = new AtomicLong(full);
+        this.checkpointed = full;
+    }
+
+    @Override
+    Decision tryAcquire(int permits, long now) {
+        long increment = permits * interval;
+        while (true) {
+            long current = full.get();
+            if (current == RETIRED) {
+                return Decision.RETIRED;
+            }
+            long next = Math.max(current, now) + increment;
+            if (next - now > window) {
+                return Decision.REJECTED;
+            }
+            if (full.compareAndSet(current, next)) {
+                return Decision.GRANTED;
+            }
+        }
+    }
+
+    @Override
+    boolean retireIfIdle(long now) {
+        long current = full.get();
+        return current != RETIRED && current <= now && full.compareAndSet(current, RETIRED);
+    }
+
+    @Override
+    Serializable checkpoint() {
+        long current = full.get();
+        if (current == checkpointed || current == RETIRED) {
+            return null;
+        }
+        checkpointed = current;
+        return current;
+    }
+}
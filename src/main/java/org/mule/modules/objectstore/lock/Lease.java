@@ -0,0 +1,48 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.lock;
+
+import java.io.Serializable;
+
+/**
+ * The lease of a key as kept in the object store, so that every node sharing the store sees it.
+ */
+public class Lease implements Serializable {
+
+    private static final long serialVersionUID = -3851106245981346527L;
+
+    private final long token;
+    private final long acquiredAt;
+    private final long expiresAt;
+
+    public Lease(long token, long acquiredAt, long expiresAt) {
+        this.token = token;
+        this.acquiredAt = acquiredAt;
+        this.expiresAt = expiresAt;
+    }
+
+    public long getToken() {
+        return token;
+    }
+
+    public long getAcquiredAt() {
+        return acquiredAt;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public boolean isExpired(long now) {
+        return expiresAt <= now;
+    }
+
+    @Override
+    public String toString() {
+        return "lease " + token + " until " + expiresAt;
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.lock;
+
+/**
+ * JMX view of the statistics of a {@link LeaseManager}.
+ */
+public interface LeaseMXBean {
+
+    /**
+     * @return the number of leases granted by this node and not released yet, including expired leases not removed yet
+     */
+    int getActive();
+
+    /**
+     * @return the number of leases granted
+     */
+    long getGranted();
+
+    /**
+     * @return the number of acquisitions that gave up waiting
+     */
+    long getTimedOut();
+
+    /**
+     * @return the number of leases released because they expired
+     */
+    long getExpired();
+
+    /**
+     * @return the last fencing token handed out by this node
+     */
+    long getLastToken();
+}
@@ -0,0 +1,307 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.lock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mule.api.store.ObjectStore;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.modules.objectstore.expiry.TimingWheel;
+import org.mule.modules.objectstore.expiry.TimingWheel.Expirer;
+import org.mule.modules.objectstore.store.ObjectStores;
+import org.mule.util.lock.LockFactory;
+
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Per-key leases that outlive the thread that acquired them, so a flow can hold a key across several steps.
+ * <p/>
+ * Mule locks belong to the thread that took them, so they are only held while a lease is granted or released: the lock named after the key makes the
+ * check and the grant atomic, and the {@link Lease} itself is kept in an object store. With a store and a lock factory shared by the nodes of a
+ * cluster a key is leased to a single node at a time. Threads waiting for a key are woken when a lease of this node is released or expires, and poll
+ * for the leases of other nodes, so contention on a key never delays the rest of the keys.
+ * <p/>
+ * Every lease carries a fencing token, taken from a counter kept in the same store. Tokens only grow, also across restarts as they never go below the
+ * current time, so a resource receiving them can reject a write made with a token lower than one it already saw. Expired leases granted by this node
+ * are removed by a {@link TimingWheel}, the ones left by other nodes when the key is acquired again. The store is only created by the first lease
+ * acquired or released.
+ */
+public class LeaseManager implements LeaseMXBean {
+
+    private static final Log logger = LogFactory.getLog(LeaseManager.class);
+
+    // Milliseconds between two checks of a lease held by another node
+    private static final long POLL_INTERVAL = 100;
+    private static final String TOKEN_KEY = "token";
+    private static final String LEASE_PREFIX = "lease-";
+    private static final int MONITORS = 64;
+
+    /**
+     * Creates the store the leases and the last token are kept in.
+     */
+    public interface StoreFactory {
+
+        ObjectStore<Serializable> create();
+    }
+
+    private final LockFactory lockFactory;
+    private final String lockId;
+    private final StoreFactory storeFactory;
+    private volatile ObjectStore<Serializable> store;
+    // Leases granted by this node and not released yet
+    private final ConcurrentMap<String, Long> held = new ConcurrentHashMap<String, Long>();
+    private final Monitor[] monitors = new Monitor[MONITORS];
+    private final AtomicLong lastToken = new AtomicLong();
+    private final AtomicLong granted = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final TimingWheel wheel;
+
+    /**
+     * @param lockId
+     *            prefix of the locks, the same on every node sharing the store
+     * @param storeFactory
+     *            creates the store where the leases and the last token are kept
+     */
+    public LeaseManager(LockFactory lockFactory, String lockId, StoreFactory storeFactory, long tick) {
+        this.lockFactory = lockFactory;
+        this.lockId = lockId;
+        this.storeFactory = storeFactory;
+        for (int i = 0; i < MONITORS; i++) {
+            monitors[i] = new Monitor();
+        }
+        this.wheel = new TimingWheel(lockId + "-leases", tick, new Expirer() {
+
+            @Override
+            public void expire(Serializable key, long expiresAt) {
+                try {
+                    expireLease((String) key, expiresAt);
+                } catch (ObjectStoreException e) {
+                    logger.warn("Could not remove the expired lease of key " + key, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Acquires the lease of the key, waiting until it is free.
+     *
+     * @param timeout
+     *            milliseconds to wait for the lease, zero or less to give up at once if it is held
+     * @param leaseTime
+     *            milliseconds after which the lease is released if it was not before
+     * @return the fencing token of the lease, or null if the lease could not be acquired in time
+     */
+    public Long acquire(String key, long timeout, long leaseTime) throws ObjectStoreException, InterruptedException {
+        long deadline = System.currentTimeMillis() + Math.max(timeout, 0);
+        Monitor monitor = monitorFor(key);
+        while (true) {
+            long releases = monitor.releases();
+            long wakeAt;
+            Lock lock = lockFor(key);
+            lock.lock();
+            try {
+                long now = System.currentTimeMillis();
+                Lease current = load(key);
+                if (current == null || current.isExpired(now)) {
+                    if (current != null) {
+                        expired.incrementAndGet();
+                    }
+                    Lease lease = new Lease(nextToken(now), now, now + leaseTime);
+                    save(LEASE_PREFIX + key, lease);
+                    held.put(key, lease.getToken());
+                    granted.incrementAndGet();
+                    wheel.schedule(key, lease.getExpiresAt());
+                    return lease.getToken();
+                }
+                wakeAt = Math.min(current.getExpiresAt(), now + POLL_INTERVAL);
+            } finally {
+                lock.unlock();
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                timedOut.incrementAndGet();
+                return null;
+            }
+            monitor.await(releases, Math.min(wakeAt, deadline));
+        }
+    }
+
+    /**
+     * Releases the lease of the key if it is still the one with the given token.
+     *
+     * @return the milliseconds the lease was held, or -1 if the lease was not held with the token any more because it expired
+     */
+    public long release(String key, long token) throws ObjectStoreException {
+        Lock lock = lockFor(key);
+        lock.lock();
+        try {
+            Lease current = load(key);
+            if (current == null || current.getToken() != token) {
+                return -1;
+            }
+            long now = System.currentTimeMillis();
+            boolean lapsed = current.isExpired(now);
+            remove(key, current, lapsed);
+            return lapsed ? -1 : now - current.getAcquiredAt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true if the lease of the key is held with the given token and has not expired
+     */
+    public boolean isHeld(String key, long token) throws ObjectStoreException {
+        Lease current = load(key);
+        return current != null && current.getToken() == token && !current.isExpired(System.currentTimeMillis());
+    }
+
+    /**
+     * Stops expiring leases and wakes the threads waiting for one. The leases stay in the store until they expire.
+     */
+    public void dispose() {
+        wheel.dispose();
+        held.clear();
+        for (Monitor monitor : monitors) {
+            monitor.released();
+        }
+    }
+
+    @Override
+    public int getActive() {
+        return held.size();
+    }
+
+    @Override
+    public long getGranted() {
+        return granted.get();
+    }
+
+    @Override
+    public long getTimedOut() {
+        return timedOut.get();
+    }
+
+    @Override
+    public long getExpired() {
+        return expired.get();
+    }
+
+    @Override
+    public long getLastToken() {
+        return lastToken.get();
+    }
+
+    private void expireLease(String key, long expiresAt) throws ObjectStoreException {
+        Lock lock = lockFor(key);
+        lock.lock();
+        try {
+            Lease current = load(key);
+            // The lease expiring may have been released and the key leased again since
+            if (current != null && current.getExpiresAt() == expiresAt && current.isExpired(System.currentTimeMillis())) {
+                remove(key, current, true);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called holding the lock of the key.
+     */
+    private void remove(String key, Lease lease, boolean lapsed) throws ObjectStoreException {
+        ObjectStores.removeIfPresent(store(), LEASE_PREFIX + key);
+        wheel.cancel(key);
+        held.remove(key, lease.getToken());
+        monitorFor(key).released();
+        if (lapsed) {
+            expired.incrementAndGet();
+        }
+    }
+
+    /**
+     * Called holding the lock of the key.
+     */
+    private long nextToken(long now) throws ObjectStoreException {
+        Lock lock = lockFactory.createLock(lockId + "-lease-token");
+        lock.lock();
+        try {
+            Serializable last = ObjectStores.lookup(store(), TOKEN_KEY);
+            long token = Math.max(last instanceof Number ? ((Number) last).longValue() + 1 : 0, now * 1000);
+            save(TOKEN_KEY, token);
+            lastToken.set(token);
+            return token;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Lease load(String key) throws ObjectStoreException {
+        Serializable lease = ObjectStores.lookup(store(), LEASE_PREFIX + key);
+        return lease instanceof Lease ? (Lease) lease : null;
+    }
+
+    private void save(String key, Serializable value) throws ObjectStoreException {
+        ObjectStores.removeIfPresent(store(), key);
+        store().store(key, value);
+    }
+
+    private ObjectStore<Serializable> store() {
+        ObjectStore<Serializable> created = store;
+        if (created == null) {
+            synchronized (this) {
+                if (store == null) {
+                    store = storeFactory.create();
+                }
+                created = store;
+            }
+        }
+        return created;
+    }
+
+    private Lock lockFor(String key) {
+        return lockFactory.createLock(lockId + "-lease-" + key);
+    }
+
+    private Monitor monitorFor(String key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return monitors[(h ^ (h >>> 16)) & (MONITORS - 1)];
+    }
+
+    /**
+     * Wakes the threads waiting for the keys of a stripe when one of their leases is released. Counting the releases lets a waiter notice a release
+     * that happened between its check of the lease and its wait.
+     */
+    private static class Monitor {
+
+        private long releases;
+
+        synchronized long releases() {
+            return releases;
+        }
+
+        synchronized void released() {
+            releases++;
+            notifyAll();
+        }
+
+        /**
+         * Waits until a lease of the stripe is released after the given count, or until the given time.
+         */
+        synchronized void await(long seen, long until) throws InterruptedException {
+            long now = System.currentTimeMillis();
+            while (releases == seen && now < until) {
+                wait(until - now);
+                now = System.currentTimeMillis();
+            }
+        }
+    }
+}
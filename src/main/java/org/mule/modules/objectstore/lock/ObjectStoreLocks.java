@@ -0,0 +1,144 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.lock;
+
+import org.mule.modules.objectstore.LockGranularity;
+import org.mule.modules.objectstore.metrics.ConnectorMetrics;
+import org.mule.util.lock.LockFactory;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Hands out the locks guarding the keys of an object store according to a {@link LockGranularity}.
+ * <p/>
+ * Locks are always created through the Mule {@link LockFactory} so they keep working in a cluster. When more than one key has to be guarded the locks are
+ * acquired in lock id order, which prevents two operations over the same keys from deadlocking each other.
+ *
+ * @author MuleSoft, Inc.
+ */
+public class ObjectStoreLocks {
+
+    public static final int DEFAULT_STRIPES = 64;
+
+    private final LockFactory lockFactory;
+    private final String lockId;
+    private final LockGranularity granularity;
+    private final int stripes;
+    private ConnectorMetrics metrics;
+
+    public ObjectStoreLocks(LockFactory lockFactory, String lockId, LockGranularity granularity, int stripes) {
+        this.lockFactory = lockFactory;
+        this.lockId = lockId;
+        this.granularity = granularity != null ? granularity : LockGranularity.GLOBAL;
+        this.stripes = stripes > 0 ? stripes : DEFAULT_STRIPES;
+    }
+
+    /**
+     * @return the lock guarding the given key
+     */
+    public Lock lockFor(Serializable key) {
+        return timed(lockFactory.createLock(lockIdFor(key)));
+    }
+
+    /**
+     * @return a lock guarding all the given keys, keys sharing a lock are only locked once
+     */
+    public Lock lockFor(Serializable... keys) {
+        return lockFor(Arrays.asList(keys));
+    }
+
+    /**
+     * @return a lock guarding all the given keys, keys sharing a lock are only locked once
+     */
+    public Lock lockFor(Collection<? extends Serializable> keys) {
+        TreeSet<String> ids = new TreeSet<String>();
+        for (Serializable key : keys) {
+            ids.add(lockIdFor(key));
+        }
+        if (ids.size() == 1) {
+            return timed(lockFactory.createLock(ids.first()));
+        }
+        List<Lock> locks = new ArrayList<Lock>(ids.size());
+        for (String id : ids) {
+            locks.add(lockFactory.createLock(id));
+        }
+        return timed(new OrderedLocks(locks));
+    }
+
+    /**
+     * Groups keys by the lock guarding them so that a batch can take every lock only once. Groups are returned in lock id order.
+     *
+     * @return the given keys grouped by lock id
+     */
+    public <K extends Serializable> SortedMap<String, List<K>> groupByLock(Collection<K> keys) {
+        SortedMap<String, List<K>> groups = new TreeMap<String, List<K>>();
+        for (K key : keys) {
+            String id = lockIdFor(key);
+            List<K> group = groups.get(id);
+            if (group == null) {
+                group = new ArrayList<K>();
+                groups.put(id, group);
+            }
+            group.add(key);
+        }
+        return groups;
+    }
+
+    /**
+     * @return the lock with the given id, as returned by {@link #lockIdFor(Serializable)}
+     */
+    public Lock lockForId(String id) {
+        return timed(lockFactory.createLock(id));
+    }
+
+    /**
+     * @return the id of the lock guarding the given key
+     */
+    public String lockIdFor(Serializable key) {
+        switch (granularity) {
+        case KEY:
+            return lockId + "-" + String.valueOf(key);
+        case STRIPED:
+            return lockId + "-" + stripeFor(key);
+        default:
+            return lockId;
+        }
+    }
+
+    /**
+     * Records the wait and hold times of the locks handed out from now on in the given metrics.
+     */
+    public void setMetrics(ConnectorMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public LockGranularity getGranularity() {
+        return granularity;
+    }
+
+    public int getStripes() {
+        return stripes;
+    }
+
+    private Lock timed(Lock lock) {
+        return metrics != null && metrics.isEnabled() ? new TimedLock(lock, metrics) : lock;
+    }
+
+    int stripeFor(Serializable key) {
+        int h = key == null ? 0 : key.hashCode();
+        h ^= (h >>> 16);
+        return (h & 0x7fffffff) % stripes;
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.lock;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * A {@link Lock} made of several locks that are always acquired in the given order and released in reverse order.
+ */
+class OrderedLocks implements Lock {
+
+    private final List<Lock> locks;
+
+    OrderedLocks(List<Lock> locks) {
+        this.locks = locks;
+    }
+
+    @Override
+    public void lock() {
+        for (Lock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        int acquired = 0;
+        try {
+            for (Lock lock : locks) {
+                lock.lockInterruptibly();
+                acquired++;
+            }
+        } finally {
+            if (acquired < locks.size()) {
+                release(acquired);
+            }
+        }
+    }
+
+    @Override
+    public boolean tryLock() {
+        int acquired = 0;
+        for (Lock lock : locks) {
+            if (!lock.tryLock()) {
+                release(acquired);
+                return false;
+            }
+            acquired++;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(time);
+        int acquired = 0;
+        try {
+            for (Lock lock : locks) {
+                if (!lock.tryLock(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    return false;
+                }
+                acquired++;
+            }
+            return true;
+        } finally {
+            if (acquired < locks.size()) {
+                release(acquired);
+            }
+        }
+    }
+
+    @Override
+    public void unlock() {
+        release(locks.size());
+    }
+
+    @Override
+    public Condition newCondition() {
+        throw new UnsupportedOperationException("Conditions are not supported on multi-key locks");
+    }
+
+    private void release(int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
+}
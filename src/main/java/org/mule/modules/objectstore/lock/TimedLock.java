@@ -0,0 +1,82 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.lock;
+
+import org.mule.modules.objectstore.metrics.ConnectorMetrics;
+import org.mule.modules.objectstore.metrics.Operation;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * A {@link Lock} that records how long threads wait for it and how long they hold it. Instances are handed out per operation and must not be shared
+ * between threads.
+ */
+class TimedLock implements Lock {
+
+    private final Lock lock;
+    private final ConnectorMetrics metrics;
+    private long acquiredAt;
+
+    TimedLock(Lock lock, ConnectorMetrics metrics) {
+        this.lock = lock;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void lock() {
+        long start = System.nanoTime();
+        lock.lock();
+        acquired(start);
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        long start = System.nanoTime();
+        lock.lockInterruptibly();
+        acquired(start);
+    }
+
+    @Override
+    public boolean tryLock() {
+        long start = System.nanoTime();
+        if (lock.tryLock()) {
+            acquired(start);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        long start = System.nanoTime();
+        if (lock.tryLock(time, unit)) {
+            acquired(start);
+            return true;
+        }
+        metrics.recordNanos(Operation.LOCK_WAIT, System.nanoTime() - start);
+        return false;
+    }
+
+    @Override
+    public void unlock() {
+        long held = System.nanoTime() - acquiredAt;
+        lock.unlock();
+        metrics.recordNanos(Operation.LOCK_HOLD, held);
+    }
+
+    @Override
+    public Condition newCondition() {
+        return lock.newCondition();
+    }
+
+    private void acquired(long start) {
+        acquiredAt = System.nanoTime();
+        metrics.recordNanos(Operation.LOCK_WAIT, acquiredAt - start);
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.metrics;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Metrics of every operation of a connector config, optionally exposed as MXBeans.
+ * <p/>
+ * MXBeans are registered under the {@value #DOMAIN} domain with the application, the partition and the operation as key properties. When metrics are
+ * disabled every method returns immediately.
+ */
+public class ConnectorMetrics {
+
+    public static final String DOMAIN = "org.mule.modules.objectstore";
+
+    private static final Log logger = LogFactory.getLog(ConnectorMetrics.class);
+
+    private final boolean enabled;
+    private final OperationMetrics[] operations;
+    private final List<ObjectName> registered = new ArrayList<ObjectName>();
+
+    public ConnectorMetrics(boolean enabled) {
+        this.enabled = enabled;
+        Operation[] values = Operation.values();
+        operations = new OperationMetrics[values.length];
+        for (Operation operation : values) {
+            operations[operation.ordinal()] = new OperationMetrics(operation);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the start time to pass to {@link #record(Operation, long)}
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records a call of the operation that started at the given time.
+     */
+    public void record(Operation operation, long start) {
+        if (enabled) {
+            operations[operation.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records a call of the operation that took the given time.
+     */
+    public void recordNanos(Operation operation, long nanos) {
+        if (enabled) {
+            operations[operation.ordinal()].record(nanos);
+        }
+    }
+
+    public void error(Operation operation, Throwable error) {
+        if (enabled) {
+            operations[operation.ordinal()].error(error);
+        }
+    }
+
+    /**
+     * Records a failed call of the operation.
+     *
+     * @return the given error, so it can be rethrown
+     */
+    public <E extends Throwable> E failed(Operation operation, E error) {
+        error(operation, error);
+        return error;
+    }
+
+    public OperationMetrics get(Operation operation) {
+        return operations[operation.ordinal()];
+    }
+
+    /**
+     * Registers an MXBean for every operation, and the given additional beans, in the platform MBean server.
+     */
+    public synchronized void register(String application, String partition, String[] names, Object[] beans) {
+        if (!enabled) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (OperationMetrics metrics : operations) {
+            register(server, application, partition, "operation", metrics.getOperation().value(), metrics);
+        }
+        for (int i = 0; i < names.length; i++) {
+            register(server, application, partition, "name", names[i], beans[i]);
+        }
+    }
+
+    public synchronized void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (Exception e) {
+                logger.debug("Could not unregister " + name, e);
+            }
+        }
+        registered.clear();
+    }
+
+    private void register(MBeanServer server, String application, String partition, String key, String value, Object bean) {
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=ObjectStore,application=" + ObjectName.quote(application) + ",partition="
+                    + ObjectName.quote(partition) + "," + key + "=" + value);
+            server.registerMBean(bean, name);
+            registered.add(name);
+        } catch (Exception e) {
+            logger.warn("Could not register the metrics of the object store partition " + partition + " in JMX: " + e.getMessage());
+        }
+    }
+}
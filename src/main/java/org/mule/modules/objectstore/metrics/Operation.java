@@ -0,0 +1,64 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.metrics;
+
+/**
+ * The operations measured by {@link ConnectorMetrics}: one per processor of the connector plus the waits for and holds of the store locks and the holds of the
+ * leases.
+ */
+public enum Operation {
+    STORE("store"),
+    STORE_ASYNC("storeAsync"),
+    DUAL_STORE("dualStore"),
+    REMOVE_DUAL("removeDual"),
+    RETRIEVE("retrieve"),
+    RETRIEVE_ASYNC("retrieveAsync"),
+    RETRIEVE_WITH_LOCK("retrieveWithLock"),
+    RETRIEVE_STORE("retrieveStore"),
+    RETRIEVE_OR_COMPUTE("retrieveOrCompute"),
+    REMOVE("remove"),
+    ALL_KEYS("allKeys"),
+    KEYS_PAGE("keysPage"),
+    ITERATE_KEYS("iterateKeys"),
+    KEYS_WITH_PREFIX("keysWithPrefix"),
+    REMOVE_BY_PREFIX("removeByPrefix"),
+    CONTAINS("contains"),
+    PUT_IF_ABSENT("putIfAbsent"),
+    REPLACE("replace"),
+    GET_AND_SET("getAndSet"),
+    STORE_ALL("storeAll"),
+    RETRIEVE_ALL("retrieveAll"),
+    REMOVE_ALL("removeAll"),
+    CONTAINS_ALL("containsAll"),
+    INCREMENT("increment"),
+    DECREMENT("decrement"),
+    ADD("add"),
+    GET_COUNTER("getCounter"),
+    FLUSH_COUNTERS("flushCounters"),
+    REBALANCE_SHARDS("rebalanceShards"),
+    ACQUIRE_LOCK("acquireLock"),
+    RELEASE_LOCK("releaseLock"),
+    TRY_ACQUIRE("tryAcquire"),
+    LOCK_WAIT("lockWait"),
+    LOCK_HOLD("lockHold"),
+    LEASE_HOLD("leaseHold");
+
+    private final String value;
+
+    Operation(String value) {
+        this.value = value;
+    }
+
+    public String value() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Calls, errors by exception type and latency distribution of one operation.
+ */
+public class OperationMetrics implements OperationMetricsMXBean {
+
+    private final Operation operation;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final ConcurrentMap<String, AtomicLong> errors = new ConcurrentHashMap<String, AtomicLong>();
+
+    public OperationMetrics(Operation operation) {
+        this.operation = operation;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public void record(long nanos) {
+        latencies.record(nanos);
+    }
+
+    public void error(Throwable error) {
+        String type = error.getClass().getName();
+        AtomicLong count = errors.get(type);
+        if (count == null) {
+            AtomicLong created = new AtomicLong();
+            count = errors.putIfAbsent(type, created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    @Override
+    public long getCalls() {
+        return latencies.getCount();
+    }
+
+    @Override
+    public long getErrors() {
+        long total = 0;
+        for (AtomicLong count : errors.values()) {
+            total += count.get();
+        }
+        return total;
+    }
+
+    @Override
+    public Map<String, Long> getErrorsByType() {
+        Map<String, Long> byType = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : errors.entrySet()) {
+            byType.put(entry.getKey(), entry.getValue().get());
+        }
+        return byType;
+    }
+
+    @Override
+    public double getMeanLatency() {
+        return latencies.getMean() / 1000.0;
+    }
+
+    @Override
+    public long getMedianLatency() {
+        return latencies.getValueAtPercentile(50) / 1000;
+    }
+
+    @Override
+    public long getP99Latency() {
+        return latencies.getValueAtPercentile(99) / 1000;
+    }
+
+    @Override
+    public long getP999Latency() {
+        return latencies.getValueAtPercentile(99.9) / 1000;
+    }
+
+    @Override
+    public long getMaxLatency() {
+        return latencies.getMax() / 1000;
+    }
+
+    @Override
+    public void reset() {
+        latencies.reset();
+        errors.clear();
+    }
+}
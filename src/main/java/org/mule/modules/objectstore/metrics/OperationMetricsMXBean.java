@@ -0,0 +1,33 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the metrics of one operation of a connector config. Latencies are reported in microseconds.
+ */
+public interface OperationMetricsMXBean {
+
+    long getCalls();
+
+    long getErrors();
+
+    Map<String, Long> getErrorsByType();
+
+    double getMeanLatency();
+
+    long getMedianLatency();
+
+    long getP99Latency();
+
+    long getP999Latency();
+
+    long getMaxLatency();
+
+    void reset();
+}
@@ -0,0 +1,92 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.shard;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Consistent hash ring assigning keys to shards. Every shard takes a number of virtual nodes on the ring, and a key belongs to the shard of the first
+ * node at or after its hash. A shard is identified by its position in the list of shards, so appending a shard only moves the keys falling in the ranges
+ * taken by its nodes, about one in the new number of shards.
+ */
+public class HashRing {
+
+    private final long[] points;
+    private final int[] owners;
+
+    public HashRing(int shards, int virtualNodes) {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        int nodes = virtualNodes > 0 ? virtualNodes : 1;
+        long[] hashes = new long[shards * nodes];
+        int[] shardOf = new int[shards * nodes];
+        int i = 0;
+        for (int shard = 0; shard < shards; shard++) {
+            for (int node = 0; node < nodes; node++) {
+                hashes[i] = hash("shard-" + shard + "#" + node);
+                shardOf[i] = shard;
+                i++;
+            }
+        }
+        // Sort the nodes by hash, carrying their shard along
+        Integer[] order = new Integer[hashes.length];
+        for (int j = 0; j < order.length; j++) {
+            order[j] = j;
+        }
+        final long[] sortBy = hashes;
+        Arrays.sort(order, new Comparator<Integer>() {
+
+            @Override
+            public int compare(Integer a, Integer b) {
+                long x = sortBy[a];
+                long y = sortBy[b];
+                return x < y ? -1 : (x == y ? 0 : 1);
+            }
+        });
+        points = new long[hashes.length];
+        owners = new int[hashes.length];
+        for (int j = 0; j < order.length; j++) {
+            points[j] = hashes[order[j]];
+            owners[j] = shardOf[order[j]];
+        }
+    }
+
+    /**
+     * @return the index of the shard the key belongs to
+     */
+    public int shardFor(Serializable key) {
+        long h = hash(String.valueOf(key));
+        int i = Arrays.binarySearch(points, h);
+        if (i < 0) {
+            i = -i - 1;
+            if (i == points.length) {
+                i = 0;
+            }
+        }
+        return owners[i];
+    }
+
+    /**
+     * 64-bit FNV-1a of the characters of the string followed by the MurmurHash3 finalizer, which spreads similar keys over the whole ring.
+     */
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
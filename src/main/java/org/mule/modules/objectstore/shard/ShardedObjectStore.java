@@ -0,0 +1,459 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.shard;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mule.api.store.ListableObjectStore;
+import org.mule.api.store.ObjectAlreadyExistsException;
+import org.mule.api.store.ObjectDoesNotExistException;
+import org.mule.api.store.ObjectStore;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.config.i18n.MessageFactory;
+import org.mule.modules.objectstore.store.AtomicObjectStore;
+import org.mule.modules.objectstore.store.BatchObjectStore;
+import org.mule.modules.objectstore.store.LookupObjectStore;
+import org.mule.modules.objectstore.store.ObjectStores;
+import org.mule.util.concurrent.DaemonThreadFactory;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Spreads the keys over several object stores, assigning every key to one of them with a {@link HashRing}.
+ * <p/>
+ * Single key operations go to the shard of the key. Listing keys and batches are split per shard and run on all the shards involved in parallel, shards
+ * supporting batches get their part in a single call. Use {@link #newInstance(List, int, String)} so the store is atomic when every shard is.
+ * <p/>
+ * Keys stored while the list of shards was different may be in another shard than the one they belong to now, {@link #rebalance(KeyLocks)} moves them.
+ */
+public class ShardedObjectStore implements ListableObjectStore<Serializable>, BatchObjectStore<Serializable>, LookupObjectStore<Serializable> {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    /**
+     * The locks the writers of a key take, held while the key is moved to its shard.
+     */
+    public interface KeyLocks {
+
+        Lock lockFor(Serializable key);
+    }
+
+    private static final Log logger = LogFactory.getLog(ShardedObjectStore.class);
+
+    protected final List<ObjectStore<Serializable>> shards;
+    private final HashRing ring;
+    private final ExecutorService executor;
+
+    protected ShardedObjectStore(List<ObjectStore<Serializable>> shards, int virtualNodes, String name) {
+        this.shards = new ArrayList<ObjectStore<Serializable>>(shards);
+        this.ring = new HashRing(shards.size(), virtualNodes > 0 ? virtualNodes : DEFAULT_VIRTUAL_NODES);
+        this.executor = Executors.newFixedThreadPool(shards.size(), new DaemonThreadFactory(name + ".shards"));
+    }
+
+    /**
+     * @param virtualNodes
+     *            points each shard takes in the ring, zero or less for the default
+     * @return a store over the given shards, implementing {@link AtomicObjectStore} if all of them do
+     */
+    public static ShardedObjectStore newInstance(List<ObjectStore<Serializable>> shards, int virtualNodes, String name) {
+        for (ObjectStore<Serializable> shard : shards) {
+            if (!(shard instanceof AtomicObjectStore)) {
+                return new ShardedObjectStore(shards, virtualNodes, name);
+            }
+        }
+        return new Atomic(shards, virtualNodes, name);
+    }
+
+    /**
+     * @return the shard holding the given key
+     */
+    public ObjectStore<Serializable> shardFor(Serializable key) {
+        return shards.get(ring.shardFor(key));
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Moves the keys found in a shard other than the one they belong to, scanning the keys of every shard. Keys already present in the right shard are
+     * left there and dropped from the wrong one. Shards that cannot list their keys are skipped.
+     *
+     * @param locks
+     *            the lock of a key is held while it is moved, so a concurrent update of the key is not lost
+     * @return the number of keys moved
+     */
+    public int rebalance(final KeyLocks locks) throws ObjectStoreException {
+        List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+        for (int i = 0; i < shards.size(); i++) {
+            if (!(shards.get(i) instanceof ListableObjectStore)) {
+                continue;
+            }
+            final int index = i;
+            tasks.add(new Callable<Integer>() {
+
+                @Override
+                public Integer call() throws ObjectStoreException {
+                    return rebalance(index, locks);
+                }
+            });
+        }
+        int moved = 0;
+        for (Integer count : fanOut(tasks)) {
+            moved += count;
+        }
+        if (moved > 0) {
+            logger.info("Moved " + moved + " keys to the shard they belong to");
+        }
+        return moved;
+    }
+
+    public void dispose() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public boolean contains(Serializable key) throws ObjectStoreException {
+        return shardFor(key).contains(key);
+    }
+
+    @Override
+    public void store(Serializable key, Serializable value) throws ObjectStoreException {
+        shardFor(key).store(key, value);
+    }
+
+    @Override
+    public Serializable retrieve(Serializable key) throws ObjectStoreException {
+        return shardFor(key).retrieve(key);
+    }
+
+    @Override
+    public Serializable remove(Serializable key) throws ObjectStoreException {
+        return shardFor(key).remove(key);
+    }
+
+    @Override
+    public Serializable lookup(Serializable key) throws ObjectStoreException {
+        return ObjectStores.lookup(shardFor(key), key);
+    }
+
+    @Override
+    public Serializable removeIfPresent(Serializable key) throws ObjectStoreException {
+        return ObjectStores.removeIfPresent(shardFor(key), key);
+    }
+
+    @Override
+    public boolean isPersistent() {
+        for (ObjectStore<Serializable> shard : shards) {
+            if (!shard.isPersistent()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void clear() throws ObjectStoreException {
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final ObjectStore<Serializable> shard : shards) {
+            tasks.add(new Callable<Void>() {
+
+                @Override
+                public Void call() throws ObjectStoreException {
+                    shard.clear();
+                    return null;
+                }
+            });
+        }
+        fanOut(tasks);
+    }
+
+    @Override
+    public void open() throws ObjectStoreException {
+        for (ObjectStore<Serializable> shard : shards) {
+            if (shard instanceof ListableObjectStore) {
+                ((ListableObjectStore<Serializable>) shard).open();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws ObjectStoreException {
+        for (ObjectStore<Serializable> shard : shards) {
+            if (shard instanceof ListableObjectStore) {
+                ((ListableObjectStore<Serializable>) shard).close();
+            }
+        }
+    }
+
+    @Override
+    public List<Serializable> allKeys() throws ObjectStoreException {
+        List<Callable<List<Serializable>>> tasks = new ArrayList<Callable<List<Serializable>>>();
+        for (final ObjectStore<Serializable> shard : shards) {
+            if (!(shard instanceof ListableObjectStore)) {
+                throw new ObjectStoreException(MessageFactory.createStaticMessage("The keys of shard " + shard + " cannot be listed"));
+            }
+            tasks.add(new Callable<List<Serializable>>() {
+
+                @Override
+                public List<Serializable> call() throws ObjectStoreException {
+                    return ((ListableObjectStore<Serializable>) shard).allKeys();
+                }
+            });
+        }
+        List<Serializable> keys = new ArrayList<Serializable>();
+        for (List<Serializable> shardKeys : fanOut(tasks)) {
+            keys.addAll(shardKeys);
+        }
+        return keys;
+    }
+
+    @Override
+    public Map<Serializable, ObjectStoreException> storeAll(Map<Serializable, Serializable> entries, final boolean overwrite) throws ObjectStoreException {
+        Map<Integer, Map<Serializable, Serializable>> groups = new HashMap<Integer, Map<Serializable, Serializable>>();
+        for (Map.Entry<Serializable, Serializable> entry : entries.entrySet()) {
+            Integer shard = ring.shardFor(entry.getKey());
+            Map<Serializable, Serializable> group = groups.get(shard);
+            if (group == null) {
+                group = new HashMap<Serializable, Serializable>();
+                groups.put(shard, group);
+            }
+            group.put(entry.getKey(), entry.getValue());
+        }
+        List<Callable<Map<Serializable, ObjectStoreException>>> tasks = new ArrayList<Callable<Map<Serializable, ObjectStoreException>>>();
+        for (final Map.Entry<Integer, Map<Serializable, Serializable>> group : groups.entrySet()) {
+            final ObjectStore<Serializable> shard = shards.get(group.getKey());
+            tasks.add(new Callable<Map<Serializable, ObjectStoreException>>() {
+
+                @Override
+                public Map<Serializable, ObjectStoreException> call() throws ObjectStoreException {
+                    if (shard instanceof BatchObjectStore) {
+                        return ((BatchObjectStore<Serializable>) shard).storeAll(group.getValue(), overwrite);
+                    }
+                    Map<Serializable, ObjectStoreException> failures = new HashMap<Serializable, ObjectStoreException>();
+                    for (Map.Entry<Serializable, Serializable> entry : group.getValue().entrySet()) {
+                        try {
+                            if (overwrite && shard.contains(entry.getKey())) {
+                                shard.remove(entry.getKey());
+                            }
+                            shard.store(entry.getKey(), entry.getValue());
+                        } catch (ObjectStoreException e) {
+                            failures.put(entry.getKey(), e);
+                        }
+                    }
+                    return failures;
+                }
+            });
+        }
+        return merge(fanOut(tasks));
+    }
+
+    @Override
+    public Map<Serializable, Serializable> retrieveAll(Collection<? extends Serializable> keys) throws ObjectStoreException {
+        List<Callable<Map<Serializable, Serializable>>> tasks = new ArrayList<Callable<Map<Serializable, Serializable>>>();
+        for (final Map.Entry<Integer, List<Serializable>> group : groupByShard(keys).entrySet()) {
+            final ObjectStore<Serializable> shard = shards.get(group.getKey());
+            tasks.add(new Callable<Map<Serializable, Serializable>>() {
+
+                @Override
+                public Map<Serializable, Serializable> call() throws ObjectStoreException {
+                    if (shard instanceof BatchObjectStore) {
+                        return ((BatchObjectStore<Serializable>) shard).retrieveAll(group.getValue());
+                    }
+                    Map<Serializable, Serializable> values = new HashMap<Serializable, Serializable>();
+                    for (Serializable key : group.getValue()) {
+                        try {
+                            values.put(key, shard.retrieve(key));
+                        } catch (ObjectDoesNotExistException e) {
+                            // Left out of the result
+                        }
+                    }
+                    return values;
+                }
+            });
+        }
+        Map<Serializable, Serializable> values = new HashMap<Serializable, Serializable>();
+        for (Map<Serializable, Serializable> shardValues : fanOut(tasks)) {
+            values.putAll(shardValues);
+        }
+        return values;
+    }
+
+    @Override
+    public Map<Serializable, ObjectStoreException> removeAll(Collection<? extends Serializable> keys) throws ObjectStoreException {
+        List<Callable<Map<Serializable, ObjectStoreException>>> tasks = new ArrayList<Callable<Map<Serializable, ObjectStoreException>>>();
+        for (final Map.Entry<Integer, List<Serializable>> group : groupByShard(keys).entrySet()) {
+            final ObjectStore<Serializable> shard = shards.get(group.getKey());
+            tasks.add(new Callable<Map<Serializable, ObjectStoreException>>() {
+
+                @Override
+                public Map<Serializable, ObjectStoreException> call() throws ObjectStoreException {
+                    if (shard instanceof BatchObjectStore) {
+                        return ((BatchObjectStore<Serializable>) shard).removeAll(group.getValue());
+                    }
+                    Map<Serializable, ObjectStoreException> failures = new HashMap<Serializable, ObjectStoreException>();
+                    for (Serializable key : group.getValue()) {
+                        try {
+                            shard.remove(key);
+                        } catch (ObjectStoreException e) {
+                            failures.put(key, e);
+                        }
+                    }
+                    return failures;
+                }
+            });
+        }
+        return merge(fanOut(tasks));
+    }
+
+    @Override
+    public String toString() {
+        return "ShardedObjectStore" + shards;
+    }
+
+    private int rebalance(int index, KeyLocks locks) throws ObjectStoreException {
+        ListableObjectStore<Serializable> shard = (ListableObjectStore<Serializable>) shards.get(index);
+        int moved = 0;
+        for (Serializable key : shard.allKeys()) {
+            int owner = ring.shardFor(key);
+            if (owner == index) {
+                continue;
+            }
+            Lock lock = locks.lockFor(key);
+            lock.lock();
+            try {
+                if (move(key, shard, shards.get(owner))) {
+                    moved++;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Called holding the lock of the key.
+     */
+    private static boolean move(Serializable key, ObjectStore<Serializable> from, ObjectStore<Serializable> to) throws ObjectStoreException {
+        Serializable value = ObjectStores.lookup(from, key);
+        if (value == null) {
+            // Removed meanwhile
+            return false;
+        }
+        boolean moved = false;
+        try {
+            to.store(key, value);
+            moved = true;
+        } catch (ObjectAlreadyExistsException e) {
+            // The right shard has a value stored since, which is newer
+        }
+        ObjectStores.removeIfPresent(from, key);
+        return moved;
+    }
+
+    private Map<Integer, List<Serializable>> groupByShard(Collection<? extends Serializable> keys) {
+        Map<Integer, List<Serializable>> groups = new HashMap<Integer, List<Serializable>>();
+        for (Serializable key : keys) {
+            Integer shard = ring.shardFor(key);
+            List<Serializable> group = groups.get(shard);
+            if (group == null) {
+                group = new ArrayList<Serializable>();
+                groups.put(shard, group);
+            }
+            group.add(key);
+        }
+        return groups;
+    }
+
+    /**
+     * Runs the tasks in parallel, or in the calling thread if there is only one.
+     *
+     * @return the results of the tasks, in order
+     */
+    private <R> List<R> fanOut(List<Callable<R>> tasks) throws ObjectStoreException {
+        List<R> results = new ArrayList<R>(tasks.size());
+        try {
+            if (tasks.size() == 1) {
+                results.add(tasks.get(0).call());
+                return results;
+            }
+            for (Future<R> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ObjectStoreException(MessageFactory.createStaticMessage("Interrupted waiting for the shards"), e);
+        } catch (Exception e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static ObjectStoreException rethrow(Throwable cause) {
+        if (cause instanceof ObjectStoreException) {
+            return (ObjectStoreException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new ObjectStoreException(MessageFactory.createStaticMessage("A shard failed"), cause);
+    }
+
+    private static Map<Serializable, ObjectStoreException> merge(List<Map<Serializable, ObjectStoreException>> results) {
+        Map<Serializable, ObjectStoreException> merged = new HashMap<Serializable, ObjectStoreException>();
+        for (Map<Serializable, ObjectStoreException> result : results) {
+            merged.putAll(result);
+        }
+        return merged;
+    }
+
+    /**
+     * A {@link ShardedObjectStore} over shards with atomic conditional updates.
+     */
+    static class Atomic extends ShardedObjectStore implements AtomicObjectStore<Serializable> {
+
+        Atomic(List<ObjectStore<Serializable>> shards, int virtualNodes, String name) {
+            super(shards, virtualNodes, name);
+        }
+
+        @Override
+        public Serializable putIfAbsent(Serializable key, Serializable value) throws ObjectStoreException {
+            return atomicShardFor(key).putIfAbsent(key, value);
+        }
+
+        @Override
+        public boolean replace(Serializable key, Serializable expected, Serializable value) throws ObjectStoreException {
+            return atomicShardFor(key).replace(key, expected, value);
+        }
+
+        @Override
+        public Serializable put(Serializable key, Serializable value) throws ObjectStoreException {
+            return atomicShardFor(key).put(key, value);
+        }
+
+        private AtomicObjectStore<Serializable> atomicShardFor(Serializable key) {
+            return (AtomicObjectStore<Serializable>) shardFor(key);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.store;
+
+import org.mule.api.store.ObjectStore;
+import org.mule.api.store.ObjectStoreException;
+
+import java.io.Serializable;
+
+/**
+ * An {@link ObjectStore} with atomic conditional updates. The connector uses these primitives directly, without taking a lock, when the configured store
+ * implements this interface. For the rest of the stores the same operations are emulated under the key lock.
+ * <p/>
+ * None of these methods throws {@link org.mule.api.store.ObjectAlreadyExistsException} or {@link org.mule.api.store.ObjectDoesNotExistException}, the
+ * outcome is reported through the return value.
+ */
+public interface AtomicObjectStore<T extends Serializable> extends ObjectStore<T> {
+
+    /**
+     * Stores the value only if the key has no value associated.
+     *
+     * @return the value already associated with the key, or null if the given value was stored
+     */
+    T putIfAbsent(Serializable key, T value) throws ObjectStoreException;
+
+    /**
+     * Replaces the value of the key only if it is currently equal to the expected one.
+     *
+     * @return true if the value was replaced
+     */
+    boolean replace(Serializable key, T expected, T value) throws ObjectStoreException;
+
+    /**
+     * Stores the value, replacing the one associated with the key if any.
+     *
+     * @return the value previously associated with the key, or null if there was none
+     */
+    T put(Serializable key, T value) throws ObjectStoreException;
+}
@@ -0,0 +1,59 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.store;
+
+import org.mule.api.store.ObjectStore;
+import org.mule.api.store.ObjectStoreException;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * An {@link ObjectStore} able to process several keys in a single round-trip. The connector hands whole batches to stores implementing this interface
+ * and falls back to one call per key for the rest.
+ * <p/>
+ * Batch methods never abort on the first failing key: they return the failures keyed by the key that caused them.
+ */
+public interface BatchObjectStore<T extends Serializable> extends ObjectStore<T> {
+
+    /**
+     * Stores all the given entries.
+     *
+     * @param entries
+     *            the entries to store
+     * @param overwrite
+     *            true if existing entries have to be replaced, otherwise an {@link org.mule.api.store.ObjectAlreadyExistsException} is reported for them
+     * @return the keys that could not be stored, mapped to the cause. Empty if every entry was stored.
+     * @throws ObjectStoreException
+     *             if the store is not available
+     */
+    Map<Serializable, ObjectStoreException> storeAll(Map<Serializable, T> entries, boolean overwrite) throws ObjectStoreException;
+
+    /**
+     * Retrieves the values of all the given keys.
+     *
+     * @param keys
+     *            the keys to retrieve
+     * @return the values found, keys with no value are left out of the result
+     * @throws ObjectStoreException
+     *             if the store is not available
+     */
+    Map<Serializable, T> retrieveAll(Collection<? extends Serializable> keys) throws ObjectStoreException;
+
+    /**
+     * Removes all the given keys.
+     *
+     * @param keys
+     *            the keys to remove
+     * @return the keys that could not be removed, mapped to the cause. Missing keys are reported with an
+     *         {@link org.mule.api.store.ObjectDoesNotExistException}.
+     * @throws ObjectStoreException
+     *             if the store is not available
+     */
+    Map<Serializable, ObjectStoreException> removeAll(Collection<? extends Serializable> keys) throws ObjectStoreException;
+}
@@ -0,0 +1,159 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.store;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mule.api.store.ObjectStore;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.modules.objectstore.expiry.ExpiringObjectStore;
+import org.mule.modules.objectstore.expiry.ExpiringValue;
+
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hides the window in which a key is missing while a store without atomic updates is overwritten, so readers need no lock.
+ * <p/>
+ * Such a store can only be overwritten removing the old value and storing the new one. {@link #overwrite(Serializable, Serializable)} publishes the old
+ * value before the removal and withdraws it once the new one is stored. Reads return the published value if there is one, so the new value only becomes
+ * visible once the overwrite completed and a reader never sees the old value after the new one. Each overwrite also bumps the version of the stripe of
+ * its key when it starts and when it ends, and a read that finds neither the key nor a published value only reports the key as missing if the version
+ * did not change meanwhile, otherwise it reads again. Readers then see either the old or the new value, never a miss, and never wait for a writer. If the
+ * new value cannot be stored the old one is stored again.
+ * <p/>
+ * Published values live in this JVM: readers on other nodes sharing the store may still find the key missing during an overwrite. Overwrites must be
+ * called holding the key lock. Batch reads are not covered.
+ */
+public class ConsistentReadObjectStore extends ObjectStoreDecorator {
+
+    private static final Log logger = LogFactory.getLog(ConsistentReadObjectStore.class);
+
+    private static final int STRIPES = 64;
+
+    private final ConcurrentMap<Serializable, Serializable> overwriting = new ConcurrentHashMap<Serializable, Serializable>();
+    private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+
+    public ConsistentReadObjectStore(ObjectStore<Serializable> delegate) {
+        super(delegate);
+    }
+
+    /**
+     * Replaces the value of the key, storing it if the key has no value.
+     *
+     * @return the value previously associated with the key, or null if there was none
+     */
+    public Serializable overwrite(Serializable key, Serializable value) throws ObjectStoreException {
+        int stripe = stripeFor(key);
+        Serializable previous = stored(key);
+        if (previous != null) {
+            overwriting.put(key, previous);
+        }
+        versions.incrementAndGet(stripe);
+        try {
+            ObjectStores.removeIfPresent(delegate, key);
+            try {
+                delegate.store(key, value);
+            } catch (ObjectStoreException e) {
+                restore(key, previous);
+                throw e;
+            } catch (RuntimeException e) {
+                restore(key, previous);
+                throw e;
+            }
+            return previous instanceof ExpiringValue ? ((ExpiringValue) previous).getValue() : previous;
+        } finally {
+            overwriting.remove(key);
+            versions.incrementAndGet(stripe);
+        }
+    }
+
+    @Override
+    public boolean contains(Serializable key) throws ObjectStoreException {
+        int stripe = stripeFor(key);
+        while (true) {
+            long version = versions.get(stripe);
+            if (published(key) != null || delegate.contains(key) || published(key) != null) {
+                return true;
+            }
+            if (versions.get(stripe) == version) {
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public Serializable retrieve(Serializable key) throws ObjectStoreException {
+        Serializable value = lookup(key);
+        if (value == null) {
+            throw ObjectStores.doesNotExist(key);
+        }
+        return value;
+    }
+
+    @Override
+    public Serializable lookup(Serializable key) throws ObjectStoreException {
+        int stripe = stripeFor(key);
+        while (true) {
+            long version = versions.get(stripe);
+            Serializable value = published(key);
+            if (value != null) {
+                return value;
+            }
+            value = ObjectStores.lookup(delegate, key);
+            // An overwrite started meanwhile may have stored its new value already, readers only see it once the overwrite completed
+            Serializable replaced = published(key);
+            if (replaced != null) {
+                return replaced;
+            }
+            if (value != null || versions.get(stripe) == version) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * @return the current value of the key, keeping its time to live so that it can be stored again
+     */
+    private Serializable stored(Serializable key) throws ObjectStoreException {
+        if (delegate instanceof ExpiringObjectStore) {
+            return ((ExpiringObjectStore) delegate).lookupStored(key);
+        }
+        return ObjectStores.lookup(delegate, key);
+    }
+
+    private void restore(Serializable key, Serializable previous) {
+        if (previous == null) {
+            return;
+        }
+        try {
+            delegate.store(key, previous);
+        } catch (Exception e) {
+            logger.warn("Could not store again the previous value of key " + key + " after failing to overwrite it", e);
+        }
+    }
+
+    /**
+     * @return the value being replaced for the key by an overwrite, as a read would return it
+     */
+    private Serializable published(Serializable key) {
+        Serializable value = overwriting.get(key);
+        if (value instanceof ExpiringValue) {
+            ExpiringValue expiring = (ExpiringValue) value;
+            return expiring.isExpired(System.currentTimeMillis()) ? null : expiring.getValue();
+        }
+        return value;
+    }
+
+    private static int stripeFor(Serializable key) {
+        int h = key == null ? 0 : key.hashCode();
+        h ^= (h >>> 16);
+        return (h & 0x7fffffff) % STRIPES;
+    }
+}
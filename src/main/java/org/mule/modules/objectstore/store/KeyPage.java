@@ -0,0 +1,44 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.store;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A page of the keys of an object store and the cursor to get the next one.
+ */
+public class KeyPage implements Serializable {
+
+    private static final long serialVersionUID = -2290745815513447095L;
+
+    private final List<String> keys;
+    private final String nextCursor;
+
+    public KeyPage(List<String> keys, String nextCursor) {
+        this.keys = keys;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @return the keys of this page
+     */
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    /**
+     * @return the cursor to pass to get the next page, or null if this is the last one
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean isLast() {
+        return nextCursor == null;
+    }
+}
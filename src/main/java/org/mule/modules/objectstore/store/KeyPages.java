@@ -0,0 +1,135 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.store;
+
+import org.mule.api.store.ListableObjectStore;
+import org.mule.api.store.ObjectStore;
+import org.mule.api.store.ObjectStoreException;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Pages and lazy iterators over the keys of an object store.
+ * <p/>
+ * Stores implementing {@link PagedObjectStore} are walked incrementally. Other {@link ListableObjectStore}s can only list all their keys at once: pages are
+ * then cut from that list using the offset as cursor, and the iterators walk it without copying it.
+ */
+public final class KeyPages {
+
+    private KeyPages() {
+    }
+
+    public static KeyPage page(ObjectStore<Serializable> store, String cursor, int pageSize) throws ObjectStoreException {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("The page size must be greater than zero");
+        }
+        if (ObjectStores.supportsPaging(store)) {
+            return ((PagedObjectStore<Serializable>) store).keys(cursor, pageSize);
+        }
+        List<Serializable> keys = listable(store).allKeys();
+        int from = cursor == null ? 0 : Integer.parseInt(cursor);
+        int to = Math.min(keys.size(), from + pageSize);
+        List<String> page = new ArrayList<String>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            page.add(toKey(store, keys.get(i)));
+        }
+        return new KeyPage(page, to < keys.size() ? String.valueOf(to) : null);
+    }
+
+    /**
+     * @return an iterator that fetches the keys lazily, at most a page at a time for paged stores
+     */
+    public static Iterator<String> iterator(final ObjectStore<Serializable> store, final int pageSize) throws ObjectStoreException {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("The page size must be greater than zero");
+        }
+        if (ObjectStores.supportsPaging(store)) {
+            return new PagingIterator(store, pageSize);
+        }
+        final Iterator<Serializable> keys = listable(store).allKeys().iterator();
+        return new Iterator<String>() {
+
+            @Override
+            public boolean hasNext() {
+                return keys.hasNext();
+            }
+
+            @Override
+            public String next() {
+                return toKey(store, keys.next());
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * @return the key as a String
+     * @throws UnsupportedOperationException
+     *             if the key is not a String
+     */
+    public static String toKey(ObjectStore<Serializable> store, Serializable key) {
+        if (key instanceof String) {
+            return (String) key;
+        }
+        throw new UnsupportedOperationException("The objectStore [" + ObjectStores.unwrap(store).getClass().getName() + "] supports only keys of type: "
+                + String.class.getName());
+    }
+
+    private static ListableObjectStore<Serializable> listable(ObjectStore<Serializable> store) {
+        if (!ObjectStores.isListable(store)) {
+            throw new UnsupportedOperationException("The objectStore [" + ObjectStores.unwrap(store).getClass().getName() + "] does not support the operation allKeys");
+        }
+        return (ListableObjectStore<Serializable>) store;
+    }
+
+    private static final class PagingIterator implements Iterator<String> {
+
+        private final ObjectStore<Serializable> store;
+        private final int pageSize;
+        private KeyPage page;
+        private int index;
+
+        PagingIterator(ObjectStore<Serializable> store, int pageSize) {
+            this.store = store;
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (page == null || (index == page.getKeys().size() && !page.isLast())) {
+                try {
+                    page = ((PagedObjectStore<Serializable>) store).keys(page == null ? null : page.getNextCursor(), pageSize);
+                } catch (ObjectStoreException e) {
+                    throw new IllegalStateException("Could not fetch the next page of keys", e);
+                }
+                index = 0;
+            }
+            return index < page.getKeys().size();
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.getKeys().get(index++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
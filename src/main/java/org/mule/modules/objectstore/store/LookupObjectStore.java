@@ -0,0 +1,32 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.store;
+
+import org.mule.api.store.ObjectStore;
+import org.mule.api.store.ObjectStoreException;
+
+import java.io.Serializable;
+
+/**
+ * An {@link ObjectStore} reporting missing keys through the return value instead of an {@link org.mule.api.store.ObjectDoesNotExistException}, so a
+ * miss costs no exception. Use {@link ObjectStores#lookup(ObjectStore, Serializable)} and {@link ObjectStores#removeIfPresent(ObjectStore, Serializable)}
+ * to get the same behavior from any store.
+ */
+public interface LookupObjectStore<T extends Serializable> extends ObjectStore<T> {
+
+    /**
+     * @return the value of the key, or null if it has none
+     */
+    T lookup(Serializable key) throws ObjectStoreException;
+
+    /**
+     * Removes the value of the key if it has one.
+     *
+     * @return the removed value, or null if the key had none
+     */
+    T removeIfPresent(Serializable key) throws ObjectStoreException;
+}
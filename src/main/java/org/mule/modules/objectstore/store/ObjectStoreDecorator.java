@@ -0,0 +1,156 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.store;
+
+import org.mule.api.store.ListableObjectStore;
+import org.mule.api.store.ObjectStore;
+import org.mule.api.store.ObjectStoreException;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base class for the stores the connector layers on top of the configured object store. Every operation is forwarded to the decorated store.
+ * <p/>
+ * A decorator implements {@link AtomicObjectStore}, {@link BatchObjectStore} and {@link PagedObjectStore} so it never hides the capabilities of the store it decorates, but those
+ * methods may only be called when the decorated store supports them. Use {@link ObjectStores} to find out what the decorated chain supports.
+ *
+ * @author MuleSoft, Inc.
+ */
+public abstract class ObjectStoreDecorator implements ListableObjectStore<Serializable>, AtomicObjectStore<Serializable>, BatchObjectStore<Serializable>,
+        PagedObjectStore<Serializable>, LookupObjectStore<Serializable> {
+
+    protected final ObjectStore<Serializable> delegate;
+
+    protected ObjectStoreDecorator(ObjectStore<Serializable> delegate) {
+        this.delegate = delegate;
+    }
+
+    public ObjectStore<Serializable> getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public boolean contains(Serializable key) throws ObjectStoreException {
+        return delegate.contains(key);
+    }
+
+    @Override
+    public void store(Serializable key, Serializable value) throws ObjectStoreException {
+        delegate.store(key, value);
+    }
+
+    @Override
+    public Serializable retrieve(Serializable key) throws ObjectStoreException {
+        return delegate.retrieve(key);
+    }
+
+    @Override
+    public Serializable remove(Serializable key) throws ObjectStoreException {
+        return delegate.remove(key);
+    }
+
+    /**
+     * Decorators overriding {@link #retrieve(Serializable)} must override this method the same way.
+     */
+    @Override
+    public Serializable lookup(Serializable key) throws ObjectStoreException {
+        return ObjectStores.lookup(delegate, key);
+    }
+
+    /**
+     * Decorators overriding {@link #remove(Serializable)} must override this method the same way.
+     */
+    @Override
+    public Serializable removeIfPresent(Serializable key) throws ObjectStoreException {
+        return ObjectStores.removeIfPresent(delegate, key);
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return delegate.isPersistent();
+    }
+
+    @Override
+    public void clear() throws ObjectStoreException {
+        delegate.clear();
+    }
+
+    @Override
+    public void open() throws ObjectStoreException {
+        if (delegate instanceof ListableObjectStore) {
+            ((ListableObjectStore<Serializable>) delegate).open();
+        }
+    }
+
+    @Override
+    public void close() throws ObjectStoreException {
+        if (delegate instanceof ListableObjectStore) {
+            ((ListableObjectStore<Serializable>) delegate).close();
+        }
+    }
+
+    @Override
+    public List<Serializable> allKeys() throws ObjectStoreException {
+        if (delegate instanceof ListableObjectStore) {
+            return ((ListableObjectStore<Serializable>) delegate).allKeys();
+        }
+        throw new UnsupportedOperationException("The objectStore [" + delegate.getClass().getName() + "] does not support the operation allKeys");
+    }
+
+    @Override
+    public Serializable putIfAbsent(Serializable key, Serializable value) throws ObjectStoreException {
+        return atomicDelegate().putIfAbsent(key, value);
+    }
+
+    @Override
+    public boolean replace(Serializable key, Serializable expected, Serializable value) throws ObjectStoreException {
+        return atomicDelegate().replace(key, expected, value);
+    }
+
+    @Override
+    public Serializable put(Serializable key, Serializable value) throws ObjectStoreException {
+        return atomicDelegate().put(key, value);
+    }
+
+    @Override
+    public Map<Serializable, ObjectStoreException> storeAll(Map<Serializable, Serializable> entries, boolean overwrite) throws ObjectStoreException {
+        return batchDelegate().storeAll(entries, overwrite);
+    }
+
+    @Override
+    public Map<Serializable, Serializable> retrieveAll(Collection<? extends Serializable> keys) throws ObjectStoreException {
+        return batchDelegate().retrieveAll(keys);
+    }
+
+    @Override
+    public Map<Serializable, ObjectStoreException> removeAll(Collection<? extends Serializable> keys) throws ObjectStoreException {
+        return batchDelegate().removeAll(keys);
+    }
+
+    @Override
+    public KeyPage keys(String cursor, int pageSize) throws ObjectStoreException {
+        return ((PagedObjectStore<Serializable>) delegate).keys(cursor, pageSize);
+    }
+
+    /**
+     * @return true if this decorator pages through the keys itself instead of forwarding {@link #keys(String, int)} to the decorated store
+     */
+    protected boolean supportsPaging() {
+        return false;
+    }
+
+    protected AtomicObjectStore<Serializable> atomicDelegate() {
+        return (AtomicObjectStore<Serializable>) delegate;
+    }
+
+    protected BatchObjectStore<Serializable> batchDelegate() {
+        return (BatchObjectStore<Serializable>) delegate;
+    }
+}
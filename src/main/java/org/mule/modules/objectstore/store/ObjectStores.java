@@ -0,0 +1,142 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.store;
+
+import org.mule.api.store.ListableObjectStore;
+import org.mule.api.store.ObjectAlreadyExistsException;
+import org.mule.api.store.ObjectDoesNotExistException;
+import org.mule.api.store.ObjectStore;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.config.i18n.MessageFactory;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Capability checks that look through {@link ObjectStoreDecorator}s down to the configured object store, and exception-free access to any store.
+ */
+public final class ObjectStores {
+
+    private ObjectStores() {
+    }
+
+    /**
+     * @return the object store at the bottom of a chain of decorators
+     */
+    public static ObjectStore<Serializable> unwrap(ObjectStore<Serializable> store) {
+        while (store instanceof ObjectStoreDecorator) {
+            store = ((ObjectStoreDecorator) store).getDelegate();
+        }
+        return store;
+    }
+
+    public static boolean isAtomic(ObjectStore<Serializable> store) {
+        return unwrap(store) instanceof AtomicObjectStore;
+    }
+
+    public static boolean supportsBatch(ObjectStore<Serializable> store) {
+        return unwrap(store) instanceof BatchObjectStore;
+    }
+
+    public static boolean supportsPaging(ObjectStore<Serializable> store) {
+        while (store instanceof ObjectStoreDecorator) {
+            if (((ObjectStoreDecorator) store).supportsPaging()) {
+                return true;
+            }
+            store = ((ObjectStoreDecorator) store).getDelegate();
+        }
+        return store instanceof PagedObjectStore;
+    }
+
+    public static boolean isListable(ObjectStore<Serializable> store) {
+        return unwrap(store) instanceof ListableObjectStore;
+    }
+
+    /**
+     * @return the value of the key, or null if it has none. Only stores not implementing {@link LookupObjectStore} cost an exception on a miss.
+     */
+    @SuppressWarnings("unchecked")
+    public static Serializable lookup(ObjectStore<Serializable> store, Serializable key) throws ObjectStoreException {
+        if (store instanceof LookupObjectStore) {
+            return ((LookupObjectStore<Serializable>) store).lookup(key);
+        }
+        try {
+            return store.retrieve(key);
+        } catch (ObjectDoesNotExistException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Removes the value of the key if it has one. Only stores not implementing {@link LookupObjectStore} cost an exception on a miss.
+     *
+     * @return the removed value, or null if the key had none
+     */
+    @SuppressWarnings("unchecked")
+    public static Serializable removeIfPresent(ObjectStore<Serializable> store, Serializable key) throws ObjectStoreException {
+        if (store instanceof LookupObjectStore) {
+            return ((LookupObjectStore<Serializable>) store).removeIfPresent(key);
+        }
+        try {
+            return store.remove(key);
+        } catch (ObjectDoesNotExistException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return an exception reporting the key as missing. It carries no stack trace, which makes it cheap enough for the miss path.
+     */
+    public static ObjectDoesNotExistException doesNotExist(Serializable key) {
+        return new MissingKeyException(key);
+    }
+
+    /**
+     * @return an exception reporting the key as already present. It carries no stack trace, which makes it cheap enough for the overwrite path.
+     */
+    public static ObjectAlreadyExistsException alreadyExists(Serializable key) {
+        return new ExistingKeyException(key);
+    }
+
+    /**
+     * @return true if both values are equal, comparing byte arrays by content
+     */
+    public static boolean sameValue(Object expected, Object current) {
+        if (expected instanceof byte[] && current instanceof byte[]) {
+            return Arrays.equals((byte[]) expected, (byte[]) current);
+        }
+        return expected == null ? current == null : expected.equals(current);
+    }
+
+    private static final class MissingKeyException extends ObjectDoesNotExistException {
+
+        private static final long serialVersionUID = -2164861413284329811L;
+
+        MissingKeyException(Serializable key) {
+            super(MessageFactory.createStaticMessage("Key does not exist: " + key));
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    private static final class ExistingKeyException extends ObjectAlreadyExistsException {
+
+        private static final long serialVersionUID = 4305742263841021876L;
+
+        ExistingKeyException(Serializable key) {
+            super(MessageFactory.createStaticMessage("Key already exists: " + key));
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
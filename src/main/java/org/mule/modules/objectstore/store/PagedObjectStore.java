@@ -0,0 +1,30 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.store;
+
+import org.mule.api.store.ObjectStore;
+import org.mule.api.store.ObjectStoreException;
+
+import java.io.Serializable;
+
+/**
+ * An {@link ObjectStore} able to walk its keys a page at a time, without loading all of them in memory.
+ * <p/>
+ * Cursors are opaque to the caller. Keys stored or removed while the store is being walked may or may not be returned, but a key present during the whole
+ * walk is returned exactly once.
+ */
+public interface PagedObjectStore<T extends Serializable> extends ObjectStore<T> {
+
+    /**
+     * @param cursor
+     *            the cursor returned with the previous page, or null to get the first page
+     * @param pageSize
+     *            the maximum number of keys of the page
+     * @return the page of keys following the cursor
+     */
+    KeyPage keys(String cursor, int pageSize) throws ObjectStoreException;
+}
@@ -0,0 +1,42 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.writebehind;
+
+/**
+ * JMX view of the statistics of a {@link WriteBehindObjectStore}.
+ */
+public interface WriteBehindMXBean {
+
+    /**
+     * @return the number of keys with a write waiting to be flushed
+     */
+    int getPending();
+
+    long getFlushes();
+
+    /**
+     * @return the number of keys written to the object store
+     */
+    long getFlushed();
+
+    /**
+     * @return the number of writes replaced by a later write of the same key before being flushed
+     */
+    long getCoalesced();
+
+    long getFailures();
+
+    /**
+     * @return the number of writes dropped after failing to flush {@link WriteBehindObjectStore#MAX_ATTEMPTS} times
+     */
+    long getDropped();
+
+    /**
+     * @return the number of writes that failed because the buffer stayed full
+     */
+    long getRejected();
+}
@@ -0,0 +1,546 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+
+package org.mule.modules.objectstore.writebehind;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mule.api.store.ListableObjectStore;
+import org.mule.api.store.ObjectDoesNotExistException;
+import org.mule.api.store.ObjectStore;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.config.i18n.MessageFactory;
+import org.mule.modules.objectstore.store.KeyPage;
+import org.mule.modules.objectstore.store.ObjectStoreDecorator;
+import org.mule.modules.objectstore.store.ObjectStores;
+import org.mule.util.concurrent.DaemonThreadFactory;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Buffers the writes in memory and writes them to the decorated store in batches, keeping only the last write of every key.
+ * <p/>
+ * The buffer is flushed every flush interval, when the store is disposed and, by the flushing thread, as soon as it holds max entries keys. Reads through
+ * this store see the buffered writes, but anyone reading the decorated store directly does not see them until they are flushed, and buffered writes are
+ * lost if the JVM stops without disposing the store: the durability window is the flush interval.
+ * <p/>
+ * The buffer holds at most twice max entries keys: a write of a key that is not buffered yet waits up to a flush interval for the flushing thread to make
+ * room, and fails if it does not. A write that fails to flush is kept in the buffer and retried on the next flushes, and dropped once it failed
+ * {@link #MAX_ATTEMPTS} times.
+ */
+public class WriteBehindObjectStore extends ObjectStoreDecorator implements WriteBehindMXBean {
+
+    private static final Log logger = LogFactory.getLog(WriteBehindObjectStore.class);
+
+    private static final int MONITORS = 64;
+
+    /**
+     * Number of flushes a write may fail before it is dropped.
+     */
+    public static final int MAX_ATTEMPTS = 5;
+
+    /**
+     * Buffered value of a removed key.
+     */
+    private static final Serializable REMOVED = new Serializable() {
+
+        private static final long serialVersionUID = 1L;
+    };
+
+    private final ConcurrentMap<Serializable, Serializable> buffer = new ConcurrentHashMap<Serializable, Serializable>();
+    // Failed flushes of the buffered keys
+    private final ConcurrentMap<Serializable, Integer> attempts = new ConcurrentHashMap<Serializable, Integer>();
+    private final Object[] monitors = new Object[MONITORS];
+    // Notified whenever a flush drained the buffer
+    private final Object room = new Object();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final String name;
+    private final long flushInterval;
+    private final int maxEntries;
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final Runnable flushTask = new Runnable() {
+
+        @Override
+        public void run() {
+            flushRequested.set(false);
+            try {
+                flush();
+            } catch (Exception e) {
+                logger.warn("Could not flush the write-behind buffer of " + name, e);
+            }
+        }
+    };
+    private volatile ScheduledExecutorService scheduler;
+
+    /**
+     * @param flushInterval
+     *            milliseconds between two flushes
+     * @param maxEntries
+     *            number of buffered keys that triggers a flush, zero or less to only flush every flush interval and never bound the buffer
+     */
+    public WriteBehindObjectStore(ObjectStore<Serializable> delegate, String name, long flushInterval, int maxEntries) {
+        super(delegate);
+        this.name = name;
+        this.flushInterval = flushInterval;
+        this.maxEntries = maxEntries;
+        for (int i = 0; i < MONITORS; i++) {
+            monitors[i] = new Object();
+        }
+    }
+
+    /**
+     * Starts flushing the buffer every flush interval.
+     */
+    public synchronized void start() {
+        if (scheduler != null || flushInterval <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(name + ".writeBehind.flush"));
+        scheduler.scheduleWithFixedDelay(flushTask, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the periodic flush and writes the whole buffer to the decorated store.
+     */
+    public void dispose() throws ObjectStoreException {
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.shutdown();
+                scheduler = null;
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Writes the buffered writes to the decorated store. Keys written again while flushing stay buffered with their new value.
+     */
+    public synchronized void flush() throws ObjectStoreException {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        flushes.incrementAndGet();
+        Map<Serializable, Serializable> stores = new HashMap<Serializable, Serializable>();
+        List<Serializable> removes = new ArrayList<Serializable>();
+        for (Map.Entry<Serializable, Serializable> entry : buffer.entrySet()) {
+            if (entry.getValue() == REMOVED) {
+                removes.add(entry.getKey());
+            } else {
+                stores.put(entry.getKey(), entry.getValue());
+            }
+        }
+        Map<Serializable, ObjectStoreException> failed = new HashMap<Serializable, ObjectStoreException>();
+        if (ObjectStores.supportsBatch(delegate)) {
+            if (!stores.isEmpty()) {
+                failed.putAll(batchDelegate().storeAll(stores, true));
+            }
+            if (!removes.isEmpty()) {
+                for (Map.Entry<Serializable, ObjectStoreException> failure : batchDelegate().removeAll(removes).entrySet()) {
+                    if (!(failure.getValue() instanceof ObjectDoesNotExistException)) {
+                        failed.put(failure.getKey(), failure.getValue());
+                    }
+                }
+            }
+        } else {
+            for (Map.Entry<Serializable, Serializable> entry : stores.entrySet()) {
+                try {
+                    write(entry.getKey(), entry.getValue());
+                } catch (ObjectStoreException e) {
+                    failed.put(entry.getKey(), e);
+                }
+            }
+            for (Serializable key : removes) {
+                try {
+                    delegate.remove(key);
+                } catch (ObjectDoesNotExistException e) {
+                    // already gone
+                } catch (ObjectStoreException e) {
+                    failed.put(key, e);
+                }
+            }
+        }
+        drain(stores, failed);
+        for (Serializable key : removes) {
+            if (!failed.containsKey(key)) {
+                if (buffer.remove(key, REMOVED)) {
+                    attempts.remove(key);
+                }
+                flushed.incrementAndGet();
+            }
+        }
+        if (!failed.isEmpty()) {
+            failures.addAndGet(failed.size());
+            int gaveUp = giveUp(failed, stores);
+            Map.Entry<Serializable, ObjectStoreException> first = failed.entrySet().iterator().next();
+            logger.warn("Could not flush " + failed.size() + " keys of the write-behind buffer of " + name + ", " + gaveUp + " of them failed " + MAX_ATTEMPTS
+                    + " times and were dropped, the rest will be retried. First failure for key " + first.getKey(), first.getValue());
+        }
+        synchronized (room) {
+            room.notifyAll();
+        }
+    }
+
+    @Override
+    public int getPending() {
+        return buffer.size();
+    }
+
+    @Override
+    public long getFlushes() {
+        return flushes.get();
+    }
+
+    @Override
+    public long getFlushed() {
+        return flushed.get();
+    }
+
+    @Override
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.get();
+    }
+
+    @Override
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    @Override
+    public boolean contains(Serializable key) throws ObjectStoreException {
+        Serializable buffered = buffer.get(key);
+        if (buffered != null) {
+            return buffered != REMOVED;
+        }
+        return delegate.contains(key);
+    }
+
+    @Override
+    public Serializable retrieve(Serializable key) throws ObjectStoreException {
+        Serializable buffered = buffer.get(key);
+        if (buffered == REMOVED) {
+            throw ObjectStores.doesNotExist(key);
+        }
+        return buffered != null ? buffered : delegate.retrieve(key);
+    }
+
+    @Override
+    public Serializable lookup(Serializable key) throws ObjectStoreException {
+        Serializable buffered = buffer.get(key);
+        if (buffered == REMOVED) {
+            return null;
+        }
+        return buffered != null ? buffered : ObjectStores.lookup(delegate, key);
+    }
+
+    @Override
+    public void store(Serializable key, Serializable value) throws ObjectStoreException {
+        awaitRoom(key);
+        synchronized (monitorFor(key)) {
+            if (contains(key)) {
+                throw ObjectStores.alreadyExists(key);
+            }
+            buffer(key, value);
+        }
+        flushIfFull();
+    }
+
+    @Override
+    public Serializable remove(Serializable key) throws ObjectStoreException {
+        Serializable value;
+        awaitRoom(key);
+        synchronized (monitorFor(key)) {
+            value = retrieve(key);
+            buffer(key, REMOVED);
+        }
+        flushIfFull();
+        return value;
+    }
+
+    @Override
+    public Serializable removeIfPresent(Serializable key) throws ObjectStoreException {
+        Serializable value;
+        awaitRoom(key);
+        synchronized (monitorFor(key)) {
+            value = lookup(key);
+            if (value == null) {
+                return null;
+            }
+            buffer(key, REMOVED);
+        }
+        flushIfFull();
+        return value;
+    }
+
+    @Override
+    public void clear() throws ObjectStoreException {
+        synchronized (this) {
+            buffer.clear();
+            attempts.clear();
+            delegate.clear();
+        }
+        synchronized (room) {
+            room.notifyAll();
+        }
+    }
+
+    @Override
+    public List<Serializable> allKeys() throws ObjectStoreException {
+        Set<Serializable> keys = new LinkedHashSet<Serializable>(super.allKeys());
+        for (Map.Entry<Serializable, Serializable> entry : buffer.entrySet()) {
+            if (entry.getValue() == REMOVED) {
+                keys.remove(entry.getKey());
+            } else {
+                keys.add(entry.getKey());
+            }
+        }
+        return new ArrayList<Serializable>(keys);
+    }
+
+    /**
+     * Flushes the buffer before paging through the keys of the decorated store.
+     */
+    @Override
+    public KeyPage keys(String cursor, int pageSize) throws ObjectStoreException {
+        flush();
+        return super.keys(cursor, pageSize);
+    }
+
+    @Override
+    public Serializable putIfAbsent(Serializable key, Serializable value) throws ObjectStoreException {
+        Serializable existing;
+        awaitRoom(key);
+        synchronized (monitorFor(key)) {
+            existing = lookup(key);
+            if (existing == null) {
+                buffer(key, value);
+            }
+        }
+        flushIfFull();
+        return existing;
+    }
+
+    @Override
+    public boolean replace(Serializable key, Serializable expected, Serializable value) throws ObjectStoreException {
+        awaitRoom(key);
+        synchronized (monitorFor(key)) {
+            Serializable current = lookup(key);
+            if (current == null || !ObjectStores.sameValue(expected, current)) {
+                return false;
+            }
+            buffer(key, value);
+        }
+        flushIfFull();
+        return true;
+    }
+
+    @Override
+    public Serializable put(Serializable key, Serializable value) throws ObjectStoreException {
+        Serializable previous;
+        awaitRoom(key);
+        synchronized (monitorFor(key)) {
+            previous = lookup(key);
+            buffer(key, value);
+        }
+        flushIfFull();
+        return previous;
+    }
+
+    @Override
+    public Map<Serializable, ObjectStoreException> storeAll(Map<Serializable, Serializable> entries, boolean overwrite) throws ObjectStoreException {
+        Map<Serializable, ObjectStoreException> failed = new HashMap<Serializable, ObjectStoreException>();
+        for (Map.Entry<Serializable, Serializable> entry : entries.entrySet()) {
+            try {
+                if (overwrite) {
+                    put(entry.getKey(), entry.getValue());
+                } else {
+                    store(entry.getKey(), entry.getValue());
+                }
+            } catch (ObjectStoreException e) {
+                failed.put(entry.getKey(), e);
+            }
+        }
+        return failed;
+    }
+
+    @Override
+    public Map<Serializable, Serializable> retrieveAll(Collection<? extends Serializable> keys) throws ObjectStoreException {
+        Map<Serializable, Serializable> values = new HashMap<Serializable, Serializable>();
+        List<Serializable> missing = new ArrayList<Serializable>();
+        for (Serializable key : keys) {
+            Serializable buffered = buffer.get(key);
+            if (buffered == null) {
+                missing.add(key);
+            } else if (buffered != REMOVED) {
+                values.put(key, buffered);
+            }
+        }
+        if (!missing.isEmpty()) {
+            values.putAll(batchDelegate().retrieveAll(missing));
+        }
+        return values;
+    }
+
+    @Override
+    public Map<Serializable, ObjectStoreException> removeAll(Collection<? extends Serializable> keys) throws ObjectStoreException {
+        Map<Serializable, ObjectStoreException> failed = new HashMap<Serializable, ObjectStoreException>();
+        for (Serializable key : keys) {
+            try {
+                remove(key);
+            } catch (ObjectStoreException e) {
+                failed.put(key, e);
+            }
+        }
+        return failed;
+    }
+
+    private void buffer(Serializable key, Serializable value) {
+        if (buffer.put(key, value) != null) {
+            coalesced.incrementAndGet();
+        }
+        // A new write gets its own attempts
+        attempts.remove(key);
+    }
+
+    /**
+     * Hands the flush of a full buffer to the flushing thread, or flushes on the writing thread if the store was not started.
+     */
+    private void flushIfFull() throws ObjectStoreException {
+        if (maxEntries <= 0 || buffer.size() < maxEntries) {
+            return;
+        }
+        ScheduledExecutorService flusher = scheduler;
+        if (flusher == null) {
+            flush();
+            return;
+        }
+        if (flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(flushTask);
+            } catch (RejectedExecutionException e) {
+                // Disposed meanwhile, which flushes the buffer
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    /**
+     * Waits until the buffer has room for the key, which it always has when the key is buffered already. Gives up after a flush interval.
+     */
+    private void awaitRoom(Serializable key) throws ObjectStoreException {
+        int capacity = maxEntries * 2;
+        if (maxEntries <= 0 || buffer.size() < capacity || buffer.containsKey(key)) {
+            return;
+        }
+        flushIfFull();
+        long deadline = System.currentTimeMillis() + flushInterval;
+        synchronized (room) {
+            long now = System.currentTimeMillis();
+            while (buffer.size() >= capacity && !buffer.containsKey(key)) {
+                if (now >= deadline) {
+                    rejected.incrementAndGet();
+                    throw new ObjectStoreException(MessageFactory.createStaticMessage("The write-behind buffer of " + name + " is full, holding "
+                            + buffer.size() + " keys, and could not be flushed in " + flushInterval + " ms"));
+                }
+                try {
+                    room.wait(deadline - now);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ObjectStoreException(MessageFactory.createStaticMessage("Interrupted while waiting for room in the write-behind buffer of "
+                            + name), e);
+                }
+                now = System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Drops the failed writes that were tried {@link #MAX_ATTEMPTS} times, unless they were written again meanwhile.
+     *
+     * @return the number of writes dropped
+     */
+    private int giveUp(Map<Serializable, ObjectStoreException> failed, Map<Serializable, Serializable> stores) {
+        int gaveUp = 0;
+        for (Map.Entry<Serializable, ObjectStoreException> failure : failed.entrySet()) {
+            Serializable key = failure.getKey();
+            Integer previous = attempts.get(key);
+            int attempt = previous == null ? 1 : previous + 1;
+            if (attempt < MAX_ATTEMPTS) {
+                attempts.put(key, attempt);
+                continue;
+            }
+            Serializable value = stores.containsKey(key) ? stores.get(key) : REMOVED;
+            if (buffer.remove(key, value)) {
+                attempts.remove(key);
+                dropped.incrementAndGet();
+                gaveUp++;
+                logger.error("Dropped the write of key " + key + " from the write-behind buffer of " + name + " after " + MAX_ATTEMPTS + " failed flushes",
+                        failure.getValue());
+            }
+        }
+        return gaveUp;
+    }
+
+    private void write(Serializable key, Serializable value) throws ObjectStoreException {
+        if (ObjectStores.isAtomic(delegate)) {
+            atomicDelegate().put(key, value);
+            return;
+        }
+        if (delegate.contains(key)) {
+            delegate.remove(key);
+        }
+        delegate.store(key, value);
+    }
+
+    /**
+     * Drops the flushed values from the buffer, unless they were written again meanwhile.
+     */
+    private void drain(Map<Serializable, Serializable> stores, Map<Serializable, ObjectStoreException> failed) {
+        for (Map.Entry<Serializable, Serializable> entry : stores.entrySet()) {
+            if (!failed.containsKey(entry.getKey())) {
+                if (buffer.remove(entry.getKey(), entry.getValue())) {
+                    attempts.remove(entry.getKey());
+                }
+                flushed.incrementAndGet();
+            }
+        }
+    }
+
+    private Object monitorFor(Serializable key) {
+        int h = key == null ? 0 : key.hashCode();
+        h ^= (h >>> 16);
+        return monitors[(h & 0x7fffffff) % MONITORS];
+    }
+}
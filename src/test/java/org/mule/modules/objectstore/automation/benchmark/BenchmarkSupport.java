@@ -0,0 +1,45 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.benchmark;
+
+import org.mule.api.MuleContext;
+import org.mule.api.MuleException;
+import org.mule.context.DefaultMuleContextFactory;
+import org.mule.modules.objectstore.Config;
+import org.mule.modules.objectstore.ObjectStoreConnector;
+
+/**
+ * Wires an {@link ObjectStoreConnector} against a standalone Mule context so it can be driven directly from the benchmarks.
+ */
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    static MuleContext startMuleContext() throws MuleException {
+        MuleContext muleContext = new DefaultMuleContextFactory().createMuleContext();
+        muleContext.start();
+        return muleContext;
+    }
+
+    static ObjectStoreConnector newConnector(MuleContext muleContext, Config config) {
+        ObjectStoreConnector connector = new ObjectStoreConnector();
+        connector.setConfig(config);
+        connector.setMuleContext(muleContext);
+        connector.setRegistry(muleContext.getRegistry());
+        connector.setObjectStoreManager(muleContext.getObjectStoreManager());
+        connector.init();
+        return connector;
+    }
+
+    static String[] keys(int count) {
+        String[] keys = new String[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = "key-" + i;
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.benchmark;
+
+import org.mule.modules.objectstore.EvictionPolicy;
+import org.mule.modules.objectstore.eviction.Policies;
+import org.mule.modules.objectstore.eviction.Policy;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Replays access traces against every {@link EvictionPolicy} and prints the hit ratio of each one. A read that misses stores the key, as a cache in
+ * front of a slower system would.
+ * <p/>
+ * Without arguments it replays synthetic traces: a Zipfian distribution, the same distribution interrupted by scans of keys read only once, and a loop
+ * slightly larger than the store. Pass the path of a trace file, with one key per line, and the maximum number of entries to replay a recorded workload.
+ */
+public class EvictionTraceBenchmark {
+
+    private static final int MAX_ENTRIES = 1000;
+    private static final int KEYS = 100000;
+    private static final int ACCESSES = 2000000;
+
+    private EvictionTraceBenchmark() {
+    }
+
+    /**
+     * @return the hit ratio of the policy over the trace
+     */
+    static double replay(EvictionPolicy evictionPolicy, int maxEntries, List<String> trace) {
+        Policy policy = Policies.newPolicy(evictionPolicy, maxEntries);
+        Set<Serializable> stored = new HashSet<Serializable>();
+        List<Serializable> victims = new ArrayList<Serializable>();
+        long hits = 0;
+        for (String key : trace) {
+            if (stored.contains(key)) {
+                hits++;
+                policy.recordAccess(key);
+            } else {
+                policy.recordMiss(key);
+                policy.recordWrite(key, 1, victims);
+                stored.add(key);
+                stored.removeAll(victims);
+                victims.clear();
+            }
+        }
+        return (double) hits / trace.size();
+    }
+
+    static List<String> zipfian(boolean scans) {
+        KeyGenerator generator = new KeyGenerator(KeyGenerator.Distribution.ZIPFIAN, KEYS, 42);
+        List<String> trace = new ArrayList<String>(ACCESSES);
+        int scanned = 0;
+        while (trace.size() < ACCESSES) {
+            trace.add("key-" + generator.next());
+            if (scans && trace.size() % 5000 == 0) {
+                for (int i = 0; i < 2 * MAX_ENTRIES; i++) {
+                    trace.add("scan-" + scanned++);
+                }
+            }
+        }
+        return trace;
+    }
+
+    static List<String> loop() {
+        List<String> trace = new ArrayList<String>(ACCESSES);
+        int length = MAX_ENTRIES * 5 / 4;
+        for (int i = 0; i < ACCESSES; i++) {
+            trace.add("key-" + (i % length));
+        }
+        return trace;
+    }
+
+    static List<String> read(String path) throws IOException {
+        List<String> trace = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(path), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() > 0) {
+                    trace.add(line.trim());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return trace;
+    }
+
+    private static void report(String name, int maxEntries, List<String> trace) {
+        StringBuilder line = new StringBuilder(String.format("%-20s", name));
+        for (EvictionPolicy policy : EvictionPolicy.values()) {
+            line.append(String.format("  %s %6.2f%%", policy, 100 * replay(policy, maxEntries, trace)));
+        }
+        System.out.println(line);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            int maxEntries = args.length > 1 ? Integer.parseInt(args[1]) : MAX_ENTRIES;
+            report(args[0], maxEntries, read(args[0]));
+            return;
+        }
+        report("zipfian", MAX_ENTRIES, zipfian(false));
+        report("zipfian with scans", MAX_ENTRIES, zipfian(true));
+        report("loop", MAX_ENTRIES, loop());
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.benchmark;
+
+import org.mule.api.MuleContext;
+import org.mule.modules.objectstore.Config;
+import org.mule.modules.objectstore.ObjectStoreConnector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of contains against the persistent partition when most keys are missing, as in a deduplication flow, with and without the key filter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class KeyFilterBenchmark {
+
+    private static final int KEYS = 10000;
+
+    /**
+     * Zero disables the key filter.
+     */
+    @Param({ "0", "10000" })
+    public int keyFilterExpectedEntries;
+
+    /**
+     * Percentage of the keys looked up that are stored.
+     */
+    @Param({ "5" })
+    public int hitRatio;
+
+    private MuleContext muleContext;
+    private ObjectStoreConnector connector;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        muleContext = BenchmarkSupport.startMuleContext();
+        Config config = new Config();
+        config.setPartition("key-filter-benchmark");
+        config.setPersistent(true);
+        config.setKeyFilterExpectedEntries(keyFilterExpectedEntries);
+        config.setKeyFilterFalsePositiveRate(0.01);
+        connector = BenchmarkSupport.newConnector(muleContext, config);
+        keys = BenchmarkSupport.keys(KEYS);
+        for (String key : keys) {
+            connector.store(key, key, true, null);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        for (String key : keys) {
+            connector.remove(key, true);
+        }
+        connector.dispose();
+        muleContext.dispose();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadKeys {
+
+        private final Random random = new Random();
+
+        String next(KeyFilterBenchmark benchmark) {
+            String key = benchmark.keys[random.nextInt(KEYS)];
+            return random.nextInt(100) < benchmark.hitRatio ? key : "missing-" + key;
+        }
+    }
+
+    @Benchmark
+    public boolean contains(ThreadKeys threadKeys) throws Exception {
+        return connector.contains(threadKeys.next(this));
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.benchmark;
+
+import java.util.Random;
+
+/**
+ * Picks key indexes either uniformly or following a Zipfian distribution, where a few hot keys get most of the accesses.
+ * <p/>
+ * The Zipfian generator is the one described in "Quickly Generating Billion-Record Synthetic Databases" by Gray et al., as used by YCSB. Not thread safe,
+ * use one per benchmark thread.
+ */
+final class KeyGenerator {
+
+    enum Distribution {
+        UNIFORM, ZIPFIAN
+    }
+
+    static final double ZIPFIAN_CONSTANT = 0.99;
+
+    private final Random random;
+    private final int count;
+    private final boolean zipfian;
+    private final double theta;
+    private final double zetan;
+    private final double alpha;
+    private final double eta;
+
+    KeyGenerator(Distribution distribution, int count, long seed) {
+        this.random = new Random(seed);
+        this.count = count;
+        this.zipfian = distribution == Distribution.ZIPFIAN;
+        this.theta = ZIPFIAN_CONSTANT;
+        this.zetan = zipfian ? zeta(count, theta) : 0;
+        this.alpha = 1 / (1 - theta);
+        this.eta = zipfian ? (1 - Math.pow(2.0 / count, 1 - theta)) / (1 - zeta(2, theta) / zetan) : 0;
+    }
+
+    /**
+     * @return a key index between 0 and count - 1, index 0 being the hottest key
+     */
+    int next() {
+        if (!zipfian) {
+            return random.nextInt(count);
+        }
+        double u = random.nextDouble();
+        double uz = u * zetan;
+        if (uz < 1) {
+            return 0;
+        }
+        if (uz < 1 + Math.pow(0.5, theta)) {
+            return 1;
+        }
+        return Math.min(count - 1, (int) (count * Math.pow(eta * u - eta + 1, alpha)));
+    }
+
+    private static double zeta(int n, double theta) {
+        double sum = 0;
+        for (int i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.benchmark;
+
+import org.mule.api.MuleContext;
+import org.mule.modules.objectstore.Config;
+import org.mule.modules.objectstore.LockGranularity;
+import org.mule.modules.objectstore.ObjectStoreConnector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the write throughput of the lock granularities when every thread stores to a different key.
+ * <p/>
+ * Run {@link #main(String[])} to get the comparison for 1 to 64 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LockGranularityBenchmark {
+
+    private static final int KEYS = 4096;
+
+    @Param({ "GLOBAL", "KEY", "STRIPED" })
+    public LockGranularity granularity;
+
+    private MuleContext muleContext;
+    private ObjectStoreConnector connector;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        muleContext = BenchmarkSupport.startMuleContext();
+        Config config = new Config();
+        config.setPartition("lock-granularity-benchmark");
+        config.setLockGranularity(granularity);
+        config.setLockStripes(64);
+        connector = BenchmarkSupport.newConnector(muleContext, config);
+        keys = BenchmarkSupport.keys(KEYS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        connector.dispose();
+        muleContext.dispose();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadKeys {
+
+        private final Random random = new Random();
+
+        int next() {
+            return random.nextInt(KEYS);
+        }
+    }
+
+    @Benchmark
+    public void store(ThreadKeys threadKeys) throws Exception {
+        String key = keys[threadKeys.next()];
+        connector.store(key, key, true, null);
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            Options options = new OptionsBuilder().include(LockGranularityBenchmark.class.getSimpleName()).threads(threads).build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.benchmark;
+
+import org.mule.api.MuleContext;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.modules.objectstore.StoreEngine;
+import org.mule.modules.objectstore.engine.LogObjectStore;
+import org.mule.util.store.PartitionedPersistentObjectStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to open a persistent partition holding existing entries and list its keys, as done when an application restarts, with the Mule persistent
+ * object store and with the LOG engine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LogRecoveryBenchmark {
+
+    private static final String PARTITION = "log-recovery-benchmark";
+
+    @Param({ "MULE", "LOG" })
+    public StoreEngine engine;
+
+    @Param({ "10000" })
+    public int entries;
+
+    private MuleContext muleContext;
+    private File logDirectory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        muleContext = BenchmarkSupport.startMuleContext();
+        logDirectory = new File(muleContext.getConfiguration().getWorkingDirectory(), "objectstore-log" + File.separator + PARTITION);
+        String[] keys = BenchmarkSupport.keys(entries);
+        if (engine == StoreEngine.LOG) {
+            LogObjectStore store = newLogStore();
+            store.open();
+            store.clear();
+            for (String key : keys) {
+                store.store(key, key);
+            }
+            store.close();
+        } else {
+            PartitionedPersistentObjectStore<Serializable> store = new PartitionedPersistentObjectStore<Serializable>(muleContext);
+            store.open(PARTITION);
+            store.clear(PARTITION);
+            for (String key : keys) {
+                store.store(key, key, PARTITION);
+            }
+            store.close(PARTITION);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (engine == StoreEngine.LOG) {
+            LogObjectStore store = newLogStore();
+            store.open();
+            store.clear();
+            store.close();
+        } else {
+            PartitionedPersistentObjectStore<Serializable> store = new PartitionedPersistentObjectStore<Serializable>(muleContext);
+            store.open(PARTITION);
+            store.clear(PARTITION);
+            store.close(PARTITION);
+        }
+        muleContext.dispose();
+    }
+
+    @Benchmark
+    public int recover() throws ObjectStoreException {
+        if (engine == StoreEngine.LOG) {
+            LogObjectStore store = newLogStore();
+            store.open();
+            int size = store.allKeys().size();
+            store.close();
+            return size;
+        }
+        PartitionedPersistentObjectStore<Serializable> store = new PartitionedPersistentObjectStore<Serializable>(muleContext);
+        store.open(PARTITION);
+        int size = store.allKeys(PARTITION).size();
+        store.close(PARTITION);
+        return size;
+    }
+
+    private LogObjectStore newLogStore() {
+        return new LogObjectStore(logDirectory, 0, 0, muleContext.getExecutionClassLoader());
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.benchmark;
+
+import org.mule.api.MuleContext;
+import org.mule.modules.objectstore.Config;
+import org.mule.modules.objectstore.LockGranularity;
+import org.mule.modules.objectstore.ObjectStoreConnector;
+import org.mule.modules.objectstore.StoreEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of store with overwrite and retrieve against a persistent partition, backed by the Mule persistent object store and by the LOG engine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class LogStoreBenchmark {
+
+    private static final int KEYS = 1000;
+
+    @Param({ "MULE", "LOG" })
+    public StoreEngine engine;
+
+    @Param({ "64", "4096" })
+    public int valueSize;
+
+    private MuleContext muleContext;
+    private ObjectStoreConnector connector;
+    private String[] keys;
+    private byte[] value;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        muleContext = BenchmarkSupport.startMuleContext();
+        Config config = new Config();
+        config.setPartition("log-store-benchmark");
+        config.setPersistent(true);
+        config.setLockGranularity(LockGranularity.STRIPED);
+        config.setEngine(engine);
+        config.setLogCompactionInterval(1000);
+        connector = BenchmarkSupport.newConnector(muleContext, config);
+        keys = BenchmarkSupport.keys(KEYS);
+        value = new byte[valueSize];
+        new Random(17).nextBytes(value);
+        for (String key : keys) {
+            connector.store(key, value, true, null);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        for (String key : keys) {
+            connector.remove(key, true);
+        }
+        connector.dispose();
+        muleContext.dispose();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadKeys {
+
+        private final Random random = new Random();
+
+        int next() {
+            return random.nextInt(KEYS);
+        }
+    }
+
+    @Benchmark
+    public void store(ThreadKeys threadKeys) throws Exception {
+        connector.store(keys[threadKeys.next()], value, true, null);
+    }
+
+    @Benchmark
+    public Object retrieve(ThreadKeys threadKeys) throws Exception {
+        return connector.retrieve(keys[threadKeys.next()], null, null, null, null);
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.benchmark;
+
+import org.mule.api.MuleContext;
+import org.mule.modules.objectstore.Config;
+import org.mule.modules.objectstore.LockGranularity;
+import org.mule.modules.objectstore.ObjectStoreConnector;
+import org.mule.modules.objectstore.StoreEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of retrieve with a default value and of remove ignoring missing keys, for several ratios of keys found. Misses no longer build an exception
+ * with its stack trace on the engines looking keys up natively, compare MULE with OFF_HEAP to see what a miss costs through the Mule stores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class MissPathBenchmark {
+
+    private static final int KEYS = 10000;
+    private static final String DEFAULT_VALUE = "default";
+
+    @Param({ "MULE", "OFF_HEAP" })
+    public StoreEngine engine;
+
+    @Param({ "0", "50", "100" })
+    public int hitRatio;
+
+    private MuleContext muleContext;
+    private ObjectStoreConnector connector;
+    private String[] keys;
+    private String[] missing;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        muleContext = BenchmarkSupport.startMuleContext();
+        Config config = new Config();
+        config.setPartition("miss-path-benchmark-" + engine);
+        config.setPersistent(false);
+        config.setLockGranularity(LockGranularity.STRIPED);
+        config.setEngine(engine);
+        connector = BenchmarkSupport.newConnector(muleContext, config);
+        keys = BenchmarkSupport.keys(KEYS);
+        missing = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            connector.store(keys[i], keys[i], true, null);
+            missing[i] = "missing-" + keys[i];
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        connector.dispose();
+        muleContext.dispose();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadKeys {
+
+        private final Random random = new Random();
+
+        String next(MissPathBenchmark benchmark) {
+            int i = random.nextInt(KEYS);
+            return random.nextInt(100) < benchmark.hitRatio ? benchmark.keys[i] : benchmark.missing[i];
+        }
+    }
+
+    @Benchmark
+    public Object retrieve(ThreadKeys threadKeys) throws Exception {
+        return connector.retrieve(threadKeys.next(this), DEFAULT_VALUE, null, null, null);
+    }
+
+    @Benchmark
+    public Object removeAndStore(ThreadKeys threadKeys) throws Exception {
+        String key = threadKeys.next(this);
+        Object removed = connector.remove(key, true);
+        if (removed != null) {
+            connector.store(key, key, true, null);
+        }
+        return removed;
+    }
+}
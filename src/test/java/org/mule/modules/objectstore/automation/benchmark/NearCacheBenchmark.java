@@ -0,0 +1,96 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.benchmark;
+
+import org.mule.api.MuleContext;
+import org.mule.modules.objectstore.Config;
+import org.mule.modules.objectstore.MulePropertyScope;
+import org.mule.modules.objectstore.ObjectStoreConnector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of retrieve and contains against the persistent partition, with and without the near cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class NearCacheBenchmark {
+
+    private static final int KEYS = 1000;
+
+    /**
+     * Zero disables the near cache.
+     */
+    @Param({ "0", "10000" })
+    public int nearCacheMaxEntries;
+
+    private MuleContext muleContext;
+    private ObjectStoreConnector connector;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        muleContext = BenchmarkSupport.startMuleContext();
+        Config config = new Config();
+        config.setPartition("near-cache-benchmark");
+        config.setPersistent(true);
+        config.setNearCacheMaxEntries(nearCacheMaxEntries);
+        connector = BenchmarkSupport.newConnector(muleContext, config);
+        keys = BenchmarkSupport.keys(KEYS);
+        for (String key : keys) {
+            connector.store(key, key, true, null);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        for (String key : keys) {
+            connector.remove(key, true);
+        }
+        connector.dispose();
+        muleContext.dispose();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadKeys {
+
+        private final Random random = new Random();
+
+        int next() {
+            return random.nextInt(KEYS);
+        }
+    }
+
+    @Benchmark
+    public Object retrieve(ThreadKeys threadKeys) throws Exception {
+        return connector.retrieve(keys[threadKeys.next()], null, null, MulePropertyScope.INVOCATION, null);
+    }
+
+    @Benchmark
+    public boolean contains(ThreadKeys threadKeys) throws Exception {
+        return connector.contains(keys[threadKeys.next()]);
+    }
+}
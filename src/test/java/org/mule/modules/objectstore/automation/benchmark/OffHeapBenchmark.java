@@ -0,0 +1,149 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.benchmark;
+
+import org.mule.api.MuleContext;
+import org.mule.modules.objectstore.Config;
+import org.mule.modules.objectstore.LockGranularity;
+import org.mule.modules.objectstore.ObjectStoreConnector;
+import org.mule.modules.objectstore.StoreEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of store with overwrite and retrieve over a large non persistent partition, kept on the heap by the Mule in-memory object store and in
+ * direct memory by the OFF_HEAP engine.
+ * <p/>
+ * Run {@link #main(String[])} to also print, for every engine, the heap retained per entry and the garbage collection time spent while filling and
+ * overwriting the partition. The GC profiler of JMH ({@code -prof gc}) gives the allocation rate of the benchmark methods.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(value = 1, jvmArgs = { "-Xmx2g", "-XX:MaxDirectMemorySize=2g" })
+public class OffHeapBenchmark {
+
+    @Param({ "MULE", "OFF_HEAP" })
+    public StoreEngine engine;
+
+    @Param({ "1000000" })
+    public int entries;
+
+    private MuleContext muleContext;
+    private ObjectStoreConnector connector;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        muleContext = BenchmarkSupport.startMuleContext();
+        connector = newConnector(muleContext, engine);
+        keys = BenchmarkSupport.keys(entries);
+        fill(connector, keys);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        connector.dispose();
+        muleContext.dispose();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadKeys {
+
+        private final Random random = new Random();
+
+        int next(int bound) {
+            return random.nextInt(bound);
+        }
+    }
+
+    @Benchmark
+    public void store(ThreadKeys threadKeys) throws Exception {
+        String key = keys[threadKeys.next(entries)];
+        connector.store(key, key, true, null);
+    }
+
+    @Benchmark
+    public Object retrieve(ThreadKeys threadKeys) throws Exception {
+        return connector.retrieve(keys[threadKeys.next(entries)], null, null, null, null);
+    }
+
+    private static ObjectStoreConnector newConnector(MuleContext muleContext, StoreEngine engine) {
+        Config config = new Config();
+        config.setPartition("off-heap-benchmark-" + engine);
+        config.setPersistent(false);
+        config.setLockGranularity(LockGranularity.STRIPED);
+        config.setEngine(engine);
+        return BenchmarkSupport.newConnector(muleContext, config);
+    }
+
+    private static void fill(ObjectStoreConnector connector, String[] keys) throws Exception {
+        for (String key : keys) {
+            connector.store(key, key, true, null);
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long[] gcTotals() {
+        long count = 0;
+        long time = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += collector.getCollectionCount();
+            time += collector.getCollectionTime();
+        }
+        return new long[] { count, time };
+    }
+
+    public static void main(String[] args) throws Exception {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        String[] keys = BenchmarkSupport.keys(entries);
+        for (StoreEngine engine : new StoreEngine[] { StoreEngine.MULE, StoreEngine.OFF_HEAP }) {
+            MuleContext muleContext = BenchmarkSupport.startMuleContext();
+            ObjectStoreConnector connector = newConnector(muleContext, engine);
+            long heapBefore = usedHeap();
+            long[] gcBefore = gcTotals();
+            fill(connector, keys);
+            fill(connector, keys);
+            long[] gcAfter = gcTotals();
+            long heapAfter = usedHeap();
+            System.out.println(engine + ": " + (heapAfter - heapBefore) / entries + " heap bytes per entry, " + (gcAfter[0] - gcBefore[0])
+                    + " collections taking " + (gcAfter[1] - gcBefore[1]) + " ms to store " + entries + " entries twice");
+            connector.dispose();
+            muleContext.dispose();
+        }
+        new Runner(new OptionsBuilder().include(OffHeapBenchmark.class.getSimpleName()).build()).run();
+    }
+}
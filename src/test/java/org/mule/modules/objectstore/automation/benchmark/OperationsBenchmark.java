@@ -0,0 +1,218 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.benchmark;
+
+import org.mule.api.MuleContext;
+import org.mule.modules.objectstore.Config;
+import org.mule.modules.objectstore.LockGranularity;
+import org.mule.modules.objectstore.MulePropertyScope;
+import org.mule.modules.objectstore.ObjectStoreConnector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latency of every connector operation against the partitions created through the ObjectStoreManager, for several value sizes and key distributions.
+ * <p/>
+ * Run with the benchmark profile, which writes the results as JSON to target/jmh-result.json, or run {@link #main(String[])} to repeat it for 1 to 32
+ * threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class OperationsBenchmark {
+
+    private static final int KEYS = 10000;
+    private static final int BATCH = 16;
+
+    public enum Partition {
+        IN_MEMORY, PERSISTENT, BOUNDED
+    }
+
+    @Param({ "IN_MEMORY", "PERSISTENT", "BOUNDED" })
+    public Partition partition;
+
+    @Param({ "64", "4096", "65536" })
+    public int valueSize;
+
+    @Param({ "UNIFORM", "ZIPFIAN" })
+    public KeyGenerator.Distribution distribution;
+
+    @Param({ "STRIPED" })
+    public LockGranularity granularity;
+
+    private MuleContext muleContext;
+    private ObjectStoreConnector connector;
+    private String[] keys;
+    private byte[] value;
+    private final AtomicInteger seeds = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        muleContext = BenchmarkSupport.startMuleContext();
+        Config config = new Config();
+        config.setPartition("operations-benchmark-" + partition.name().toLowerCase());
+        config.setPersistent(partition == Partition.PERSISTENT);
+        if (partition == Partition.BOUNDED) {
+            // Half the keys fit, so stores keep evicting
+            config.setMaxEntries(KEYS / 2);
+            config.setEntryTtl(60000);
+            config.setExpirationInterval(1000);
+        }
+        config.setLockGranularity(granularity);
+        connector = BenchmarkSupport.newConnector(muleContext, config);
+        keys = BenchmarkSupport.keys(KEYS);
+        value = new byte[valueSize];
+        new Random(0).nextBytes(value);
+        for (String key : keys) {
+            connector.store(key, value, true, null);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        for (String key : keys) {
+            connector.remove(key, true);
+            connector.remove(key + "-counter", true);
+            connector.remove("dual-" + key, true);
+            connector.remove("reverse-" + key, true);
+        }
+        connector.dispose();
+        muleContext.dispose();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadKeys {
+
+        private KeyGenerator generator;
+
+        @Setup(Level.Trial)
+        public void setUp(OperationsBenchmark benchmark) {
+            generator = new KeyGenerator(benchmark.distribution, KEYS, benchmark.seeds.incrementAndGet());
+        }
+
+        int next() {
+            return generator.next();
+        }
+    }
+
+    @Benchmark
+    public void store(ThreadKeys threadKeys) throws Exception {
+        connector.store(keys[threadKeys.next()], value, true, null);
+    }
+
+    @Benchmark
+    public Object retrieve(ThreadKeys threadKeys) throws Exception {
+        return connector.retrieve(keys[threadKeys.next()], value, null, MulePropertyScope.INVOCATION, null);
+    }
+
+    @Benchmark
+    public Object retrieveWithLock(ThreadKeys threadKeys) throws Exception {
+        return connector.retrieveWithLock(keys[threadKeys.next()], value, null, MulePropertyScope.INVOCATION, null);
+    }
+
+    @Benchmark
+    public Object retrieveStore(ThreadKeys threadKeys) throws Exception {
+        return connector.retrieveStore(keys[threadKeys.next()], value, value, null, MulePropertyScope.INVOCATION, null);
+    }
+
+    @Benchmark
+    public boolean contains(ThreadKeys threadKeys) throws Exception {
+        return connector.contains(keys[threadKeys.next()]);
+    }
+
+    @Benchmark
+    public Object removeAndStore(ThreadKeys threadKeys) throws Exception {
+        String key = keys[threadKeys.next()];
+        Object removed = connector.remove(key, true);
+        connector.store(key, value, true, null);
+        return removed;
+    }
+
+    @Benchmark
+    public void dualStore(ThreadKeys threadKeys) throws Exception {
+        String key = keys[threadKeys.next()];
+        connector.dualStore("dual-" + key, "reverse-" + key, true);
+    }
+
+    @Benchmark
+    public Object putIfAbsent(ThreadKeys threadKeys) throws Exception {
+        return connector.putIfAbsent(keys[threadKeys.next()], value);
+    }
+
+    @Benchmark
+    public boolean replace(ThreadKeys threadKeys) throws Exception {
+        return connector.replace(keys[threadKeys.next()], value, value);
+    }
+
+    @Benchmark
+    public Object getAndSet(ThreadKeys threadKeys) throws Exception {
+        return connector.getAndSet(keys[threadKeys.next()], value);
+    }
+
+    @Benchmark
+    public long increment(ThreadKeys threadKeys) throws Exception {
+        return connector.increment(keys[threadKeys.next()] + "-counter", 1, 0);
+    }
+
+    @Benchmark
+    public Object storeAll(ThreadKeys threadKeys) throws Exception {
+        Map<String, Object> entries = new HashMap<String, Object>();
+        for (int i = 0; i < BATCH; i++) {
+            entries.put(keys[threadKeys.next()], value);
+        }
+        return connector.storeAll(entries, true);
+    }
+
+    @Benchmark
+    public Map<String, Object> retrieveAll(ThreadKeys threadKeys) throws Exception {
+        List<String> batch = new ArrayList<String>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            batch.add(keys[threadKeys.next()]);
+        }
+        return connector.retrieveAll(batch, value);
+    }
+
+    @Benchmark
+    public Object keysPage() throws Exception {
+        return connector.keysPage(null, 100);
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (int threads = 1; threads <= 32; threads *= 2) {
+            Options options = new OptionsBuilder().include(OperationsBenchmark.class.getSimpleName()).threads(threads).resultFormat(ResultFormatType.JSON)
+                    .result("target/jmh-operations-" + threads + "t.json").build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.benchmark;
+
+import org.mule.api.MuleContext;
+import org.mule.modules.objectstore.Config;
+import org.mule.modules.objectstore.LockGranularity;
+import org.mule.modules.objectstore.MulePropertyScope;
+import org.mule.modules.objectstore.ObjectStoreConnector;
+import org.mule.modules.objectstore.ValueSerializer;
+import org.mule.modules.objectstore.codec.CompactCodec;
+import org.mule.modules.objectstore.codec.JavaCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of store and retrieve of a map payload against the persistent partition for every value serializer.
+ * <p/>
+ * Run {@link #main(String[])} to also get the encoded size of the payload with each codec.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class SerializerBenchmark {
+
+    private static final int KEYS = 1000;
+
+    @Param({ "NONE", "JAVA", "COMPACT" })
+    public ValueSerializer serializer;
+
+    private MuleContext muleContext;
+    private ObjectStoreConnector connector;
+    private String[] keys;
+    private HashMap<String, Object> payload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        muleContext = BenchmarkSupport.startMuleContext();
+        Config config = new Config();
+        config.setPartition("serializer-benchmark-" + serializer.name().toLowerCase());
+        config.setPersistent(true);
+        config.setLockGranularity(LockGranularity.STRIPED);
+        config.setSerializer(serializer);
+        connector = BenchmarkSupport.newConnector(muleContext, config);
+        keys = BenchmarkSupport.keys(KEYS);
+        payload = payload();
+        for (String key : keys) {
+            connector.store(key, payload, true, null);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        for (String key : keys) {
+            connector.remove(key, true);
+        }
+        connector.dispose();
+        muleContext.dispose();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadKeys {
+
+        private final Random random = new Random();
+
+        int next() {
+            return random.nextInt(KEYS);
+        }
+    }
+
+    @Benchmark
+    public void store(ThreadKeys threadKeys) throws Exception {
+        connector.store(keys[threadKeys.next()], payload, true, null);
+    }
+
+    @Benchmark
+    public Object retrieve(ThreadKeys threadKeys) throws Exception {
+        return connector.retrieve(keys[threadKeys.next()], null, null, MulePropertyScope.INVOCATION, null);
+    }
+
+    /**
+     * An order with a few fields and ten lines, the kind of payload flows usually cache.
+     */
+    static HashMap<String, Object> payload() {
+        HashMap<String, Object> order = new HashMap<String, Object>();
+        order.put("id", "ORD-2015-000042");
+        order.put("customer", "tenant:42:customer:1337");
+        order.put("total", 1234.56);
+        order.put("paid", Boolean.TRUE);
+        order.put("createdAt", 1435622400000L);
+        List<Object> lines = new ArrayList<Object>();
+        for (int i = 0; i < 10; i++) {
+            Map<String, Object> line = new HashMap<String, Object>();
+            line.put("sku", "SKU-" + i);
+            line.put("quantity", i + 1);
+            line.put("price", 9.99 * i);
+            lines.add(line);
+        }
+        order.put("lines", lines);
+        return order;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Serializable value = payload();
+        JavaCodec java = new JavaCodec(SerializerBenchmark.class.getClassLoader());
+        System.out.println("Encoded payload size, JAVA: " + java.encode(value).length + " bytes, COMPACT: " + new CompactCodec(java).encode(value).length
+                + " bytes");
+        new Runner(new OptionsBuilder().include(SerializerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
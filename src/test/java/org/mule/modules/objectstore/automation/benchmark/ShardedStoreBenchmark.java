@@ -0,0 +1,118 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.benchmark;
+
+import org.mule.api.MuleContext;
+import org.mule.api.store.ObjectStore;
+import org.mule.modules.objectstore.Config;
+import org.mule.modules.objectstore.LockGranularity;
+import org.mule.modules.objectstore.ObjectStoreConnector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of single key operations, batches and listing over persistent partitions spread over one or several shards.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class ShardedStoreBenchmark {
+
+    private static final int KEYS = 10000;
+    private static final int BATCH = 100;
+
+    @Param({ "1", "4" })
+    public int shards;
+
+    private MuleContext muleContext;
+    private ObjectStoreConnector connector;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        muleContext = BenchmarkSupport.startMuleContext();
+        List<ObjectStore<Serializable>> stores = new ArrayList<ObjectStore<Serializable>>();
+        for (int i = 0; i < shards; i++) {
+            ObjectStore<Serializable> store = muleContext.getObjectStoreManager().getObjectStore("sharded-benchmark-" + i, true);
+            stores.add(store);
+        }
+        Config config = new Config();
+        config.setShards(stores);
+        config.setLockGranularity(LockGranularity.STRIPED);
+        connector = BenchmarkSupport.newConnector(muleContext, config);
+        keys = BenchmarkSupport.keys(KEYS);
+        for (String key : keys) {
+            connector.store(key, key, true, null);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        connector.removeAll(Arrays.asList(keys), true);
+        connector.dispose();
+        muleContext.dispose();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadKeys {
+
+        private final Random random = new Random();
+
+        int next() {
+            return random.nextInt(KEYS);
+        }
+
+        List<String> batch(String[] keys) {
+            int from = random.nextInt(KEYS - BATCH);
+            return Arrays.asList(keys).subList(from, from + BATCH);
+        }
+    }
+
+    @Benchmark
+    public void store(ThreadKeys threadKeys) throws Exception {
+        String key = keys[threadKeys.next()];
+        connector.store(key, key, true, null);
+    }
+
+    @Benchmark
+    public Object retrieve(ThreadKeys threadKeys) throws Exception {
+        return connector.retrieve(keys[threadKeys.next()], null, null, null, null);
+    }
+
+    @Benchmark
+    public Object retrieveAll(ThreadKeys threadKeys) throws Exception {
+        return connector.retrieveAll(threadKeys.batch(keys), null);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object allKeys() throws Exception {
+        return connector.allKeys();
+    }
+}
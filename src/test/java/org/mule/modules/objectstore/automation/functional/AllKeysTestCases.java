@@ -7,11 +7,18 @@ package org.mule.modules.objectstore.automation.functional;
 
 import org.junit.After;
 import org.junit.Test;
+import org.mule.modules.objectstore.BatchResult;
 import org.mule.modules.objectstore.ObjectStoreConnector;
+import org.mule.modules.objectstore.store.KeyPage;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
 
 public class AllKeysTestCases extends AbstractTestCase {
@@ -19,8 +26,8 @@ public class AllKeysTestCases extends AbstractTestCase {
     @Test
     public void testAllKeys() throws Exception {
         ObjectStoreConnector module = this.getConnector();
-        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, true);
-        module.store("testkey", "testdata", true);
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, true, null);
+        module.store("testkey", "testdata", true, null);
         List<String> keys = module.allKeys();
 
         assertTrue(keys instanceof List);
@@ -38,11 +45,87 @@ public class AllKeysTestCases extends AbstractTestCase {
         assertEquals(0, keys.size());
     }
 
+    @Test
+    public void testKeysPage() throws Exception {
+        ObjectStoreConnector module = this.getConnector();
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, true, null);
+        module.store("testkey", "testdata", true, null);
+
+        KeyPage first = module.keysPage(null, 1);
+        assertEquals(1, first.getKeys().size());
+        assertFalse(first.isLast());
+
+        KeyPage second = module.keysPage(first.getNextCursor(), 1);
+        assertEquals(1, second.getKeys().size());
+
+        List<String> keys = new ArrayList<String>(first.getKeys());
+        keys.addAll(second.getKeys());
+        assertTrue(keys.contains(OBJECTSTORE_KEY));
+        assertTrue(keys.contains("testkey"));
+
+        if (!second.isLast()) {
+            assertTrue(module.keysPage(second.getNextCursor(), 1).getKeys().isEmpty());
+        }
+    }
+
+    @Test
+    public void testKeysPageNoKeys() throws Exception {
+        ObjectStoreConnector module = this.getConnector();
+        KeyPage page = module.keysPage(null, 10);
+
+        assertEquals(0, page.getKeys().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    public void testIterateKeys() throws Exception {
+        ObjectStoreConnector module = this.getConnector();
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, true, null);
+        module.store("testkey", "testdata", true, null);
+
+        List<String> keys = new ArrayList<String>();
+        for (Iterator<String> it = module.iterateKeys(1); it.hasNext();) {
+            keys.add(it.next());
+        }
+        assertEquals(2, keys.size());
+        assertTrue(keys.contains(OBJECTSTORE_KEY));
+        assertTrue(keys.contains("testkey"));
+    }
+
+    @Test
+    public void testKeysWithPrefix() throws Exception {
+        ObjectStoreConnector module = this.getConnector();
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, true, null);
+        module.store("testkey", "testdata", true, null);
+        module.store("testkey2", "testdata", true, null);
+
+        assertEquals(Arrays.asList("testkey", "testkey2"), module.keysWithPrefix("test", 0));
+        assertEquals(Arrays.asList("testkey"), module.keysWithPrefix("test", 1));
+        assertTrue(module.keysWithPrefix("nokey", 0).isEmpty());
+    }
+
+    @Test
+    public void testRemoveByPrefix() throws Exception {
+        ObjectStoreConnector module = this.getConnector();
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, true, null);
+        module.store("testkey", "testdata", true, null);
+        module.store("testkey2", "testdata", true, null);
+
+        BatchResult result = module.removeByPrefix("test");
+
+        assertTrue(result.isSuccessful());
+        assertEquals(2, result.getSucceeded().size());
+        assertFalse(module.contains("testkey"));
+        assertFalse(module.contains("testkey2"));
+        assertTrue(module.contains(OBJECTSTORE_KEY));
+    }
+
     @After
     public void tearDown() throws Exception {
         ObjectStoreConnector module = this.getConnector();
         module.remove(OBJECTSTORE_KEY, true);
         module.remove("testkey", true);
+        module.remove("testkey2", true);
     }
 
 }
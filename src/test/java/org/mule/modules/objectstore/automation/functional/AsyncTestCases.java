@@ -0,0 +1,112 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.api.NestedProcessor;
+import org.mule.modules.objectstore.MulePropertyScope;
+import org.mule.modules.objectstore.ObjectStoreConnector;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class AsyncTestCases extends AbstractTestCase {
+
+    private static final long TIMEOUT = 5000;
+
+    ObjectStoreConnector module;
+
+    @Before
+    public void setUp() throws Exception {
+        module = this.getConnector();
+        module.remove(OBJECTSTORE_KEY, true);
+    }
+
+    @Test
+    public void testStoreAsync() throws Exception {
+        module.storeAsync(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false);
+        awaitValue(OBJECTSTORE_VALUE);
+    }
+
+    @Test
+    public void testStoreAsyncLastValueWins() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            module.storeAsync(OBJECTSTORE_KEY, "value" + i, true);
+        }
+        awaitValue("value99");
+    }
+
+    @Test
+    public void testRetrieveAsync() throws Exception {
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false, null);
+        CapturingProcessor callback = new CapturingProcessor();
+        module.retrieveAsync(OBJECTSTORE_KEY, null, callback);
+
+        assertEquals(OBJECTSTORE_VALUE, callback.payloads.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(OBJECTSTORE_KEY, callback.key);
+    }
+
+    @Test
+    public void testRetrieveAsyncDefaultValue() throws Exception {
+        CapturingProcessor callback = new CapturingProcessor();
+        module.retrieveAsync(OBJECTSTORE_KEY, "default value", callback);
+
+        assertEquals("default value", callback.payloads.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        module.remove(OBJECTSTORE_KEY, true);
+    }
+
+    private void awaitValue(Object expected) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        Object value = null;
+        while (System.currentTimeMillis() < deadline) {
+            value = module.retrieve(OBJECTSTORE_KEY, "", null, MulePropertyScope.INVOCATION, null);
+            if (expected.equals(value)) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        assertEquals(expected, value);
+    }
+
+    private static class CapturingProcessor implements NestedProcessor {
+
+        final BlockingQueue<Object> payloads = new ArrayBlockingQueue<Object>(10);
+        volatile Object key;
+
+        @Override
+        public Object process() throws Exception {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Object process(Object payload) throws Exception {
+            return process(payload, null);
+        }
+
+        @Override
+        public Object process(Object payload, Map<String, Object> properties) throws Exception {
+            key = properties.get(ObjectStoreConnector.ASYNC_KEY_PROPERTY);
+            assertTrue(payloads.offer(payload));
+            return payload;
+        }
+
+        @Override
+        public Object processWithExtraProperties(Map<String, Object> properties) throws Exception {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.modules.objectstore.MulePropertyScope;
+import org.mule.modules.objectstore.ObjectStoreConnector;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+public class AtomicTestCases extends AbstractTestCase {
+
+    ObjectStoreConnector module;
+
+    @Before
+    public void setUp() throws Exception {
+        module = this.getConnector();
+        module.remove(OBJECTSTORE_KEY, true);
+    }
+
+    @Test
+    public void testPutIfAbsent() throws Exception {
+        assertNull(module.putIfAbsent(OBJECTSTORE_KEY, OBJECTSTORE_VALUE));
+        assertEquals(OBJECTSTORE_VALUE, module.putIfAbsent(OBJECTSTORE_KEY, "muleion"));
+        assertEquals(OBJECTSTORE_VALUE, module.retrieve(OBJECTSTORE_KEY, null, null, MulePropertyScope.INVOCATION, null));
+    }
+
+    @Test
+    public void testReplace() throws Exception {
+        assertFalse(module.replace(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, "muleion"));
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false, null);
+        assertFalse(module.replace(OBJECTSTORE_KEY, "other", "muleion"));
+        assertTrue(module.replace(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, "muleion"));
+        assertEquals("muleion", module.retrieve(OBJECTSTORE_KEY, null, null, MulePropertyScope.INVOCATION, null));
+    }
+
+    @Test
+    public void testGetAndSet() throws Exception {
+        assertNull(module.getAndSet(OBJECTSTORE_KEY, OBJECTSTORE_VALUE));
+        assertEquals(OBJECTSTORE_VALUE, module.getAndSet(OBJECTSTORE_KEY, "muleion"));
+        assertEquals("muleion", module.retrieve(OBJECTSTORE_KEY, null, null, MulePropertyScope.INVOCATION, null));
+    }
+
+    @Test
+    public void testRetrieveStore() throws Exception {
+        assertEquals("muleion", module.retrieveStore(OBJECTSTORE_KEY, "muleion", OBJECTSTORE_VALUE, null, MulePropertyScope.INVOCATION, null));
+        assertEquals(OBJECTSTORE_VALUE, module.retrieveStore(OBJECTSTORE_KEY, "muleion", "other", null, MulePropertyScope.INVOCATION, null));
+        assertEquals("other", module.retrieve(OBJECTSTORE_KEY, null, null, MulePropertyScope.INVOCATION, null));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        module.remove(OBJECTSTORE_KEY, true);
+    }
+}
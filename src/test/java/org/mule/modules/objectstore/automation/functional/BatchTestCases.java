@@ -0,0 +1,106 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.modules.objectstore.BatchResult;
+import org.mule.modules.objectstore.MulePropertyScope;
+import org.mule.modules.objectstore.ObjectStoreConnector;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class BatchTestCases extends AbstractTestCase {
+
+    private static final List<String> KEYS = Arrays.asList(OBJECTSTORE_KEY, "testkey");
+
+    @Test
+    public void testStoreAll() throws Exception {
+        ObjectStoreConnector module = this.getConnector();
+        BatchResult result = module.storeAll(entries(), false);
+        assertTrue(result.isSuccessful());
+        assertEquals(2, result.getSucceeded().size());
+        assertEquals(OBJECTSTORE_VALUE, module.retrieve(OBJECTSTORE_KEY, null, null, MulePropertyScope.INVOCATION, null));
+        assertEquals("testdata", module.retrieve("testkey", null, null, MulePropertyScope.INVOCATION, null));
+    }
+
+    @Test
+    public void testStoreAllReportsFailuresPerKey() throws Exception {
+        ObjectStoreConnector module = this.getConnector();
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false, null);
+        BatchResult result = module.storeAll(entries(), false);
+        assertFalse(result.isSuccessful());
+        assertEquals(Arrays.asList("testkey"), result.getSucceeded());
+        assertTrue(result.getFailed().containsKey(OBJECTSTORE_KEY));
+    }
+
+    @Test
+    public void testStoreAllOverwrite() throws Exception {
+        ObjectStoreConnector module = this.getConnector();
+        module.store(OBJECTSTORE_KEY, "oldvalue", false, null);
+        BatchResult result = module.storeAll(entries(), true);
+        assertTrue(result.isSuccessful());
+        assertEquals(OBJECTSTORE_VALUE, module.retrieve(OBJECTSTORE_KEY, null, null, MulePropertyScope.INVOCATION, null));
+    }
+
+    @Test
+    public void testRetrieveAll() throws Exception {
+        ObjectStoreConnector module = this.getConnector();
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false, null);
+        Map<String, Object> values = module.retrieveAll(KEYS, null);
+        assertEquals(1, values.size());
+        assertEquals(OBJECTSTORE_VALUE, values.get(OBJECTSTORE_KEY));
+
+        values = module.retrieveAll(KEYS, "muleion");
+        assertEquals(2, values.size());
+        assertEquals("muleion", values.get("testkey"));
+    }
+
+    @Test
+    public void testRemoveAll() throws Exception {
+        ObjectStoreConnector module = this.getConnector();
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false, null);
+        BatchResult result = module.removeAll(KEYS, false);
+        assertEquals(Arrays.asList(OBJECTSTORE_KEY), result.getSucceeded());
+        assertTrue(result.getFailed().containsKey("testkey"));
+
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false, null);
+        assertTrue(module.removeAll(KEYS, true).isSuccessful());
+        assertFalse(module.contains(OBJECTSTORE_KEY));
+    }
+
+    @Test
+    public void testContainsAll() throws Exception {
+        ObjectStoreConnector module = this.getConnector();
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false, null);
+        Map<String, Boolean> contained = module.containsAll(KEYS);
+        assertTrue(contained.get(OBJECTSTORE_KEY));
+        assertFalse(contained.get("testkey"));
+    }
+
+    private static Map<String, Object> entries() {
+        Map<String, Object> entries = new HashMap<String, Object>();
+        entries.put(OBJECTSTORE_KEY, OBJECTSTORE_VALUE);
+        entries.put("testkey", "testdata");
+        return entries;
+    }
+
+    @Before
+    @After
+    public void removeTestKeys() throws Exception {
+        ObjectStoreConnector module = this.getConnector();
+        module.remove(OBJECTSTORE_KEY, true);
+        module.remove("testkey", true);
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.functional;
+
+import org.junit.Test;
+import org.mule.modules.objectstore.codec.CodecObjectStore;
+import org.mule.modules.objectstore.codec.CompactCodec;
+import org.mule.modules.objectstore.codec.Compressor;
+import org.mule.modules.objectstore.codec.JavaCodec;
+import org.mule.util.store.SimpleMemoryObjectStore;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+public class CodecTestCases {
+
+    private final JavaCodec javaCodec = new JavaCodec(getClass().getClassLoader());
+    private final CompactCodec codec = new CompactCodec(javaCodec);
+
+    @Test
+    public void testString() throws Exception {
+        assertEquals("", roundTrip(""));
+        assertEquals("value", roundTrip("value"));
+        assertEquals("\u00e9\u4e2d\ud83d\ude00", roundTrip("\u00e9\u4e2d\ud83d\ude00"));
+    }
+
+    @Test
+    public void testBytes() throws Exception {
+        byte[] value = new byte[] { 0, 1, -1, 127, -128 };
+        assertTrue(Arrays.equals(value, (byte[]) roundTrip(value)));
+        assertTrue(Arrays.equals(new byte[0], (byte[]) roundTrip(new byte[0])));
+    }
+
+    @Test
+    public void testPrimitives() throws Exception {
+        assertEquals(Integer.MIN_VALUE, roundTrip(Integer.MIN_VALUE));
+        assertEquals(Long.MAX_VALUE, roundTrip(Long.MAX_VALUE));
+        assertEquals(-1.5d, roundTrip(-1.5d));
+        assertEquals(2.5f, roundTrip(2.5f));
+        assertEquals((short) -3, roundTrip((short) -3));
+        assertEquals((byte) 4, roundTrip((byte) 4));
+        assertEquals('c', roundTrip('c'));
+        assertEquals(Boolean.TRUE, roundTrip(Boolean.TRUE));
+        assertEquals(Boolean.FALSE, roundTrip(Boolean.FALSE));
+    }
+
+    @Test
+    public void testMaps() throws Exception {
+        HashMap<String, Serializable> hashMap = new HashMap<String, Serializable>();
+        hashMap.put("a", 1);
+        hashMap.put("b", null);
+        Serializable decoded = roundTrip(hashMap);
+        assertEquals(HashMap.class, decoded.getClass());
+        assertEquals(hashMap, decoded);
+
+        LinkedHashMap<String, Serializable> linkedMap = new LinkedHashMap<String, Serializable>();
+        linkedMap.put("z", 1);
+        linkedMap.put("a", 2);
+        decoded = roundTrip(linkedMap);
+        assertEquals(LinkedHashMap.class, decoded.getClass());
+        assertEquals(Arrays.asList("z", "a"), new ArrayList<Object>(((Map<?, ?>) decoded).keySet()));
+    }
+
+    @Test
+    public void testList() throws Exception {
+        ArrayList<Serializable> list = new ArrayList<Serializable>();
+        list.add("a");
+        list.add(null);
+        list.add(3L);
+        Serializable decoded = roundTrip(list);
+        assertEquals(ArrayList.class, decoded.getClass());
+        assertEquals(list, decoded);
+    }
+
+    @Test
+    public void testNested() throws Exception {
+        ArrayList<Serializable> items = new ArrayList<Serializable>();
+        items.add(new byte[] { 1, 2 });
+        LinkedHashMap<String, Serializable> item = new LinkedHashMap<String, Serializable>();
+        item.put("id", 7);
+        item.put("tags", new ArrayList<Serializable>(Arrays.asList("x", "y")));
+        items.add(item);
+        HashMap<String, Serializable> value = new HashMap<String, Serializable>();
+        value.put("items", items);
+
+        Map<?, ?> decoded = (Map<?, ?>) roundTrip(value);
+        List<?> decodedItems = (List<?>) decoded.get("items");
+        assertEquals(2, decodedItems.size());
+        assertTrue(Arrays.equals(new byte[] { 1, 2 }, (byte[]) decodedItems.get(0)));
+        assertEquals(item, decodedItems.get(1));
+    }
+
+    @Test
+    public void testNull() throws Exception {
+        assertNull(roundTrip(null));
+    }
+
+    @Test
+    public void testFallback() throws Exception {
+        Custom custom = new Custom("name", 42);
+        assertEquals(custom, roundTrip(custom));
+
+        // Other map implementations keep their class
+        TreeMap<String, Serializable> treeMap = new TreeMap<String, Serializable>();
+        treeMap.put("b", custom);
+        treeMap.put("a", "value");
+        Serializable decoded = roundTrip(treeMap);
+        assertEquals(TreeMap.class, decoded.getClass());
+        assertEquals(treeMap, decoded);
+
+        HashMap<String, Serializable> nested = new HashMap<String, Serializable>();
+        nested.put("custom", custom);
+        assertEquals(nested, roundTrip(nested));
+    }
+
+    @Test
+    public void testStoreDecodesEitherCodec() throws Exception {
+        SimpleMemoryObjectStore<Serializable> delegate = new SimpleMemoryObjectStore<Serializable>();
+        CodecObjectStore compact = CodecObjectStore.compact(delegate, javaCodec, Compressor.decompressOnly());
+        CodecObjectStore java = CodecObjectStore.java(delegate, javaCodec, Compressor.decompressOnly());
+        compact.store("compact", new Custom("compact", 1));
+        java.store("java", new Custom("java", 2));
+        delegate.store("plain", "stored before the codec");
+
+        assertTrue(delegate.retrieve("compact") instanceof byte[]);
+        assertEquals(new Custom("compact", 1), java.retrieve("compact"));
+        assertEquals(new Custom("java", 2), compact.retrieve("java"));
+        assertEquals("stored before the codec", compact.retrieve("plain"));
+    }
+
+    private Serializable roundTrip(Serializable value) throws Exception {
+        byte[] encoded = codec.encode(value);
+        // Decoded from the middle of a buffer as the engines do
+        byte[] padded = new byte[encoded.length + 4];
+        System.arraycopy(encoded, 0, padded, 2, encoded.length);
+        return codec.decode(padded, 2, encoded.length);
+    }
+
+    private static class Custom implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private final int size;
+
+        Custom(String name, int size) {
+            this.name = name;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Custom && ((Custom) o).name.equals(name) && ((Custom) o).size == size;
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode() * 31 + size;
+        }
+    }
+}
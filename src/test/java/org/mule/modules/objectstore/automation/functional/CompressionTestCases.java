@@ -0,0 +1,109 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.functional;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.modules.objectstore.codec.CodecObjectStore;
+import org.mule.modules.objectstore.codec.Compressor;
+import org.mule.modules.objectstore.codec.JavaCodec;
+import org.mule.util.store.SimpleMemoryObjectStore;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class CompressionTestCases {
+
+    private final JavaCodec javaCodec = new JavaCodec(getClass().getClassLoader());
+    private final SimpleMemoryObjectStore<Serializable> delegate = new SimpleMemoryObjectStore<Serializable>();
+
+    @Test
+    public void testBelowThresholdNotCompressed() throws Exception {
+        Compressor compressor = new Compressor(1024, 1);
+        CodecObjectStore store = CodecObjectStore.compact(delegate, javaCodec, compressor);
+        String value = StringUtils.repeat("a", 1000);
+        store.store("key", value);
+        assertTrue(stored("key").length > value.length());
+        assertEquals(value, store.retrieve("key"));
+        assertEquals(0, compressor.getCompressed());
+        assertEquals(0, compressor.getDecompressed());
+    }
+
+    @Test
+    public void testOverThresholdCompressed() throws Exception {
+        Compressor compressor = new Compressor(1024, 1);
+        CodecObjectStore store = CodecObjectStore.compact(delegate, javaCodec, compressor);
+        String value = StringUtils.repeat("a", 1024);
+        store.store("key", value);
+        assertTrue(stored("key").length < value.length() / 4);
+        assertEquals(1, compressor.getCompressed());
+        assertEquals(0, compressor.getDecompressed());
+        assertEquals(value, store.retrieve("key"));
+        assertEquals(1, compressor.getDecompressed());
+        assertTrue(compressor.getBytesOut() < compressor.getBytesIn());
+    }
+
+    @Test
+    public void testIncompressibleStoredAsIs() throws Exception {
+        Compressor compressor = new Compressor(16, 9);
+        CodecObjectStore store = CodecObjectStore.compact(delegate, javaCodec, compressor);
+        byte[] value = new byte[4096];
+        new Random(42).nextBytes(value);
+        store.store("key", value);
+        assertEquals(1, compressor.getIncompressible());
+        assertEquals(0, compressor.getCompressed());
+        assertTrue(Arrays.equals(value, (byte[]) store.retrieve("key")));
+        assertEquals(0, compressor.getDecompressed());
+    }
+
+    @Test
+    public void testNoThresholdNeverCompresses() throws Exception {
+        Compressor compressor = new Compressor(0, 1);
+        CodecObjectStore store = CodecObjectStore.java(delegate, javaCodec, compressor);
+        store.store("key", StringUtils.repeat("a", 100000));
+        assertEquals(0, compressor.getCompressed());
+        assertEquals(0, compressor.getIncompressible());
+    }
+
+    @Test
+    public void testCompressedReadableAfterCompressionDisabled() throws Exception {
+        String value = StringUtils.repeat("abc", 1000);
+        CodecObjectStore.java(delegate, javaCodec, new Compressor(64, 6)).store("key", value);
+
+        Compressor compressor = Compressor.decompressOnly();
+        CodecObjectStore store = CodecObjectStore.compact(delegate, javaCodec, compressor);
+        assertEquals(value, store.retrieve("key"));
+        assertEquals(value, store.remove("key"));
+        assertEquals(2, compressor.getDecompressed());
+        store.store("key", value);
+        assertEquals(0, compressor.getCompressed());
+    }
+
+    @Test
+    public void testTruncatedValueRejected() throws Exception {
+        CodecObjectStore store = CodecObjectStore.compact(delegate, javaCodec, new Compressor(64, 1));
+        store.store("key", StringUtils.repeat("a", 1000));
+        byte[] data = stored("key");
+        delegate.remove("key");
+        delegate.store("key", Arrays.copyOf(data, data.length / 2));
+        try {
+            store.retrieve("key");
+            fail("The compressed value is truncated");
+        } catch (ObjectStoreException e) {
+            // Expected
+        }
+    }
+
+    private byte[] stored(String key) throws ObjectStoreException {
+        return (byte[]) delegate.retrieve(key);
+    }
+}
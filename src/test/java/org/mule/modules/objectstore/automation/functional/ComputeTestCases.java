@@ -0,0 +1,194 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.api.NestedProcessor;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.modules.objectstore.MulePropertyScope;
+import org.mule.modules.objectstore.ObjectStoreConnector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class ComputeTestCases extends AbstractTestCase {
+
+    private static final int CALLERS = 16;
+
+    ObjectStoreConnector module;
+
+    @Before
+    public void setUp() throws Exception {
+        module = this.getConnector();
+        module.remove(OBJECTSTORE_KEY, true);
+    }
+
+    @Test
+    public void testRetrieveExisting() throws Exception {
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false, null);
+        ComputingProcessor compute = new ComputingProcessor(0);
+        assertEquals(OBJECTSTORE_VALUE, module.retrieveOrCompute(OBJECTSTORE_KEY, null, null, 60000, compute));
+        assertEquals(0, compute.calls.get());
+    }
+
+    @Test
+    public void testConcurrentMissesComputeOnce() throws Exception {
+        final ComputingProcessor compute = new ComputingProcessor(200);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<Object>> callers = new ArrayList<Future<Object>>();
+            for (int i = 0; i < CALLERS; i++) {
+                callers.add(executor.submit(new Callable<Object>() {
+
+                    @Override
+                    public Object call() throws Exception {
+                        return module.retrieveOrCompute(OBJECTSTORE_KEY, null, null, 60000, compute);
+                    }
+                }));
+            }
+            for (Future<Object> caller : callers) {
+                assertEquals("computed1", caller.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, compute.calls.get());
+        assertEquals("computed1", module.retrieve(OBJECTSTORE_KEY, null, null, MulePropertyScope.INVOCATION, null));
+    }
+
+    @Test
+    public void testComputeFailure() throws Exception {
+        NestedProcessor failing = new ComputingProcessor(0) {
+
+            @Override
+            public Object process() throws Exception {
+                throw new IllegalStateException("backend down");
+            }
+        };
+        try {
+            module.retrieveOrCompute(OBJECTSTORE_KEY, null, null, 60000, failing);
+            fail("The computation failed");
+        } catch (ObjectStoreException e) {
+            // expected
+        }
+        assertEquals(OBJECTSTORE_VALUE, module.retrieve(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, null, MulePropertyScope.INVOCATION, null));
+    }
+
+    @Test
+    public void testStaleWhileRevalidate() throws Exception {
+        final ComputingProcessor compute = new ComputingProcessor(300);
+        assertEquals("computed1", module.retrieveOrCompute(OBJECTSTORE_KEY, 200, 5000, 60000, compute));
+        Thread.sleep(400);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // The first caller after the value went stale computes it again, the others get the stale value meanwhile
+            Future<Object> revalidating = executor.submit(new Callable<Object>() {
+
+                @Override
+                public Object call() throws Exception {
+                    return module.retrieveOrCompute(OBJECTSTORE_KEY, 200, 5000, 60000, compute);
+                }
+            });
+            Thread.sleep(100);
+            long start = System.currentTimeMillis();
+            assertEquals("computed1", module.retrieveOrCompute(OBJECTSTORE_KEY, 200, 5000, 60000, compute));
+            assertTrue(System.currentTimeMillis() - start < 150);
+            assertEquals("computed2", revalidating.get());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals("computed2", module.retrieveOrCompute(OBJECTSTORE_KEY, 200, 5000, 60000, compute));
+        assertEquals(2, compute.calls.get());
+    }
+
+    @Test
+    public void testStaleValueReturnedWhenRevalidationFails() throws Exception {
+        assertEquals("computed1", module.retrieveOrCompute(OBJECTSTORE_KEY, 100, 5000, 60000, new ComputingProcessor(0)));
+        Thread.sleep(200);
+        NestedProcessor failing = new ComputingProcessor(0) {
+
+            @Override
+            public Object process() throws Exception {
+                throw new IllegalStateException("backend down");
+            }
+        };
+        assertEquals("computed1", module.retrieveOrCompute(OBJECTSTORE_KEY, 100, 5000, 60000, failing));
+    }
+
+    @Test
+    public void testWaitTimeout() throws Exception {
+        final ComputingProcessor compute = new ComputingProcessor(1000);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> computing = executor.submit(new Callable<Object>() {
+
+                @Override
+                public Object call() throws Exception {
+                    return module.retrieveOrCompute(OBJECTSTORE_KEY, null, null, 60000, compute);
+                }
+            });
+            Thread.sleep(100);
+            try {
+                module.retrieveOrCompute(OBJECTSTORE_KEY, null, null, 100, compute);
+                fail("The computation did not complete within the timeout");
+            } catch (ObjectStoreException e) {
+                // expected
+            }
+            assertEquals("computed1", computing.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        module.remove(OBJECTSTORE_KEY, true);
+    }
+
+    private static class ComputingProcessor implements NestedProcessor {
+
+        final AtomicInteger calls = new AtomicInteger();
+        private final long delay;
+
+        ComputingProcessor(long delay) {
+            this.delay = delay;
+        }
+
+        @Override
+        public Object process() throws Exception {
+            int call = calls.incrementAndGet();
+            Thread.sleep(delay);
+            return "computed" + call;
+        }
+
+        @Override
+        public Object process(Object payload) throws Exception {
+            return process();
+        }
+
+        @Override
+        public Object process(Object payload, Map<String, Object> properties) throws Exception {
+            return process();
+        }
+
+        @Override
+        public Object processWithExtraProperties(Map<String, Object> properties) throws Exception {
+            return process();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.api.store.ObjectAlreadyExistsException;
+import org.mule.api.store.ObjectDoesNotExistException;
+import org.mule.api.store.ObjectStore;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.api.store.ObjectStoreNotAvaliableException;
+import org.mule.config.i18n.MessageFactory;
+import org.mule.modules.objectstore.MulePropertyScope;
+import org.mule.modules.objectstore.ObjectStoreConnector;
+import org.mule.modules.objectstore.expiry.ExpiringObjectStore;
+import org.mule.modules.objectstore.expiry.ExpiringValue;
+import org.mule.modules.objectstore.expiry.TimingWheel;
+import org.mule.modules.objectstore.expiry.TimingWheel.Expirer;
+import org.mule.modules.objectstore.store.ConsistentReadObjectStore;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+/**
+ * Stress test of the unlocked reads: readers racing with overwrites must always observe either the old or the new value of the key.
+ */
+public class ConsistentReadTestCases extends AbstractTestCase {
+
+    private static final int READERS = 4;
+    private static final int OVERWRITES = 20000;
+
+    ObjectStoreConnector module;
+
+    @Before
+    public void setUp() throws Exception {
+        module = this.getConnector();
+        module.remove(OBJECTSTORE_KEY, true);
+    }
+
+    @Test
+    public void testReadsDuringOverwrite() throws Exception {
+        module.store(OBJECTSTORE_KEY, "0", false, null);
+        final AtomicBoolean done = new AtomicBoolean();
+        final CountDownLatch started = new CountDownLatch(READERS);
+        ExecutorService executor = Executors.newFixedThreadPool(READERS);
+        try {
+            List<Future<String>> readers = new ArrayList<Future<String>>();
+            for (int i = 0; i < READERS; i++) {
+                final boolean contains = i % 2 == 0;
+                readers.add(executor.submit(new Callable<String>() {
+
+                    @Override
+                    public String call() throws Exception {
+                        started.countDown();
+                        int last = 0;
+                        while (!done.get()) {
+                            if (contains) {
+                                if (!module.contains(OBJECTSTORE_KEY)) {
+                                    return "missing in contains";
+                                }
+                                continue;
+                            }
+                            Object value = module.retrieve(OBJECTSTORE_KEY, null, null, MulePropertyScope.INVOCATION, null);
+                            int current = Integer.parseInt((String) value);
+                            if (current < last) {
+                                return "read " + current + " after " + last;
+                            }
+                            last = current;
+                        }
+                        return null;
+                    }
+                }));
+            }
+            started.await();
+            for (int i = 1; i <= OVERWRITES; i++) {
+                module.store(OBJECTSTORE_KEY, String.valueOf(i), true, null);
+            }
+            done.set(true);
+            for (Future<String> reader : readers) {
+                String failure = reader.get();
+                assertTrue(failure, failure == null);
+            }
+        } finally {
+            done.set(true);
+            executor.shutdownNow();
+        }
+        assertEquals(String.valueOf(OVERWRITES), module.retrieve(OBJECTSTORE_KEY, null, null, MulePropertyScope.INVOCATION, null));
+    }
+
+    @Test
+    public void testFailedOverwriteRestoresValue() throws Exception {
+        TimingWheel wheel = new TimingWheel("consistent-read-test", 0, new Expirer() {
+
+            @Override
+            public void expire(Serializable key, long expiresAt) {
+            }
+        });
+        try {
+            ExpiringObjectStore expiring = new ExpiringObjectStore(new FailingStore("poison"), 0, wheel);
+            ConsistentReadObjectStore store = new ConsistentReadObjectStore(expiring);
+            Serializable stored = expiring.withTtl(OBJECTSTORE_VALUE, 60000);
+            store.store(OBJECTSTORE_KEY, stored);
+            try {
+                store.overwrite(OBJECTSTORE_KEY, "poison");
+                fail("The store rejects the value");
+            } catch (ObjectStoreException e) {
+                // expected
+            }
+            assertEquals(OBJECTSTORE_VALUE, store.retrieve(OBJECTSTORE_KEY));
+            assertEquals(((ExpiringValue) stored).getExpiresAt(), ((ExpiringValue) expiring.lookupStored(OBJECTSTORE_KEY)).getExpiresAt());
+            assertEquals(OBJECTSTORE_VALUE, store.overwrite(OBJECTSTORE_KEY, "new"));
+            assertEquals("new", store.retrieve(OBJECTSTORE_KEY));
+        } finally {
+            wheel.dispose();
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        module.remove(OBJECTSTORE_KEY, true);
+    }
+
+    /**
+     * In-memory store failing to store one value.
+     */
+    private static class FailingStore implements ObjectStore<Serializable> {
+
+        private final Map<Serializable, Serializable> values = new ConcurrentHashMap<Serializable, Serializable>();
+        private final Serializable rejected;
+
+        FailingStore(Serializable rejected) {
+            this.rejected = rejected;
+        }
+
+        @Override
+        public boolean contains(Serializable key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public void store(Serializable key, Serializable value) throws ObjectStoreException {
+            if (rejected.equals(value)) {
+                throw new ObjectStoreNotAvaliableException(MessageFactory.createStaticMessage("Rejected " + value));
+            }
+            if (values.containsKey(key)) {
+                throw new ObjectAlreadyExistsException();
+            }
+            values.put(key, value);
+        }
+
+        @Override
+        public Serializable retrieve(Serializable key) throws ObjectStoreException {
+            Serializable value = values.get(key);
+            if (value == null) {
+                throw new ObjectDoesNotExistException();
+            }
+            return value;
+        }
+
+        @Override
+        public Serializable remove(Serializable key) throws ObjectStoreException {
+            Serializable value = values.remove(key);
+            if (value == null) {
+                throw new ObjectDoesNotExistException();
+            }
+            return value;
+        }
+
+        @Override
+        public boolean isPersistent() {
+            return false;
+        }
+
+        @Override
+        public void clear() {
+            values.clear();
+        }
+    }
+}
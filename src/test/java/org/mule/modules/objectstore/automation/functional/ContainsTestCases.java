@@ -16,7 +16,7 @@ public class ContainsTestCases extends AbstractTestCase {
     @Test
     public void testContains() throws Exception {
         ObjectStoreConnector module = this.getConnector();
-        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false);
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false, null);
         Boolean response = module.contains(OBJECTSTORE_KEY);
 
         assertTrue(response);
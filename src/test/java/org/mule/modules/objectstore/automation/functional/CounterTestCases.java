@@ -0,0 +1,97 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.modules.objectstore.MulePropertyScope;
+import org.mule.modules.objectstore.ObjectStoreConnector;
+
+import static junit.framework.Assert.assertEquals;
+
+public class CounterTestCases extends AbstractTestCase {
+
+    private static final String COUNTER_KEY = "mycounter";
+
+    ObjectStoreConnector module;
+
+    @Before
+    public void setUp() throws Exception {
+        module = this.getConnector();
+        module.remove(COUNTER_KEY, true);
+    }
+
+    @Test
+    public void testIncrement() throws Exception {
+        assertEquals(1, module.increment(COUNTER_KEY, 1, 0));
+        assertEquals(11, module.increment(COUNTER_KEY, 10, 0));
+        assertEquals(11, module.getCounter(COUNTER_KEY));
+    }
+
+    @Test
+    public void testIncrementFromInitialValue() throws Exception {
+        assertEquals(101, module.increment(COUNTER_KEY, 1, 100));
+    }
+
+    @Test
+    public void testDecrement() throws Exception {
+        assertEquals(-1, module.decrement(COUNTER_KEY, 1, 0));
+        assertEquals(-6, module.decrement(COUNTER_KEY, 5, 0));
+    }
+
+    @Test
+    public void testAdd() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            module.add(COUNTER_KEY, 2, 0);
+        }
+        assertEquals(20, module.getCounter(COUNTER_KEY));
+        assertEquals(21, module.increment(COUNTER_KEY, 1, 0));
+    }
+
+    @Test
+    public void testFlushCounters() throws Exception {
+        module.increment(COUNTER_KEY, 42, 0);
+        module.flushCounters();
+        assertEquals(42L, module.retrieve(COUNTER_KEY, null, null, MulePropertyScope.INVOCATION, null));
+    }
+
+    @Test
+    public void testIncrementStoredValue() throws Exception {
+        module.store(COUNTER_KEY, 7, false, null);
+        assertEquals(8, module.increment(COUNTER_KEY, 1, 0));
+    }
+
+    @Test
+    public void testRemoveResetsCounter() throws Exception {
+        module.increment(COUNTER_KEY, 5, 0);
+        module.remove(COUNTER_KEY, true);
+        assertEquals(0, module.getCounter(COUNTER_KEY));
+    }
+
+    @Test
+    public void testFlushKeepsStoredValue() throws Exception {
+        module.increment(COUNTER_KEY, 5, 0);
+        module.store(COUNTER_KEY, 100L, true, null);
+        module.flushCounters();
+        assertEquals(100L, module.retrieve(COUNTER_KEY, null, null, MulePropertyScope.INVOCATION, null));
+        assertEquals(101, module.increment(COUNTER_KEY, 1, 0));
+    }
+
+    @Test
+    public void testPutIfAbsentResetsCounter() throws Exception {
+        module.increment(COUNTER_KEY, 5, 0);
+        // A counter kept in memory and not flushed yet leaves the key absent
+        Object existing = module.putIfAbsent(COUNTER_KEY, 100L);
+        module.flushCounters();
+        assertEquals(existing == null ? 100 : 5, module.getCounter(COUNTER_KEY));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        module.remove(COUNTER_KEY, true);
+    }
+}
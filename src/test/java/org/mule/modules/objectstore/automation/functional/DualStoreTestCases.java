@@ -7,11 +7,28 @@ package org.mule.modules.objectstore.automation.functional;
 
 import org.junit.After;
 import org.junit.Test;
+import org.mule.api.store.ObjectAlreadyExistsException;
+import org.mule.api.store.ObjectDoesNotExistException;
+import org.mule.api.store.ObjectStore;
 import org.mule.api.store.ObjectStoreException;
 import org.mule.modules.objectstore.MulePropertyScope;
 import org.mule.modules.objectstore.ObjectStoreConnector;
+import org.mule.modules.objectstore.dual.DualIntent;
+import org.mule.modules.objectstore.dual.DualIntent.Kind;
+import org.mule.modules.objectstore.dual.DualMappings;
+import org.mule.modules.objectstore.dual.DualMappings.PairLocks;
+import org.mule.util.store.SimpleMemoryObjectStore;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.fail;
 
 public class DualStoreTestCases extends AbstractTestCase {
 
@@ -29,8 +46,8 @@ public class DualStoreTestCases extends AbstractTestCase {
     @Test
     public void testDualStoreOverwrite() throws Exception {
         ObjectStoreConnector module = this.getConnector();
-        module.store(OBJECTSTORE_KEY, "myKeyValue", true);
-        module.store(OBJECTSTORE_VALUE, "myKeyValue2", true);
+        module.store(OBJECTSTORE_KEY, "myKeyValue", true, null);
+        module.store(OBJECTSTORE_VALUE, "myKeyValue2", true, null);
         module.dualStore(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, true);
         String value = (String) module.retrieve(OBJECTSTORE_KEY, null, null, MulePropertyScope.INVOCATION, null);
         String key = (String) module.retrieve(OBJECTSTORE_VALUE, null, null, MulePropertyScope.INVOCATION, null);
@@ -54,6 +71,72 @@ public class DualStoreTestCases extends AbstractTestCase {
         module.dualStore(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false);
     }
 
+    @Test
+    public void testDualStoreFailsWhenValueExists() throws Exception {
+        ObjectStoreConnector module = this.getConnector();
+        module.store(OBJECTSTORE_VALUE, "myKeyValue", true, null);
+        try {
+            module.dualStore(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false);
+            fail("The value is already stored");
+        } catch (ObjectAlreadyExistsException e) {
+            // expected
+        }
+        assertFalse(module.contains(OBJECTSTORE_KEY));
+        assertEquals("myKeyValue", module.retrieve(OBJECTSTORE_VALUE, null, null, MulePropertyScope.INVOCATION, null));
+    }
+
+    @Test
+    public void testRemoveDual() throws Exception {
+        ObjectStoreConnector module = this.getConnector();
+        module.dualStore(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false);
+        assertEquals(OBJECTSTORE_VALUE, module.removeDual(OBJECTSTORE_KEY, false));
+        assertFalse(module.contains(OBJECTSTORE_KEY));
+        assertFalse(module.contains(OBJECTSTORE_VALUE));
+        assertNull(module.removeDual(OBJECTSTORE_KEY, true));
+    }
+
+    @Test
+    public void testRemoveDualKeepsRemappedValue() throws Exception {
+        ObjectStoreConnector module = this.getConnector();
+        module.dualStore(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false);
+        module.store(OBJECTSTORE_VALUE, "otherKey", true, null);
+        module.removeDual(OBJECTSTORE_KEY, false);
+        assertFalse(module.contains(OBJECTSTORE_KEY));
+        assertEquals("otherKey", module.retrieve(OBJECTSTORE_VALUE, null, null, MulePropertyScope.INVOCATION, null));
+    }
+
+    @Test(expected = ObjectDoesNotExistException.class)
+    public void testRemoveDualMissing() throws Exception {
+        this.getConnector().removeDual(OBJECTSTORE_KEY, false);
+    }
+
+    @Test
+    public void testInterruptedChangesSettledUnderTheirLocks() throws Exception {
+        ObjectStore<Serializable> store = new SimpleMemoryObjectStore<Serializable>();
+        ObjectStore<Serializable> intents = new SimpleMemoryObjectStore<Serializable>();
+        // A store interrupted after its forward mapping, a removal after its reverse one
+        store.store("stored", "half");
+        intents.store("stored", new DualIntent(Kind.STORE, "stored", "half"));
+        store.store("removed", "pair");
+        intents.store("removed", new DualIntent(Kind.REMOVE, "removed", "pair"));
+        final List<Serializable> locked = new ArrayList<Serializable>();
+        DualMappings mappings = new DualMappings(store, intents, false, null);
+        int settled = mappings.recover(new PairLocks() {
+
+            @Override
+            public Lock lockFor(Serializable key, Serializable value) {
+                locked.add(key);
+                return new ReentrantLock();
+            }
+        });
+        assertEquals(2, settled);
+        assertEquals(2, locked.size());
+        assertFalse(store.contains("stored"));
+        assertFalse(store.contains("removed"));
+        assertFalse(intents.contains("stored"));
+        assertFalse(intents.contains("removed"));
+    }
+
     @After
     public void tearDown() throws Exception {
         ObjectStoreConnector module = this.getConnector();
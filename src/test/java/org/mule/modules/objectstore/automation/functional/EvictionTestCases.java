@@ -0,0 +1,108 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.functional;
+
+import org.junit.Test;
+import org.mule.modules.objectstore.EvictionPolicy;
+import org.mule.modules.objectstore.eviction.EvictingObjectStore;
+import org.mule.modules.objectstore.eviction.Policies;
+import org.mule.util.store.SimpleMemoryObjectStore;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class EvictionTestCases {
+
+    private final List<Serializable> evicted = new CopyOnWriteArrayList<Serializable>();
+
+    @Test
+    public void testReadsAreSeenByTheNextWrite() throws Exception {
+        EvictingObjectStore store = newStore(EvictionPolicy.LRU, 3);
+        store.store("a", "1");
+        store.store("b", "2");
+        store.store("c", "3");
+        assertEquals("1", store.retrieve("a"));
+        store.store("d", "4");
+        assertEquals(Arrays.asList((Serializable) "b"), evicted);
+        assertFalse(store.contains("b"));
+        assertTrue(store.contains("a"));
+        assertEquals(3, store.getSize());
+        assertEquals(1, store.getEvictions());
+    }
+
+    @Test
+    public void testListenerOnlyToldAboutRemovedVictims() throws Exception {
+        SimpleMemoryObjectStore<Serializable> delegate = new SimpleMemoryObjectStore<Serializable>();
+        EvictingObjectStore store = newStore(delegate, EvictionPolicy.FIFO, 2);
+        store.store("a", "1");
+        store.store("b", "2");
+        // Removed behind the back of the policy
+        delegate.remove("a");
+        store.store("c", "3");
+        assertTrue(evicted.isEmpty());
+        assertEquals(0, store.getEvictions());
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        final EvictingObjectStore store = newStore(EvictionPolicy.W_TINY_LFU, 100);
+        for (int i = 0; i < 100; i++) {
+            store.store("key-" + i, i);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Void>> readers = new CopyOnWriteArrayList<Future<Void>>();
+            for (int t = 0; t < 8; t++) {
+                readers.add(executor.submit(new Callable<Void>() {
+
+                    @Override
+                    public Void call() throws Exception {
+                        for (int i = 0; i < 10000; i++) {
+                            store.lookup("key-" + (i % 150));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(8 * 10000, store.getHits() + store.getMisses());
+        for (int i = 100; i < 200; i++) {
+            store.store("key-" + i, i);
+        }
+        assertEquals(100, store.getSize());
+        assertEquals(store.getEvictions(), evicted.size());
+        assertTrue(store.getEvictions() >= 100);
+    }
+
+    private EvictingObjectStore newStore(EvictionPolicy policy, int maxEntries) {
+        return newStore(new SimpleMemoryObjectStore<Serializable>(), policy, maxEntries);
+    }
+
+    private EvictingObjectStore newStore(SimpleMemoryObjectStore<Serializable> delegate, EvictionPolicy policy, int maxEntries) {
+        return new EvictingObjectStore(delegate, Policies.newPolicy(policy, maxEntries), null, new EvictingObjectStore.Listener() {
+
+            @Override
+            public void evicted(Serializable key) {
+                evicted.add(key);
+            }
+        });
+    }
+}
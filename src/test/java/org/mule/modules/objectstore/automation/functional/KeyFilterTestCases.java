@@ -0,0 +1,185 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.api.store.ObjectAlreadyExistsException;
+import org.mule.api.store.ObjectDoesNotExistException;
+import org.mule.api.store.ObjectStore;
+import org.mule.modules.objectstore.engine.OffHeapObjectStore;
+import org.mule.modules.objectstore.filter.KeyFilter;
+import org.mule.modules.objectstore.filter.KeyFilterObjectStore;
+import org.mule.modules.objectstore.shard.ShardedObjectStore;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class KeyFilterTestCases {
+
+    private OffHeapObjectStore delegate;
+    private KeyFilter filter;
+    private KeyFilterObjectStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        delegate = new OffHeapObjectStore(null, null, null, getClass().getClassLoader());
+        filter = new KeyFilter(1000, 0.01);
+        store = new KeyFilterObjectStore(delegate, filter);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        delegate.close();
+    }
+
+    @Test
+    public void testRemovesOnlyForgetTheirKey() throws Exception {
+        KeyFilter filter = new KeyFilter(100, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("key-" + i);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            filter.remove("key-" + i);
+        }
+        // Overloaded tenfold so most counters are shared, yet no present key is reported missing
+        for (int i = 1; i < 1000; i += 2) {
+            assertTrue(filter.mightContain("key-" + i));
+        }
+        assertEquals(500, filter.getEntries());
+    }
+
+    @Test
+    public void testSaturatedCountersStay() throws Exception {
+        KeyFilter filter = new KeyFilter(100, 0.01);
+        for (int i = 0; i < 20; i++) {
+            filter.add("key");
+        }
+        for (int i = 0; i < 20; i++) {
+            filter.remove("key");
+        }
+        assertTrue(filter.mightContain("key"));
+    }
+
+    @Test
+    public void testMissesAnsweredByFilter() throws Exception {
+        assertFalse(store.contains("missing"));
+        assertNull(store.lookup("missing"));
+        try {
+            store.retrieve("missing");
+            fail("The key was never stored");
+        } catch (ObjectDoesNotExistException e) {
+            // Expected
+        }
+        assertTrue(store.retrieveAll(Arrays.asList((Serializable) "missing")).isEmpty());
+        assertEquals(4, filter.getAvoidedLookups());
+        assertEquals(0, filter.getFalsePositives());
+    }
+
+    @Test
+    public void testStoreAndRemove() throws Exception {
+        store.store("key", "value");
+        assertTrue(store.contains("key"));
+        try {
+            store.store("key", "other");
+            fail("The key is already stored");
+        } catch (ObjectAlreadyExistsException e) {
+            // Expected
+        }
+        assertEquals(1, filter.getEntries());
+        assertEquals("value", store.remove("key"));
+        assertFalse(filter.mightContain("key"));
+        assertFalse(store.contains("key"));
+
+        try {
+            store.remove("key");
+            fail("The key was removed");
+        } catch (ObjectDoesNotExistException e) {
+            // Expected
+        }
+        assertNull(store.removeIfPresent("key"));
+        assertEquals(0, filter.getEntries());
+    }
+
+    @Test
+    public void testRemovedBehindTheFilter() throws Exception {
+        store.store("key", "value");
+        delegate.remove("key");
+        assertFalse(store.contains("key"));
+        assertEquals(1, filter.getFalsePositives());
+    }
+
+    @Test
+    public void testConditionalUpdates() throws Exception {
+        assertNull(store.putIfAbsent("key", "value"));
+        assertEquals("value", store.putIfAbsent("key", "other"));
+        assertEquals("value", store.put("key", "newer"));
+        assertEquals(1, filter.getEntries());
+        assertEquals("newer", store.removeIfPresent("key"));
+        assertFalse(filter.mightContain("key"));
+    }
+
+    @Test
+    public void testDualStoreMappings() throws Exception {
+        // The forward and reverse mappings of a dual store, then an overwrite dropping the old reverse one
+        store.put("key", "value");
+        store.put("value", "key");
+        store.put("key", "newer");
+        store.put("newer", "key");
+        store.removeIfPresent("value");
+        assertFalse(store.contains("value"));
+        assertTrue(store.contains("key"));
+        assertTrue(store.contains("newer"));
+        assertEquals(2, filter.getEntries());
+
+        store.removeIfPresent("key");
+        store.removeIfPresent("newer");
+        assertFalse(filter.mightContain("key"));
+        assertFalse(filter.mightContain("newer"));
+    }
+
+    @Test
+    public void testBatches() throws Exception {
+        ShardedObjectStore sharded = ShardedObjectStore.newInstance(Collections.<ObjectStore<Serializable>> singletonList(delegate), 0, "test");
+        store = new KeyFilterObjectStore(sharded, filter);
+        try {
+            storeAndRemoveAll();
+        } finally {
+            sharded.dispose();
+        }
+    }
+
+    @Test
+    public void testRebuild() throws Exception {
+        delegate.store("stored-before", "value");
+        assertFalse(store.contains("stored-before"));
+        store.rebuild();
+        assertTrue(store.contains("stored-before"));
+        assertEquals(1, filter.getEntries());
+    }
+
+    private void storeAndRemoveAll() throws Exception {
+        store.store("existing", "value");
+        Map<Serializable, Serializable> entries = new HashMap<Serializable, Serializable>();
+        entries.put("existing", "other");
+        entries.put("new", "value");
+        assertTrue(store.storeAll(entries, false).containsKey("existing"));
+        assertEquals(2, filter.getEntries());
+        assertTrue(store.removeAll(Arrays.asList((Serializable) "existing", "new", "new", "missing")).containsKey("missing"));
+        assertEquals(0, filter.getEntries());
+        assertFalse(filter.mightContain("new"));
+    }
+}
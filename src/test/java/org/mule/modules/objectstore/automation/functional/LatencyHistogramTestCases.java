@@ -0,0 +1,94 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.functional;
+
+import org.junit.Test;
+import org.mule.modules.objectstore.metrics.LatencyHistogram;
+
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class LatencyHistogramTestCases {
+
+    @Test
+    public void testSmallValuesExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 16; i++) {
+            histogram.record(i);
+        }
+        for (int i = 0; i < 16; i++) {
+            assertEquals(i, histogram.getValueAtPercentile((i + 1) * 100.0 / 16));
+        }
+        assertEquals(7.5, histogram.getMean());
+    }
+
+    @Test
+    public void testRelativeErrorBounded() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            long value = (random.nextLong() & Long.MAX_VALUE) >>> random.nextInt(63);
+            assertBucketHolds(value);
+        }
+        for (int bits = 0; bits < 63; bits++) {
+            assertBucketHolds(1L << bits);
+            assertBucketHolds((1L << bits) - 1);
+            assertBucketHolds((1L << bits) + 1);
+        }
+        assertBucketHolds(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000000, histogram.getMax());
+        assertWithinBucket(500000, histogram.getValueAtPercentile(50));
+        assertWithinBucket(990000, histogram.getValueAtPercentile(99));
+        assertEquals(1000000, histogram.getValueAtPercentile(100));
+        assertWithinBucket(500500, (long) histogram.getMean());
+    }
+
+    @Test
+    public void testNegativeCountedAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(123456);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0.0, histogram.getMean());
+    }
+
+    /**
+     * Records the value below one that is never reached, so the reported percentile is the upper bound of the bucket of the value.
+     */
+    private static void assertBucketHolds(long value) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(value);
+        histogram.record(Long.MAX_VALUE);
+        long reported = histogram.getValueAtPercentile(50);
+        assertTrue(value + " reported as " + reported, reported >= value);
+        assertWithinBucket(value, reported);
+    }
+
+    private static void assertWithinBucket(long expected, long actual) {
+        assertTrue(expected + " reported as " + actual, Math.abs(actual - expected) <= expected / 16);
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.functional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.modules.objectstore.ObjectStoreConnector;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class LockTestCases extends AbstractTestCase {
+
+    ObjectStoreConnector module;
+
+    @Before
+    public void setUp() throws Exception {
+        module = this.getConnector();
+    }
+
+    @Test
+    public void testAcquireRelease() throws Exception {
+        long token = module.acquireLock(OBJECTSTORE_KEY, 0, 60000);
+        assertTrue(module.releaseLock(OBJECTSTORE_KEY, token));
+        long next = module.acquireLock(OBJECTSTORE_KEY, 0, 60000);
+        assertTrue(next > token);
+        assertFalse(module.releaseLock(OBJECTSTORE_KEY, token));
+        assertTrue(module.releaseLock(OBJECTSTORE_KEY, next));
+    }
+
+    @Test
+    public void testAcquireHeldTimesOut() throws Exception {
+        long token = module.acquireLock(OBJECTSTORE_KEY, 0, 60000);
+        try {
+            module.acquireLock(OBJECTSTORE_KEY, 100, 60000);
+            fail("The lock is held");
+        } catch (ObjectStoreException e) {
+            // expected
+        } finally {
+            module.releaseLock(OBJECTSTORE_KEY, token);
+        }
+    }
+
+    @Test
+    public void testAcquireOtherKey() throws Exception {
+        long token = module.acquireLock(OBJECTSTORE_KEY, 0, 60000);
+        long other = module.acquireLock(OBJECTSTORE_KEY + "-other", 0, 60000);
+        assertTrue(module.releaseLock(OBJECTSTORE_KEY + "-other", other));
+        assertTrue(module.releaseLock(OBJECTSTORE_KEY, token));
+    }
+
+    @Test
+    public void testLeaseExpires() throws Exception {
+        long token = module.acquireLock(OBJECTSTORE_KEY, 0, 200);
+        long next = module.acquireLock(OBJECTSTORE_KEY, 5000, 60000);
+        assertTrue(next > token);
+        assertFalse(module.releaseLock(OBJECTSTORE_KEY, token));
+        assertTrue(module.releaseLock(OBJECTSTORE_KEY, next));
+    }
+}
@@ -0,0 +1,252 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.modules.objectstore.engine.LogObjectStore;
+import org.mule.modules.objectstore.store.KeyPage;
+import org.mule.util.FileUtils;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+public class LogTestCases {
+
+    private File directory;
+    private LogObjectStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = new File(System.getProperty("java.io.tmpdir"), "objectstore-log-" + System.nanoTime());
+        store = open();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.close();
+        FileUtils.deleteTree(directory);
+    }
+
+    @Test
+    public void testPagedKeys() throws Exception {
+        for (int i = 0; i < 250; i++) {
+            store.store("key-" + i, i);
+        }
+        // Overwritten and removed keys leave dead records behind
+        for (int i = 0; i < 50; i++) {
+            store.put("key-" + i, -i);
+            store.remove("key-" + (i + 200));
+        }
+        Set<String> keys = new HashSet<String>();
+        KeyPage page = store.keys(null, 64);
+        keys.addAll(page.getKeys());
+        while (!page.isLast()) {
+            page = store.keys(page.getNextCursor(), 64);
+            for (String key : page.getKeys()) {
+                assertTrue(key, keys.add(key));
+            }
+        }
+        assertEquals(200, keys.size());
+        for (int i = 0; i < 200; i++) {
+            assertTrue(keys.contains("key-" + i));
+        }
+    }
+
+    @Test
+    public void testTornRecordDiscarded() throws Exception {
+        store.store("first", "1");
+        store.store("second", "2");
+        store.close();
+        File segment = segmentFiles()[0];
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try {
+            int end = endOf(file);
+            // A record whose body was not completely written: its checksum does not match
+            file.seek(end);
+            file.writeInt(12);
+            file.writeInt(0xCAFEBABE);
+            file.write(new byte[] { 1, 0, 0, 0, 3 });
+        } finally {
+            file.close();
+        }
+        store = open();
+        assertEquals("1", store.retrieve("first"));
+        assertEquals("2", store.retrieve("second"));
+        assertEquals(2, store.allKeys().size());
+        store.store("third", "3");
+        store.close();
+        store = open();
+        assertEquals("3", store.retrieve("third"));
+        assertEquals(3, store.allKeys().size());
+    }
+
+    @Test
+    public void testTruncatedTailDiscarded() throws Exception {
+        store.store("first", "1");
+        store.store("second", "2");
+        store.close();
+        File segment = segmentFiles()[0];
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try {
+            // The file ends in the middle of the last record
+            file.setLength(endOf(file) - 3);
+        } finally {
+            file.close();
+        }
+        store = open();
+        assertEquals("1", store.retrieve("first"));
+        assertFalse(store.contains("second"));
+        store.store("second", "again");
+        store.store("third", "3");
+        store.close();
+        store = open();
+        assertEquals("again", store.retrieve("second"));
+        assertEquals("3", store.retrieve("third"));
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        char[] padding = new char[500];
+        Arrays.fill(padding, 'x');
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 20; i++) {
+                store.put("key-" + i, round + new String(padding));
+            }
+        }
+        store.remove("key-0");
+        int segments = store.getSegmentCount();
+        assertTrue(segments > 3);
+        store.compact();
+        assertTrue(store.getSegmentCount() < segments);
+        // Compacted segments are unmapped and deleted
+        assertEquals(store.getSegmentCount(), segmentFiles().length);
+        assertCompacted(padding);
+        store.close();
+        store = open();
+        assertCompacted(padding);
+        store.store("key-0", "back");
+        store.close();
+        store = open();
+        assertEquals("back", store.retrieve("key-0"));
+    }
+
+    @Test
+    public void testDeletedSegmentsNotReplayed() throws Exception {
+        store.store("cleared", "value");
+        store.clear();
+        store.store("kept", "value");
+        store.close();
+        // Left behind by a segment unmapped but not deleted
+        File segment = segmentFiles()[0];
+        File leftover = new File(directory, "segment-0.log.deleted");
+        FileUtils.copyFile(segment, leftover);
+        store = open();
+        assertFalse(store.contains("cleared"));
+        assertEquals("value", store.retrieve("kept"));
+        assertFalse(leftover.exists());
+        assertEquals(1, directory.listFiles().length);
+    }
+
+    @Test
+    public void testReadsDuringCompaction() throws Exception {
+        char[] padding = new char[500];
+        Arrays.fill(padding, 'x');
+        for (int i = 0; i < 20; i++) {
+            store.store("key-" + i, i + new String(padding));
+        }
+        final AtomicBoolean done = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> reader = executor.submit(new Callable<String>() {
+
+                @Override
+                public String call() throws Exception {
+                    while (!done.get()) {
+                        for (int i = 0; i < 20; i++) {
+                            String value = (String) store.retrieve("key-" + i);
+                            if (!value.startsWith(i + "x")) {
+                                return "read " + value.substring(0, 10) + " for key-" + i;
+                            }
+                        }
+                    }
+                    return null;
+                }
+            });
+            for (int round = 0; round < 20; round++) {
+                for (int i = 0; i < 20; i++) {
+                    store.put("key-" + i, i + new String(padding));
+                }
+                store.compact();
+            }
+            done.set(true);
+            String failure = reader.get();
+            assertTrue(failure, failure == null);
+        } finally {
+            done.set(true);
+            executor.shutdownNow();
+        }
+        assertEquals(store.getSegmentCount(), segmentFiles().length);
+    }
+
+    private void assertCompacted(char[] padding) throws Exception {
+        assertNull(store.lookup("key-0"));
+        for (int i = 1; i < 20; i++) {
+            assertEquals("9" + new String(padding), store.retrieve("key-" + i));
+        }
+        assertEquals(19, store.allKeys().size());
+    }
+
+    private File[] segmentFiles() {
+        File[] files = directory.listFiles(new FileFilter() {
+
+            @Override
+            public boolean accept(File file) {
+                return file.getName().endsWith(".log");
+            }
+        });
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * @return the position following the last record of the segment
+     */
+    private static int endOf(RandomAccessFile file) throws IOException {
+        int position = 0;
+        while (position + 8 <= file.length()) {
+            file.seek(position);
+            int length = file.readInt();
+            if (length == 0) {
+                break;
+            }
+            position += 8 + length;
+        }
+        return position;
+    }
+
+    private LogObjectStore open() throws Exception {
+        LogObjectStore log = new LogObjectStore(directory, 16 * 1024, 0, getClass().getClassLoader());
+        log.open();
+        return log;
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.api.store.ObjectAlreadyExistsException;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.modules.objectstore.EvictionPolicy;
+import org.mule.modules.objectstore.cache.NearCache;
+import org.mule.modules.objectstore.cache.NearCacheObjectStore;
+import org.mule.modules.objectstore.codec.CodecObjectStore;
+import org.mule.modules.objectstore.codec.Compressor;
+import org.mule.modules.objectstore.codec.JavaCodec;
+import org.mule.modules.objectstore.eviction.EvictingObjectStore;
+import org.mule.modules.objectstore.eviction.Policies;
+import org.mule.modules.objectstore.expiry.ExpiringObjectStore;
+import org.mule.modules.objectstore.expiry.ExpiringValue;
+import org.mule.modules.objectstore.expiry.TimingWheel;
+import org.mule.modules.objectstore.expiry.TimingWheel.Expirer;
+import org.mule.modules.objectstore.store.LookupObjectStore;
+import org.mule.modules.objectstore.store.ObjectStores;
+import org.mule.util.store.SimpleMemoryObjectStore;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+public class LookupTestCases {
+
+    private TimingWheel wheel;
+
+    @Before
+    public void setUp() {
+        wheel = new TimingWheel("lookup-test", 0, new Expirer() {
+
+            @Override
+            public void expire(Serializable key, long expiresAt) {
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        wheel.dispose();
+    }
+
+    @Test
+    public void testLookupOnMuleStore() throws Exception {
+        SimpleMemoryObjectStore<Serializable> store = new SimpleMemoryObjectStore<Serializable>();
+        assertNull(ObjectStores.lookup(store, "key"));
+        assertNull(ObjectStores.removeIfPresent(store, "key"));
+        store.store("key", "value");
+        assertEquals("value", ObjectStores.lookup(store, "key"));
+        assertEquals("value", ObjectStores.removeIfPresent(store, "key"));
+        assertFalse(store.contains("key"));
+    }
+
+    @Test
+    public void testMissesWithoutExceptions() throws Exception {
+        LookupOnlyStore base = new LookupOnlyStore();
+        CodecObjectStore codec = CodecObjectStore.compact(base, new JavaCodec(getClass().getClassLoader()), Compressor.decompressOnly());
+        ExpiringObjectStore store = new ExpiringObjectStore(new NearCacheObjectStore(codec, new NearCache(100, 0)), 0, wheel);
+        assertNull(store.lookup("key"));
+        assertNull(store.removeIfPresent("key"));
+        assertNull(store.lookupEntry("key"));
+
+        store.store("key", "value");
+        assertEquals("value", store.lookup("key"));
+        assertEquals("value", store.removeIfPresent("key"));
+        assertNull(store.lookup("key"));
+    }
+
+    @Test
+    public void testExpiredRemovedWithoutExceptions() throws Exception {
+        LookupOnlyStore base = new LookupOnlyStore();
+        ExpiringObjectStore store = new ExpiringObjectStore(base, 0, wheel);
+        assertFalse(store.removeIfExpired("key", 1));
+        store.store("key", store.withTtl("value", 1));
+        Thread.sleep(10);
+        // Stored over the expired value
+        store.store("key", store.withTtl("newer", 1));
+        assertEquals(1, wheel.getExpired());
+        Thread.sleep(10);
+        assertTrue(store.removeIfExpired("key", ((ExpiringValue) base.lookup("key")).getExpiresAt()));
+        assertFalse(base.contains("key"));
+    }
+
+    @Test
+    public void testEvictionWithoutExceptions() throws Exception {
+        LookupOnlyStore base = new LookupOnlyStore();
+        EvictingObjectStore store = new EvictingObjectStore(base, Policies.newPolicy(EvictionPolicy.FIFO, 1), null, null);
+        store.store("a", "1");
+        store.store("b", "2");
+        assertFalse(base.contains("a"));
+        assertEquals(1, store.getEvictions());
+    }
+
+    @Test
+    public void testLookupEntry() throws Exception {
+        ExpiringObjectStore store = new ExpiringObjectStore(new SimpleMemoryObjectStore<Serializable>(), 0, wheel);
+        store.store("forever", "value");
+        ExpiringValue entry = store.lookupEntry("forever");
+        assertEquals("value", entry.getValue());
+        assertEquals(Long.MAX_VALUE, entry.getExpiresAt());
+
+        long before = System.currentTimeMillis();
+        store.store("expiring", store.withTtl("value", 60000));
+        entry = store.lookupEntry("expiring");
+        assertEquals("value", entry.getValue());
+        assertTrue(entry.getExpiresAt() >= before + 60000);
+
+        store.store("expired", store.withTtl("value", 1));
+        Thread.sleep(10);
+        assertNull(store.lookupEntry("expired"));
+        assertNull(store.lookup("expired"));
+    }
+
+    /**
+     * A store failing the test if a value is read or removed through the methods throwing on a missing key.
+     */
+    private static class LookupOnlyStore implements LookupObjectStore<Serializable> {
+
+        private final Map<Serializable, Serializable> values = new ConcurrentHashMap<Serializable, Serializable>();
+
+        @Override
+        public Serializable lookup(Serializable key) {
+            return values.get(key);
+        }
+
+        @Override
+        public Serializable removeIfPresent(Serializable key) {
+            return values.remove(key);
+        }
+
+        @Override
+        public boolean contains(Serializable key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public void store(Serializable key, Serializable value) throws ObjectStoreException {
+            if (values.putIfAbsent(key, value) != null) {
+                throw new ObjectAlreadyExistsException();
+            }
+        }
+
+        @Override
+        public Serializable retrieve(Serializable key) {
+            throw new AssertionError("retrieve called for key " + key);
+        }
+
+        @Override
+        public Serializable remove(Serializable key) {
+            throw new AssertionError("remove called for key " + key);
+        }
+
+        @Override
+        public boolean isPersistent() {
+            return false;
+        }
+
+        @Override
+        public void clear() {
+            values.clear();
+        }
+    }
+}
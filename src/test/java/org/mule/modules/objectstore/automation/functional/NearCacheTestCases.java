@@ -0,0 +1,153 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.api.store.ObjectDoesNotExistException;
+import org.mule.api.store.ObjectStore;
+import org.mule.modules.objectstore.cache.NearCache;
+import org.mule.modules.objectstore.cache.NearCacheObjectStore;
+import org.mule.modules.objectstore.engine.OffHeapObjectStore;
+import org.mule.modules.objectstore.shard.ShardedObjectStore;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class NearCacheTestCases {
+
+    private OffHeapObjectStore delegate;
+    private NearCache cache;
+    private NearCacheObjectStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        delegate = new OffHeapObjectStore(null, null, null, getClass().getClassLoader());
+        cache = new NearCache(1000, 0);
+        store = new NearCacheObjectStore(delegate, cache);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        delegate.close();
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() {
+        NearCache cache = new NearCache(1, 0);
+        cache.put("a", "1", cache.generation("a"));
+        cache.put("b", "2", cache.generation("b"));
+        assertNull(cache.get("a"));
+        assertEquals("2", cache.get("b"));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void testSizeBounded() {
+        NearCache cache = new NearCache(64, 0);
+        for (int i = 0; i < 1000; i++) {
+            cache.put("key-" + i, i, cache.generation("key-" + i));
+        }
+        assertTrue(cache.getSize() <= 64);
+        assertEquals(1000 - cache.getSize(), cache.getEvictions());
+    }
+
+    @Test
+    public void testEntriesExpire() throws Exception {
+        NearCache cache = new NearCache(10, 1);
+        cache.put("key", "value", cache.generation("key"));
+        Thread.sleep(10);
+        assertFalse(cache.contains("key"));
+        assertNull(cache.get("key"));
+        assertEquals(1, cache.getExpirations());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testPutAfterInvalidationIgnored() {
+        long generation = cache.generation("key");
+        cache.invalidate("key");
+        cache.put("key", "stale", generation);
+        assertNull(cache.get("key"));
+        cache.put("key", "fresh", cache.generation("key"));
+        assertEquals("fresh", cache.get("key"));
+    }
+
+    @Test
+    public void testReadsServedFromCache() throws Exception {
+        delegate.store("key", "value");
+        assertEquals("value", store.retrieve("key"));
+        assertEquals(1, cache.getMisses());
+        // Changed behind the cache, which keeps serving what it read
+        delegate.remove("key");
+        delegate.store("key", "other");
+        assertEquals("value", store.retrieve("key"));
+        assertEquals("value", store.lookup("key"));
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    public void testMissesNotCached() throws Exception {
+        assertNull(store.lookup("key"));
+        delegate.store("key", "value");
+        assertEquals("value", store.lookup("key"));
+    }
+
+    @Test
+    public void testWritesInvalidate() throws Exception {
+        store.store("key", "value");
+        assertEquals("value", store.retrieve("key"));
+        assertEquals("value", store.put("key", "newer"));
+        assertEquals("newer", store.retrieve("key"));
+        assertTrue(store.replace("key", "newer", "replaced"));
+        assertEquals("replaced", store.retrieve("key"));
+        assertEquals("replaced", store.remove("key"));
+        assertFalse(store.contains("key"));
+        try {
+            store.retrieve("key");
+            fail("The key was removed");
+        } catch (ObjectDoesNotExistException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testRemoveIfPresentAndClearInvalidate() throws Exception {
+        store.store("a", "1");
+        store.store("b", "2");
+        store.retrieve("a");
+        store.retrieve("b");
+        assertEquals("1", store.removeIfPresent("a"));
+        assertNull(store.lookup("a"));
+        store.clear();
+        assertNull(store.lookup("b"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testRetrieveAllFillsCache() throws Exception {
+        ShardedObjectStore sharded = ShardedObjectStore.newInstance(Collections.<ObjectStore<Serializable>> singletonList(delegate), 0, "test");
+        try {
+            store = new NearCacheObjectStore(sharded, cache);
+            delegate.store("a", "1");
+            delegate.store("b", "2");
+            assertEquals(2, store.retrieveAll(Arrays.asList((Serializable) "a", "b", "c")).size());
+            assertTrue(cache.contains("a"));
+            assertTrue(cache.contains("b"));
+            assertFalse(cache.contains("c"));
+        } finally {
+            sharded.dispose();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.functional;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mule.modules.objectstore.engine.OffHeapObjectStore;
+import org.mule.modules.objectstore.store.KeyPage;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+public class OffHeapTestCases {
+
+    private OffHeapObjectStore store;
+
+    @After
+    public void tearDown() throws Exception {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    public void testLargeValues() throws Exception {
+        store = new OffHeapObjectStore(null, null, null, getClass().getClassLoader());
+        store.store("small-1", "value-1");
+        byte[] big = new byte[OffHeapObjectStore.SLAB_SIZE * 2];
+        Arrays.fill(big, (byte) 7);
+        store.store("big", big);
+        for (int i = 2; i <= 100; i++) {
+            store.store("small-" + i, "value-" + i);
+        }
+        assertTrue(Arrays.equals(big, (byte[]) store.retrieve("big")));
+        store.remove("big");
+        for (int i = 1; i <= 100; i++) {
+            assertEquals("value-" + i, store.retrieve("small-" + i));
+        }
+        store.store("big", big);
+        assertTrue(Arrays.equals(big, (byte[]) store.retrieve("big")));
+        assertEquals(101, store.getSize());
+    }
+
+    @Test
+    public void testFreedChunksAreReused() throws Exception {
+        store = new OffHeapObjectStore(null, null, null, getClass().getClassLoader());
+        for (int i = 0; i < 1000; i++) {
+            store.store("key-" + i, "value-" + i);
+        }
+        long allocated = store.getAllocatedBytes();
+        long used = store.getUsedBytes();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 1000; i++) {
+                assertEquals("value-" + i, store.remove("key-" + i));
+            }
+            assertEquals(0, store.getUsedBytes());
+            for (int i = 0; i < 1000; i++) {
+                store.store("key-" + i, "value-" + i);
+            }
+        }
+        assertEquals(allocated, store.getAllocatedBytes());
+        assertEquals(used, store.getUsedBytes());
+    }
+
+    @Test
+    public void testMaxEntriesEvictsOldest() throws Exception {
+        store = new OffHeapObjectStore(null, 10, null, getClass().getClassLoader());
+        for (int i = 0; i < 15; i++) {
+            store.store("key-" + i, "value-" + i);
+        }
+        assertEquals(10, store.getSize());
+        assertEquals(5, store.getEvictions());
+        for (int i = 0; i < 5; i++) {
+            assertFalse(store.contains("key-" + i));
+        }
+        for (int i = 5; i < 15; i++) {
+            assertEquals("value-" + i, store.retrieve("key-" + i));
+        }
+    }
+
+    @Test
+    public void testEntriesExpire() throws Exception {
+        store = new OffHeapObjectStore(100, null, 60000, getClass().getClassLoader());
+        store.store("expiring", "value");
+        assertEquals("value", store.retrieve("expiring"));
+        Thread.sleep(200);
+        assertFalse(store.contains("expiring"));
+        assertNull(store.lookup("expiring"));
+        assertTrue(store.allKeys().isEmpty());
+        store.expire();
+        assertEquals(0, store.getSize());
+        assertEquals(1, store.getExpirations());
+        store.store("expiring", "again");
+        assertEquals("again", store.retrieve("expiring"));
+    }
+
+    @Test
+    public void testIndexResize() throws Exception {
+        store = new OffHeapObjectStore(null, null, null, getClass().getClassLoader());
+        for (int i = 0; i < 10000; i++) {
+            store.store("key-" + i, i);
+        }
+        assertEquals(10000, store.getSize());
+        for (int i = 0; i < 10000; i += 2) {
+            store.remove("key-" + i);
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(i % 2 == 1, store.contains("key-" + i));
+        }
+        assertEquals(5000, store.allKeys().size());
+    }
+
+    @Test
+    public void testPagedKeys() throws Exception {
+        store = new OffHeapObjectStore(null, null, null, getClass().getClassLoader());
+        for (int i = 0; i < 250; i++) {
+            store.store("key-" + i, i);
+        }
+        Set<String> keys = new HashSet<String>();
+        KeyPage page = store.keys(null, 100);
+        keys.addAll(page.getKeys());
+        // Removing the key the cursor ends with does not lose the keys after it
+        store.remove(page.getKeys().get(99));
+        keys.remove(page.getKeys().get(99));
+        int pages = 1;
+        while (!page.isLast()) {
+            page = store.keys(page.getNextCursor(), 100);
+            for (String key : page.getKeys()) {
+                assertTrue(key, keys.add(key));
+            }
+            pages++;
+        }
+        assertEquals(3, pages);
+        assertEquals(249, keys.size());
+    }
+}
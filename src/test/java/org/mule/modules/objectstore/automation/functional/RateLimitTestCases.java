@@ -0,0 +1,96 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.functional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.modules.objectstore.ObjectStoreConnector;
+import org.mule.modules.objectstore.RateLimitAlgorithm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class RateLimitTestCases extends AbstractTestCase {
+
+    private static final int CALLERS = 8;
+    private static final int ATTEMPTS = 100;
+
+    ObjectStoreConnector module;
+
+    @Before
+    public void setUp() throws Exception {
+        module = this.getConnector();
+    }
+
+    @Test
+    public void testTokenBucket() throws Exception {
+        String key = "token-bucket-" + System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(module.tryAcquire(key, 1, 5, 60000, RateLimitAlgorithm.TOKEN_BUCKET));
+        }
+        assertFalse(module.tryAcquire(key, 1, 5, 60000, RateLimitAlgorithm.TOKEN_BUCKET));
+        assertTrue(module.tryAcquire("other-" + key, 1, 5, 60000, RateLimitAlgorithm.TOKEN_BUCKET));
+    }
+
+    @Test
+    public void testSlidingWindow() throws Exception {
+        String key = "sliding-window-" + System.nanoTime();
+        assertTrue(module.tryAcquire(key, 3, 5, 200, RateLimitAlgorithm.SLIDING_WINDOW));
+        assertFalse(module.tryAcquire(key, 3, 5, 200, RateLimitAlgorithm.SLIDING_WINDOW));
+        assertTrue(module.tryAcquire(key, 2, 5, 200, RateLimitAlgorithm.SLIDING_WINDOW));
+        assertFalse(module.tryAcquire(key, 1, 5, 200, RateLimitAlgorithm.SLIDING_WINDOW));
+        Thread.sleep(300);
+        assertTrue(module.tryAcquire(key, 5, 5, 200, RateLimitAlgorithm.SLIDING_WINDOW));
+    }
+
+    @Test
+    public void testMorePermitsThanRate() throws Exception {
+        String key = "more-than-rate-" + System.nanoTime();
+        assertFalse(module.tryAcquire(key, 6, 5, 1000, RateLimitAlgorithm.TOKEN_BUCKET));
+        assertFalse(module.tryAcquire(key, 6, 5, 1000, RateLimitAlgorithm.SLIDING_WINDOW));
+    }
+
+    @Test
+    public void testConcurrentCallersNeverExceedRate() throws Exception {
+        for (final RateLimitAlgorithm algorithm : RateLimitAlgorithm.values()) {
+            final String key = "concurrent-" + algorithm + "-" + System.nanoTime();
+            ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+            try {
+                List<Future<Integer>> callers = new ArrayList<Future<Integer>>();
+                for (int i = 0; i < CALLERS; i++) {
+                    callers.add(executor.submit(new Callable<Integer>() {
+
+                        @Override
+                        public Integer call() throws Exception {
+                            int granted = 0;
+                            for (int j = 0; j < ATTEMPTS; j++) {
+                                if (module.tryAcquire(key, 1, 50, 60000, algorithm)) {
+                                    granted++;
+                                }
+                            }
+                            return granted;
+                        }
+                    }));
+                }
+                int granted = 0;
+                for (Future<Integer> caller : callers) {
+                    granted += caller.get();
+                }
+                assertEquals(50, granted);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+}
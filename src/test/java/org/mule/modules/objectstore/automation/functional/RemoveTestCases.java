@@ -20,7 +20,7 @@ public class RemoveTestCases extends AbstractTestCase {
     @Before
     public void setUp() throws Exception {
         module = this.getConnector();
-        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false);
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false, null);
     }
 
     @Test
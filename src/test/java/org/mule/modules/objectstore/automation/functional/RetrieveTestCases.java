@@ -20,7 +20,7 @@ public class RetrieveTestCases extends AbstractTestCase {
     public void testRetrieve() throws Exception {
 
         ObjectStoreConnector module = this.getConnector();
-        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false);
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false, null);
         String value = (String) module.retrieve(OBJECTSTORE_KEY, null, null, MulePropertyScope.INVOCATION, null);
         assertEquals(OBJECTSTORE_VALUE, value);
     }
@@ -29,7 +29,7 @@ public class RetrieveTestCases extends AbstractTestCase {
     public void testRetrieveWithLock() throws Exception {
 
         ObjectStoreConnector module = this.getConnector();
-        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false);
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false, null);
         String value = (String) module.retrieveWithLock(OBJECTSTORE_KEY, null, null, MulePropertyScope.INVOCATION, null);
         assertEquals(OBJECTSTORE_VALUE, value);
     }
@@ -38,7 +38,7 @@ public class RetrieveTestCases extends AbstractTestCase {
     public void testRetrieveStore() throws Exception {
 
         ObjectStoreConnector module = this.getConnector();
-        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false);
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false, null);
         module.retrieveStore(OBJECTSTORE_KEY, null, OBJECTSTORE_VALUE, null, null, null);
         String value = (String) module.retrieve(OBJECTSTORE_KEY, null, null, MulePropertyScope.INVOCATION, null);
         assertEquals(OBJECTSTORE_VALUE, value);
@@ -63,7 +63,7 @@ public class RetrieveTestCases extends AbstractTestCase {
     public void testRetrieveExpired() throws Exception {
 
         ObjectStoreConnector module = this.getConnector();
-        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, true);
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, true, null);
         Thread.sleep(2000);
 
         module.retrieve(OBJECTSTORE_KEY, null, null, MulePropertyScope.INVOCATION, null);
@@ -73,7 +73,7 @@ public class RetrieveTestCases extends AbstractTestCase {
     public void testRetrieveNotExpired() throws Exception {
 
         ObjectStoreConnector module = this.getConnector();
-        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, true);
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, true, null);
         Thread.sleep(50);
 
         String value = (String) module.retrieve(OBJECTSTORE_KEY, null, null, MulePropertyScope.INVOCATION, null);
@@ -84,7 +84,7 @@ public class RetrieveTestCases extends AbstractTestCase {
     public void testRetrieveExpiredDefaultValue() throws Exception {
 
         ObjectStoreConnector module = this.getConnector();
-        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, true);
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, true, null);
         Thread.sleep(2000L);
 
         String defaultValue = "default value";
@@ -92,6 +92,28 @@ public class RetrieveTestCases extends AbstractTestCase {
         assertEquals(defaultValue, value);
     }
 
+    @Test(expected = ObjectDoesNotExistException.class)
+    public void testRetrieveExpiredStoreTtl() throws Exception {
+
+        ObjectStoreConnector module = this.getConnector();
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, true, 200);
+        Thread.sleep(500);
+
+        module.retrieve(OBJECTSTORE_KEY, null, null, MulePropertyScope.INVOCATION, null);
+    }
+
+    @Test
+    public void testRetrieveNotExpiredStoreTtl() throws Exception {
+
+        ObjectStoreConnector module = this.getConnector();
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, true, 60000);
+        Thread.sleep(50);
+
+        String value = (String) module.retrieve(OBJECTSTORE_KEY, null, null, MulePropertyScope.INVOCATION, null);
+        assertEquals(OBJECTSTORE_VALUE, value);
+        assertEquals(true, module.contains(OBJECTSTORE_KEY));
+    }
+
     @After
     public void tearDown() throws Exception {
         ObjectStoreConnector module = this.getConnector();
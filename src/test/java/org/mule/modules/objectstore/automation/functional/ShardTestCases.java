@@ -0,0 +1,139 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.functional;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mule.api.store.ObjectStore;
+import org.mule.modules.objectstore.shard.HashRing;
+import org.mule.modules.objectstore.shard.ShardedObjectStore;
+import org.mule.util.store.SimpleMemoryObjectStore;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class ShardTestCases {
+
+    private static final int KEYS = 100000;
+
+    private final List<ShardedObjectStore> stores = new ArrayList<ShardedObjectStore>();
+    private final List<Serializable> locked = new CopyOnWriteArrayList<Serializable>();
+    private final ShardedObjectStore.KeyLocks locks = new ShardedObjectStore.KeyLocks() {
+
+        @Override
+        public Lock lockFor(Serializable key) {
+            locked.add(key);
+            return new ReentrantLock();
+        }
+    };
+
+    @After
+    public void tearDown() {
+        for (ShardedObjectStore store : stores) {
+            store.dispose();
+        }
+    }
+
+    @Test
+    public void testKeysSpreadEvenly() {
+        HashRing ring = new HashRing(4, ShardedObjectStore.DEFAULT_VIRTUAL_NODES);
+        int[] counts = new int[4];
+        for (int i = 0; i < KEYS; i++) {
+            counts[ring.shardFor("key-" + i)]++;
+        }
+        for (int count : counts) {
+            assertTrue(Arrays.toString(counts), Math.abs(count - KEYS / 4) < KEYS / 4 / 5);
+        }
+    }
+
+    @Test
+    public void testSameShardForTheSameKey() {
+        HashRing ring = new HashRing(8, 16);
+        HashRing other = new HashRing(8, 16);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(ring.shardFor("key-" + i), other.shardFor("key-" + i));
+            assertEquals(ring.shardFor(i), ring.shardFor(String.valueOf(i)));
+        }
+    }
+
+    @Test
+    public void testAppendedShardOnlyTakesKeys() {
+        HashRing before = new HashRing(4, ShardedObjectStore.DEFAULT_VIRTUAL_NODES);
+        HashRing after = new HashRing(5, ShardedObjectStore.DEFAULT_VIRTUAL_NODES);
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            int shard = after.shardFor("key-" + i);
+            if (shard != before.shardFor("key-" + i)) {
+                assertEquals(4, shard);
+                moved++;
+            }
+        }
+        // About one in five keys moves to the new shard
+        assertTrue(String.valueOf(moved), Math.abs(moved - KEYS / 5) < KEYS / 5 / 10);
+    }
+
+    @Test
+    public void testSingleShard() {
+        HashRing ring = new HashRing(1, 0);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, ring.shardFor("key-" + i));
+        }
+    }
+
+    @Test
+    public void testRebalanceMovesKeysToAppendedShard() throws Exception {
+        List<ObjectStore<Serializable>> shards = new ArrayList<ObjectStore<Serializable>>();
+        shards.add(new SimpleMemoryObjectStore<Serializable>());
+        shards.add(new SimpleMemoryObjectStore<Serializable>());
+        ShardedObjectStore before = newStore(shards);
+        for (int i = 0; i < 1000; i++) {
+            before.store("key-" + i, i);
+        }
+
+        shards.add(new SimpleMemoryObjectStore<Serializable>());
+        ShardedObjectStore after = newStore(shards);
+        int misplaced = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (after.shardFor("key-" + i) == shards.get(2)) {
+                misplaced++;
+                assertFalse(after.contains("key-" + i));
+            }
+        }
+        assertTrue(misplaced > 0);
+        // Stored again since the shard was appended
+        String newer = null;
+        for (int i = 0; newer == null; i++) {
+            if (after.shardFor("key-" + i) == shards.get(2)) {
+                newer = "key-" + i;
+            }
+        }
+        after.store(newer, "newer");
+
+        assertEquals(misplaced - 1, after.rebalance(locks));
+        assertEquals(misplaced, locked.size());
+        for (int i = 0; i < 1000; i++) {
+            String key = "key-" + i;
+            assertEquals(key.equals(newer) ? "newer" : i, after.retrieve(key));
+        }
+        assertEquals(1000, after.allKeys().size());
+        assertEquals(0, after.rebalance(locks));
+    }
+
+    private ShardedObjectStore newStore(List<ObjectStore<Serializable>> shards) {
+        ShardedObjectStore store = ShardedObjectStore.newInstance(shards, 0, "test");
+        stores.add(store);
+        return store;
+    }
+}
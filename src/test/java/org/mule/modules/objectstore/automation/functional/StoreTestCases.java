@@ -19,7 +19,7 @@ public class StoreTestCases extends AbstractTestCase {
     public void testStore() throws Exception {
 
         ObjectStoreConnector module = this.getConnector();
-        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false);
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false, null);
         String value = (String) module.retrieve(OBJECTSTORE_KEY, null, null, MulePropertyScope.INVOCATION, null);
         assertEquals(OBJECTSTORE_VALUE, value);
     }
@@ -28,8 +28,8 @@ public class StoreTestCases extends AbstractTestCase {
     public void testStoreOverwrite() throws Exception {
 
         ObjectStoreConnector module = this.getConnector();
-        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false);
-        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, true);
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false, null);
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, true, null);
         String value = (String) module.retrieve(OBJECTSTORE_KEY, null, null, MulePropertyScope.INVOCATION, null);
         assertEquals(OBJECTSTORE_VALUE, value);
     }
@@ -38,8 +38,8 @@ public class StoreTestCases extends AbstractTestCase {
     public void testStoreFailOnOverwrite() throws Exception {
 
         ObjectStoreConnector module = this.getConnector();
-        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false);
-        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false);
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false, null);
+        module.store(OBJECTSTORE_KEY, OBJECTSTORE_VALUE, false, null);
     }
 
     @After
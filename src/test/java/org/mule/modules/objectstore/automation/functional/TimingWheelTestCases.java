@@ -0,0 +1,139 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.modules.objectstore.engine.OffHeapObjectStore;
+import org.mule.modules.objectstore.expiry.ExpiringObjectStore;
+import org.mule.modules.objectstore.expiry.TimingWheel;
+import org.mule.modules.objectstore.expiry.TimingWheel.Expirer;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+public class TimingWheelTestCases {
+
+    private static final long TICK = 10;
+
+    private final List<Long> expired = new CopyOnWriteArrayList<Long>();
+    private TimingWheel wheel;
+
+    @Before
+    public void setUp() {
+        wheel = new TimingWheel("timing-wheel-test", TICK, new Expirer() {
+
+            @Override
+            public void expire(Serializable key, long expiresAt) {
+                expired.add(expiresAt);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        wheel.dispose();
+    }
+
+    @Test
+    public void testOverwritesReplaceTheExpiration() throws Exception {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 100; i++) {
+            wheel.schedule("key", now + 50 + i);
+        }
+        assertEquals(1, wheel.getPending());
+        awaitFired(1);
+        assertEquals(Long.valueOf(now + 149), expired.get(0));
+        assertEquals(0, wheel.getPending());
+    }
+
+    @Test
+    public void testEarlierExpirationMoved() throws Exception {
+        long now = System.currentTimeMillis();
+        wheel.schedule("key", now + 60000);
+        wheel.schedule("key", now + 20);
+        awaitFired(1);
+        assertEquals(Long.valueOf(now + 20), expired.get(0));
+    }
+
+    @Test
+    public void testCancelledNeverFires() throws Exception {
+        long now = System.currentTimeMillis();
+        wheel.schedule("cancelled", now + 20);
+        wheel.cancel("cancelled");
+        wheel.schedule("key", now + 40);
+        awaitFired(1);
+        assertEquals(Long.valueOf(now + 40), expired.get(0));
+        assertEquals(0, wheel.getPending());
+    }
+
+    @Test
+    public void testScheduleIfAbsentKeepsThePendingOne() throws Exception {
+        long now = System.currentTimeMillis();
+        wheel.schedule("key", now + 20);
+        wheel.scheduleIfAbsent("key", now + 60000);
+        assertEquals(1, wheel.getPending());
+        awaitFired(1);
+        assertEquals(Long.valueOf(now + 20), expired.get(0));
+    }
+
+    @Test
+    public void testStoreKeepsOneExpirationPerKey() throws Exception {
+        OffHeapObjectStore delegate = new OffHeapObjectStore(null, null, null, getClass().getClassLoader());
+        final ExpiringObjectStore[] holder = new ExpiringObjectStore[1];
+        TimingWheel wheel = new TimingWheel("timing-wheel-store-test", TICK, new Expirer() {
+
+            @Override
+            public void expire(Serializable key, long expiresAt) {
+                try {
+                    if (holder[0].removeIfExpired(key, expiresAt)) {
+                        expired.add(expiresAt);
+                    }
+                } catch (ObjectStoreException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        try {
+            ExpiringObjectStore store = new ExpiringObjectStore(delegate, 0, wheel);
+            holder[0] = store;
+            for (int i = 0; i < 100; i++) {
+                store.put("key", store.withTtl("value", 60000));
+            }
+            store.store("expired", store.withTtl("value", 1));
+            Thread.sleep(5);
+            for (int i = 0; i < 100; i++) {
+                assertNull(store.lookup("expired"));
+            }
+            assertTrue(wheel.getPending() <= 2);
+
+            store.removeIfPresent("key");
+            store.put("key", "forever");
+            awaitFired(1);
+            assertEquals("forever", store.lookup("key"));
+        } finally {
+            wheel.dispose();
+            delegate.close();
+        }
+    }
+
+    private void awaitFired(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (expired.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(TICK);
+        }
+        // A few more ticks for any expiration firing wrongly
+        Thread.sleep(TICK * 5);
+        assertTrue(String.valueOf(expired), expired.size() == count);
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * (c) 2003-2015 MuleSoft, Inc. The software in this package is
+ * published under the terms of the CPAL v1.0 license, a copy of which
+ * has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.objectstore.automation.functional;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mule.api.store.ObjectAlreadyExistsException;
+import org.mule.api.store.ObjectDoesNotExistException;
+import org.mule.api.store.ObjectStore;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.api.store.ObjectStoreNotAvaliableException;
+import org.mule.config.i18n.MessageFactory;
+import org.mule.modules.objectstore.writebehind.WriteBehindObjectStore;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class WriteBehindTestCases {
+
+    private WriteBehindObjectStore store;
+
+    @After
+    public void tearDown() throws Exception {
+        if (store != null) {
+            store.dispose();
+        }
+    }
+
+    @Test
+    public void testFullBufferFlushedByFlushingThread() throws Exception {
+        RecordingStore delegate = new RecordingStore();
+        store = new WriteBehindObjectStore(delegate, "test", 60000, 10);
+        store.start();
+        for (int i = 0; i < 10; i++) {
+            store.store("key-" + i, "value-" + i);
+        }
+        for (int i = 0; i < 50 && delegate.values.size() < 10; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(10, delegate.values.size());
+        assertEquals(0, store.getPending());
+        assertFalse(delegate.writers.contains(Thread.currentThread()));
+    }
+
+    @Test
+    public void testFullBufferRejectsNewKeys() throws Exception {
+        RecordingStore delegate = new RecordingStore();
+        delegate.available = false;
+        store = new WriteBehindObjectStore(delegate, "test", 100, 2);
+        store.start();
+        for (int i = 0; i < 4; i++) {
+            store.store("key-" + i, "value-" + i);
+        }
+        // Keys already buffered are still written
+        store.put("key-0", "again");
+        try {
+            store.store("key-4", "value-4");
+            fail("The buffer is full");
+        } catch (ObjectStoreException e) {
+            assertEquals(1, store.getRejected());
+        }
+        delegate.available = true;
+        store.store("key-4", "value-4");
+        store.flush();
+        assertEquals(5, delegate.values.size());
+        assertEquals("again", delegate.values.get("key-0"));
+    }
+
+    @Test
+    public void testFailedWritesDropped() throws Exception {
+        RecordingStore delegate = new RecordingStore();
+        delegate.available = false;
+        store = new WriteBehindObjectStore(delegate, "test", 60000, 0);
+        store.store("key", "value");
+        for (int i = 1; i < WriteBehindObjectStore.MAX_ATTEMPTS; i++) {
+            store.flush();
+            assertEquals(1, store.getPending());
+        }
+        store.flush();
+        assertEquals(0, store.getPending());
+        assertEquals(1, store.getDropped());
+        assertEquals(WriteBehindObjectStore.MAX_ATTEMPTS, store.getFailures());
+        assertFalse(store.contains("key"));
+    }
+
+    @Test
+    public void testRewriteRestartsAttempts() throws Exception {
+        RecordingStore delegate = new RecordingStore();
+        delegate.available = false;
+        store = new WriteBehindObjectStore(delegate, "test", 60000, 0);
+        store.store("key", "value");
+        for (int i = 1; i < WriteBehindObjectStore.MAX_ATTEMPTS; i++) {
+            store.flush();
+        }
+        store.put("key", "newer");
+        store.flush();
+        assertEquals(0, store.getDropped());
+        delegate.available = true;
+        store.flush();
+        assertTrue(delegate.values.containsKey("key"));
+        assertEquals("newer", delegate.values.get("key"));
+    }
+
+    private static class RecordingStore implements ObjectStore<Serializable> {
+
+        private final Map<Serializable, Serializable> values = new ConcurrentHashMap<Serializable, Serializable>();
+        private final Set<Thread> writers = new CopyOnWriteArraySet<Thread>();
+        private volatile boolean available = true;
+
+        @Override
+        public boolean contains(Serializable key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public void store(Serializable key, Serializable value) throws ObjectStoreException {
+            if (!available) {
+                throw new ObjectStoreNotAvaliableException(MessageFactory.createStaticMessage("Unavailable"));
+            }
+            if (values.containsKey(key)) {
+                throw new ObjectAlreadyExistsException();
+            }
+            writers.add(Thread.currentThread());
+            values.put(key, value);
+        }
+
+        @Override
+        public Serializable retrieve(Serializable key) throws ObjectStoreException {
+            Serializable value = values.get(key);
+            if (value == null) {
+                throw new ObjectDoesNotExistException();
+            }
+            return value;
+        }
+
+        @Override
+        public Serializable remove(Serializable key) throws ObjectStoreException {
+            Serializable value = values.remove(key);
+            if (value == null) {
+                throw new ObjectDoesNotExistException();
+            }
+            return value;
+        }
+
+        @Override
+        public boolean isPersistent() {
+            return false;
+        }
+
+        @Override
+        public void clear() {
+            values.clear();
+        }
+    }
+}
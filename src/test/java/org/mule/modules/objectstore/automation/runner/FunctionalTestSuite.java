@@ -17,7 +17,27 @@ import org.mule.modules.objectstore.automation.functional.*;
         RetrieveTestCases.class,
         RemoveTestCases.class,
         AllKeysTestCases.class,
-        ContainsTestCases.class })
+        ContainsTestCases.class,
+        BatchTestCases.class,
+        AtomicTestCases.class,
+        CounterTestCases.class,
+        LockTestCases.class,
+        AsyncTestCases.class,
+        ConsistentReadTestCases.class,
+        ComputeTestCases.class,
+        RateLimitTestCases.class,
+        OffHeapTestCases.class,
+        WriteBehindTestCases.class,
+        EvictionTestCases.class,
+        LogTestCases.class,
+        CodecTestCases.class,
+        CompressionTestCases.class,
+        ShardTestCases.class,
+        KeyFilterTestCases.class,
+        NearCacheTestCases.class,
+        LatencyHistogramTestCases.class,
+        LookupTestCases.class,
+        TimingWheelTestCases.class })
 public class FunctionalTestSuite {
 
 